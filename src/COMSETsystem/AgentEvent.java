@@ -1,8 +1,5 @@
 package COMSETsystem;
 
-import java.util.logging.Level;
-import java.util.logging.Logger;
-
 /**
  * @author TijanaKlimovic
  * <p>
@@ -49,6 +46,17 @@ public class AgentEvent extends Event {
 	 */
 	long startSearchTime;
 
+	/*
+	 * Set while the event is triggered in a batch of navigation events with a trace recorded. The call of the
+	 * fleet manager is then kept in reachDeferred and reachedNext rather than recorded by the thread that
+	 * triggers the event, and the simulator records it after the batch in the order of the queue.
+	 */
+	boolean deferTrace = false;
+
+	// Whether the fleet manager was called at the last deferred navigation, and the intersection it returned
+	boolean reachDeferred = false;
+	Intersection reachedNext;
+
 	/**
 	 * Constructor for class AgentEvent.
 	 *
@@ -60,10 +68,24 @@ public class AgentEvent extends Event {
 		this.startSearchTime = startedSearch;
 	}
 
+	/**
+	 * Constructor for class AgentEvent with a given id and trigger time, e.g., when it is restored from a
+	 * checkpoint.
+	 *
+	 * @param loc the location at which the event is triggered
+	 * @param time the time at which the event is triggered
+	 * @param id the id of the event
+	 */
+	AgentEvent(LocationOnRoad loc, long time, long id, Simulator simulator, FleetManager fleetManager) {
+		super(time, id, simulator, fleetManager);
+		this.loc = loc;
+	}
+
 	@Override
 	Event trigger() throws Exception {
-		Logger.getLogger(this.getClass().getName()).log(Level.INFO, "******** AgentEvent id = " + id+ " triggered at time " + time, this);
-		Logger.getLogger(this.getClass().getName()).log(Level.INFO, "Loc = " + loc, this);
+		if (EventTrace.ENABLED) {
+			EventTrace.record(EventTrace.AGENT_TRIGGERED, id, time, loc);
+		}
 
 		switch (state) {
 			case INTERSECTION_REACHED:
@@ -94,7 +116,8 @@ public class AgentEvent extends Event {
 	}
 
 	void navigate() throws Exception {
-		assert loc.travelTimeFromStartIntersection == loc.road.travelTime : "Agent not at an intersection.";
+		// The agent is at the end of loc.road. Its offset is the travel time of the road when the agent
+		// entered it, which differs from the current one if the travel time of the road changed since.
 
 		if (isArrivingPickupLoc()) {
 			long nextEventTime = time + assignedResource.pickupLoc.travelTimeFromStartIntersection;
@@ -116,21 +139,57 @@ public class AgentEvent extends Event {
 			nextIntersection = fleetManager.onReachIntersection(id, time, simulator.agentCopy(loc));
 		}
 
+		if (deferTrace) {
+			reachDeferred = true;
+			reachedNext = nextIntersection;
+		} else if (simulator.traceRecorder != null) {
+			simulator.traceRecorder.reachIntersection(id, time, loc,
+					isPickup && assignedResource != null ? assignedResource.id : -1, nextIntersection);
+		}
+
 		if (nextIntersection == null) {
 			throw new Exception("agent.move() did not return a next location");
 		}
 
-		if (!loc.road.to.isAdjacent(nextIntersection)) {
+		Road nextRoad = loc.road.to.outgoingRoad(nextIntersection);
+		if (nextRoad == null) {
 			throw new Exception("move not made to an adjacent location");
 		}
 
+		if (EventTrace.ENABLED) {
+			EventTrace.record(EventTrace.AGENT_MOVED, id, time, nextRoad, nextRoad.travelTime);
+		}
+
 		// set location and time of the next trigger
-		Road nextRoad = loc.road.to.roadTo(nextIntersection);
 		LocationOnRoad nextLocation = new LocationOnRoad(nextRoad, nextRoad.travelTime);
 		update(time + nextRoad.travelTime, nextLocation, State.INTERSECTION_REACHED);
+	}
 
-		Logger.getLogger(this.getClass().getName()).log(Level.INFO, "Move to " + nextRoad.to, this);
-		Logger.getLogger(this.getClass().getName()).log(Level.INFO, "Next trigger time = " + time, this);
+	/**
+	 * Whether the event only navigates the agent when it is triggered, so that it changes nothing but the
+	 * agent and the state of the agent in the fleet manager.
+	 */
+	boolean isNavigation() {
+		return state == State.INTERSECTION_REACHED;
+	}
+
+	/**
+	 * Gets the earliest time at which the event can be triggered again after navigating the agent at its
+	 * current time, without asking the fleet manager: the time to the assigned pickup or drop off location
+	 * if the agent is arriving at its road, otherwise the shortest travel time of the roads the agent can
+	 * take. Travel times must not change in between.
+	 *
+	 * @return the earliest time of the next trigger of a navigation event
+	 */
+	long earliestNextTime() {
+		if (isArrivingPickupLoc()) {
+			return time + assignedResource.pickupLoc.travelTimeFromStartIntersection;
+		}
+		if (isArrivingDropOffLoc()) {
+			return time + assignedResource.dropoffLoc.travelTimeFromStartIntersection;
+		}
+		long minTravelTime = loc.road.to.minOutgoingTravelTime();
+		return minTravelTime == Long.MAX_VALUE ? Long.MAX_VALUE : time + minTravelTime;
 	}
 
 	private boolean isArrivingPickupLoc() {
@@ -145,7 +204,9 @@ public class AgentEvent extends Event {
 	 * The handler of a pick up event.
 	 */
 	private void pickup() {
-		Logger.getLogger(this.getClass().getName()).log(Level.INFO, "Pickup at " + loc, this);
+		if (EventTrace.ENABLED) {
+			EventTrace.record(EventTrace.AGENT_PICKED_UP, id, time, loc);
+		}
 
 		isPickup = true;
 		long searchTime = time - startSearchTime;
@@ -156,11 +217,15 @@ public class AgentEvent extends Event {
 
 		simulator.totalAgentSearchTime += searchTime;
 		simulator.totalResourceWaitTime += waitTime;
+		if (simulator.traceRecorder != null) {
+			simulator.traceRecorder.pickup(id, assignedResource.id, time, searchTime, waitTime);
+		}
 
 		assignedResource.pickup(this, time);
 
 		// move to the end intersection of the current road
-		long nextEventTime = time + loc.road.travelTime - loc.travelTimeFromStartIntersection;
+		// the travel time of the road may have been lowered since the location was on it
+		long nextEventTime = time + Math.max(0, loc.road.travelTime - loc.travelTimeFromStartIntersection);
 		LocationOnRoad nextLoc = new LocationOnRoad(loc.road, loc.road.travelTime);
 		update(nextEventTime, nextLoc, State.INTERSECTION_REACHED);
 	}
@@ -170,14 +235,17 @@ public class AgentEvent extends Event {
 	 */
 	private void dropOff() {
 		startSearchTime = time;
-		Logger.getLogger(this.getClass().getName()).log(Level.INFO, "Dropoff at " + loc, this);
+		if (EventTrace.ENABLED) {
+			EventTrace.record(EventTrace.AGENT_DROPPED_OFF, id, time, loc);
+		}
 
 		isPickup = false;
 		assignedResource.dropOff(time);
 		assignedResource = null;
 
 		// move to the end intersection of the current road
-		long nextEventTime = time + loc.road.travelTime - loc.travelTimeFromStartIntersection;
+		// the travel time of the road may have been lowered since the location was on it
+		long nextEventTime = time + Math.max(0, loc.road.travelTime - loc.travelTimeFromStartIntersection);
 		LocationOnRoad nextLoc = new LocationOnRoad(loc.road, loc.road.travelTime);
 		update(nextEventTime, nextLoc, State.INTERSECTION_REACHED);
 	}
@@ -0,0 +1,106 @@
+package COMSETsystem;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+/**
+ * A PathTable stored on the heap in two flat primitive arrays. The entry of a (source, destination) pair is
+ * found at index source * size + destination.
+ */
+final class ArrayPathTable extends PathTable {
+
+	// Shortest travel times in seconds, row by row.
+	private final int[] travelTimes;
+
+	// Path table index of the predecessor of each destination on the shortest path from the source.
+	private final int[] predecessors;
+
+	/**
+	 * Creates a table for the given number of intersections with all destinations unreachable.
+	 *
+	 * @param size the number of intersections
+	 * @throws IllegalArgumentException if the table would not fit in a Java array
+	 */
+	ArrayPathTable(int size) {
+		super(size);
+		if ((long) size * size > Integer.MAX_VALUE - 8) {
+			throw new IllegalArgumentException("A map of " + size + " intersections is too large for a dense path table");
+		}
+		this.travelTimes = new int[size * size];
+		this.predecessors = new int[size * size];
+		Arrays.fill(travelTimes, UNREACHABLE);
+		Arrays.fill(predecessors, -1);
+	}
+
+	/**
+	 * Creates a copy of a table on the heap.
+	 *
+	 * @param table the table to copy
+	 * @throws IllegalArgumentException if the table would not fit in a Java array
+	 */
+	ArrayPathTable(PathTable table) {
+		this(table.size);
+		for (int source = 0; source < size; source++) {
+			for (int destination = 0; destination < size; destination++) {
+				int predecessor = table.predecessor(source, destination);
+				if (predecessor != -1) {
+					set(source, destination, table.travelTime(source, destination), predecessor);
+				}
+			}
+		}
+	}
+
+	@Override
+	public long travelTime(int source, int destination) {
+		return fromStoredTravelTime(travelTimes[source * size + destination]);
+	}
+
+	@Override
+	public void travelTimes(int source, int[] destinations, long[] travelTimes) {
+		int row = source * size;
+		for (int i = 0; i < destinations.length; i++) {
+			travelTimes[i] = fromStoredTravelTime(this.travelTimes[row + destinations[i]]);
+		}
+	}
+
+	@Override
+	int predecessor(int source, int destination) {
+		return predecessors[source * size + destination];
+	}
+
+	@Override
+	void set(int source, int destination, long travelTime, int predecessor) {
+		travelTimes[source * size + destination] = toStoredTravelTime(travelTime);
+		predecessors[source * size + destination] = predecessor;
+	}
+
+	/**
+	 * Writes all travel times followed by all predecessors as little-endian ints, in the layout read by
+	 * MappedPathTable.
+	 *
+	 * @param channel the channel to write to
+	 * @throws IOException if writing fails
+	 */
+	void writeTo(WritableByteChannel channel) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+		IntBuffer ints = buffer.asIntBuffer();
+		for (int[] values : new int[][] {travelTimes, predecessors}) {
+			int offset = 0;
+			while (offset < values.length) {
+				int count = Math.min(ints.capacity(), values.length - offset);
+				ints.clear();
+				ints.put(values, offset, count);
+				buffer.clear();
+				buffer.limit(count * Integer.BYTES);
+				while (buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+				offset += count;
+			}
+		}
+	}
+}
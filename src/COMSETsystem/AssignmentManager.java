@@ -19,6 +19,19 @@ public class AssignmentManager {
         }
     }
 
+    /**
+     * Forgets an event, so that actions on it are invalid from now on.
+     *
+     * @param event the event to forget
+     */
+    public void removeEvent(Event event) {
+        if (event instanceof AgentEvent) {
+            agents.remove(event.id);
+        } else {
+            resources.remove(event.id);
+        }
+    }
+
     public void processAgentAction(AgentAction agentAction, long currentTime) {
         switch (agentAction.type) {
             case ASSIGN:
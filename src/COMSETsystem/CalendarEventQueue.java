@@ -0,0 +1,178 @@
+package COMSETsystem;
+
+/**
+ * An EventQueue for integer-second event times that are dense in time. The events of the next SECONDS
+ * seconds are kept in one bucket per second, and the events of a bucket are kept sorted by id, so that adding
+ * an event finds its bucket by its time and polling takes the last event of the first non-empty bucket,
+ * without comparing events. Later events wait in a HeapEventQueue and are moved to their bucket once, when the
+ * window of buckets reaches their time. Removing an event takes a binary search in its bucket, or O(log n)
+ * for a later event. Events are polled in the order of Event.compareTo, as from a HeapEventQueue.
+ */
+public class CalendarEventQueue implements EventQueue {
+
+	// The number of seconds covered by the buckets; a power of two
+	private static final int SECONDS = 1 << 12;
+
+	// The initial capacity of a bucket
+	private static final int BUCKET_CAPACITY = 4;
+
+	// The events of each second of the window, at index time & (SECONDS - 1), sorted by decreasing id
+	private final Event[][] buckets = new Event[SECONDS][];
+
+	// The number of events of each bucket
+	private final int[] bucketSizes = new int[SECONDS];
+
+	// The events at or after the end of the window, or all events until the first event is looked up
+	private final HeapEventQueue later = new HeapEventQueue();
+
+	// The first second of the window. Bucketed events are in [start, start + SECONDS) and later events
+	// are at or after start + SECONDS.
+	private long start;
+
+	// Whether the window is placed; events are all later until the first one is looked up, so that
+	// events added out of order before the simulation starts do not move the window
+	private boolean started;
+
+	// The number of events in buckets
+	private int bucketed;
+
+	@Override
+	public void add(Event event) {
+		if (!started) {
+			later.add(event);
+			return;
+		}
+		if (event.time < start) {
+			moveWindowBack(event.time);
+		}
+		if (event.time - start < SECONDS) {
+			addToBucket(event);
+		} else {
+			later.add(event);
+		}
+	}
+
+	@Override
+	public Event peek() {
+		if (size() == 0) {
+			return null;
+		}
+		if (!started) {
+			started = true;
+			start = later.peek().time;
+			moveLaterToBuckets();
+		}
+		if (bucketed == 0) {
+			start = later.peek().time;
+			moveLaterToBuckets();
+		}
+		int first = (int) start & (SECONDS - 1);
+		if (bucketSizes[first] == 0) {
+			while (bucketSizes[first] == 0) {
+				start++;
+				first = (first + 1) & (SECONDS - 1);
+			}
+			moveLaterToBuckets();
+		}
+		return buckets[first][bucketSizes[first] - 1];
+	}
+
+	@Override
+	public Event poll() {
+		Event event = peek();
+		if (event != null) {
+			int first = (int) start & (SECONDS - 1);
+			buckets[first][--bucketSizes[first]] = null;
+			bucketed--;
+		}
+		return event;
+	}
+
+	@Override
+	public boolean remove(Event event) {
+		if (!started || event.time < start || event.time - start >= SECONDS) {
+			return later.remove(event);
+		}
+		int bucket = (int) event.time & (SECONDS - 1);
+		int position = positionInBucket(bucket, event.id);
+		if (position >= bucketSizes[bucket] || buckets[bucket][position] != event) {
+			return false;
+		}
+		System.arraycopy(buckets[bucket], position + 1, buckets[bucket], position, bucketSizes[bucket] - position - 1);
+		buckets[bucket][--bucketSizes[bucket]] = null;
+		bucketed--;
+		return true;
+	}
+
+	@Override
+	public int size() {
+		return bucketed + later.size();
+	}
+
+	private void addToBucket(Event event) {
+		int bucket = (int) event.time & (SECONDS - 1);
+		if (buckets[bucket] == null) {
+			buckets[bucket] = new Event[BUCKET_CAPACITY];
+		} else if (bucketSizes[bucket] == buckets[bucket].length) {
+			Event[] grown = new Event[2 * bucketSizes[bucket]];
+			System.arraycopy(buckets[bucket], 0, grown, 0, bucketSizes[bucket]);
+			buckets[bucket] = grown;
+		}
+		int position = positionInBucket(bucket, event.id);
+		if (position < bucketSizes[bucket] && buckets[bucket][position].id == event.id) {
+			System.out.println("Duplicate event exception");
+			System.exit(1);
+		}
+		System.arraycopy(buckets[bucket], position, buckets[bucket], position + 1, bucketSizes[bucket] - position);
+		buckets[bucket][position] = event;
+		bucketSizes[bucket]++;
+		bucketed++;
+	}
+
+	/**
+	 * Gets the position of the first event of a bucket whose id is not greater than an id.
+	 */
+	private int positionInBucket(int bucket, long id) {
+		Event[] events = buckets[bucket];
+		int low = 0;
+		int high = bucketSizes[bucket];
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (events[middle].id > id) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Moves the later events that the window now covers to their buckets.
+	 */
+	private void moveLaterToBuckets() {
+		while (!later.isEmpty() && later.peek().time - start < SECONDS) {
+			addToBucket(later.poll());
+		}
+	}
+
+	/**
+	 * Moves the window back to an earlier first second, moving the bucketed events it no longer covers to
+	 * the later events. This happens when an event is added before the first event once peek has moved the
+	 * window to it, e.g., a streamed resource introduced between the current time and the first event, so
+	 * only the buckets of the seconds that leave the window are emptied rather than all of them.
+	 */
+	private void moveWindowBack(long newStart) {
+		long end = start + SECONDS;
+		for (long time = Math.max(newStart + SECONDS, start); time < end; time++) {
+			int bucket = (int) time & (SECONDS - 1);
+			for (int i = 0; i < bucketSizes[bucket]; i++) {
+				later.add(buckets[bucket][i]);
+				buckets[bucket][i] = null;
+			}
+			bucketed -= bucketSizes[bucket];
+			bucketSizes[bucket] = 0;
+		}
+		start = newStart;
+	}
+}
@@ -0,0 +1,526 @@
+package COMSETsystem;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * A CellOverlay is a RoutingBackend for maps too large for an all-pair path table, in the style of
+ * customizable route planning (CRP). The intersections are partitioned into cells of nearby intersections on
+ * several levels, each cell of a level being the union of cells of the level below. A road between two cells
+ * of a level is a cut road of the level; its start intersection is an exit of its cell and its end
+ * intersection an entry of the other cell. For every cell, the overlay stores the shortest travel time
+ * inside the cell from each of its entries to each of its exits.
+ *
+ * A query runs Dijkstra from the source. At an intersection whose cell on some level contains neither the
+ * source nor the destination, it uses the highest such level: from an entry it jumps to the exits of the
+ * cell with the stored travel times, and from an exit it follows the cut roads of the level. Elsewhere it
+ * follows the roads. Every path leaving a cell does so through an exit, so the travel times are exact, while
+ * the search only visits the boundaries of the cells away from the source and the destination. A stored
+ * travel time used by a path is unpacked into roads with searches inside its cell, level by level.
+ *
+ * The memory is that of the overlays, i.e., the number of entries times the number of exits of each cell,
+ * which stays far below n * sqrt(n) for road maps. Changing the travel time of a road only needs the
+ * overlays of the cells containing the road to be computed again (see customizeRoad). Each thread keeps its
+ * own search buffers. Where several shortest paths exist, the path may differ from that of the path table.
+ */
+final class CellOverlay implements RoutingBackend {
+
+	// Stored travel time between an entry and an exit that cannot be reached inside the cell
+	private static final int UNREACHABLE = Integer.MAX_VALUE;
+
+	// The ratio between the maximum sizes of the cells of two consecutive levels
+	private static final int LEVEL_RATIO = 4;
+
+	// The roads of the map
+	private final RoadGraph graph;
+
+	// The cells and overlays by level; levels[0] is null and stands for the roads themselves
+	private final Level[] levels;
+
+	// Per-thread search state
+	private final ThreadLocal<Search> searches = ThreadLocal.withInitial(Search::new);
+
+	/**
+	 * The cells of one level and their overlay.
+	 */
+	private final class Level {
+		// The cell of each intersection
+		final int[] cellOf;
+
+		// The number of cells
+		final int cellCount;
+
+		// The entries of cell c are entries[firstEntry[c]] to entries[firstEntry[c + 1] - 1], and likewise
+		// for the exits
+		final int[] firstEntry;
+		final int[] entries;
+		final int[] firstExit;
+		final int[] exits;
+
+		// The position of each intersection among the entries, respectively the exits, of its cell, or -1
+		final int[] entryIndex;
+		final int[] exitIndex;
+
+		// The travel time inside cell c from its i-th entry to its j-th exit is at
+		// overlay[firstOverlay[c] + i * exitCount(c) + j]
+		final int[] firstOverlay;
+		final int[] overlay;
+
+		Level(int[] cellOf) {
+			this.cellOf = cellOf;
+			int cells = 0;
+			for (int cell : cellOf) {
+				cells = Math.max(cells, cell + 1);
+			}
+			this.cellCount = cells;
+
+			boolean[] isEntry = new boolean[graph.size];
+			boolean[] isExit = new boolean[graph.size];
+			for (int v = 0; v < graph.size; v++) {
+				for (int road = graph.firstRoad[v]; road < graph.firstRoad[v + 1]; road++) {
+					if (cellOf[graph.roadTo[road]] != cellOf[v]) {
+						isExit[v] = true;
+						isEntry[graph.roadTo[road]] = true;
+					}
+				}
+			}
+			this.firstEntry = new int[cellCount + 1];
+			this.entryIndex = new int[graph.size];
+			this.entries = boundary(isEntry, firstEntry, entryIndex);
+			this.firstExit = new int[cellCount + 1];
+			this.exitIndex = new int[graph.size];
+			this.exits = boundary(isExit, firstExit, exitIndex);
+
+			this.firstOverlay = new int[cellCount + 1];
+			long overlaySize = 0;
+			for (int cell = 0; cell < cellCount; cell++) {
+				firstOverlay[cell] = (int) overlaySize;
+				overlaySize += (long) entryCount(cell) * exitCount(cell);
+				if (overlaySize > Integer.MAX_VALUE - 8) {
+					throw new IllegalArgumentException("The cells have too many entries and exits for an overlay");
+				}
+			}
+			firstOverlay[cellCount] = (int) overlaySize;
+			this.overlay = new int[(int) overlaySize];
+		}
+
+		/**
+		 * Lists the intersections of each cell that have a flag, cell by cell.
+		 *
+		 * @param flags the flag of each intersection
+		 * @param first receives the position of the first listed intersection of each cell, plus the total
+		 * @param index receives the position of each intersection in the list of its cell, or -1
+		 * @return the listed intersections
+		 */
+		private int[] boundary(boolean[] flags, int[] first, int[] index) {
+			for (int v = 0; v < graph.size; v++) {
+				if (flags[v]) {
+					first[cellOf[v] + 1]++;
+				}
+			}
+			for (int cell = 0; cell < cellCount; cell++) {
+				first[cell + 1] += first[cell];
+			}
+			int[] listed = new int[first[cellCount]];
+			int[] next = Arrays.copyOf(first, cellCount);
+			Arrays.fill(index, -1);
+			for (int v = 0; v < graph.size; v++) {
+				if (flags[v]) {
+					int position = next[cellOf[v]]++;
+					listed[position] = v;
+					index[v] = position - first[cellOf[v]];
+				}
+			}
+			return listed;
+		}
+
+		int entryCount(int cell) {
+			return firstEntry[cell + 1] - firstEntry[cell];
+		}
+
+		int exitCount(int cell) {
+			return firstExit[cell + 1] - firstExit[cell];
+		}
+
+		long sizeInBytes() {
+			return (long) Integer.BYTES * (cellOf.length + firstEntry.length + entries.length + firstExit.length
+					+ exits.length + entryIndex.length + exitIndex.length + firstOverlay.length + overlay.length);
+		}
+	}
+
+	/**
+	 * Finds the entries and exits of the cells and computes the overlays of every level, bottom-up.
+	 *
+	 * @param graph the roads of the map; see customizeRoad for later changes of its travel times
+	 * @param cellOf the cell of each intersection on each level, numbered from 0; the cells of a level must
+	 * be unions of cells of the level before; see partition
+	 * @throws IllegalArgumentException if an overlay would not fit in a Java array or a travel time does not
+	 * fit in an int
+	 */
+	CellOverlay(RoadGraph graph, int[][] cellOf) {
+		this.graph = graph;
+		this.levels = new Level[cellOf.length + 1];
+		for (int level = 1; level < levels.length; level++) {
+			levels[level] = new Level(cellOf[level - 1]);
+			for (int cell = 0; cell < levels[level].cellCount; cell++) {
+				customizeCell(level, cell);
+			}
+		}
+	}
+
+	/**
+	 * Partitions intersections into cells of nearby intersections by recursive coordinate bisection: a set
+	 * of intersections larger than a cell is split at the median of its longer side, and both halves are
+	 * partitioned the same way. The bisection gives the cells of all levels at once: the cells of the first
+	 * level hold up to cellSize intersections, and those of each next level up to LEVEL_RATIO times as many,
+	 * up to the last level with at least two cells.
+	 *
+	 * @param intersectionsByPathTableIndex the intersections of the map indexed by path table index
+	 * @param cellSize the maximum number of intersections of a cell of the first level
+	 * @return the cell of each intersection by level and path table index
+	 * @throws IllegalArgumentException if cellSize is not positive
+	 */
+	static int[][] partition(Intersection[] intersectionsByPathTableIndex, int cellSize) {
+		if (cellSize < 1) {
+			throw new IllegalArgumentException("The cell size must be positive");
+		}
+		int size = intersectionsByPathTableIndex.length;
+		int levelCount = 0;
+		for (long levelCellSize = cellSize; levelCellSize < size; levelCellSize *= LEVEL_RATIO) {
+			levelCount++;
+		}
+		int[] cellSizes = new int[levelCount];
+		for (int level = 0; level < levelCount; level++) {
+			cellSizes[level] = level == 0 ? cellSize : cellSizes[level - 1] * LEVEL_RATIO;
+		}
+
+		Integer[] order = new Integer[size];
+		for (int v = 0; v < size; v++) {
+			order[v] = v;
+		}
+		int[][] cellOf = new int[levelCount][size];
+		bisect(intersectionsByPathTableIndex, order, 0, size, Integer.MAX_VALUE, cellSizes, cellOf, new int[levelCount]);
+		return cellOf;
+	}
+
+	/**
+	 * Partitions order[from] to order[to - 1]; see partition.
+	 *
+	 * @param parentSize the number of intersections of the set split to get this one
+	 * @param nextCell the number of the next cell of each level
+	 */
+	private static void bisect(Intersection[] intersections, Integer[] order, int from, int to, int parentSize,
+			int[] cellSizes, int[][] cellOf, int[] nextCell) {
+		int size = to - from;
+		for (int level = 0; level < cellSizes.length; level++) {
+			if (size <= cellSizes[level] && parentSize > cellSizes[level]) {
+				for (int i = from; i < to; i++) {
+					cellOf[level][order[i]] = nextCell[level];
+				}
+				nextCell[level]++;
+			}
+		}
+		if (cellSizes.length == 0 || size <= cellSizes[0]) {
+			return;
+		}
+		double minX = Double.MAX_VALUE, maxX = -Double.MAX_VALUE, minY = Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+		for (int i = from; i < to; i++) {
+			Intersection intersection = intersections[order[i]];
+			minX = Math.min(minX, intersection.getX());
+			maxX = Math.max(maxX, intersection.getX());
+			minY = Math.min(minY, intersection.getY());
+			maxY = Math.max(maxY, intersection.getY());
+		}
+		Comparator<Integer> alongLongerSide = maxX - minX >= maxY - minY
+				? Comparator.comparingDouble(v -> intersections[v].getX())
+				: Comparator.comparingDouble(v -> intersections[v].getY());
+		Arrays.sort(order, from, to, alongLongerSide.thenComparingInt(v -> v));
+		int middle = (from + to) >>> 1;
+		bisect(intersections, order, from, middle, size, cellSizes, cellOf, nextCell);
+		bisect(intersections, order, middle, to, size, cellSizes, cellOf, nextCell);
+	}
+
+	/**
+	 * Computes the travel times inside a cell from each of its entries to each of its exits, searching the
+	 * level below.
+	 */
+	private void customizeCell(int level, int cell) {
+		Level cells = levels[level];
+		Search search = searches.get();
+		int exitCount = cells.exitCount(cell);
+		for (int i = 0; i < cells.entryCount(cell); i++) {
+			search.runInCell(level, cells.entries[cells.firstEntry[cell] + i], -1);
+			int offset = cells.firstOverlay[cell] + i * exitCount;
+			for (int j = 0; j < exitCount; j++) {
+				int exit = cells.exits[cells.firstExit[cell] + j];
+				cells.overlay[offset + j] = search.settledStamp[exit] == search.stamp
+						? toStored(search.travelTimes[exit]) : UNREACHABLE;
+			}
+		}
+	}
+
+	private static int toStored(long travelTime) {
+		if (travelTime >= UNREACHABLE) {
+			throw new IllegalArgumentException("Travel time " + travelTime + " does not fit in a cell overlay");
+		}
+		return (int) travelTime;
+	}
+
+	/**
+	 * Brings the overlays up to date after the travel time of a road changed in the graph. Only the overlays
+	 * of the cells containing both ends of the road are computed again, from the lowest level up; the travel
+	 * times of cut roads are read from the graph by the searches.
+	 *
+	 * @param from path table index of the start intersection of the road
+	 * @param to path table index of the end intersection of the road
+	 * @return the number of cells computed again, at most one per level
+	 */
+	int customizeRoad(int from, int to) {
+		int customized = 0;
+		for (int level = 1; level < levels.length; level++) {
+			int[] cellOf = levels[level].cellOf;
+			if (cellOf[from] == cellOf[to]) {
+				customizeCell(level, cellOf[from]);
+				customized++;
+			}
+		}
+		return customized;
+	}
+
+	@Override
+	public long travelTime(int source, int destination) {
+		Search search = searches.get();
+		search.runOverlay(source, destination);
+		return search.settledStamp[destination] == search.stamp ? search.travelTimes[destination] : Long.MAX_VALUE;
+	}
+
+	/**
+	 * Gets a shortest travel-time path by searching the overlays and then unpacking every overlay travel time
+	 * on the path with searches inside its cell.
+	 */
+	@Override
+	public int[] path(int source, int destination) {
+		Search search = searches.get();
+		search.runOverlay(source, destination);
+		if (search.settledStamp[destination] != search.stamp) {
+			return null;
+		}
+		PathBuilder path = new PathBuilder();
+		path.add(source);
+		unpack(search, source, destination, path);
+		return Arrays.copyOf(path.nodes, path.length);
+	}
+
+	/**
+	 * Appends the intersections after the source of the path found by the last search of a thread, unpacking
+	 * its overlay travel times into roads.
+	 */
+	private void unpack(Search search, int source, int destination, PathBuilder path) {
+		int hops = 0;
+		for (int v = destination; v != source; v = search.parents[v]) {
+			hops++;
+		}
+		// the hops are unpacked with new searches, so they are saved first
+		int[] hopEnds = new int[hops];
+		int[] hopLevels = new int[hops];
+		for (int v = destination, hop = hops - 1; v != source; v = search.parents[v], hop--) {
+			hopEnds[hop] = v;
+			hopLevels[hop] = search.parentLevels[v];
+		}
+		int from = source;
+		for (int hop = 0; hop < hops; hop++) {
+			if (hopLevels[hop] == 0) {
+				path.add(hopEnds[hop]);
+			} else {
+				search.runInCell(hopLevels[hop], from, hopEnds[hop]);
+				unpack(search, from, hopEnds[hop], path);
+			}
+			from = hopEnds[hop];
+		}
+	}
+
+	/**
+	 * The intersections of a path being unpacked.
+	 */
+	private static final class PathBuilder {
+		int[] nodes = new int[16];
+		int length = 0;
+
+		void add(int node) {
+			if (length == nodes.length) {
+				nodes = Arrays.copyOf(nodes, 2 * length);
+			}
+			nodes[length++] = node;
+		}
+	}
+
+	/**
+	 * @return the number of bytes taken by the cells and the overlays
+	 */
+	@Override
+	public long sizeInBytes() {
+		long size = 0;
+		for (int level = 1; level < levels.length; level++) {
+			size += levels[level].sizeInBytes();
+		}
+		return size;
+	}
+
+	/**
+	 * @return the number of cells of each level, from the lowest level up
+	 */
+	int[] cellCounts() {
+		int[] counts = new int[levels.length - 1];
+		for (int level = 1; level < levels.length; level++) {
+			counts[level - 1] = levels[level].cellCount;
+		}
+		return counts;
+	}
+
+	/**
+	 * @return the number of intersections settled by the last query of the calling thread
+	 */
+	int lastSettledCount() {
+		return searches.get().settledCount;
+	}
+
+	/**
+	 * The state of a Dijkstra search, reused by all searches of one thread.
+	 */
+	private final class Search {
+		final long[] travelTimes = new long[graph.size];
+		final int[] parents = new int[graph.size];
+		// the level of the overlay through which an intersection is reached from its parent, or 0 for a road
+		final int[] parentLevels = new int[graph.size];
+		// an intersection has been reached, or settled, in the current search iff its stamp equals the
+		// search number
+		final int[] reachedStamp = new int[graph.size];
+		final int[] settledStamp = new int[graph.size];
+		int stamp = 0;
+		final LongHeap queue = new LongHeap();
+		int settledCount;
+
+		private void start(int source) {
+			if (++stamp == 0) {
+				Arrays.fill(reachedStamp, 0);
+				Arrays.fill(settledStamp, 0);
+				stamp = 1;
+			}
+			settledCount = 0;
+			queue.clear();
+			reach(source, 0, -1, 0);
+		}
+
+		/**
+		 * @return the next intersection to settle, or -1 if there is none
+		 */
+		private int settleNext() {
+			while (!queue.isEmpty()) {
+				int v = queue.pop();
+				if (settledStamp[v] != stamp) {
+					settledStamp[v] = stamp;
+					settledCount++;
+					return v;
+				}
+			}
+			return -1;
+		}
+
+		/**
+		 * Searches inside the cell of the source on a level, using the overlay of the level below.
+		 *
+		 * @param level the level of the cell, at least 1
+		 * @param source path table index of the source, an entry of the cell
+		 * @param destination path table index of the intersection at which to stop, or -1 to search the
+		 * whole cell
+		 */
+		void runInCell(int level, int source, int destination) {
+			int[] cellOf = levels[level].cellOf;
+			int cell = cellOf[source];
+			start(source);
+			for (int v = settleNext(); v != -1 && v != destination; v = settleNext()) {
+				if (level == 1) {
+					relaxRoads(v, null, cellOf, cell);
+				} else {
+					relaxLevel(v, level - 1, cellOf, cell);
+				}
+			}
+		}
+
+		/**
+		 * Searches the roads near the source and the destination, and the highest overlay that contains
+		 * neither of them elsewhere.
+		 */
+		void runOverlay(int source, int destination) {
+			start(source);
+			for (int v = settleNext(); v != -1 && v != destination; v = settleNext()) {
+				int level = levels.length - 1;
+				while (level > 0 && (levels[level].cellOf[v] == levels[level].cellOf[source]
+						|| levels[level].cellOf[v] == levels[level].cellOf[destination])) {
+					level--;
+				}
+				if (level == 0) {
+					relaxRoads(v, null, null, 0);
+				} else {
+					relaxLevel(v, level, null, 0);
+				}
+			}
+		}
+
+		/**
+		 * Follows the overlay of the cell of an entry, and the cut roads of an exit, on a level.
+		 *
+		 * @param within the cells of a higher level to stay in, or null
+		 * @param cell the cell to stay in
+		 */
+		private void relaxLevel(int v, int level, int[] within, int cell) {
+			Level cells = levels[level];
+			int vCell = cells.cellOf[v];
+			if (cells.entryIndex[v] >= 0) {
+				int exitCount = cells.exitCount(vCell);
+				int offset = cells.firstOverlay[vCell] + cells.entryIndex[v] * exitCount;
+				int firstExit = cells.firstExit[vCell];
+				for (int j = 0; j < exitCount; j++) {
+					int overlayTravelTime = cells.overlay[offset + j];
+					if (overlayTravelTime != UNREACHABLE) {
+						reach(cells.exits[firstExit + j], travelTimes[v] + overlayTravelTime, v, level);
+					}
+				}
+			}
+			if (cells.exitIndex[v] >= 0) {
+				relaxRoads(v, cells.cellOf, within, cell);
+			}
+		}
+
+		/**
+		 * Follows the roads of an intersection.
+		 *
+		 * @param leaving the cells the roads must leave, or null for all roads
+		 * @param within the cells of a higher level to stay in, or null
+		 * @param cell the cell to stay in
+		 */
+		private void relaxRoads(int v, int[] leaving, int[] within, int cell) {
+			long travelTime = travelTimes[v];
+			for (int road = graph.firstRoad[v]; road < graph.firstRoad[v + 1]; road++) {
+				int w = graph.roadTo[road];
+				if ((leaving == null || leaving[w] != leaving[v]) && (within == null || within[w] == cell)) {
+					reach(w, travelTime + graph.roadTravelTime[road], v, 0);
+				}
+			}
+		}
+
+		private void reach(int v, long travelTime, int parent, int parentLevel) {
+			if (reachedStamp[v] != stamp) {
+				reachedStamp[v] = stamp;
+				travelTimes[v] = Long.MAX_VALUE;
+			}
+			if (settledStamp[v] == stamp || travelTime >= travelTimes[v]) {
+				return;
+			}
+			travelTimes[v] = travelTime;
+			parents[v] = parent;
+			parentLevels[v] = parentLevel;
+			queue.push(travelTime, v);
+		}
+	}
+}
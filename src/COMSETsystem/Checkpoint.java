@@ -0,0 +1,323 @@
+package COMSETsystem;
+
+import DataParsing.MapWithData;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * The Checkpoint writes the state of a simulation between two events to a file, and restores a simulation
+ * from such a file, so that experiments can start from the middle of a simulated day instead of simulating
+ * it from the beginning. The same checkpoint can be restored any number of times, e.g., to try several
+ * parameters of a fleet manager from the same state.
+ *
+ * A checkpoint holds the score accumulators and the times of the simulation; every pending event and every
+ * event an agent, a resource or the AssignmentManager still refers to, with its state and whether it is in
+ * emptyAgents, waitingResources and the AssignmentManager; the travel time changes made so far; the position
+ * of the resource stream if resources are streamed; and the state of the fleet manager, written by
+ * FleetManager.writeCheckpoint. The map and its routing are not part of it: the simulation restoring it builds
+ * them from the same map files, which is fast once the path table is cached (see
+ * Simulator.setPathTableCacheDirectory), and makes the travel time changes again. The restored simulation then
+ * triggers the same events in the same order as the simulation that wrote the checkpoint.
+ */
+final class Checkpoint {
+
+	// The first bytes of a checkpoint
+	static final long MAGIC = 0x434F4D5345544350L; // "COMSETCP"
+	static final int VERSION = 1;
+
+	// The kinds of event
+	private static final int AGENT_EVENT = 0;
+	private static final int RESOURCE_EVENT = 1;
+	private static final int TRAVEL_TIME_EVENT = 2;
+
+	// Where an event is, besides the objects referring to it
+	private static final int QUEUED = 1;
+	private static final int EMPTY_AGENT = 2;
+	private static final int WAITING_RESOURCE = 4;
+	private static final int ASSIGNABLE = 8;
+
+	private Checkpoint() {
+	}
+
+	/**
+	 * Writes the state of a simulation between two events to a file. The fleet manager must support
+	 * checkpoints.
+	 *
+	 * @param simulator the simulator
+	 * @param path the path of the checkpoint file, which is replaced
+	 * @throws IOException if the file cannot be written
+	 */
+	static void write(Simulator simulator, String path) throws IOException {
+		// the pending events, polled and added again
+		List<Event> queued = new ArrayList<>(simulator.events.size());
+		while (!simulator.events.isEmpty()) {
+			queued.add(simulator.events.poll());
+		}
+		for (Event event : queued) {
+			simulator.events.add(event);
+		}
+		TreeMap<Long, Event> events = new TreeMap<>();
+		for (Event event : queued) {
+			collect(event, events);
+		}
+		for (AgentEvent agentEvent : simulator.emptyAgents) {
+			collect(agentEvent, events);
+		}
+		for (ResourceEvent resourceEvent : simulator.waitingResources) {
+			collect(resourceEvent, events);
+		}
+		for (AgentEvent agentEvent : simulator.assignmentManager.agents.values()) {
+			collect(agentEvent, events);
+		}
+		for (ResourceEvent resourceEvent : simulator.assignmentManager.resources.values()) {
+			collect(resourceEvent, events);
+		}
+		Set<Long> queuedIds = new HashSet<>();
+		for (Event event : queued) {
+			queuedIds.add(event.id);
+		}
+
+		try (CheckpointOutput out = new CheckpointOutput(new BufferedOutputStream(new FileOutputStream(path), 1 << 16))) {
+			out.writeLong(MAGIC);
+			out.writeInt(VERSION);
+			out.writeUTF(simulator.fleetManager.getClass().getName());
+
+			out.writeLong(simulator.ResourceMaximumLifeTime);
+			out.writeLong(simulator.totalAgents);
+			out.writeLong(simulator.simulationStartTime);
+			out.writeLong(simulator.simulationTime);
+			out.writeLong(simulator.simulationEndTime);
+			out.writeLong(simulator.totalResourceTripTime);
+			out.writeLong(simulator.totalResourceWaitTime);
+			out.writeLong(simulator.totalAgentSearchTime);
+			out.writeLong(simulator.totalAgentCruiseTime);
+			out.writeLong(simulator.totalAgentApproachTime);
+			out.writeLong(simulator.expiredResources);
+			out.writeLong(simulator.totalResources);
+			out.writeLong(simulator.totalAssignments);
+			out.writeLong(Event.nextId());
+
+			out.writeInt(simulator.travelTimeChanges.size());
+			for (long[] change : simulator.travelTimeChanges) {
+				out.writeLong(change[0]);
+				out.writeLong(change[1]);
+				out.writeLong(change[2]);
+			}
+			out.writeLong(simulator.timeBucket == -1 ? Long.MIN_VALUE : simulator.timeBucketStart);
+
+			out.writeInt(events.size());
+			for (Event event : events.values()) {
+				int where = queuedIds.contains(event.id) ? QUEUED : 0;
+				if (event instanceof AgentEvent) {
+					AgentEvent agentEvent = (AgentEvent) event;
+					where |= simulator.emptyAgents.contains(agentEvent) ? EMPTY_AGENT : 0;
+					where |= simulator.assignmentManager.agents.get(event.id) == event ? ASSIGNABLE : 0;
+					out.writeByte(AGENT_EVENT);
+					out.writeLong(event.id);
+					out.writeLong(event.time);
+					out.writeByte(where);
+					out.writeLocation(agentEvent.loc);
+					out.writeByte(agentEvent.state.ordinal());
+					out.writeBoolean(agentEvent.isPickup);
+					out.writeLong(agentEvent.assignedResource == null ? -1 : agentEvent.assignedResource.id);
+					out.writeLong(agentEvent.startSearchTime);
+				} else if (event instanceof ResourceEvent) {
+					ResourceEvent resourceEvent = (ResourceEvent) event;
+					where |= simulator.waitingResources.contains(resourceEvent) ? WAITING_RESOURCE : 0;
+					where |= simulator.assignmentManager.resources.get(event.id) == event ? ASSIGNABLE : 0;
+					out.writeByte(RESOURCE_EVENT);
+					out.writeLong(event.id);
+					out.writeLong(event.time);
+					out.writeByte(where);
+					out.writeLocation(resourceEvent.pickupLoc);
+					out.writeLocation(resourceEvent.dropoffLoc);
+					out.writeLong(resourceEvent.availableTime);
+					out.writeLong(resourceEvent.tripTime);
+					out.writeLong(resourceEvent.pickupTime);
+					out.writeByte(resourceEvent.state.ordinal());
+					out.writeLong(resourceEvent.agentEvent == null ? -1 : resourceEvent.agentEvent.id);
+				} else {
+					RoadTravelTimeEvent travelTimeEvent = (RoadTravelTimeEvent) event;
+					out.writeByte(TRAVEL_TIME_EVENT);
+					out.writeLong(event.id);
+					out.writeLong(event.time);
+					out.writeByte(where);
+					out.writeRoad(travelTimeEvent.road);
+					out.writeLong(travelTimeEvent.travelTime);
+				}
+			}
+
+			out.writeBoolean(simulator.resourceFeed != null);
+			if (simulator.resourceFeed != null) {
+				out.writeLong(simulator.resourceFeed.firstId());
+				out.writeInt(simulator.resourceFeed.introduced());
+			}
+
+			simulator.fleetManager.writeCheckpoint(out);
+			out.writeLong(MAGIC);
+		}
+	}
+
+	/**
+	 * Adds an event and the events it refers to.
+	 */
+	private static void collect(Event event, Map<Long, Event> events) {
+		while (event != null && events.putIfAbsent(event.id, event) == null) {
+			if (event instanceof AgentEvent) {
+				event = ((AgentEvent) event).assignedResource;
+			} else if (event instanceof ResourceEvent) {
+				event = ((ResourceEvent) event).agentEvent;
+			} else {
+				event = null;
+			}
+		}
+	}
+
+	/**
+	 * Restores the state of a simulation from a checkpoint file, in place of loading the resources, placing
+	 * the agents and creating the traffic events. The map, its routing, the speed profile and the fleet manager
+	 * must have been created, and the event queue of the simulator must be empty.
+	 *
+	 * @param simulator the simulator
+	 * @param path the path of the checkpoint file
+	 * @param mapWD the map to stream the resources from, if the simulation that wrote the checkpoint did
+	 * @throws IOException if the file cannot be read, is not a checkpoint, or does not match the simulation
+	 */
+	static void read(Simulator simulator, String path, MapWithData mapWD) throws IOException {
+		try (CheckpointInput in = new CheckpointInput(new BufferedInputStream(new FileInputStream(path), 1 << 16),
+				simulator.map)) {
+			if (in.readLong() != MAGIC) {
+				throw new IOException(path + " is not a checkpoint");
+			}
+			int version = in.readInt();
+			if (version != VERSION) {
+				throw new IOException("Unsupported checkpoint version " + version);
+			}
+			String fleetManagerClass = in.readUTF();
+			if (!fleetManagerClass.equals(simulator.fleetManager.getClass().getName())) {
+				throw new IOException("The checkpoint was written with fleet manager " + fleetManagerClass);
+			}
+
+			simulator.ResourceMaximumLifeTime = in.readLong();
+			simulator.totalAgents = in.readLong();
+			simulator.simulationStartTime = in.readLong();
+			long simulationTime = in.readLong();
+			simulator.simulationEndTime = in.readLong();
+			simulator.totalResourceTripTime = in.readLong();
+			simulator.totalResourceWaitTime = in.readLong();
+			simulator.totalAgentSearchTime = in.readLong();
+			simulator.totalAgentCruiseTime = in.readLong();
+			simulator.totalAgentApproachTime = in.readLong();
+			simulator.expiredResources = in.readLong();
+			simulator.totalResources = in.readLong();
+			simulator.totalAssignments = in.readLong();
+			Event.setNextId(in.readLong());
+
+			// make the travel time changes again, in the time buckets in which they were made
+			int changes = in.readInt();
+			for (int i = 0; i < changes; i++) {
+				long time = in.readLong();
+				Road road = in.readRoad();
+				long travelTime = in.readLong();
+				simulator.simulationTime = time;
+				simulator.updateTimeBucket(time);
+				simulator.changeRoadTravelTime(road, travelTime);
+			}
+			long timeBucketStart = in.readLong();
+			if (timeBucketStart != Long.MIN_VALUE) {
+				simulator.updateTimeBucket(timeBucketStart);
+			}
+			simulator.simulationTime = simulationTime;
+
+			int count = in.readInt();
+			Map<Long, Event> events = new HashMap<>();
+			Map<AgentEvent, Long> assignedResources = new HashMap<>();
+			Map<ResourceEvent, Long> assignedAgents = new HashMap<>();
+			for (int i = 0; i < count; i++) {
+				int kind = in.readByte();
+				long id = in.readLong();
+				long time = in.readLong();
+				int where = in.readByte();
+				Event event;
+				if (kind == AGENT_EVENT) {
+					AgentEvent agentEvent = new AgentEvent(in.readLocation(), time, id, simulator, simulator.fleetManager);
+					agentEvent.state = AgentEvent.State.values()[in.readByte()];
+					agentEvent.isPickup = in.readBoolean();
+					long resourceId = in.readLong();
+					if (resourceId != -1) {
+						assignedResources.put(agentEvent, resourceId);
+					}
+					agentEvent.startSearchTime = in.readLong();
+					if ((where & EMPTY_AGENT) != 0) {
+						simulator.emptyAgents.add(agentEvent);
+					}
+					event = agentEvent;
+				} else if (kind == RESOURCE_EVENT) {
+					LocationOnRoad pickupLoc = in.readLocation();
+					LocationOnRoad dropoffLoc = in.readLocation();
+					long availableTime = in.readLong();
+					long tripTime = in.readLong();
+					ResourceEvent resourceEvent = new ResourceEvent(pickupLoc, dropoffLoc, availableTime, tripTime, id,
+							simulator, simulator.fleetManager, simulator.assignmentManager);
+					resourceEvent.time = time;
+					resourceEvent.pickupTime = in.readLong();
+					resourceEvent.state = ResourceEvent.State.values()[in.readByte()];
+					long agentId = in.readLong();
+					if (agentId != -1) {
+						assignedAgents.put(resourceEvent, agentId);
+					}
+					if ((where & WAITING_RESOURCE) != 0) {
+						simulator.waitingResources.add(resourceEvent);
+					}
+					event = resourceEvent;
+				} else if (kind == TRAVEL_TIME_EVENT) {
+					event = new RoadTravelTimeEvent(time, id, in.readRoad(), in.readLong(), simulator,
+							simulator.fleetManager);
+				} else {
+					throw new IOException("Unknown event kind " + kind + " in " + path);
+				}
+				if ((where & ASSIGNABLE) != 0) {
+					simulator.assignmentManager.addNewEvent(event);
+				}
+				if ((where & QUEUED) != 0) {
+					simulator.events.add(event);
+				}
+				events.put(id, event);
+			}
+			for (Map.Entry<AgentEvent, Long> entry : assignedResources.entrySet()) {
+				entry.getKey().assignedResource = (ResourceEvent) events.get(entry.getValue());
+			}
+			for (Map.Entry<ResourceEvent, Long> entry : assignedAgents.entrySet()) {
+				entry.getKey().agentEvent = (AgentEvent) events.get(entry.getValue());
+			}
+
+			if (in.readBoolean()) {
+				long firstId = in.readLong();
+				int introduced = in.readInt();
+				try {
+					simulator.resourceFeed = new ResourceFeed(mapWD.createResourceStream(), mapWD, simulator,
+							simulator.fleetManager, simulator.assignmentManager, firstId, introduced);
+				} catch (FileNotFoundException e) {
+					throw new IOException("Cannot read the resource file of the checkpoint", e);
+				}
+			}
+
+			simulator.fleetManager.readCheckpoint(in);
+			if (in.readLong() != MAGIC) {
+				throw new IOException(path + " does not end where the fleet manager state ends");
+			}
+		}
+	}
+}
@@ -0,0 +1,85 @@
+package COMSETsystem;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The stream from which a checkpoint of the simulation is read. Besides the primitive values of a
+ * DataInputStream, it reads the roads, intersections and locations written by a CheckpointOutput as the
+ * objects of the map of the simulation being restored, which must be built from the same map files. See
+ * FleetManager.readCheckpoint.
+ */
+public class CheckpointInput extends DataInputStream {
+
+	private final CityMap map;
+
+	// The roads of the map by id
+	private final Map<Long, Road> roadsById = new HashMap<>();
+
+	/**
+	 * Constructor of CheckpointInput.
+	 *
+	 * @param in the underlying input stream
+	 * @param map the map of the simulation being restored
+	 */
+	public CheckpointInput(InputStream in, CityMap map) {
+		super(in);
+		this.map = map;
+		for (Road road : map.roads()) {
+			roadsById.put(road.id, road);
+		}
+	}
+
+	/**
+	 * Reads a road of the map.
+	 *
+	 * @return the road, or null
+	 * @throws IOException if the stream cannot be read or the road is not in the map
+	 */
+	public Road readRoad() throws IOException {
+		long id = readLong();
+		if (id == -1) {
+			return null;
+		}
+		Road road = roadsById.get(id);
+		if (road == null) {
+			throw new IOException("Road " + id + " of the checkpoint is not in the map");
+		}
+		return road;
+	}
+
+	/**
+	 * Reads an intersection of the map.
+	 *
+	 * @return the intersection, or null
+	 * @throws IOException if the stream cannot be read or the intersection is not in the map
+	 */
+	public Intersection readIntersection() throws IOException {
+		long id = readLong();
+		if (id == -1) {
+			return null;
+		}
+		Intersection intersection = map.intersections().get(id);
+		if (intersection == null) {
+			throw new IOException("Intersection " + id + " of the checkpoint is not in the map");
+		}
+		return intersection;
+	}
+
+	/**
+	 * Reads a location on a road of the map.
+	 *
+	 * @return the location, or null
+	 * @throws IOException if the stream cannot be read or the road is not in the map
+	 */
+	public LocationOnRoad readLocation() throws IOException {
+		Road road = readRoad();
+		if (road == null) {
+			return null;
+		}
+		return new LocationOnRoad(road, readLong());
+	}
+}
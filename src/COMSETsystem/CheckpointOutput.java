@@ -0,0 +1,56 @@
+package COMSETsystem;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * The stream to which a checkpoint of the simulation is written. Besides the primitive values of a
+ * DataOutputStream, it writes the roads, intersections and locations of the map by id, so that a
+ * CheckpointInput on the same map reads them back as the objects of its map. See
+ * FleetManager.writeCheckpoint.
+ */
+public class CheckpointOutput extends DataOutputStream {
+
+	/**
+	 * Constructor of CheckpointOutput.
+	 *
+	 * @param out the underlying output stream
+	 */
+	public CheckpointOutput(OutputStream out) {
+		super(out);
+	}
+
+	/**
+	 * Writes a road of the map.
+	 *
+	 * @param road the road, or null
+	 * @throws IOException if the stream cannot be written
+	 */
+	public void writeRoad(Road road) throws IOException {
+		writeLong(road == null ? -1 : road.id);
+	}
+
+	/**
+	 * Writes an intersection of the map.
+	 *
+	 * @param intersection the intersection, or null
+	 * @throws IOException if the stream cannot be written
+	 */
+	public void writeIntersection(Intersection intersection) throws IOException {
+		writeLong(intersection == null ? -1 : intersection.id);
+	}
+
+	/**
+	 * Writes a location on a road of the map.
+	 *
+	 * @param loc the location, or null
+	 * @throws IOException if the stream cannot be written
+	 */
+	public void writeLocation(LocationOnRoad loc) throws IOException {
+		writeRoad(loc == null ? null : loc.road);
+		if (loc != null) {
+			writeLong(loc.travelTimeFromStartIntersection);
+		}
+	}
+}
@@ -1,17 +1,23 @@
 package COMSETsystem;
 
+import java.io.File;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
 
-import com.google.common.collect.ImmutableList;
 import net.iakovlev.timeshape.TimeZoneEngine;
 import org.apache.log4j.BasicConfigurator;
 import org.apache.log4j.Level;
@@ -20,7 +26,6 @@ import org.apache.log4j.Logger;
 import DataParsing.GeoProjector;
 import DataParsing.KdTree;
 
-import java.util.PriorityQueue;
 import java.awt.geom.Point2D;
 import java.time.ZoneId;
 
@@ -29,9 +34,17 @@ import java.time.ZoneId;
  * The CityMap represents the map of a city.
  * The map is represented as a directed graph of intersections connected by roads.
  * (See Intersection and Road class for more details).
+ *
+ * The simulator shares its map with the fleet manager, so the intersections, the roads and the roads of
+ * each intersection cannot be added or removed through the map, and the fields of the roads, the
+ * intersections and the links are only read outside of the COMSETsystem package, through their getters.
+ * The travel times of the roads are changed by the simulator only.
  */
 public class CityMap {
 
+	// The memory budget of the next hops cached by nextIntersectionTowards
+	private static final long NEXT_HOP_CACHE_BYTES = 64L * 1024 * 1024;
+
 	// A mapping from all the intersection ids to corresponding Intersections
 	private Map<Long, Intersection> intersections;
 	
@@ -45,10 +58,43 @@ public class CityMap {
 	private KdTree kdTree;
 
 	// Shortest travel-time path table.
-	private ImmutableList<ImmutableList<PathTableEntry>> immutablePathTable;
+	private PathTable pathTable;
+
+	// The backend answering shortest travel-time queries; either pathTable or a contraction hierarchy.
+	private RoutingBackend routingBackend;
+
+	// Whether routingBackend must be built again for the current travel times before the next query; see
+	// updateRoadTravelTime.
+	private volatile boolean routingBackendStale;
+
+	// The path table if its rows are computed on demand, null otherwise.
+	private LazyPathTable lazyPathTable;
+
+	// The travel times of pathTable column by column, or null if they are not computed.
+	private TransposedTravelTimes transposedTravelTimes;
+
+	// The next hop towards every destination, or null if it is not computed.
+	private NextHopTable nextHopTable;
+
+	// The next hops towards the destinations navigated to recently, if nextIntersectionTowards needs them;
+	// see nextIntersectionTowards.
+	private volatile LazyNextHopTable lazyNextHopTable;
+
+	// The roads searched to compute and repair the routing tables, or null if no table needs it yet.
+	private RoadGraph roadGraph;
+
+	// The number of threads used to compute and repair the routing tables.
+	private int routingThreads = 1;
 	
-	// A map from an intersection's path table index to the intersection itself.
-	private HashMap<Integer, Intersection> intersectionsByPathTableIndex;
+	// An array from an intersection's path table index to the intersection itself.
+	private Intersection[] intersectionsByPathTableIndex;
+
+	// The outgoing roads of every intersection, built once from the roads of the map.
+	private RoadAdjacency roadAdjacency;
+
+	// The threads computing the rows of travel time matrices, created by the first parallel matrix and kept
+	// for the next ones with the same number of threads.
+	private ForkJoinPool matrixPool;
 
 	/*
 	 * Constructor of CityMap
@@ -61,15 +107,46 @@ public class CityMap {
 		this.roads = roads;
 
 		// setup pathTableIndex for every intersection
-		intersectionsByPathTableIndex = new HashMap<Integer, Intersection>();
+		intersectionsByPathTableIndex = new Intersection[intersections.size()];
 		int index = 0;
 		for (Intersection intersection : intersections.values()) {
 			intersection.pathTableIndex = index++;
-			intersectionsByPathTableIndex.put(intersection.pathTableIndex, intersection);
+			intersectionsByPathTableIndex[intersection.pathTableIndex] = intersection;
+			intersection.roadsMapFrom = Collections.unmodifiableMap(intersection.roadsMapFrom);
+			intersection.roadsMapTo = Collections.unmodifiableMap(intersection.roadsMapTo);
+			intersection.roadsFrom = Collections.unmodifiableSet(new TreeSet<>(intersection.roadsMapFrom.values()));
+			intersection.roadsTo = Collections.unmodifiableSet(new TreeSet<>(intersection.roadsMapTo.values()));
+		}
+		roadAdjacency = new RoadAdjacency(intersectionsByPathTableIndex);
+		for (Intersection intersection : intersectionsByPathTableIndex) {
+			intersection.roadAdjacency = roadAdjacency;
 		}
 
 	}
 
+	/**
+	 * Renumber the pathTableIndex of every intersection in the order of a Hilbert curve over the xy
+	 * coordinates, instead of the id order of the constructor. Intersections that are close on the map then
+	 * have close indices, so the table rows and columns, road arrays and search arrays of a neighbourhood
+	 * share cache lines and pages. Travel times and, for the path tables, paths do not depend on the numbering.
+	 *
+	 * @throws IllegalStateException if routing tables or a routing backend are already computed
+	 */
+	public void renumberByHilbertCurve() {
+		if (routingBackend != null || nextHopTable != null) {
+			throw new IllegalStateException("Intersections must be renumbered before routing is prepared");
+		}
+		intersectionsByPathTableIndex = HilbertCurve.sort(intersectionsByPathTableIndex);
+		for (int index = 0; index < intersectionsByPathTableIndex.length; index++) {
+			intersectionsByPathTableIndex[index].pathTableIndex = index;
+		}
+		roadAdjacency = new RoadAdjacency(intersectionsByPathTableIndex);
+		for (Intersection intersection : intersectionsByPathTableIndex) {
+			intersection.roadAdjacency = roadAdjacency;
+		}
+		roadGraph = null;
+	}
+
 	
 	/**
 	 * Create an empty CityMap object for making a copy.
@@ -86,7 +163,7 @@ public class CityMap {
 	 * @return the time in seconds it takes to go from source to destination
 	 */
 	public long travelTimeBetween (Intersection source, Intersection destination) {
-		return immutablePathTable.get(source.pathTableIndex).get(destination.pathTableIndex).travelTime;
+		return routingBackend().travelTime(source.pathTableIndex, destination.pathTableIndex);
 	}
 
 
@@ -96,7 +173,8 @@ public class CityMap {
 	 *
 	 * @param source The location to depart from
 	 * @param destination The location to arrive at
-	 * @return the time in seconds it takes to go from source to destination
+	 * @return the time in seconds it takes to go from source to destination, or Long.MAX_VALUE if destination
+	 * is unreachable from source
 	 */
 	public long travelTimeBetween (LocationOnRoad source, LocationOnRoad destination) {
 		long travelTime = -1;
@@ -105,14 +183,193 @@ public class CityMap {
 			// then the travel time is the difference of travelTimeFromStartIntersection between source and destination.
 			travelTime = destination.travelTimeFromStartIntersection - source.travelTimeFromStartIntersection;
 		} else {
-			long travelTimeToEndIntersectionOfSource = source.road.travelTime - source.travelTimeFromStartIntersection;
+			// The travel time of the road may have been lowered since source was on it
+			long travelTimeToEndIntersectionOfSource = Math.max(0, source.road.travelTime - source.travelTimeFromStartIntersection);
 			long travelTimeFromStartIntersectionOfDestination = destination.travelTimeFromStartIntersection;
 			long travelTimeFromEndIntersectionOfSourceToStartIntersectionOfDestination = travelTimeBetween(source.road.to, destination.road.from);
-			travelTime = travelTimeToEndIntersectionOfSource + travelTimeFromEndIntersectionOfSourceToStartIntersectionOfDestination + travelTimeFromStartIntersectionOfDestination;
+			travelTime = addRoadTravelTimes(travelTimeFromEndIntersectionOfSourceToStartIntersectionOfDestination,
+					travelTimeToEndIntersectionOfSource + travelTimeFromStartIntersectionOfDestination);
 		}
 		return travelTime;
 	}        
 
+	/**
+	 * Gets the travel times from a location to many locations. The travel time to each destination is the
+	 * one travelTimeBetween(source, destination) returns, but the source is looked up only once, which
+	 * makes a difference with a path table or when destinations are many.
+	 *
+	 * @param source The location to depart from
+	 * @param destinations The locations to arrive at
+	 * @return the time in seconds it takes to go from source to each destination, in the order of destinations,
+	 * or Long.MAX_VALUE for destinations unreachable from source
+	 */
+	public long[] travelTimesBetween(LocationOnRoad source, LocationOnRoad[] destinations) {
+		long[] travelTimes = new long[destinations.length];
+		travelTimesBetween(source, destinations, travelTimes);
+		return travelTimes;
+	}
+
+	/**
+	 * Gets the travel times from a location to many locations into an array of the caller, which may be
+	 * reused across calls. See travelTimesBetween(LocationOnRoad, LocationOnRoad[]).
+	 *
+	 * @param source The location to depart from
+	 * @param destinations The locations to arrive at
+	 * @param travelTimes receives at index i the time in seconds it takes to go from source to destinations[i]
+	 * @throws IllegalArgumentException if travelTimes is shorter than destinations
+	 */
+	public void travelTimesBetween(LocationOnRoad source, LocationOnRoad[] destinations, long[] travelTimes) {
+		if (travelTimes.length < destinations.length) {
+			throw new IllegalArgumentException("Travel time array of length " + travelTimes.length
+					+ " for " + destinations.length + " destinations");
+		}
+		travelTimesBetween(source, destinations, startIndices(destinations), travelTimes);
+	}
+
+	/**
+	 * Gets the travel times from many locations to a location into an array of the caller. The travel time
+	 * from each source is the one travelTimeBetween(source, destination) returns. The travel times are read
+	 * from the transposed copy of calcTransposedTravelTimes if it is computed.
+	 *
+	 * @param sources The locations to depart from
+	 * @param destination The location to arrive at
+	 * @param travelTimes receives at index i the time in seconds it takes to go from sources[i] to destination
+	 * @throws IllegalArgumentException if travelTimes is shorter than sources
+	 */
+	public void travelTimesBetween(LocationOnRoad[] sources, LocationOnRoad destination, long[] travelTimes) {
+		travelTimesBetween(sources, destination, travelTimes, true);
+	}
+
+	/**
+	 * Gets the travel times from many locations to a location into an array of the caller, choosing where
+	 * the travel times are read from. See travelTimesBetween(LocationOnRoad[], LocationOnRoad, long[]).
+	 *
+	 * @param sources The locations to depart from
+	 * @param destination The location to arrive at
+	 * @param travelTimes receives at index i the time in seconds it takes to go from sources[i] to destination
+	 * @param transposed whether to read the column of the destination in the transposed copy of
+	 * calcTransposedTravelTimes rather than the row of each source; ignored if there is no transposed copy
+	 * @throws IllegalArgumentException if travelTimes is shorter than sources
+	 */
+	public void travelTimesBetween(LocationOnRoad[] sources, LocationOnRoad destination, long[] travelTimes,
+								   boolean transposed) {
+		if (travelTimes.length < sources.length) {
+			throw new IllegalArgumentException("Travel time array of length " + travelTimes.length
+					+ " for " + sources.length + " sources");
+		}
+		TransposedTravelTimes columns = transposed ? transposedTravelTimes : null;
+		RoutingBackend backend = routingBackend();
+		int destinationStart = destination.road.from.pathTableIndex;
+		for (int i = 0; i < sources.length; i++) {
+			LocationOnRoad source = sources[i];
+			if (source.road == destination.road && source.travelTimeFromStartIntersection <= destination.travelTimeFromStartIntersection) {
+				travelTimes[i] = destination.travelTimeFromStartIntersection - source.travelTimeFromStartIntersection;
+			} else {
+				int sourceEnd = source.road.to.pathTableIndex;
+				travelTimes[i] = addRoadTravelTimes(columns != null ? columns.travelTime(sourceEnd, destinationStart)
+								: backend.travelTime(sourceEnd, destinationStart),
+						Math.max(0, source.road.travelTime - source.travelTimeFromStartIntersection)
+								+ destination.travelTimeFromStartIntersection);
+			}
+		}
+	}
+
+	/**
+	 * Gets the travel times between every pair of a set of sources and a set of destinations into a matrix
+	 * of the caller, e.g., for matching agents to resources in batches. The travel time of each pair is the
+	 * one travelTimeBetween(source, destination) returns. The rows of the matrix are independent of each
+	 * other, so they can be computed in parallel. The threads are kept by the map for the next calls, so a
+	 * fleet manager can compute a small matrix at every assignment without starting threads every time.
+	 *
+	 * @param sources The locations to depart from
+	 * @param destinations The locations to arrive at
+	 * @param travelTimes receives at [i][j] the time in seconds it takes to go from sources[i] to destinations[j]
+	 * @param threads the number of threads to use; values smaller than 2 compute the rows in the calling thread
+	 * @throws IllegalArgumentException if the matrix is smaller than sources by destinations
+	 */
+	public void travelTimesBetween(LocationOnRoad[] sources, LocationOnRoad[] destinations, long[][] travelTimes, int threads) {
+		if (travelTimes.length < sources.length) {
+			throw new IllegalArgumentException("Travel time matrix of " + travelTimes.length
+					+ " rows for " + sources.length + " sources");
+		}
+		for (int i = 0; i < sources.length; i++) {
+			if (travelTimes[i].length < destinations.length) {
+				throw new IllegalArgumentException("Travel time matrix row " + i + " of length "
+						+ travelTimes[i].length + " for " + destinations.length + " destinations");
+			}
+		}
+		int[] destinationStarts = startIndices(destinations);
+		if (threads < 2 || sources.length < 2) {
+			for (int i = 0; i < sources.length; i++) {
+				travelTimesBetween(sources[i], destinations, destinationStarts, travelTimes[i]);
+			}
+			return;
+		}
+		matrixPool(threads).submit(() -> IntStream.range(0, sources.length).parallel().forEach(i ->
+				travelTimesBetween(sources[i], destinations, destinationStarts, travelTimes[i]))).join();
+	}
+
+	/**
+	 * Gets the pool computing the rows of travel time matrices. A pool with another number of threads is
+	 * replaced rather than shut down, as another matrix may still use it; its idle threads end by themselves.
+	 *
+	 * @param threads the number of threads of the pool
+	 * @return the pool
+	 */
+	private synchronized ForkJoinPool matrixPool(int threads) {
+		if (matrixPool == null || matrixPool.getParallelism() != threads) {
+			matrixPool = new ForkJoinPool(threads);
+		}
+		return matrixPool;
+	}
+
+	/**
+	 * Gets the travel times from a location to many locations given the path table indices of the start
+	 * intersections of their roads.
+	 */
+	private void travelTimesBetween(LocationOnRoad source, LocationOnRoad[] destinations, int[] destinationStarts,
+									long[] travelTimes) {
+		routingBackend().travelTimes(source.road.to.pathTableIndex, destinationStarts, travelTimes);
+		// The travel time of the road may have been lowered since source was on it
+		long travelTimeToEndIntersectionOfSource = Math.max(0, source.road.travelTime - source.travelTimeFromStartIntersection);
+		for (int i = 0; i < destinations.length; i++) {
+			LocationOnRoad destination = destinations[i];
+			if (source.road == destination.road && source.travelTimeFromStartIntersection <= destination.travelTimeFromStartIntersection) {
+				travelTimes[i] = destination.travelTimeFromStartIntersection - source.travelTimeFromStartIntersection;
+			} else {
+				travelTimes[i] = addRoadTravelTimes(travelTimes[i],
+						travelTimeToEndIntersectionOfSource + destination.travelTimeFromStartIntersection);
+			}
+		}
+	}
+
+	/**
+	 * Adds the travel times on the roads of two locations to the travel time between intersections of the
+	 * roads, which is Long.MAX_VALUE if the intersections are unreachable and must stay so rather than
+	 * overflow.
+	 *
+	 * @param intersectionTravelTime the travel time from the end intersection of the source road to the start
+	 * intersection of the destination road
+	 * @param roadTravelTimes the travel time to the end of the source road plus the travel time from the start
+	 * of the destination road
+	 * @return the travel time between the locations, or Long.MAX_VALUE if it is unreachable
+	 */
+	private static long addRoadTravelTimes(long intersectionTravelTime, long roadTravelTimes) {
+		return intersectionTravelTime == Long.MAX_VALUE ? Long.MAX_VALUE : intersectionTravelTime + roadTravelTimes;
+	}
+
+	/**
+	 * @param locations locations on roads
+	 * @return the path table indices of the start intersections of the roads of the locations
+	 */
+	private static int[] startIndices(LocationOnRoad[] locations) {
+		int[] indices = new int[locations.length];
+		for (int i = 0; i < locations.length; i++) {
+			indices[i] = locations[i].road.from.pathTableIndex;
+		}
+		return indices;
+	}
+
 	/**
 	 * @return { @code projector }
 	 */
@@ -135,78 +392,557 @@ public class CityMap {
 	}
 
 	/**
-	 * Compute all-pair shortest travel times. This is done by computing one-to-all shortest travel times
-	 * from each intersection using Dijkstra.
+	 * Compute all-pair shortest travel times using as many threads as there are available processors.
+	 * See calcTravelTimes(int).
 	 */
 	public void calcTravelTimes() {
-		ArrayList<ArrayList<PathTableEntry>> pathTable;
-
-		// initialize path table
-		pathTable = new ArrayList<ArrayList<PathTableEntry>>();
-		for (int i = 0; i < intersections.size(); i++) {
-			ArrayList<PathTableEntry> aList = new ArrayList<PathTableEntry>();
-			for (int j = 0; j < intersections.size(); j++) {
-				aList.add(null);
+		calcTravelTimes(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Compute all-pair shortest travel times. This is done by computing one-to-all shortest travel times
+	 * from each intersection with a DijkstraKernel. The results are stored in an ArrayPathTable.
+	 *
+	 * The rows of the table are independent of each other, so they are computed in parallel by a fork-join
+	 * pool. Each worker thread keeps its own kernel, and every row is computed exactly as in a serial run,
+	 * so the table does not depend on the number of threads.
+	 *
+	 * @param threads the number of threads to use; values smaller than 1 mean one thread
+	 */
+	public void calcTravelTimes(int threads) {
+		calcTravelTimes(threads, null);
+	}
+
+	/**
+	 * Compute all-pair shortest travel times as calcTravelTimes(int) does, keeping the result in a cache
+	 * directory. If the directory holds a table computed earlier for the same map content, the table is
+	 * memory-mapped from the cache file instead of being computed. Otherwise the table is computed and
+	 * written to the cache for later runs.
+	 *
+	 * @param threads the number of threads to use; values smaller than 1 mean one thread
+	 * @param cacheDirectory the cache directory, or null to always compute the table
+	 */
+	public void calcTravelTimes(int threads, String cacheDirectory) {
+		PathTableCache cache = null;
+		if (cacheDirectory != null) {
+			cache = new PathTableCache(new File(cacheDirectory), intersectionsByPathTableIndex);
+			pathTable = cache.load();
+			routingBackend = pathTable;
+			routingBackendStale = false;
+			lazyPathTable = null;
+			transposedTravelTimes = null;
+			lazyNextHopTable = null;
+			roadGraph = null;
+			routingThreads = threads;
+			if (pathTable != null) {
+				System.out.println("Memory-mapped the path table from " + cache.file());
+				return;
 			}
-			pathTable.add(aList);
 		}
 
-		// creates a queue entry for each intersection
-		HashMap<Intersection, DijkstraQueueEntry> queueEntry = new HashMap<>();
-		for (Intersection i : intersections.values()) {
-			queueEntry.put(i, new DijkstraQueueEntry(i));
+		ArrayPathTable arrayPathTable = new ArrayPathTable(intersections.size());
+		roadGraph = new RoadGraph(intersectionsByPathTableIndex, roadAdjacency);
+		calcTravelTimesInto(arrayPathTable, roadGraph, threads);
+
+		if (cache != null) {
+			cache.store(arrayPathTable);
+		}
+	}
+
+	/**
+	 * Compute all-pair shortest travel times as calcTravelTimes(int) does, storing them in a CompactPathTable
+	 * that takes 3 bytes per intersection pair instead of 8, so that maps with about 1.6 times as many
+	 * intersections fit in the same memory. The travel times and paths are the same as those of
+	 * calcTravelTimes. The compact table is not kept in a cache directory.
+	 *
+	 * @param threads the number of threads to use; values smaller than 1 mean one thread
+	 */
+	public void calcCompactTravelTimes(int threads) {
+		roadGraph = new RoadGraph(intersectionsByPathTableIndex, roadAdjacency);
+		calcTravelTimesInto(new CompactPathTable(roadGraph), roadGraph, threads);
+	}
+
+	/**
+	 * Compute all the rows of a table in parallel and make it the path table of the map.
+	 *
+	 * @param table the table to fill
+	 * @param graph the roads of the map
+	 * @param threads the number of threads to use; values smaller than 1 mean one thread
+	 */
+	private void calcTravelTimesInto(PathTable table, RoadGraph graph, int threads) {
+		pathTable = table;
+		routingBackend = pathTable;
+		routingBackendStale = false;
+		lazyPathTable = null;
+		transposedTravelTimes = null;
+		lazyNextHopTable = null;
+		routingThreads = threads;
+
+		computeRows(graph, threads, allRows(), (kernel, row) -> kernel.storeRow(row, table));
+	}
+
+	/**
+	 * Compute the next hop from every intersection towards every destination, so that
+	 * nextIntersectionTowards answers in constant time. The table takes one byte per intersection pair.
+	 *
+	 * @param threads the number of threads to use; values smaller than 1 mean one thread
+	 */
+	public void calcNextHops(int threads) {
+		if (roadGraph == null) {
+			roadGraph = new RoadGraph(intersectionsByPathTableIndex, roadAdjacency);
+		}
+		NextHopTable table = new NextHopTable(roadGraph);
+		computeRows(roadGraph.reversed(), threads, allRows(), (kernel, row) -> table.storeRow(row, kernel));
+		nextHopTable = table;
+		routingThreads = threads;
+	}
+
+	/**
+	 * @return the number of bytes taken by the next hop table, or 0 if it is not computed
+	 */
+	public long nextHopTableSizeInBytes() {
+		return nextHopTable == null ? 0 : nextHopTable.sizeInBytes();
+	}
+
+	/**
+	 * Keep a copy of the travel times of the path table column by column, so that the travel times from many
+	 * sources to one destination, as in travelTimesBetween(LocationOnRoad[], LocationOnRoad, long[]), are read
+	 * from contiguous memory. The copy takes half the memory of an ArrayPathTable and is repaired along
+	 * with the path table by updateRoadTravelTime. It is dropped when the path table is replaced.
+	 *
+	 * @throws IllegalStateException if there is no path table with all the rows, e.g., with
+	 * calcTravelTimesOnDemand or a contraction hierarchy
+	 * @throws IllegalArgumentException if the copy would not fit in a Java array
+	 */
+	public void calcTransposedTravelTimes() {
+		if (pathTable == null || lazyPathTable != null) {
+			throw new IllegalStateException("Transposed travel times need a path table with all the rows");
 		}
+		transposedTravelTimes = new TransposedTravelTimes(pathTable);
+	}
+
+	/**
+	 * @return the number of bytes taken by the transposed travel times, or 0 if they are not computed
+	 */
+	public long transposedTravelTimesSizeInBytes() {
+		return transposedTravelTimes == null ? 0 : transposedTravelTimes.sizeInBytes();
+	}
 
-		for (Intersection source : intersections.values()) {
-			// 'reset' every queue entry
-			for (DijkstraQueueEntry entry : queueEntry.values()) {
-				entry.cost = Long.MAX_VALUE;
-				entry.inQueue = true;
+	/**
+	 * Run a Dijkstra from each of a list of intersections in parallel with a fork-join pool and hand each
+	 * result to an action. Each worker thread keeps its own kernel.
+	 *
+	 * @param graph the graph to search
+	 * @param threads the number of threads to use; values smaller than 1 mean one thread
+	 * @param rows the path table indices of the intersections to search from
+	 * @param action the action to run on the kernel after the search from each intersection
+	 */
+	private void computeRows(RoadGraph graph, int threads, int[] rows, RowAction action) {
+		ForkJoinPool pool = new ForkJoinPool(Math.max(1, threads));
+		try {
+			ThreadLocal<DijkstraKernel> kernels = ThreadLocal.withInitial(() -> new DijkstraKernel(graph));
+			pool.invoke(new RowsTask(rows, 0, rows.length, kernels, action));
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Compute shortest travel times on demand instead of for all pairs. The row of a source, i.e., the
+	 * one-to-all shortest travel times from the source, is computed with Dijkstra the first time a travel time
+	 * or a path from the source is queried. Rows are kept in a cache with least recently used eviction, so the
+	 * memory is bounded by the budget whatever the size of the map. The travel times and paths are the same
+	 * as those of calcTravelTimes.
+	 *
+	 * @param budgetInBytes the memory budget of the cached rows; at least one row is always cached
+	 */
+	public void calcTravelTimesOnDemand(long budgetInBytes) {
+		roadGraph = new RoadGraph(intersectionsByPathTableIndex, roadAdjacency);
+		DijkstraKernel kernel = new DijkstraKernel(roadGraph);
+		lazyPathTable = new LazyPathTable(intersections.size(), budgetInBytes, (source, table) -> {
+			kernel.run(source);
+			kernel.storeRow(source, table);
+		});
+		pathTable = lazyPathTable;
+		routingBackend = pathTable;
+		routingBackendStale = false;
+		transposedTravelTimes = null;
+		lazyNextHopTable = null;
+	}
+
+	/**
+	 * @return the maximum number of rows cached by calcTravelTimesOnDemand, or 0 if it is not used
+	 */
+	public int pathRowCacheCapacity() {
+		return lazyPathTable == null ? 0 : lazyPathTable.capacity();
+	}
+
+	/**
+	 * @return the number of queries answered from a row cached by calcTravelTimesOnDemand
+	 */
+	public long pathRowCacheHits() {
+		return lazyPathTable == null ? 0 : lazyPathTable.hits();
+	}
+
+	/**
+	 * @return the number of queries that computed a row for calcTravelTimesOnDemand
+	 */
+	public long pathRowCacheMisses() {
+		return lazyPathTable == null ? 0 : lazyPathTable.misses();
+	}
+
+	/**
+	 * @return the number of rows evicted from the cache of calcTravelTimesOnDemand
+	 */
+	public long pathRowCacheEvictions() {
+		return lazyPathTable == null ? 0 : lazyPathTable.evictions();
+	}
+
+	/**
+	 * What to do with the result of the Dijkstra from one intersection.
+	 */
+	private interface RowAction {
+		void accept(DijkstraKernel kernel, int row);
+	}
+
+	/**
+	 * @return the path table indices of all the intersections
+	 */
+	private int[] allRows() {
+		return IntStream.range(0, intersectionsByPathTableIndex.length).toArray();
+	}
+
+	/**
+	 * Get the rows of a table that satisfy a condition.
+	 *
+	 * @param condition the condition on the path table index of a row
+	 * @return the path table indices of the rows that satisfy the condition
+	 */
+	private int[] rowsWhere(IntPredicate condition) {
+		return IntStream.range(0, intersectionsByPathTableIndex.length).filter(condition).toArray();
+	}
+
+	/**
+	 * A fork-join task that runs a Dijkstra from each intersection of a range of a list of path table
+	 * indices, splitting the range in halves until it is small enough to be computed by a single thread.
+	 */
+	private class RowsTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		// The number of rows below which a range is not split any further
+		private static final int ROWS_PER_TASK = 16;
+
+		private final int[] rows;
+		private final int fromRow;
+		private final int toRow;
+		private final ThreadLocal<DijkstraKernel> kernels;
+		private final RowAction action;
+
+		RowsTask(int[] rows, int fromRow, int toRow, ThreadLocal<DijkstraKernel> kernels, RowAction action) {
+			this.rows = rows;
+			this.fromRow = fromRow;
+			this.toRow = toRow;
+			this.kernels = kernels;
+			this.action = action;
+		}
+
+		@Override
+		protected void compute() {
+			if (toRow - fromRow <= ROWS_PER_TASK) {
+				DijkstraKernel kernel = kernels.get();
+				for (int i = fromRow; i < toRow; i++) {
+					kernel.run(rows[i]);
+					action.accept(kernel, rows[i]);
+				}
+			} else {
+				int middle = (fromRow + toRow) >>> 1;
+				invokeAll(new RowsTask(rows, fromRow, middle, kernels, action),
+						new RowsTask(rows, middle, toRow, kernels, action));
 			}
+		}
+	}
+
+	/**
+	 * Build a contraction hierarchy to answer shortest travel-time queries instead of an all-pair path table.
+	 * The travel times are the same as those of calcTravelTimes while the memory grows roughly linearly with
+	 * the size of the map. Paths have the same travel times as those of calcTravelTimes, but may differ from
+	 * them where several shortest paths exist.
+	 */
+	public void buildContractionHierarchy() {
+		pathTable = null;
+		lazyPathTable = null;
+		transposedTravelTimes = null;
+		lazyNextHopTable = null;
+		roadGraph = new RoadGraph(intersectionsByPathTableIndex, roadAdjacency);
+		routingBackend = new ContractionHierarchy(roadGraph);
+		routingBackendStale = false;
+	}
 
-			// source is set at distance 0
-			DijkstraQueueEntry sourceEntry = queueEntry.get(source);
-			sourceEntry.cost = 0;
-			pathTable.get(source.pathTableIndex).set(source.pathTableIndex, new PathTableEntry(0L, source.pathTableIndex));
-
-			PriorityQueue<DijkstraQueueEntry> queue = new PriorityQueue<>(queueEntry.values());
-
-			while (!queue.isEmpty()) {
-				DijkstraQueueEntry entry = queue.poll();
-				entry.inQueue = false;
-
-				for (Road r : entry.intersection.getRoadsFrom()) {
-					DijkstraQueueEntry v = queueEntry.get(r.to);
-					if (!v.inQueue) continue;
-					long ncost = entry.cost + r.travelTime;
-					if (v.cost > ncost) {
-						queue.remove(v);
-						v.cost = ncost;
-						pathTable.get(source.pathTableIndex).set(v.intersection.pathTableIndex, new PathTableEntry(v.cost, entry.intersection.pathTableIndex));
-						queue.add(v);
+	/**
+	 * Answer shortest travel-time queries with A* search guided by landmarks (ALT) instead of an all-pair path
+	 * table. The memory is the travel times from and to each landmark, i.e., linear in the size of the map,
+	 * and each query searches the part of the map between source and destination only. The travel times
+	 * are the same as those of calcTravelTimes. Paths have the same travel times as those of calcTravelTimes,
+	 * but may differ from them where several shortest paths exist.
+	 *
+	 * @param landmarks the number of landmarks; more landmarks make queries search less of the map
+	 */
+	public void buildLandmarkAStar(int landmarks) {
+		pathTable = null;
+		lazyPathTable = null;
+		transposedTravelTimes = null;
+		lazyNextHopTable = null;
+		roadGraph = new RoadGraph(intersectionsByPathTableIndex, roadAdjacency);
+		routingBackend = new LandmarkAStar(roadGraph, landmarks);
+		routingBackendStale = false;
+	}
+
+	/**
+	 * Partition the map into cells of nearby intersections on several levels and answer shortest travel-time
+	 * queries with the travel times between the boundaries of the cells instead of an all-pair path table;
+	 * see CellOverlay. The memory grows far slower than the square of the size of the map, and changing the
+	 * travel time of a road only computes the overlays of the cells containing the road again. The travel
+	 * times are the same as those of calcTravelTimes. Paths have the same travel times as those of
+	 * calcTravelTimes, but may differ from them where several shortest paths exist.
+	 *
+	 * @param cellSize the maximum number of intersections of a cell of the lowest level, or 0 for the square
+	 * root of the number of intersections
+	 */
+	public void buildCellOverlay(int cellSize) {
+		if (cellSize == 0) {
+			cellSize = (int) Math.ceil(Math.sqrt(intersectionsByPathTableIndex.length));
+		}
+		pathTable = null;
+		lazyPathTable = null;
+		transposedTravelTimes = null;
+		lazyNextHopTable = null;
+		roadGraph = new RoadGraph(intersectionsByPathTableIndex, roadAdjacency);
+		routingBackend = new CellOverlay(roadGraph, CellOverlay.partition(intersectionsByPathTableIndex, cellSize));
+		routingBackendStale = false;
+	}
+
+	/**
+	 * @return the number of cells of each level, from the lowest level up, if buildCellOverlay is used, and
+	 * an empty array otherwise
+	 */
+	public int[] overlayCellCounts() {
+		return routingBackend instanceof CellOverlay ? ((CellOverlay) routingBackend).cellCounts() : new int[0];
+	}
+
+	/**
+	 * @return the backend answering shortest travel-time queries, built again first if travel times changed
+	 * since it was built
+	 */
+	private RoutingBackend routingBackend() {
+		if (routingBackendStale) {
+			synchronized (this) {
+				if (routingBackendStale) {
+					if (routingBackend instanceof LandmarkAStar) {
+						routingBackend = new LandmarkAStar(roadGraph, ((LandmarkAStar) routingBackend).landmarkCount());
+					} else if (routingBackend instanceof HubLabels) {
+						routingBackend = new HubLabels(new ContractionHierarchy(roadGraph));
+					} else {
+						routingBackend = new ContractionHierarchy(roadGraph);
 					}
+					routingBackendStale = false;
 				}
 			}
 		}
+		return routingBackend;
+	}
+
+	/**
+	 * Change the travel time of a road and repair the routing tables so that they answer as if they had been
+	 * computed with the new travel time.
+	 *
+	 * Only the rows that the change can affect are computed again. If the road gets slower, these are the
+	 * rows of the sources whose shortest path tree goes through the road; if it gets faster, these are the
+	 * rows of the sources from which a path through the road becomes at least as short as the current one.
+	 * Both are found in the tables before the change, and the affected rows are computed again from scratch,
+	 * so the tables are the same as tables computed with the new travel time. The next hop table is repaired
+	 * the same way on the reversed roads. Rows of calcTravelTimesOnDemand and next hops cached by
+	 * nextIntersectionTowards are dropped from the cache instead,
+	 * a memory-mapped path table is first copied to the heap, and the overlays of the cells containing the
+	 * road are computed again. A contraction hierarchy, hub labels or landmark travel times are computed again
+	 * from scratch at the next query, so that the many changes a traffic update makes at one time cost a single
+	 * rebuild. These modes remain much slower than the others with frequent changes.
+	 *
+	 * The links of the road are not changed, and locations on the road keep their travel time from the
+	 * start intersection.
+	 *
+	 * @param road the road of this map to change
+	 * @param travelTime the new travel time of the road in seconds
+	 * @return the number of rows or cells computed again or dropped
+	 * @throws IllegalArgumentException if the travel time is negative or does not fit in an int
+	 */
+	int updateRoadTravelTime(Road road, long travelTime) {
+		if (travelTime < 0 || travelTime > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Travel time " + travelTime + " of road " + road.id + " is out of range");
+		}
+		long oldTravelTime = road.travelTime;
+		if (travelTime == oldTravelTime) {
+			return 0;
+		}
+		if (roadGraph == null) {
+			roadGraph = new RoadGraph(intersectionsByPathTableIndex, roadAdjacency);
+		}
+		if (pathTable instanceof MappedPathTable) {
+			pathTable = new ArrayPathTable(pathTable);
+			routingBackend = pathTable;
+		}
+		int from = road.from.pathTableIndex;
+		int to = road.to.pathTableIndex;
 
-		// Make the path table unmodifiable
-		makePathTableUnmodifiable(pathTable);
+		// find the affected rows while the tables still hold the old travel times
+		int[] sources = new int[0];
+		if (pathTable != null && lazyPathTable == null) {
+			PathTable table = pathTable;
+			sources = rowsWhere(source -> table.isRowAffected(source, from, to, oldTravelTime, travelTime));
+		}
+		int[] destinations = new int[0];
+		if (nextHopTable != null) {
+			NextHopTable table = nextHopTable;
+			RoutingBackend travelTimes = routingBackend();
+			destinations = rowsWhere(destination -> table.isRowAffected(destination, from, to, oldTravelTime,
+					travelTime, travelTimes));
+		}
+
+		road.travelTime = travelTime;
+		roadGraph.setTravelTime(from, to, (int) travelTime);
+
+		int repaired = sources.length + destinations.length;
+		if (lazyPathTable != null) {
+			repaired += lazyPathTable.removeRowsAffectedBy(from, to, oldTravelTime, travelTime);
+		} else if (pathTable != null) {
+			PathTable table = pathTable;
+			computeRows(roadGraph, routingThreads, sources, (kernel, row) -> kernel.storeRow(row, table));
+			if (transposedTravelTimes != null) {
+				for (int source : sources) {
+					transposedTravelTimes.updateRow(table, source);
+				}
+			}
+		} else if (routingBackend instanceof CellOverlay) {
+			repaired += ((CellOverlay) routingBackend).customizeRoad(from, to);
+		} else if (routingBackend != null) {
+			routingBackendStale = true;
+		}
+		if (nextHopTable != null) {
+			NextHopTable table = nextHopTable;
+			computeRows(roadGraph.reversed(), routingThreads, destinations, (kernel, row) -> table.storeRow(row, kernel));
+		}
+		if (lazyNextHopTable != null) {
+			repaired += lazyNextHopTable.setTravelTime(from, to, oldTravelTime, travelTime);
+		}
+		return repaired;
 	}
 
 	/**
-	 * Make a path table unmodifiable.
-	 * @param pathTable
+	 * The data structures with which a map answers shortest travel-time queries, so that they can be kept
+	 * aside and used again later, e.g., for another time of day.
 	 */
-	public void makePathTableUnmodifiable(ArrayList<ArrayList<PathTableEntry>> pathTable) {
-		ArrayList<ImmutableList<PathTableEntry>> aListOfImmutableList = new ArrayList<ImmutableList<PathTableEntry>>();
-		for (int i = 0; i < intersections.size(); i++) {
-			ArrayList<PathTableEntry> aListOfPathTableEntries = pathTable.get(i);
-			aListOfImmutableList.add(ImmutableList.copyOf(aListOfPathTableEntries));
-			aListOfPathTableEntries.clear();
+	static final class RoutingTables {
+		private final PathTable pathTable;
+		private final RoutingBackend routingBackend;
+		private final LazyPathTable lazyPathTable;
+		private final TransposedTravelTimes transposedTravelTimes;
+		private final NextHopTable nextHopTable;
+		private final LazyNextHopTable lazyNextHopTable;
+		private final RoadGraph roadGraph;
+		private final int routingThreads;
+
+		private RoutingTables(CityMap map) {
+			this.pathTable = map.pathTable;
+			this.routingBackend = map.routingBackend();
+			this.lazyPathTable = map.lazyPathTable;
+			this.transposedTravelTimes = map.transposedTravelTimes;
+			this.nextHopTable = map.nextHopTable;
+			this.lazyNextHopTable = map.lazyNextHopTable;
+			this.roadGraph = map.roadGraph;
+			this.routingThreads = map.routingThreads;
 		}
-		pathTable.clear();
+	}
+
+	/**
+	 * @return the current routing tables of this map
+	 */
+	RoutingTables routingTables() {
+		return new RoutingTables(this);
+	}
+
+	/**
+	 * Answer shortest travel-time queries with routing tables kept earlier. The tables must have been
+	 * computed for this map or a copy of it, with the current travel times of the roads.
+	 *
+	 * @param tables the routing tables
+	 */
+	void useRoutingTables(RoutingTables tables) {
+		pathTable = tables.pathTable;
+		routingBackend = tables.routingBackend;
+		routingBackendStale = false;
+		lazyPathTable = tables.lazyPathTable;
+		transposedTravelTimes = tables.transposedTravelTimes;
+		nextHopTable = tables.nextHopTable;
+		lazyNextHopTable = tables.lazyNextHopTable;
+		roadGraph = tables.roadGraph;
+		routingThreads = tables.routingThreads;
+	}
+
+	/**
+	 * Make another map answer shortest travel-time queries with the routing tables of this map. The other
+	 * map must be a copy of this map.
+	 *
+	 * @param copy the map to share the routing tables with
+	 */
+	void shareRoutingWith(CityMap copy) {
+		copy.useRoutingTables(routingTables());
+	}
+
+	/**
+	 * Build hub labels to answer shortest travel-time queries instead of an all-pair path table. A travel-time
+	 * query merges two short sorted labels, which is much faster than a contraction hierarchy query, while the
+	 * memory stays far below that of the path table. The travel times are the same as those of calcTravelTimes.
+	 * Paths are answered by the contraction hierarchy the labels are derived from; see buildContractionHierarchy.
+	 */
+	public void buildHubLabels() {
+		pathTable = null;
+		lazyPathTable = null;
+		transposedTravelTimes = null;
+		lazyNextHopTable = null;
+		roadGraph = new RoadGraph(intersectionsByPathTableIndex, roadAdjacency);
+		routingBackend = new HubLabels(new ContractionHierarchy(roadGraph));
+		routingBackendStale = false;
+	}
+
+	/**
+	 * @return the average number of hubs of a label if buildHubLabels is used, 0 otherwise
+	 */
+	public double averageHubLabelSize() {
+		RoutingBackend backend = routingBackend();
+		return backend instanceof HubLabels ? ((HubLabels) backend).averageLabelSize() : 0;
+	}
+
+	/**
+	 * @return the number of bytes taken by the data structures answering shortest travel-time queries
+	 */
+	public long routingSizeInBytes() {
+		RoutingBackend backend = routingBackend();
+		return backend == null ? 0 : backend.sizeInBytes();
+	}
+
+	/**
+	 * @return the number of bytes taken by the path table, or 0 if it is not computed yet
+	 */
+	public long pathTableSizeInBytes() {
+		return pathTable == null ? 0 : pathTable.sizeInBytes();
+	}
 
-		immutablePathTable = ImmutableList.copyOf(aListOfImmutableList);
+	/**
+	 * @return the estimated number of bytes the path table would take with one entry object per intersection
+	 * pair, or 0 if it is not computed yet
+	 */
+	public long pathTableObjectLayoutSizeInBytes() {
+		return pathTable == null ? 0 : pathTable.objectLayoutSizeInBytes();
 	}
 
 	/**
@@ -214,69 +950,126 @@ public class CityMap {
 	 * @param source the source intersection
 	 * @param destination the destination intersection
 	 * @return LinkedList<Intersection> an ordered list of intersections forming the path
+	 * @throws IllegalArgumentException if destination is unreachable from source
 	 */
 	public LinkedList<Intersection> shortestTravelTimePath(Intersection source, Intersection destination) {
+		int[] indices = routingBackend().path(source.pathTableIndex, destination.pathTableIndex);
+		if (indices == null) {
+			throw new IllegalArgumentException("Intersection " + destination.id + " is unreachable from intersection " + source.id);
+		}
 		LinkedList<Intersection> path = new LinkedList<Intersection>();
-		path.addFirst(destination);
-		int current = destination.pathTableIndex;
-		while (current != source.pathTableIndex) {
-			int pred = immutablePathTable.get(source.pathTableIndex).get(current).predecessor;
-			path.addFirst(intersectionsByPathTableIndex.get(pred));
-			current = pred;
+		for (int index : indices) {
+			path.add(intersectionsByPathTableIndex[index]);
 		}
 		return path;
 	}
 
-	private class DijkstraQueueEntry implements Comparable<DijkstraQueueEntry> {
-		Intersection intersection;
-		long cost = Long.MAX_VALUE;
-		boolean inQueue = true;
-
-		DijkstraQueueEntry(Intersection intersection) {
-			this.intersection = intersection;
+	/**
+	 * Get the next intersection on a shortest travel-time path from an intersection to a destination. This
+	 * allows navigating an agent one intersection at a time without building a route. With calcNextHops it
+	 * takes constant time. With a path table, the outgoing road on a shortest path is found with one travel
+	 * time query per outgoing road. With the other routing backends, whose queries are searches, the next
+	 * hops towards a destination are computed by one search the first time the destination is asked for,
+	 * and cached for the destinations asked for recently. All of them break ties between shortest paths the
+	 * same way, so following the next hops gives a single consistent path. Where several shortest paths
+	 * exist, the path may differ from that of shortestTravelTimePath.
+	 *
+	 * @param current the current intersection
+	 * @param destination the destination intersection
+	 * @return the next intersection, or null if current is the destination
+	 * @throws IllegalArgumentException if destination is unreachable from current
+	 */
+	public Intersection nextIntersectionTowards(Intersection current, Intersection destination) {
+		if (current.pathTableIndex == destination.pathTableIndex) {
+			return null;
 		}
+		int next;
+		if (nextHopTable != null) {
+			next = nextHopTable.nextHop(current.pathTableIndex, destination.pathTableIndex);
+		} else if (pathTable != null && lazyPathTable == null) {
+			next = nextHopFromTravelTimes(current.pathTableIndex, destination.pathTableIndex);
+		} else {
+			next = lazyNextHopTable().nextHop(current.pathTableIndex, destination.pathTableIndex);
+		}
+		if (next == -1) {
+			throw new IllegalArgumentException("Intersection " + destination.id + " is unreachable from intersection " + current.id);
+		}
+		return intersectionsByPathTableIndex[next];
+	}
 
-		@Override
-		public int compareTo(DijkstraQueueEntry j) {
-			if (this.cost < j.cost) {
-				return -1;
-			} else if (this.cost > j.cost) {
-				return 1;
-			} else if (this.intersection.id < j.intersection.id) {
-				return -1;
-			} else if (this.intersection.id > j.intersection.id) {
-				return 1;
-			} else {
-				return 0;
+	/**
+	 * Gets the next hop of the next hop table from the travel times of the routing backend.
+	 *
+	 * @param current path table index of the current intersection
+	 * @param destination path table index of the destination
+	 * @return the path table index of the next intersection, or -1 if current cannot reach destination
+	 */
+	private int nextHopFromTravelTimes(int current, int destination) {
+		RoutingBackend backend = routingBackend();
+		long remaining = backend.travelTime(current, destination);
+		if (remaining == Long.MAX_VALUE) {
+			return -1;
+		}
+		// The road to the next hop of the table is the one on a shortest path whose end is settled first by
+		// the search from the destination on the reversed roads, i.e., the one with the smallest travel time
+		// left, then the smallest id. An end with the same travel time left as current is settled before
+		// current only if its id is smaller.
+		Intersection next = null;
+		long nextRemaining = 0;
+		long currentId = intersectionsByPathTableIndex[current].id;
+		int end = roadAdjacency.firstRoad[current + 1];
+		for (int road = roadAdjacency.firstRoad[current]; road < end; road++) {
+			Road r = roadAdjacency.roads[road];
+			long rest = backend.travelTime(r.to.pathTableIndex, destination);
+			if (rest == Long.MAX_VALUE || r.travelTime + rest != remaining
+					|| (rest == remaining && r.to.id > currentId)) {
+				continue;
+			}
+			if (next == null || rest < nextRemaining || (rest == nextRemaining && r.to.id < next.id)) {
+				next = r.to;
+				nextRemaining = rest;
 			}
 		}
+		return next == null ? -1 : next.pathTableIndex;
 	}
 
-	private class PathTableEntry {
-		final long travelTime;
-		final int predecessor;
-
-		PathTableEntry(long travelTime, int predecessor) {
-			this.travelTime = travelTime;
-			this.predecessor = predecessor;
+	/**
+	 * @return the cache of the next hops towards recent destinations, created at the first call
+	 */
+	private LazyNextHopTable lazyNextHopTable() {
+		LazyNextHopTable table = lazyNextHopTable;
+		if (table == null) {
+			synchronized (this) {
+				table = lazyNextHopTable;
+				if (table == null) {
+					if (roadGraph == null) {
+						roadGraph = new RoadGraph(intersectionsByPathTableIndex, roadAdjacency);
+					}
+					table = new LazyNextHopTable(roadGraph, NEXT_HOP_CACHE_BYTES);
+					lazyNextHopTable = table;
+				}
+			}
 		}
+		return table;
 	}
 
 	/**
-	 * @return { @code roads }
+	 * @return a read-only view of { @code roads }
 	 */
 	public List<Road> roads() {
-		return roads;
+		return Collections.unmodifiableList(roads);
 	}
 
 	/**
-	 * @return { @code intersections }
+	 * @return a read-only view of { @code intersections }
 	 */	
 	public Map<Long, Intersection> intersections() {
-		return intersections;
+		return Collections.unmodifiableMap(intersections);
 	}
 
 	/**
+	 * Make a deep copy of the map, e.g., for a fleet manager that wants to change roads without affecting
+	 * the map shared with the simulator. The copy shares the routing tables of this map.
 	 * 
 	 * @return a deep copy of the map
 	 */
@@ -347,13 +1140,17 @@ public class CityMap {
 		CityMap cityMap = new CityMap();
 		cityMap.intersections = intersectionsCopy;
 		cityMap.roads = roadsCopy;
-		cityMap.immutablePathTable = immutablePathTable;
+		shareRoutingWith(cityMap);
 		cityMap.projector = projector;
 		cityMap.kdTree = kdTree;
 		
-		cityMap.intersectionsByPathTableIndex = new HashMap<Integer, Intersection>();
+		cityMap.intersectionsByPathTableIndex = new Intersection[intersectionsCopy.size()];
 		for (Intersection intersection : cityMap.intersections.values()) {
-			cityMap.intersectionsByPathTableIndex.put(intersection.pathTableIndex, intersection);
+			cityMap.intersectionsByPathTableIndex[intersection.pathTableIndex] = intersection;
+		}
+		cityMap.roadAdjacency = new RoadAdjacency(cityMap.intersectionsByPathTableIndex);
+		for (Intersection intersection : cityMap.intersectionsByPathTableIndex) {
+			intersection.roadAdjacency = cityMap.roadAdjacency;
 		}
 		
 		return cityMap;
@@ -0,0 +1,151 @@
+package COMSETsystem;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A PathTable that takes 3 bytes per (source, destination) pair instead of 8.
+ *
+ * Travel times are stored as unsigned 16-bit values, which covers trips of up to about 18 hours. The rare
+ * longer travel times are marked as overflowing and kept in a side table. The predecessor of a destination
+ * is stored as a one-byte slot in the list of intersections that have a road to the destination, which is
+ * possible because no intersection has more than a handful of incoming roads.
+ *
+ * Each row is a separate array, so the number of intersections is not limited by the maximum length of a
+ * Java array as it is for ArrayPathTable.
+ */
+final class CompactPathTable extends PathTable {
+
+	// Stored travel time of an unreachable destination
+	private static final char UNREACHABLE_TIME = Character.MAX_VALUE;
+
+	// Stored travel time of a destination whose travel time is in the overflow table
+	private static final char OVERFLOW_TIME = Character.MAX_VALUE - 1;
+
+	// Stored predecessor slot of an unreachable destination and of the source itself
+	private static final byte NO_SLOT = (byte) 0xFF;
+
+	// The maximum number of incoming roads of an intersection
+	static final int MAX_IN_DEGREE = 0xFF;
+
+	// Estimated bytes of one entry of the overflow table, including the boxed key and value
+	private static final long OVERFLOW_ENTRY_BYTES = 64;
+
+	// The intersections with a road to each intersection, in compressed sparse row format
+	private final int[] firstInNeighbor;
+	private final int[] inNeighbors;
+
+	// Travel times in seconds, row by row
+	private final char[][] travelTimes;
+
+	// Slot of the predecessor of each destination in the incoming neighbors of the destination, row by row
+	private final byte[][] predecessorSlots;
+
+	// Travel times that do not fit in 16 bits, keyed by source * size + destination
+	private final Map<Long, Long> overflowTravelTimes = new ConcurrentHashMap<>();
+
+	/**
+	 * Creates a table for a graph with all destinations unreachable.
+	 *
+	 * @param graph the roads of the map
+	 * @throws IllegalArgumentException if an intersection has more than MAX_IN_DEGREE incoming roads
+	 */
+	CompactPathTable(RoadGraph graph) {
+		super(graph.size);
+		firstInNeighbor = new int[size + 1];
+		for (int road = 0; road < graph.roadCount(); road++) {
+			firstInNeighbor[graph.roadTo[road] + 1]++;
+		}
+		for (int v = 0; v < size; v++) {
+			if (firstInNeighbor[v + 1] > MAX_IN_DEGREE) {
+				throw new IllegalArgumentException("Intersection " + v + " has more than " + MAX_IN_DEGREE
+						+ " incoming roads for a compact path table");
+			}
+			firstInNeighbor[v + 1] += firstInNeighbor[v];
+		}
+		inNeighbors = new int[graph.roadCount()];
+		int[] next = Arrays.copyOf(firstInNeighbor, size);
+		for (int u = 0; u < size; u++) {
+			for (int road = graph.firstRoad[u]; road < graph.firstRoad[u + 1]; road++) {
+				inNeighbors[next[graph.roadTo[road]]++] = u;
+			}
+		}
+
+		travelTimes = new char[size][];
+		predecessorSlots = new byte[size][];
+		for (int source = 0; source < size; source++) {
+			travelTimes[source] = new char[size];
+			predecessorSlots[source] = new byte[size];
+			Arrays.fill(travelTimes[source], UNREACHABLE_TIME);
+			Arrays.fill(predecessorSlots[source], NO_SLOT);
+		}
+	}
+
+	@Override
+	public long travelTime(int source, int destination) {
+		char travelTime = travelTimes[source][destination];
+		if (travelTime == UNREACHABLE_TIME) {
+			return Long.MAX_VALUE;
+		}
+		if (travelTime == OVERFLOW_TIME) {
+			return overflowTravelTimes.get((long) source * size + destination);
+		}
+		return travelTime;
+	}
+
+	@Override
+	int predecessor(int source, int destination) {
+		if (source == destination) {
+			return source;
+		}
+		byte slot = predecessorSlots[source][destination];
+		if (slot == NO_SLOT) {
+			return -1;
+		}
+		return inNeighbors[firstInNeighbor[destination] + (slot & 0xFF)];
+	}
+
+	@Override
+	void set(int source, int destination, long travelTime, int predecessor) {
+		if (travelTime < OVERFLOW_TIME) {
+			if (travelTimes[source][destination] == OVERFLOW_TIME) {
+				overflowTravelTimes.remove((long) source * size + destination);
+			}
+			travelTimes[source][destination] = (char) travelTime;
+		} else {
+			travelTimes[source][destination] = OVERFLOW_TIME;
+			overflowTravelTimes.put((long) source * size + destination, travelTime);
+		}
+		if (source != destination) {
+			predecessorSlots[source][destination] = slotOf(predecessor, destination);
+		}
+	}
+
+	/**
+	 * Gets the slot of an intersection in the incoming neighbors of another.
+	 *
+	 * @param neighbor path table index of the incoming neighbor
+	 * @param v path table index of the intersection
+	 * @return the slot of neighbor
+	 * @throws IllegalArgumentException if there is no road from neighbor to v
+	 */
+	private byte slotOf(int neighbor, int v) {
+		for (int i = firstInNeighbor[v]; i < firstInNeighbor[v + 1]; i++) {
+			if (inNeighbors[i] == neighbor) {
+				return (byte) (i - firstInNeighbor[v]);
+			}
+		}
+		throw new IllegalArgumentException("No road from " + neighbor + " to " + v);
+	}
+
+	/**
+	 * @return the number of bytes taken by the table entries, the incoming neighbors and the overflow table
+	 */
+	@Override
+	public long sizeInBytes() {
+		return (long) size * size * (Character.BYTES + Byte.BYTES)
+				+ (long) Integer.BYTES * (firstInNeighbor.length + inNeighbors.length)
+				+ overflowTravelTimes.size() * OVERFLOW_ENTRY_BYTES;
+	}
+}
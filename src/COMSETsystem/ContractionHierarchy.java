@@ -0,0 +1,599 @@
+package COMSETsystem;
+
+import java.util.Arrays;
+
+/**
+ * A ContractionHierarchy is a RoutingBackend that answers exact point-to-point travel-time queries without an
+ * all-pair table, using memory roughly linear in the size of the map.
+ *
+ * Preprocessing contracts the intersections one by one in order of importance. Contracting an intersection v
+ * removes it from the remaining graph and adds a shortcut u -> w for every pair of remaining neighbors u -> v
+ * -> w unless a witness search finds a path from u to w that avoids v and is not longer. The rank of an
+ * intersection is its position in the contraction order. Every edge of the final hierarchy goes either up
+ * (to a higher rank) and is stored at its source, or down and is stored at its target, so that a query is a
+ * bidirectional Dijkstra that only goes up from both ends and meets at the highest intersection of a
+ * shortest path. Shortcuts remember the intersection they bypass and are unpacked into roads to produce
+ * paths.
+ *
+ * Witness searches are bounded, so preprocessing may add unnecessary shortcuts but never misses one, and
+ * the travel times are exactly those of Dijkstra on the map.
+ */
+final class ContractionHierarchy implements RoutingBackend {
+
+	// The maximum number of intersections settled by a witness search
+	private static final int WITNESS_SETTLE_LIMIT = 500;
+
+	// The number of intersections
+	private final int size;
+
+	// The position of each intersection in the contraction order
+	final int[] rank;
+
+	// Up edges a -> b with rank[a] < rank[b], stored at a in compressed sparse row format
+	final int[] upOffsets;
+	final int[] upTargets;
+	final int[] upWeights;
+	// The intersection bypassed by a shortcut, or -1 for a road
+	private final int[] upMiddles;
+
+	// Down edges a -> b with rank[a] > rank[b], stored at b in compressed sparse row format
+	final int[] downOffsets;
+	final int[] downSources;
+	final int[] downWeights;
+	// The intersection bypassed by a shortcut, or -1 for a road
+	private final int[] downMiddles;
+
+	// Per-thread query state
+	private final ThreadLocal<Query> queries;
+
+	/**
+	 * Builds a contraction hierarchy of a map.
+	 *
+	 * @param graph the roads of the map with their current travel times
+	 */
+	ContractionHierarchy(RoadGraph graph) {
+		this.size = graph.size;
+		Contractor contractor = new Contractor(graph);
+		contractor.contractAll();
+		this.rank = contractor.rank;
+
+		// v keeps the edges to its neighbors that were not contracted before v: the outgoing ones go up and
+		// the incoming ones go down.
+		int upCount = 0;
+		int downCount = 0;
+		for (int v = 0; v < size; v++) {
+			upCount += contractor.out[v].count;
+			downCount += contractor.in[v].count;
+		}
+		upOffsets = new int[size + 1];
+		upTargets = new int[upCount];
+		upWeights = new int[upCount];
+		upMiddles = new int[upCount];
+		downOffsets = new int[size + 1];
+		downSources = new int[downCount];
+		downWeights = new int[downCount];
+		downMiddles = new int[downCount];
+		for (int v = 0; v < size; v++) {
+			EdgeList out = contractor.out[v];
+			upOffsets[v + 1] = upOffsets[v] + out.count;
+			System.arraycopy(out.nodes, 0, upTargets, upOffsets[v], out.count);
+			System.arraycopy(out.weights, 0, upWeights, upOffsets[v], out.count);
+			System.arraycopy(out.middles, 0, upMiddles, upOffsets[v], out.count);
+			EdgeList in = contractor.in[v];
+			downOffsets[v + 1] = downOffsets[v] + in.count;
+			System.arraycopy(in.nodes, 0, downSources, downOffsets[v], in.count);
+			System.arraycopy(in.weights, 0, downWeights, downOffsets[v], in.count);
+			System.arraycopy(in.middles, 0, downMiddles, downOffsets[v], in.count);
+		}
+		queries = ThreadLocal.withInitial(Query::new);
+	}
+
+	@Override
+	public long travelTime(int source, int destination) {
+		Query query = queries.get();
+		query.run(source, destination);
+		return query.best;
+	}
+
+	@Override
+	public int[] path(int source, int destination) {
+		Query query = queries.get();
+		query.run(source, destination);
+		if (query.meeting == -1) {
+			return null;
+		}
+		IntStack path = query.path;
+		path.clear();
+		path.push(source);
+		// up edges from source to the meeting intersection, collected backwards
+		IntStack ends = query.ends;
+		ends.clear();
+		for (int v = query.meeting; v != source; v = query.forwardParent[v]) {
+			ends.push(v);
+		}
+		while (!ends.isEmpty()) {
+			int v = ends.pop();
+			unpack(query.forwardParent[v], v, upMiddles[query.forwardEdge[v]], path, query.pending);
+		}
+		// down edges from the meeting intersection to destination
+		for (int v = query.meeting; v != destination; v = query.backwardParent[v]) {
+			unpack(v, query.backwardParent[v], downMiddles[query.backwardEdge[v]], path, query.pending);
+		}
+		return path.toArray();
+	}
+
+	/**
+	 * Appends the intersections of the edge from -> to, excluding from, to a path, expanding shortcuts into
+	 * the roads they stand for.
+	 *
+	 * @param from the start of the edge
+	 * @param to the end of the edge
+	 * @param middle the intersection bypassed by the edge, or -1 for a road
+	 * @param path the path to append to
+	 * @param pending a stack for the edges still to expand
+	 */
+	private void unpack(int from, int to, int middle, IntStack path, IntStack pending) {
+		pending.clear();
+		pending.push(to);
+		pending.push(middle);
+		pending.push(from);
+		while (!pending.isEmpty()) {
+			int a = pending.pop();
+			int m = pending.pop();
+			int b = pending.pop();
+			if (m == -1) {
+				path.push(b);
+			} else {
+				// a -> m is a down edge stored at m and m -> b an up edge stored at m; expand a -> m first
+				pending.push(b);
+				pending.push(middleOfUpEdge(m, b));
+				pending.push(m);
+				pending.push(m);
+				pending.push(middleOfDownEdge(a, m));
+				pending.push(a);
+			}
+		}
+	}
+
+	private int middleOfUpEdge(int from, int to) {
+		for (int e = upOffsets[from]; e < upOffsets[from + 1]; e++) {
+			if (upTargets[e] == to) {
+				return upMiddles[e];
+			}
+		}
+		throw new IllegalStateException("Missing up edge " + from + " -> " + to);
+	}
+
+	private int middleOfDownEdge(int from, int to) {
+		for (int e = downOffsets[to]; e < downOffsets[to + 1]; e++) {
+			if (downSources[e] == from) {
+				return downMiddles[e];
+			}
+		}
+		throw new IllegalStateException("Missing down edge " + from + " -> " + to);
+	}
+
+	@Override
+	public long sizeInBytes() {
+		return (long) Integer.BYTES * (rank.length + upOffsets.length + 3L * upTargets.length
+				+ downOffsets.length + 3L * downSources.length);
+	}
+
+	/**
+	 * @return the number of edges of the hierarchy, i.e., roads plus shortcuts
+	 */
+	int edgeCount() {
+		return upTargets.length + downSources.length;
+	}
+
+	/**
+	 * The state of a bidirectional query, reused by all queries of one thread.
+	 */
+	private final class Query {
+		final long[] forwardDistance = new long[size];
+		final long[] backwardDistance = new long[size];
+		final int[] forwardParent = new int[size];
+		final int[] backwardParent = new int[size];
+		final int[] forwardEdge = new int[size];
+		final int[] backwardEdge = new int[size];
+		// an intersection has been reached in the current query iff its stamp equals the query number
+		final int[] forwardStamp = new int[size];
+		final int[] backwardStamp = new int[size];
+		int stamp = 0;
+		final LongHeap forwardQueue = new LongHeap();
+		final LongHeap backwardQueue = new LongHeap();
+		final IntStack path = new IntStack();
+		final IntStack ends = new IntStack();
+		final IntStack pending = new IntStack();
+
+		// The result of the last query
+		long best;
+		int meeting;
+
+		void run(int source, int destination) {
+			if (++stamp == 0) {
+				Arrays.fill(forwardStamp, 0);
+				Arrays.fill(backwardStamp, 0);
+				stamp = 1;
+			}
+			best = Long.MAX_VALUE;
+			meeting = -1;
+			forwardQueue.clear();
+			backwardQueue.clear();
+			reachForward(source, 0, -1, -1);
+			reachBackward(destination, 0, -1, -1);
+			boolean forwardDone = false;
+			boolean backwardDone = false;
+			while (!forwardDone || !backwardDone) {
+				if (!forwardDone) {
+					forwardDone = !settleForward();
+				}
+				if (!backwardDone) {
+					backwardDone = !settleBackward();
+				}
+			}
+		}
+
+		private void reachForward(int v, long distance, int parent, int edge) {
+			if (forwardStamp[v] != stamp || distance < forwardDistance[v]) {
+				forwardStamp[v] = stamp;
+				forwardDistance[v] = distance;
+				forwardParent[v] = parent;
+				forwardEdge[v] = edge;
+				forwardQueue.push(distance, v);
+			}
+		}
+
+		private void reachBackward(int v, long distance, int parent, int edge) {
+			if (backwardStamp[v] != stamp || distance < backwardDistance[v]) {
+				backwardStamp[v] = stamp;
+				backwardDistance[v] = distance;
+				backwardParent[v] = parent;
+				backwardEdge[v] = edge;
+				backwardQueue.push(distance, v);
+			}
+		}
+
+		/**
+		 * Settles the next intersection of the forward search.
+		 *
+		 * @return false if the forward search is finished
+		 */
+		private boolean settleForward() {
+			while (!forwardQueue.isEmpty()) {
+				long distance = forwardQueue.peekKey();
+				if (distance >= best) {
+					return false;
+				}
+				int v = forwardQueue.pop();
+				if (distance != forwardDistance[v]) {
+					continue; // stale entry
+				}
+				if (backwardStamp[v] == stamp && distance + backwardDistance[v] < best) {
+					best = distance + backwardDistance[v];
+					meeting = v;
+				}
+				for (int e = upOffsets[v]; e < upOffsets[v + 1]; e++) {
+					reachForward(upTargets[e], distance + upWeights[e], v, e);
+				}
+				return true;
+			}
+			return false;
+		}
+
+		/**
+		 * Settles the next intersection of the backward search.
+		 *
+		 * @return false if the backward search is finished
+		 */
+		private boolean settleBackward() {
+			while (!backwardQueue.isEmpty()) {
+				long distance = backwardQueue.peekKey();
+				if (distance >= best) {
+					return false;
+				}
+				int v = backwardQueue.pop();
+				if (distance != backwardDistance[v]) {
+					continue; // stale entry
+				}
+				if (forwardStamp[v] == stamp && distance + forwardDistance[v] < best) {
+					best = distance + forwardDistance[v];
+					meeting = v;
+				}
+				for (int e = downOffsets[v]; e < downOffsets[v + 1]; e++) {
+					reachBackward(downSources[e], distance + downWeights[e], v, e);
+				}
+				return true;
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * Contracts the intersections of a map in order of importance.
+	 */
+	private static final class Contractor {
+
+		final int size;
+		// The edges between intersections that are not contracted yet; once an intersection is contracted,
+		// its lists are frozen and hold its final edges
+		final EdgeList[] out;
+		final EdgeList[] in;
+		final boolean[] contracted;
+		final int[] rank;
+		// The number of contracted neighbors of each intersection
+		final int[] contractedNeighbors;
+		final int[] priority;
+
+		// Witness search state
+		final long[] distance;
+		final int[] stamp;
+		int currentStamp = 0;
+		final LongHeap queue = new LongHeap();
+
+		Contractor(RoadGraph graph) {
+			size = graph.size;
+			out = new EdgeList[size];
+			in = new EdgeList[size];
+			for (int v = 0; v < size; v++) {
+				out[v] = new EdgeList();
+				in[v] = new EdgeList();
+			}
+			for (int v = 0; v < size; v++) {
+				for (int road = graph.firstRoad[v]; road < graph.firstRoad[v + 1]; road++) {
+					if (graph.roadTo[road] != v) {
+						addEdge(v, graph.roadTo[road], toWeight(graph.roadTravelTime[road]), -1);
+					}
+				}
+			}
+			contracted = new boolean[size];
+			rank = new int[size];
+			contractedNeighbors = new int[size];
+			priority = new int[size];
+			distance = new long[size];
+			stamp = new int[size];
+		}
+
+		static int toWeight(long travelTime) {
+			if (travelTime < 0 || travelTime >= Integer.MAX_VALUE) {
+				throw new IllegalArgumentException("Travel time " + travelTime + " does not fit in the contraction hierarchy");
+			}
+			return (int) travelTime;
+		}
+
+		/**
+		 * Adds the edge from -> to, or lowers the weight of an existing edge between the two.
+		 */
+		void addEdge(int from, int to, int weight, int middle) {
+			int i = out[from].indexOf(to);
+			if (i == -1) {
+				out[from].add(to, weight, middle);
+				in[to].add(from, weight, middle);
+			} else if (weight < out[from].weights[i]) {
+				out[from].set(i, weight, middle);
+				in[to].set(in[to].indexOf(from), weight, middle);
+			}
+		}
+
+		void contractAll() {
+			LongHeap order = new LongHeap();
+			for (int v = 0; v < size; v++) {
+				priority[v] = computePriority(v);
+				order.push(priorityKey(priority[v]), v);
+			}
+			int nextRank = 0;
+			while (!order.isEmpty()) {
+				long key = order.peekKey();
+				int v = order.pop();
+				if (contracted[v] || key != priorityKey(priority[v])) {
+					continue; // stale entry
+				}
+				// lazy update: contract v only if it is still the least important intersection
+				priority[v] = computePriority(v);
+				if (!order.isEmpty() && priorityKey(priority[v]) > order.peekKey()) {
+					order.push(priorityKey(priority[v]), v);
+					continue;
+				}
+				contract(v);
+				rank[v] = nextRank++;
+				for (int i = 0; i < out[v].count; i++) {
+					updateNeighbor(out[v].nodes[i], order);
+				}
+				for (int i = 0; i < in[v].count; i++) {
+					updateNeighbor(in[v].nodes[i], order);
+				}
+			}
+		}
+
+		private void updateNeighbor(int u, LongHeap order) {
+			contractedNeighbors[u]++;
+			priority[u] = computePriority(u);
+			order.push(priorityKey(priority[u]), u);
+		}
+
+		private static long priorityKey(int priority) {
+			return (long) priority + (1 << 30);
+		}
+
+		/**
+		 * The importance of an intersection: the number of shortcuts its contraction adds minus the number
+		 * of edges it removes, plus the number of its neighbors already contracted to spread contractions
+		 * evenly over the map.
+		 */
+		private int computePriority(int v) {
+			int shortcuts = processShortcuts(v, false);
+			return 2 * (shortcuts - out[v].count - in[v].count) + contractedNeighbors[v];
+		}
+
+		private void contract(int v) {
+			processShortcuts(v, true);
+			contracted[v] = true;
+			// detach v from the remaining graph; its own lists are kept as its final edges
+			for (int i = 0; i < out[v].count; i++) {
+				in[out[v].nodes[i]].remove(v);
+			}
+			for (int i = 0; i < in[v].count; i++) {
+				out[in[v].nodes[i]].remove(v);
+			}
+		}
+
+		/**
+		 * Finds the shortcuts needed to contract v.
+		 *
+		 * @param v the intersection to contract
+		 * @param add whether to add the shortcuts to the graph
+		 * @return the number of shortcuts
+		 */
+		private int processShortcuts(int v, boolean add) {
+			EdgeList incoming = in[v];
+			EdgeList outgoing = out[v];
+			int shortcuts = 0;
+			for (int i = 0; i < incoming.count; i++) {
+				int u = incoming.nodes[i];
+				int uv = incoming.weights[i];
+				long maxDistance = -1;
+				for (int j = 0; j < outgoing.count; j++) {
+					if (outgoing.nodes[j] != u) {
+						maxDistance = Math.max(maxDistance, (long) uv + outgoing.weights[j]);
+					}
+				}
+				if (maxDistance == -1) {
+					continue; // no neighbor to connect u to
+				}
+				witnessSearch(u, v, maxDistance);
+				for (int j = 0; j < outgoing.count; j++) {
+					int w = outgoing.nodes[j];
+					if (w == u) {
+						continue;
+					}
+					long viaV = (long) uv + outgoing.weights[j];
+					if (stamp[w] != currentStamp || distance[w] > viaV) {
+						shortcuts++;
+						if (add) {
+							addEdge(u, w, toWeight(viaV), v);
+						}
+					}
+				}
+			}
+			return shortcuts;
+		}
+
+		/**
+		 * Runs a bounded Dijkstra from u over the remaining graph without v. Afterwards distance[w] is an
+		 * upper bound of the shortest travel time from u to w avoiding v for every w with stamp[w] equal to
+		 * currentStamp.
+		 */
+		private void witnessSearch(int u, int v, long maxDistance) {
+			if (++currentStamp == 0) {
+				Arrays.fill(stamp, 0);
+				currentStamp = 1;
+			}
+			queue.clear();
+			stamp[u] = currentStamp;
+			distance[u] = 0;
+			queue.push(0, u);
+			int settled = 0;
+			while (!queue.isEmpty() && settled < WITNESS_SETTLE_LIMIT) {
+				long d = queue.peekKey();
+				int x = queue.pop();
+				if (d != distance[x]) {
+					continue; // stale entry
+				}
+				if (d > maxDistance) {
+					break;
+				}
+				settled++;
+				EdgeList edges = out[x];
+				for (int i = 0; i < edges.count; i++) {
+					int y = edges.nodes[i];
+					if (y == v) {
+						continue;
+					}
+					long nd = d + edges.weights[i];
+					if (stamp[y] != currentStamp || nd < distance[y]) {
+						stamp[y] = currentStamp;
+						distance[y] = nd;
+						queue.push(nd, y);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * A growable list of edges of one intersection: the other end, the weight and the bypassed intersection.
+	 */
+	private static final class EdgeList {
+		int[] nodes = new int[4];
+		int[] weights = new int[4];
+		int[] middles = new int[4];
+		int count = 0;
+
+		int indexOf(int node) {
+			for (int i = 0; i < count; i++) {
+				if (nodes[i] == node) {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		void add(int node, int weight, int middle) {
+			if (count == nodes.length) {
+				nodes = Arrays.copyOf(nodes, 2 * count);
+				weights = Arrays.copyOf(weights, 2 * count);
+				middles = Arrays.copyOf(middles, 2 * count);
+			}
+			nodes[count] = node;
+			weights[count] = weight;
+			middles[count] = middle;
+			count++;
+		}
+
+		void set(int i, int weight, int middle) {
+			weights[i] = weight;
+			middles[i] = middle;
+		}
+
+		void remove(int node) {
+			int i = indexOf(node);
+			if (i != -1) {
+				count--;
+				nodes[i] = nodes[count];
+				weights[i] = weights[count];
+				middles[i] = middles[count];
+			}
+		}
+	}
+
+	/**
+	 * A growable stack of ints.
+	 */
+	private static final class IntStack {
+		private int[] values = new int[64];
+		private int count = 0;
+
+		boolean isEmpty() {
+			return count == 0;
+		}
+
+		void clear() {
+			count = 0;
+		}
+
+		void push(int value) {
+			if (count == values.length) {
+				values = Arrays.copyOf(values, 2 * count);
+			}
+			values[count++] = value;
+		}
+
+		int pop() {
+			return values[--count];
+		}
+
+		int[] toArray() {
+			return Arrays.copyOf(values, count);
+		}
+	}
+}
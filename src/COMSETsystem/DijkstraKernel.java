@@ -0,0 +1,210 @@
+package COMSETsystem;
+
+import java.util.Arrays;
+
+/**
+ * A DijkstraKernel computes one-to-all shortest travel times on a RoadGraph. It keeps its queue and its
+ * results in int and long arrays that are reused by all searches, so a search allocates nothing and only
+ * touches the intersections it reaches. A kernel is not thread-safe; each thread needs its own.
+ *
+ * The queue is an indexed 4-ary heap that supports decrease-key in O(log n). Intersections of equal travel
+ * time are settled in increasing id order, and the travel time of an intersection is only lowered by a
+ * strictly shorter path, so the predecessors are the same whatever the path table indices are.
+ */
+final class DijkstraKernel {
+
+	// The number of children of a heap node
+	private static final int ARITY = 4;
+
+	private final RoadGraph graph;
+
+	// The travel time from the source of each intersection reached by the last search
+	private final long[] travelTimes;
+
+	// The predecessor on the shortest path from the source of each intersection reached by the last search
+	private final int[] predecessors;
+
+	// The position of each intersection in the heap, or -1 if it is not in the heap
+	private final int[] heapPosition;
+
+	// Whether each intersection is settled by the last search
+	private final boolean[] settled;
+
+	// The heap of intersections ordered by (travel time, id rank)
+	private final int[] heap;
+	private int heapSize = 0;
+
+	// The intersections reached by the last search in the order they were reached
+	private final int[] reached;
+	private int reachedCount = 0;
+
+	/**
+	 * Creates a kernel for a graph.
+	 *
+	 * @param graph the graph to search
+	 */
+	DijkstraKernel(RoadGraph graph) {
+		this.graph = graph;
+		this.travelTimes = new long[graph.size];
+		this.predecessors = new int[graph.size];
+		this.heapPosition = new int[graph.size];
+		this.settled = new boolean[graph.size];
+		this.heap = new int[graph.size];
+		this.reached = new int[graph.size];
+		Arrays.fill(travelTimes, Long.MAX_VALUE);
+		Arrays.fill(predecessors, -1);
+		Arrays.fill(heapPosition, -1);
+	}
+
+	/**
+	 * Computes the shortest travel times from a source to all intersections.
+	 *
+	 * @param source path table index of the source
+	 */
+	void run(int source) {
+		// only reset what the last search touched
+		for (int i = 0; i < reachedCount; i++) {
+			int v = reached[i];
+			travelTimes[v] = Long.MAX_VALUE;
+			predecessors[v] = -1;
+			settled[v] = false;
+		}
+		reachedCount = 0;
+		heapSize = 0;
+
+		travelTimes[source] = 0;
+		predecessors[source] = source;
+		reached[reachedCount++] = source;
+		push(source);
+
+		int[] firstRoad = graph.firstRoad;
+		int[] roadTo = graph.roadTo;
+		int[] roadTravelTime = graph.roadTravelTime;
+		while (heapSize > 0) {
+			int u = pop();
+			settled[u] = true;
+			long travelTime = travelTimes[u];
+			for (int road = firstRoad[u]; road < firstRoad[u + 1]; road++) {
+				int v = roadTo[road];
+				if (settled[v]) {
+					continue;
+				}
+				long newTravelTime = travelTime + roadTravelTime[road];
+				if (newTravelTime < travelTimes[v]) {
+					if (travelTimes[v] == Long.MAX_VALUE) {
+						reached[reachedCount++] = v;
+						travelTimes[v] = newTravelTime;
+						predecessors[v] = u;
+						push(v);
+					} else {
+						travelTimes[v] = newTravelTime;
+						predecessors[v] = u;
+						siftUp(heapPosition[v]);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Stores the result of the last search as the row of the source in a path table.
+	 *
+	 * @param source path table index of the source of the last search
+	 * @param table the table to store the row in
+	 */
+	void storeRow(int source, PathTable table) {
+		for (int i = 0; i < reachedCount; i++) {
+			int v = reached[i];
+			table.set(source, v, travelTimes[v], predecessors[v]);
+		}
+	}
+
+	/**
+	 * @param v path table index of an intersection
+	 * @return the travel time from the source of the last search to v, or Long.MAX_VALUE if v is unreachable
+	 */
+	long travelTime(int v) {
+		return travelTimes[v];
+	}
+
+	/**
+	 * @param v path table index of an intersection
+	 * @return the predecessor of v on the shortest path from the source of the last search, the source itself
+	 * if v is the source, or -1 if v is unreachable
+	 */
+	int predecessor(int v) {
+		return predecessors[v];
+	}
+
+	/**
+	 * @return the number of intersections reached by the last search
+	 */
+	int reachedCount() {
+		return reachedCount;
+	}
+
+	private boolean less(int a, int b) {
+		return travelTimes[a] < travelTimes[b]
+				|| (travelTimes[a] == travelTimes[b] && graph.idRank[a] < graph.idRank[b]);
+	}
+
+	private void push(int v) {
+		heap[heapSize] = v;
+		heapPosition[v] = heapSize;
+		heapSize++;
+		siftUp(heapSize - 1);
+	}
+
+	private int pop() {
+		int top = heap[0];
+		heapPosition[top] = -1;
+		heapSize--;
+		if (heapSize > 0) {
+			heap[0] = heap[heapSize];
+			heapPosition[heap[0]] = 0;
+			siftDown(0);
+		}
+		return top;
+	}
+
+	private void siftUp(int position) {
+		int v = heap[position];
+		while (position > 0) {
+			int parentPosition = (position - 1) / ARITY;
+			int parent = heap[parentPosition];
+			if (!less(v, parent)) {
+				break;
+			}
+			heap[position] = parent;
+			heapPosition[parent] = position;
+			position = parentPosition;
+		}
+		heap[position] = v;
+		heapPosition[v] = position;
+	}
+
+	private void siftDown(int position) {
+		int v = heap[position];
+		while (true) {
+			int firstChild = position * ARITY + 1;
+			if (firstChild >= heapSize) {
+				break;
+			}
+			int best = firstChild;
+			int lastChild = Math.min(firstChild + ARITY, heapSize);
+			for (int child = firstChild + 1; child < lastChild; child++) {
+				if (less(heap[child], heap[best])) {
+					best = child;
+				}
+			}
+			if (!less(heap[best], v)) {
+				break;
+			}
+			heap[position] = heap[best];
+			heapPosition[heap[position]] = position;
+			position = best;
+		}
+		heap[position] = v;
+		heapPosition[v] = position;
+	}
+}
@@ -11,7 +11,7 @@ package COMSETsystem;
  */
 public abstract class Event implements Comparable<Event> {
 
-	private static int maxId = 0;
+	private static long maxId = 0;
 
 	// The time at which the event is to be triggered
 	long time;
@@ -26,6 +26,9 @@ public abstract class Event implements Comparable<Event> {
 	 */
 	long id;  
 
+	// The position of the event in the HeapEventQueue holding it, or -1; an event is in at most one queue
+	int queuePosition = -1;
+
 	/**
 	 * Constructor for class Event
 	 *
@@ -39,6 +42,49 @@ public abstract class Event implements Comparable<Event> {
 		this.fleetManager = fleetManager;
 	}
 
+	/**
+	 * Constructor for class Event with an id reserved by reserveIds.
+	 *
+	 * @param time core to this class, indicates when this event will trigger.
+	 * @param id the id of the event
+	 * @param simulator a reference to simulator
+	 */
+	Event(long time, long id, Simulator simulator, FleetManager fleetManager) {
+		this.id = id;
+		this.time = time;
+		this.simulator = simulator;
+		this.fleetManager = fleetManager;
+	}
+
+	/**
+	 * Reserves ids for events created later, so that they break ties of trigger time as if they had been
+	 * created now.
+	 *
+	 * @param count the number of ids to reserve
+	 * @return the first reserved id; the others follow it
+	 */
+	static long reserveIds(int count) {
+		long first = maxId;
+		maxId += count;
+		return first;
+	}
+
+	/**
+	 * @return the id of the next event created
+	 */
+	static long nextId() {
+		return maxId;
+	}
+
+	/**
+	 * Sets the id of the next event created, e.g., when the events of a checkpoint are restored.
+	 *
+	 * @param id the id of the next event created
+	 */
+	static void setNextId(long id) {
+		maxId = id;
+	}
+
 	/**
 	 * Constructor for class Event.  Allow subclasses to set simulator.
 	 *
@@ -0,0 +1,60 @@
+package COMSETsystem;
+
+/**
+ * The pending events of a simulation, polled in increasing order of time and, for events of the same time,
+ * in increasing order of id, which is the order of Event.compareTo. See EventQueueMode for the
+ * implementations.
+ */
+public interface EventQueue {
+
+	/**
+	 * Adds an event. The time of the event must not change while it is in the queue.
+	 *
+	 * @param event the event to add
+	 */
+	void add(Event event);
+
+	/**
+	 * @return the first event, or null if the queue is empty
+	 */
+	Event peek();
+
+	/**
+	 * Removes the first event.
+	 *
+	 * @return the first event, or null if the queue is empty
+	 */
+	Event poll();
+
+	/**
+	 * Removes an event.
+	 *
+	 * @param event the event to remove
+	 * @return true if the event was in the queue
+	 */
+	boolean remove(Event event);
+
+	/**
+	 * Moves an event to another time, as removing it, changing its time and adding it again does.
+	 *
+	 * @param event the event to move, which may or may not be in the queue
+	 * @param time the new time of the event
+	 */
+	default void reschedule(Event event, long time) {
+		remove(event);
+		event.time = time;
+		add(event);
+	}
+
+	/**
+	 * @return the number of events in the queue
+	 */
+	int size();
+
+	/**
+	 * @return true if the queue holds no event
+	 */
+	default boolean isEmpty() {
+		return size() == 0;
+	}
+}
@@ -0,0 +1,27 @@
+package COMSETsystem;
+
+/**
+ * The ways the Simulator can keep its pending events. See Simulator.setEventQueueMode. Both poll the events
+ * in the same order.
+ */
+public enum EventQueueMode {
+
+	// A binary heap of events ordered by Event.compareTo; see HeapEventQueue.
+	HEAP,
+
+	// One bucket per second for the coming hour or so and a heap for later events; see
+	// CalendarEventQueue. Adding and polling an event take constant time when event times are dense.
+	CALENDAR;
+
+	/**
+	 * @return a new empty queue of this mode
+	 */
+	EventQueue createQueue() {
+		switch (this) {
+			case CALENDAR:
+				return new CalendarEventQueue();
+			default:
+				return new HeapEventQueue();
+		}
+	}
+}
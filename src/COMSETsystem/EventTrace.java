@@ -0,0 +1,239 @@
+package COMSETsystem;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The EventTrace records what the events do when they are triggered, in place of per-event log messages.
+ *
+ * Tracing is enabled by the system property comset.trace, read once when the class is initialized (Main sets
+ * it from comset.logging). Callers guard every record with ENABLED, a static final constant, so that when
+ * tracing is disabled the JIT removes the guarded code and no argument is computed. When tracing is enabled,
+ * a record is a few numbers written into a preallocated ring buffer; a background thread formats the records
+ * and writes them to the standard error stream. Events triggered in parallel record concurrently, so records
+ * of events of the same batch may be written in any order. A record waits for room if the background thread
+ * falls a whole buffer behind, so no record is lost. If writing fails, tracing stops and later records are
+ * dropped, so that the simulation neither waits for room nor for the records to be written.
+ */
+public final class EventTrace {
+
+	// The system property that enables tracing
+	public static final String ENABLED_PROPERTY = "comset.trace";
+
+	// Whether tracing is enabled
+	public static final boolean ENABLED = Boolean.getBoolean(ENABLED_PROPERTY);
+
+	// The kinds of record
+	static final int AGENT_TRIGGERED = 0;
+	static final int AGENT_MOVED = 1;
+	static final int AGENT_PICKED_UP = 2;
+	static final int AGENT_DROPPED_OFF = 3;
+	static final int RESOURCE_TRIGGERED = 4;
+	static final int RESOURCE_EXPIRED = 5;
+	static final int TRAVEL_TIME_CHANGED = 6;
+
+	// The number of records of the ring buffer of the trace of the simulation; a power of two
+	private static final int CAPACITY = 1 << 16;
+
+	// The fields of a record: kind, event id, time, start and end intersection ids of a road, and an offset
+	// on the road or a travel time
+	private static final int FIELDS = 6;
+
+	// The trace of the simulation, written to the standard error stream, or null if tracing is disabled
+	private static final EventTrace trace = ENABLED
+			? new EventTrace(new BufferedWriter(new OutputStreamWriter(System.err), 1 << 16), CAPACITY) : null;
+
+	// The number of records of the ring buffer; a power of two
+	private final int capacity;
+
+	// The fields of the records, record i at FIELDS * (i & (capacity - 1))
+	private final long[] records;
+
+	// The sequence number of the record last written in each slot of the ring buffer, or -1
+	private final AtomicLongArray published;
+
+	// The sequence number of the next record to write
+	private final AtomicLong next = new AtomicLong();
+
+	// The sequence number of the first record whose slot the background thread has not read yet
+	private volatile long freed = 0;
+
+	// The sequence number of the first record not written out yet
+	private volatile long written = 0;
+
+	// Whether the background thread stopped because the output failed; later records are dropped
+	private volatile boolean failed = false;
+
+	/**
+	 * Constructor for class EventTrace. Starts the background thread that writes the records out.
+	 *
+	 * @param out the output the records are written to
+	 * @param capacity the number of records of the ring buffer; a power of two
+	 */
+	EventTrace(Writer out, int capacity) {
+		this.capacity = capacity;
+		records = new long[capacity * FIELDS];
+		published = new AtomicLongArray(capacity);
+		for (int slot = 0; slot < capacity; slot++) {
+			published.set(slot, -1);
+		}
+		Thread drainer = new Thread(() -> drain(out), "event-trace");
+		drainer.setDaemon(true);
+		drainer.start();
+	}
+
+	/**
+	 * Records something an event does at a location.
+	 *
+	 * @param kind the kind of record
+	 * @param id the id of the event
+	 * @param time the time of the record
+	 * @param loc the location
+	 */
+	static void record(int kind, long id, long time, LocationOnRoad loc) {
+		record(kind, id, time, loc.road, loc.travelTimeFromStartIntersection);
+	}
+
+	/**
+	 * Records something an event does on a road.
+	 *
+	 * @param kind the kind of record
+	 * @param id the id of the event
+	 * @param time the time of the record
+	 * @param road the road
+	 * @param value the offset on the road or the travel time of the road, in seconds
+	 */
+	static void record(int kind, long id, long time, Road road, long value) {
+		trace.add(kind, id, time, road.from.id, road.to.id, value);
+	}
+
+	/**
+	 * Waits until the records made so far have been written out.
+	 */
+	public static void flush() {
+		if (!ENABLED) {
+			return;
+		}
+		trace.awaitWritten();
+	}
+
+	/**
+	 * Adds a record to the ring buffer, waiting for room if the background thread is a whole buffer behind.
+	 * Does nothing once the output has failed.
+	 *
+	 * @param kind the kind of record
+	 * @param id the id of the event
+	 * @param time the time of the record
+	 * @param from the id of the start intersection of the road
+	 * @param to the id of the end intersection of the road
+	 * @param value the offset on the road or the travel time of the road, in seconds
+	 */
+	void add(int kind, long id, long time, long from, long to, long value) {
+		long sequence = next.getAndIncrement();
+		while (sequence - freed >= capacity) {
+			if (failed) {
+				return;
+			}
+			Thread.yield();
+		}
+		int slot = (int) sequence & (capacity - 1);
+		int base = slot * FIELDS;
+		records[base] = kind;
+		records[base + 1] = id;
+		records[base + 2] = time;
+		records[base + 3] = from;
+		records[base + 4] = to;
+		records[base + 5] = value;
+		published.set(slot, sequence);
+	}
+
+	/**
+	 * Waits until the records added so far have been written out, or until the output fails.
+	 */
+	void awaitWritten() {
+		long last = next.get();
+		while (written < last && !failed) {
+			LockSupport.parkNanos(100_000);
+		}
+	}
+
+	/**
+	 * Formats the records in sequence order as they are published, flushing the output whenever the buffer is
+	 * empty. Stops when the output fails, after which records are dropped rather than waited for.
+	 *
+	 * @param out the output the records are written to
+	 */
+	private void drain(Writer out) {
+		StringBuilder line = new StringBuilder();
+		long sequence = 0;
+		boolean pending = false;
+		try {
+			while (true) {
+				int slot = (int) sequence & (capacity - 1);
+				if (published.get(slot) != sequence) {
+					if (pending) {
+						out.flush();
+						pending = false;
+						freed = sequence;
+						written = sequence;
+					}
+					LockSupport.parkNanos(100_000);
+					continue;
+				}
+				line.setLength(0);
+				format(line, slot * FIELDS);
+				out.write(line.toString());
+				pending = true;
+				sequence++;
+				if ((sequence & 1023) == 0) {
+					freed = sequence;
+				}
+			}
+		} catch (IOException e) {
+			failed = true;
+			System.err.println("Cannot write the event trace; tracing stops");
+			e.printStackTrace();
+		}
+	}
+
+	private void format(StringBuilder line, int base) {
+		int kind = (int) records[base];
+		long id = records[base + 1];
+		long time = records[base + 2];
+		line.append(time).append(' ');
+		switch (kind) {
+			case AGENT_TRIGGERED:
+				line.append("AgentEvent ").append(id).append(" triggered at");
+				break;
+			case AGENT_MOVED:
+				line.append("AgentEvent ").append(id).append(" moves to");
+				break;
+			case AGENT_PICKED_UP:
+				line.append("AgentEvent ").append(id).append(" picks up at");
+				break;
+			case AGENT_DROPPED_OFF:
+				line.append("AgentEvent ").append(id).append(" drops off at");
+				break;
+			case RESOURCE_TRIGGERED:
+				line.append("ResourceEvent ").append(id).append(" triggered at");
+				break;
+			case RESOURCE_EXPIRED:
+				line.append("ResourceEvent ").append(id).append(" expires at");
+				break;
+			case TRAVEL_TIME_CHANGED:
+				line.append("RoadTravelTimeEvent ").append(id).append(" sets the travel time of road ")
+						.append(records[base + 3]).append(',').append(records[base + 4]).append(" to ")
+						.append(records[base + 5]).append('\n');
+				return;
+			default:
+				line.append("unknown record ").append(kind);
+		}
+		line.append(" road ").append(records[base + 3]).append(',').append(records[base + 4])
+				.append(" + ").append(records[base + 5]).append('\n');
+	}
+}
@@ -1,5 +1,6 @@
 package COMSETsystem;
 
+import java.io.IOException;
 import java.util.Set;
 
 public abstract class FleetManager {
@@ -27,6 +28,52 @@ public abstract class FleetManager {
 
     public abstract Intersection onReachIntersectionWithResource(long agentId, long time, LocationOnRoad currentLoc, Resource resource);
 
+    /**
+     * Whether onReachIntersection and onReachIntersectionWithResource may be called for several agents at the
+     * same time when the simulator runs with more than one thread. A fleet manager that returns true must only
+     * change the state of the agent of such a call, and only read other state that agentsCreated,
+     * onMapStateChanged and onResourceAvailabilityChange change, which are never called concurrently. The calls
+     * then give the same results in any order. By default the events are triggered one at a time.
+     *
+     * @return true if navigation calls for different agents may run concurrently
+     */
+    public boolean allowsConcurrentNavigation() {
+        return false;
+    }
+
+    /**
+     * Whether the fleet manager can write its state to a checkpoint of the simulation with writeCheckpoint and
+     * restore it with readCheckpoint. The simulator only writes checkpoints of simulations whose fleet manager
+     * supports them.
+     *
+     * @return true if writeCheckpoint and readCheckpoint are implemented
+     */
+    public boolean supportsCheckpoints() {
+        return false;
+    }
+
+    /**
+     * Writes the state of the fleet manager to a checkpoint of the simulation, between two events. The state
+     * read back by readCheckpoint must make the fleet manager take the same decisions from then on.
+     *
+     * @param out the stream of the checkpoint
+     * @throws IOException if the checkpoint cannot be written
+     */
+    public void writeCheckpoint(CheckpointOutput out) throws IOException {
+        throw new UnsupportedOperationException(getClass().getName() + " does not support checkpoints");
+    }
+
+    /**
+     * Restores the state written by writeCheckpoint, in place of agentsCreated, in a fleet manager created for
+     * a simulation restored from a checkpoint.
+     *
+     * @param in the stream of the checkpoint
+     * @throws IOException if the checkpoint cannot be read
+     */
+    public void readCheckpoint(CheckpointInput in) throws IOException {
+        throw new UnsupportedOperationException(getClass().getName() + " does not support checkpoints");
+    }
+
     public FleetManager(CityMap map) {
         this.map = map;
     }
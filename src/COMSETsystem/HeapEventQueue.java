@@ -0,0 +1,106 @@
+package COMSETsystem;
+
+/**
+ * An EventQueue on a binary heap ordered by Event.compareTo. Every event keeps its position in the heap, so
+ * that adding, polling and removing any event all take O(log n) comparisons.
+ */
+public class HeapEventQueue implements EventQueue {
+
+	// The initial capacity of the heap
+	private static final int CAPACITY = 64;
+
+	// The events; the children of the event at position i are at positions 2i + 1 and 2i + 2
+	private Event[] heap = new Event[CAPACITY];
+
+	// The number of events
+	private int size;
+
+	@Override
+	public void add(Event event) {
+		if (size == heap.length) {
+			Event[] grown = new Event[2 * size];
+			System.arraycopy(heap, 0, grown, 0, size);
+			heap = grown;
+		}
+		siftUp(size++, event);
+	}
+
+	@Override
+	public Event peek() {
+		return size == 0 ? null : heap[0];
+	}
+
+	@Override
+	public Event poll() {
+		if (size == 0) {
+			return null;
+		}
+		Event first = heap[0];
+		removeAt(0);
+		return first;
+	}
+
+	@Override
+	public boolean remove(Event event) {
+		int position = event.queuePosition;
+		if (position < 0 || position >= size || heap[position] != event) {
+			return false;
+		}
+		removeAt(position);
+		return true;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	private void removeAt(int position) {
+		heap[position].queuePosition = -1;
+		Event last = heap[--size];
+		heap[size] = null;
+		if (position < size) {
+			siftDown(position, last);
+			if (heap[position] == last) {
+				siftUp(position, last);
+			}
+		}
+	}
+
+	private void siftUp(int position, Event event) {
+		while (position > 0) {
+			int parent = (position - 1) >>> 1;
+			if (!before(event, heap[parent])) {
+				break;
+			}
+			place(position, heap[parent]);
+			position = parent;
+		}
+		place(position, event);
+	}
+
+	private void siftDown(int position, Event event) {
+		int half = size >>> 1;
+		while (position < half) {
+			int child = 2 * position + 1;
+			if (child + 1 < size && before(heap[child + 1], heap[child])) {
+				child++;
+			}
+			if (!before(heap[child], event)) {
+				break;
+			}
+			place(position, heap[child]);
+			position = child;
+		}
+		place(position, event);
+	}
+
+	private void place(int position, Event event) {
+		heap[position] = event;
+		event.queuePosition = position;
+	}
+
+	private static boolean before(Event a, Event b) {
+		return a.compareTo(b) < 0;
+	}
+}
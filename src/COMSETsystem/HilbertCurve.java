@@ -0,0 +1,81 @@
+package COMSETsystem;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Orders intersections along a Hilbert curve over their projected xy coordinates. Intersections close on the
+ * curve are close on the map, and most of those close on the map are close on the curve, so that numbering
+ * intersections in this order puts the table rows and columns of a neighbourhood next to each other.
+ */
+final class HilbertCurve {
+
+	// The number of bits of each coordinate on the curve, so that the curve covers a 2^ORDER by 2^ORDER grid
+	private static final int ORDER = 16;
+
+	private HilbertCurve() {}
+
+	/**
+	 * Sorts intersections along the curve. The bounding box of the intersections is mapped to the grid of the
+	 * curve; intersections in the same cell of the grid are ordered by id.
+	 *
+	 * @param intersections the intersections to sort
+	 * @return a new array of the intersections in curve order
+	 */
+	static Intersection[] sort(Intersection[] intersections) {
+		double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+		for (Intersection intersection : intersections) {
+			minX = Math.min(minX, intersection.xy.getX());
+			minY = Math.min(minY, intersection.xy.getY());
+			maxX = Math.max(maxX, intersection.xy.getX());
+			maxY = Math.max(maxY, intersection.xy.getY());
+		}
+		// the same scale on both axes, so that the curve does not stretch the map
+		double extent = Math.max(maxX - minX, maxY - minY);
+		double scale = extent > 0 ? ((1 << ORDER) - 1) / extent : 0;
+
+		long[] curveIndex = new long[intersections.length];
+		Integer[] order = new Integer[intersections.length];
+		for (int i = 0; i < intersections.length; i++) {
+			int x = (int) Math.round((intersections[i].xy.getX() - minX) * scale);
+			int y = (int) Math.round((intersections[i].xy.getY() - minY) * scale);
+			curveIndex[i] = index(x, y);
+			order[i] = i;
+		}
+		Arrays.sort(order, Comparator.<Integer>comparingLong(i -> curveIndex[i]).thenComparingLong(i -> intersections[i].id));
+
+		Intersection[] sorted = new Intersection[intersections.length];
+		for (int i = 0; i < sorted.length; i++) {
+			sorted[i] = intersections[order[i]];
+		}
+		return sorted;
+	}
+
+	/**
+	 * Gets the position of a cell of the grid on the curve.
+	 *
+	 * @param x the column of the cell, between 0 and 2^ORDER - 1
+	 * @param y the row of the cell, between 0 and 2^ORDER - 1
+	 * @return the number of cells before the cell on the curve
+	 */
+	static long index(int x, int y) {
+		long index = 0;
+		for (int half = 1 << (ORDER - 1); half > 0; half >>= 1) {
+			int quadrantX = (x & half) > 0 ? 1 : 0;
+			int quadrantY = (y & half) > 0 ? 1 : 0;
+			index += (long) half * half * ((3 * quadrantX) ^ quadrantY);
+			// rotate the quadrant so that the curve inside it starts and ends where the curve of the grid does
+			if (quadrantY == 0) {
+				if (quadrantX == 1) {
+					x = half - 1 - x;
+					y = half - 1 - y;
+				}
+				int swap = x;
+				x = y;
+				y = swap;
+			}
+		}
+		return index;
+	}
+}
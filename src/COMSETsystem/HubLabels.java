@@ -0,0 +1,216 @@
+package COMSETsystem;
+
+import java.util.Arrays;
+
+/**
+ * HubLabels is a RoutingBackend that answers travel-time queries from two small precomputed labels.
+ *
+ * The forward label of an intersection s is a list of hubs h with the travel time from s to h, and the
+ * backward label of an intersection t a list of hubs h with the travel time from h to t. The labels are
+ * such that every shortest path from s to t goes through a hub common to both labels, so the travel time
+ * from s to t is the minimum of the sums over the common hubs. The labels are sorted by hub, so a query
+ * merges two short sorted arrays and touches a few cache lines only.
+ *
+ * The labels are derived from a contraction hierarchy: the forward label of s holds the intersections
+ * reachable from s by going up the hierarchy, and the backward label of t those from which t is reachable
+ * by going down, which is the search space of a hierarchy query. Intersections are labeled from the highest
+ * rank down, so that a hub whose travel time in a label can already be beaten through the labels of higher
+ * intersections is pruned. Hubs are identified by their rank.
+ *
+ * Paths are answered by the contraction hierarchy.
+ */
+final class HubLabels implements RoutingBackend {
+
+	// The contraction hierarchy the labels are derived from, which answers path queries
+	private final ContractionHierarchy hierarchy;
+
+	// Forward labels in compressed sparse row format: the label of v is the (hub, travel time) pairs
+	// forwardLabels[forwardOffsets[v]] to forwardLabels[forwardOffsets[v + 1] - 1], in increasing hub order.
+	// A hub and its travel time are next to each other so that a query reads each label sequentially.
+	private final int[] forwardOffsets;
+	private final int[] forwardLabels;
+
+	// Backward labels in the same format
+	private final int[] backwardOffsets;
+	private final int[] backwardLabels;
+
+	/**
+	 * Computes the labels of a contraction hierarchy.
+	 *
+	 * @param hierarchy the contraction hierarchy
+	 * @throws IllegalArgumentException if a travel time in a label does not fit in an int
+	 */
+	HubLabels(ContractionHierarchy hierarchy) {
+		this.hierarchy = hierarchy;
+		int size = hierarchy.rank.length;
+		int[] byRank = new int[size];
+		for (int v = 0; v < size; v++) {
+			byRank[hierarchy.rank[v]] = v;
+		}
+
+		int[][] forward = new int[size][];
+		int[][] backward = new int[size][];
+		LabelBuilder builder = new LabelBuilder(size);
+		for (int r = size - 1; r >= 0; r--) {
+			int v = byRank[r];
+			// forward: up edges v -> w stored at v
+			builder.start(r);
+			for (int e = hierarchy.upOffsets[v]; e < hierarchy.upOffsets[v + 1]; e++) {
+				builder.extend(forward[hierarchy.upTargets[e]], hierarchy.upWeights[e]);
+			}
+			forward[v] = builder.finish(backward, byRank, false);
+			// backward: down edges w -> v stored at v
+			builder.start(r);
+			for (int e = hierarchy.downOffsets[v]; e < hierarchy.downOffsets[v + 1]; e++) {
+				builder.extend(backward[hierarchy.downSources[e]], hierarchy.downWeights[e]);
+			}
+			backward[v] = builder.finish(forward, byRank, true);
+		}
+
+		forwardOffsets = new int[size + 1];
+		backwardOffsets = new int[size + 1];
+		for (int v = 0; v < size; v++) {
+			forwardOffsets[v + 1] = forwardOffsets[v] + forward[v].length;
+			backwardOffsets[v + 1] = backwardOffsets[v] + backward[v].length;
+		}
+		forwardLabels = new int[forwardOffsets[size]];
+		backwardLabels = new int[backwardOffsets[size]];
+		for (int v = 0; v < size; v++) {
+			System.arraycopy(forward[v], 0, forwardLabels, forwardOffsets[v], forward[v].length);
+			System.arraycopy(backward[v], 0, backwardLabels, backwardOffsets[v], backward[v].length);
+		}
+	}
+
+	@Override
+	public long travelTime(int source, int destination) {
+		int i = forwardOffsets[source];
+		int iEnd = forwardOffsets[source + 1];
+		int j = backwardOffsets[destination];
+		int jEnd = backwardOffsets[destination + 1];
+		long best = Long.MAX_VALUE;
+		while (i < iEnd && j < jEnd) {
+			int forwardHub = forwardLabels[i];
+			int backwardHub = backwardLabels[j];
+			if (forwardHub == backwardHub) {
+				best = Math.min(best, (long) forwardLabels[i + 1] + backwardLabels[j + 1]);
+			}
+			// advancing without branching on the comparison avoids most branch mispredictions
+			i += forwardHub <= backwardHub ? 2 : 0;
+			j += backwardHub <= forwardHub ? 2 : 0;
+		}
+		return best;
+	}
+
+	@Override
+	public int[] path(int source, int destination) {
+		return hierarchy.path(source, destination);
+	}
+
+	/**
+	 * @return the number of bytes taken by the labels and the contraction hierarchy
+	 */
+	@Override
+	public long sizeInBytes() {
+		return (long) Integer.BYTES * (forwardOffsets.length + forwardLabels.length
+				+ backwardOffsets.length + backwardLabels.length) + hierarchy.sizeInBytes();
+	}
+
+	/**
+	 * @return the average number of hubs of a forward or backward label
+	 */
+	double averageLabelSize() {
+		return (forwardLabels.length + backwardLabels.length) / (4.0 * (forwardOffsets.length - 1));
+	}
+
+	/**
+	 * Builds one label at a time from the labels of the neighbors one level up in the hierarchy.
+	 */
+	private static final class LabelBuilder {
+		// The tentative travel time of each hub, valid for the hubs in the touched list only
+		final long[] travelTimes;
+		final boolean[] touched;
+		int[] touchedHubs = new int[64];
+		int touchedCount;
+		// The rank of the intersection being labeled
+		int rank;
+
+		LabelBuilder(int size) {
+			travelTimes = new long[size];
+			touched = new boolean[size];
+		}
+
+		/**
+		 * Starts the label of the intersection of a rank with the intersection itself as a hub.
+		 */
+		void start(int rank) {
+			this.rank = rank;
+			touchedCount = 0;
+			reach(rank, 0);
+		}
+
+		/**
+		 * Adds the hubs of the label of a neighbor at a travel time.
+		 */
+		void extend(int[] neighborLabel, int travelTime) {
+			for (int i = 0; i < neighborLabel.length; i += 2) {
+				reach(neighborLabel[i], (long) travelTime + neighborLabel[i + 1]);
+			}
+		}
+
+		private void reach(int hub, long travelTime) {
+			if (!touched[hub]) {
+				touched[hub] = true;
+				travelTimes[hub] = travelTime;
+				if (touchedCount == touchedHubs.length) {
+					touchedHubs = Arrays.copyOf(touchedHubs, 2 * touchedCount);
+				}
+				touchedHubs[touchedCount++] = hub;
+			} else if (travelTime < travelTimes[hub]) {
+				travelTimes[hub] = travelTime;
+			}
+		}
+
+		/**
+		 * Prunes the hubs that are reached faster through another hub and returns the label as
+		 * (hub, travel time) pairs in increasing hub order.
+		 *
+		 * @param oppositeLabels the labels of the other direction, complete for the hubs of this label
+		 * @param byRank the intersection of each rank
+		 * @param backward true if this is a backward label
+		 */
+		int[] finish(int[][] oppositeLabels, int[] byRank, boolean backward) {
+			Arrays.sort(touchedHubs, 0, touchedCount);
+			int[] label = new int[2 * touchedCount];
+			int length = 0;
+			for (int i = 0; i < touchedCount; i++) {
+				int hub = touchedHubs[i];
+				long travelTime = travelTimes[hub];
+				if (hub == rank || !isBeaten(oppositeLabels[byRank[hub]], travelTime)) {
+					if (travelTime > Integer.MAX_VALUE) {
+						throw new IllegalArgumentException("Travel time " + travelTime + " does not fit in a hub label");
+					}
+					label[length++] = hub;
+					label[length++] = (int) travelTime;
+				}
+			}
+			for (int i = 0; i < touchedCount; i++) {
+				touched[touchedHubs[i]] = false;
+			}
+			return Arrays.copyOf(label, length);
+		}
+
+		/**
+		 * Checks whether the travel time between the intersection being labeled and a hub can be beaten
+		 * through another hub of the label and the opposite label of the hub.
+		 */
+		private boolean isBeaten(int[] hubOppositeLabel, long travelTime) {
+			for (int i = 0; i < hubOppositeLabel.length; i += 2) {
+				int other = hubOppositeLabel[i];
+				if (touched[other] && travelTimes[other] + hubOppositeLabel[i + 1] < travelTime) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+}
@@ -5,6 +5,8 @@ import java.awt.geom.Point2D;
 
 /**
  * The Intersection class defines a vertex that connects different streets.
+ * The simulator shares its intersections with the fleet manager, so the roads of an intersection
+ * are only read outside of the COMSETsystem package, through the getters and roadTo.
  * @author Robert van Barlingen and Jeroen Schols
  * mail Bobby.van.Barlingen@gmail.com
  */
@@ -13,24 +15,32 @@ public class Intersection implements Comparable<Intersection> {
 	final public double longitude, latitude;
 	
 	// projected 2D coordinates
-	final public Point2D xy; 
+	final Point2D xy;
 	
 	// a unique id
 	final public long id;
 	
 	// the index used to look up the shortest travel time path table (pathTable) in CityMap
-	public int pathTableIndex; 
+	int pathTableIndex;
 	
 	// the vertex at which the intersection is located
-	public Vertex vertex; 
+	Vertex vertex;
 
 	// The roads that end at this intersection, i.e., the roads for which this intersection is
 	// the downstream intersection, also called incoming roads.
-	public Map<Intersection, Road> roadsMapTo = new TreeMap<>();
+	Map<Intersection, Road> roadsMapTo = new TreeMap<>();
 
 	// The roads that start at this intersection, i.e., the roads for which this intersection is
 	// the upstream intersection, also called outgoing roads.
-	public Map<Intersection, Road> roadsMapFrom = new TreeMap<>();
+	Map<Intersection, Road> roadsMapFrom = new TreeMap<>();
+
+	// Read-only sets of the values of roadsMapFrom and roadsMapTo, built once by the CityMap when the roads
+	// are final, or null before that.
+	Set<Road> roadsFrom, roadsTo;
+
+	// The outgoing roads of all the intersections of the CityMap this intersection belongs to, or null
+	// before the map is built.
+	RoadAdjacency roadAdjacency;
 
 	/**
 	 * Constructor of Intersection.
@@ -40,7 +50,7 @@ public class Intersection implements Comparable<Intersection> {
 		this.longitude = vertex.longitude;
 		this.latitude = vertex.latitude;
 		this.id = vertex.id;
-		this.xy = vertex.xy;
+		this.xy = new Point2D.Double(vertex.getX(), vertex.getY());
 		this.vertex =vertex;
 	}
 	
@@ -84,30 +94,73 @@ public class Intersection implements Comparable<Intersection> {
 				"this and i");
 	}
 
+	/**
+	 * Gets the road from this intersection to the specified intersection, as roadTo does, but by a scan of
+	 * the few outgoing roads in the adjacency of the map rather than by TreeMap lookups once the
+	 * intersection belongs to a CityMap. As with roadTo, the other intersection is matched by id and may
+	 * belong to a copy of the map.
+	 *
+	 * @param i The intersection that the road goes to
+	 * @return The road from this to the other intersection, or null if there is none
+	 */
+	Road outgoingRoad(Intersection i) {
+		if (roadAdjacency != null) {
+			return roadAdjacency.road(pathTableIndex, i.id);
+		}
+		return roadsMapFrom.get(i);
+	}
+
+	/**
+	 * @return the smallest current travel time of the roads from this intersection, or Long.MAX_VALUE if
+	 * there is none
+	 */
+	long minOutgoingTravelTime() {
+		long min = Long.MAX_VALUE;
+		if (roadAdjacency != null) {
+			for (int road = roadAdjacency.firstRoad[pathTableIndex]; road < roadAdjacency.firstRoad[pathTableIndex + 1]; road++) {
+				min = Math.min(min, roadAdjacency.roads[road].travelTime);
+			}
+		} else {
+			for (Road road : roadsMapFrom.values()) {
+				min = Math.min(min, road.travelTime);
+			}
+		}
+		return min;
+	}
+
 	/**
 	 * Return a set of all the roads going from this intersection to some
-	 * other intersection
+	 * other intersection. Once the intersection belongs to a CityMap, the set is read-only and the same
+	 * one is returned by every call.
 	 * 
 	 * @return a set of roads from this intersection to other intersections 
 	 */
 	public Set<Road> getRoadsFrom () {
+		if (roadsFrom != null) {
+			return roadsFrom;
+		}
 		return new TreeSet<>(roadsMapFrom.values());
 	}
 
 	/**
 	 * Return a set of all the roads going from some intersection to this
-	 * intersection
+	 * intersection. Once the intersection belongs to a CityMap, the set is read-only and the same one is
+	 * returned by every call.
 	 * 
 	 * @return a set of roads going to this intersection 
 	 */
 	public Set<Road> getRoadsTo () {
+		if (roadsTo != null) {
+			return roadsTo;
+		}
 		return new TreeSet<>(roadsMapTo.values());
 	}
 
 	/**
 	 * Return a set of Intersections that you can directly go to from 
 	 * this intersection, i.e. there exists a road from this intersection 
-	 * to every intersection in the returned set
+	 * to every intersection in the returned set. Once the intersection belongs to a CityMap, the set is
+	 * read-only.
 	 * 
 	 * @return a set of intersections that you can go to from this intersection
 	 */
@@ -118,7 +171,8 @@ public class Intersection implements Comparable<Intersection> {
 	/**
 	 * Return a set of Intersections from which you can directly go to 
 	 * this intersection, i.e. there exists a road from every intersection
-	 * in the returned set to this intersection
+	 * in the returned set to this intersection. Once the intersection belongs to a CityMap, the set is
+	 * read-only.
 	 * 
 	 * @return a set of intersections from which you can directly go to 
 	 *          this intersection
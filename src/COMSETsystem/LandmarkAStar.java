@@ -0,0 +1,250 @@
+package COMSETsystem;
+
+import java.util.Arrays;
+
+/**
+ * A LandmarkAStar is a RoutingBackend that answers point-to-point queries with A* search guided by landmarks
+ * (ALT), using memory linear in the size of the map.
+ *
+ * Preprocessing picks a few landmark intersections spread over the map and stores the travel times from
+ * every landmark to every intersection and back. By the triangle inequality, travel time(v, t) is at least
+ * travel time(L, t) - travel time(L, v) and travel time(v, L) - travel time(t, L) for any landmark L, and
+ * the largest of these bounds is the A* estimate of the remaining travel time from v. The estimate never
+ * overestimates and never decreases by more than the travel time of a road, so the search settles every
+ * intersection at its shortest travel time and the results are exact. Where a landmark shows that t cannot
+ * be reached from an intersection, the intersection is not searched at all.
+ *
+ * Each thread keeps its own search buffers, so queries allocate nothing besides returned paths. Where
+ * several shortest paths exist, the path may differ from that of the path table.
+ */
+final class LandmarkAStar implements RoutingBackend {
+
+	// Stored travel time of an intersection that cannot be reached
+	private static final int UNREACHABLE = Integer.MAX_VALUE;
+
+	// Estimate of an intersection from which the destination cannot be reached
+	private static final long PRUNED = -1;
+
+	// The roads of the map
+	private final RoadGraph graph;
+
+	// The number of intersections
+	private final int size;
+
+	// The landmarks by path table index
+	private final int[] landmarks;
+
+	// Travel times from each landmark to each intersection and back; the travel times of intersection v
+	// are at v * landmarks.length to (v + 1) * landmarks.length - 1 so that an estimate reads them together
+	private final int[] fromLandmarks;
+	private final int[] toLandmarks;
+
+	// Per-thread search state
+	private final ThreadLocal<Query> queries;
+
+	/**
+	 * Picks the landmarks and computes their travel times. The first landmark is the intersection farthest
+	 * from intersection 0, and each next one the intersection farthest from the landmarks picked so far,
+	 * counting the travel times in both directions, so that the landmarks lie at the edges of the map.
+	 *
+	 * @param graph the roads of the map; later changes of its travel times need a new LandmarkAStar
+	 * @param landmarkCount the number of landmarks; at most the number of intersections are used
+	 * @throws IllegalArgumentException if landmarkCount is not positive or a travel time does not fit in an int
+	 */
+	LandmarkAStar(RoadGraph graph, int landmarkCount) {
+		if (landmarkCount < 1) {
+			throw new IllegalArgumentException("The number of landmarks must be positive");
+		}
+		this.graph = graph;
+		this.size = graph.size;
+		int k = Math.min(landmarkCount, size);
+		this.landmarks = new int[k];
+		this.fromLandmarks = new int[k * size];
+		this.toLandmarks = new int[k * size];
+
+		DijkstraKernel forward = new DijkstraKernel(graph);
+		DijkstraKernel backward = new DijkstraKernel(graph.reversed());
+		// the smallest round trip travel time between each intersection and the landmarks picked so far
+		long[] closest = new long[size];
+		forward.run(0);
+		for (int v = 0; v < size; v++) {
+			closest[v] = forward.travelTime(v) == Long.MAX_VALUE ? -1 : forward.travelTime(v);
+		}
+		for (int i = 0; i < k; i++) {
+			int landmark = farthest(closest);
+			landmarks[i] = landmark;
+			if (i == 0) {
+				// from now on, intersections without a round trip to any landmark are the farthest
+				Arrays.fill(closest, Long.MAX_VALUE);
+			}
+			forward.run(landmark);
+			backward.run(landmark);
+			for (int v = 0; v < size; v++) {
+				long from = forward.travelTime(v);
+				long to = backward.travelTime(v);
+				fromLandmarks[v * k + i] = toStored(from);
+				toLandmarks[v * k + i] = toStored(to);
+				if (from != Long.MAX_VALUE && to != Long.MAX_VALUE) {
+					closest[v] = Math.min(closest[v], from + to);
+				}
+			}
+			closest[landmark] = -1;
+		}
+		queries = ThreadLocal.withInitial(Query::new);
+	}
+
+	/**
+	 * @return the intersection with the largest value, the first one on ties
+	 */
+	private static int farthest(long[] closest) {
+		int farthest = 0;
+		for (int v = 1; v < closest.length; v++) {
+			if (closest[v] > closest[farthest]) {
+				farthest = v;
+			}
+		}
+		return farthest;
+	}
+
+	private static int toStored(long travelTime) {
+		if (travelTime == Long.MAX_VALUE) {
+			return UNREACHABLE;
+		}
+		if (travelTime >= UNREACHABLE) {
+			throw new IllegalArgumentException("Travel time " + travelTime + " does not fit in a landmark table");
+		}
+		return (int) travelTime;
+	}
+
+	@Override
+	public long travelTime(int source, int destination) {
+		Query query = queries.get();
+		query.run(source, destination);
+		return query.settledStamp[destination] == query.stamp ? query.travelTimes[destination] : Long.MAX_VALUE;
+	}
+
+	@Override
+	public int[] path(int source, int destination) {
+		Query query = queries.get();
+		query.run(source, destination);
+		if (query.settledStamp[destination] != query.stamp) {
+			return null;
+		}
+		int length = 1;
+		for (int v = destination; v != source; v = query.parents[v]) {
+			length++;
+		}
+		int[] path = new int[length];
+		for (int v = destination; length > 0; v = query.parents[v]) {
+			path[--length] = v;
+		}
+		return path;
+	}
+
+	/**
+	 * @return the number of bytes taken by the landmark travel times
+	 */
+	@Override
+	public long sizeInBytes() {
+		return (long) Integer.BYTES * (landmarks.length + fromLandmarks.length + toLandmarks.length);
+	}
+
+	/**
+	 * @return the number of intersections settled by the last query of the calling thread
+	 */
+	int lastSettledCount() {
+		return queries.get().settledCount;
+	}
+
+	/**
+	 * @return the number of landmarks
+	 */
+	int landmarkCount() {
+		return landmarks.length;
+	}
+
+	/**
+	 * The state of an A* search, reused by all queries of one thread.
+	 */
+	private final class Query {
+		final long[] travelTimes = new long[size];
+		final int[] parents = new int[size];
+		final long[] estimates = new long[size];
+		// an intersection has been reached, or settled, in the current query iff its stamp equals the query
+		// number
+		final int[] reachedStamp = new int[size];
+		final int[] settledStamp = new int[size];
+		int stamp = 0;
+		final LongHeap queue = new LongHeap();
+		int settledCount;
+
+		void run(int source, int destination) {
+			if (++stamp == 0) {
+				Arrays.fill(reachedStamp, 0);
+				Arrays.fill(settledStamp, 0);
+				stamp = 1;
+			}
+			settledCount = 0;
+			queue.clear();
+			reach(source, 0, -1, destination);
+			while (!queue.isEmpty()) {
+				int v = queue.pop();
+				if (settledStamp[v] == stamp) {
+					continue; // stale entry
+				}
+				settledStamp[v] = stamp;
+				settledCount++;
+				if (v == destination) {
+					return;
+				}
+				long travelTime = travelTimes[v];
+				for (int road = graph.firstRoad[v]; road < graph.firstRoad[v + 1]; road++) {
+					reach(graph.roadTo[road], travelTime + graph.roadTravelTime[road], v, destination);
+				}
+			}
+		}
+
+		private void reach(int v, long travelTime, int parent, int destination) {
+			if (reachedStamp[v] != stamp) {
+				reachedStamp[v] = stamp;
+				estimates[v] = estimate(v, destination);
+				travelTimes[v] = Long.MAX_VALUE;
+			}
+			if (estimates[v] == PRUNED || settledStamp[v] == stamp || travelTime >= travelTimes[v]) {
+				return;
+			}
+			travelTimes[v] = travelTime;
+			parents[v] = parent;
+			queue.push(travelTime + estimates[v], v);
+		}
+
+		/**
+		 * @return a lower bound of the travel time from v to destination, or PRUNED if destination cannot be
+		 * reached from v
+		 */
+		private long estimate(int v, int destination) {
+			int k = landmarks.length;
+			long estimate = 0;
+			for (int i = 0; i < k; i++) {
+				int fromToV = fromLandmarks[v * k + i];
+				int fromToDestination = fromLandmarks[destination * k + i];
+				if (fromToDestination == UNREACHABLE) {
+					if (fromToV != UNREACHABLE) {
+						return PRUNED; // the landmark reaches v but not destination
+					}
+				} else if (fromToV != UNREACHABLE) {
+					estimate = Math.max(estimate, fromToDestination - fromToV);
+				}
+				int toFromDestination = toLandmarks[destination * k + i];
+				if (toFromDestination != UNREACHABLE) {
+					int toFromV = toLandmarks[v * k + i];
+					if (toFromV == UNREACHABLE) {
+						return PRUNED; // destination reaches the landmark but v does not
+					}
+					estimate = Math.max(estimate, toFromV - toFromDestination);
+				}
+			}
+			return estimate;
+		}
+	}
+}
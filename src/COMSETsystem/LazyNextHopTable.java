@@ -0,0 +1,161 @@
+package COMSETsystem;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The next hops of a NextHopTable, computed for a destination the first time a next hop towards it is
+ * queried, and kept in a cache bounded by a memory budget. When the cache is full the least recently used
+ * row is evicted and computed again if it is queried later.
+ *
+ * An agent asks for the next hops towards the same destination at every intersection of its route, so a
+ * route costs one Dijkstra on the reversed roads instead of routing backend queries at every intersection.
+ * The next hops are those of a NextHopTable. Rows are computed while holding the lock of the table, so
+ * concurrent queries are safe but rows are computed one at a time.
+ */
+final class LazyNextHopTable {
+
+	// Estimated bytes of the objects that hold a cached row besides its two arrays
+	private static final long ROW_OVERHEAD_BYTES = 96;
+
+	// The roads of the map
+	private final RoadGraph graph;
+
+	// The reversed roads of the map, with the current travel times
+	private final RoadGraph reversed;
+
+	// Computes the rows on cache misses
+	private final DijkstraKernel kernel;
+
+	// The maximum number of cached rows
+	private final int capacity;
+
+	// The cached rows by destination in access order
+	private final LinkedHashMap<Integer, Row> rows;
+
+	/**
+	 * The next hops towards a destination, and the travel times to it that tell which rows a change of travel
+	 * time affects.
+	 */
+	private static final class Row {
+
+		// The slot of the next hop of each intersection in its outgoing roads; see NextHopTable
+		final byte[] slots;
+
+		// The travel time from each intersection to the destination, as stored by a PathTable
+		final int[] travelTimes;
+
+		Row(int size) {
+			slots = new byte[size];
+			travelTimes = new int[size];
+			Arrays.fill(slots, NextHopTable.NO_SLOT);
+			Arrays.fill(travelTimes, PathTable.UNREACHABLE);
+		}
+	}
+
+	/**
+	 * Creates an empty table.
+	 *
+	 * @param graph the roads of the map
+	 * @param budgetInBytes the memory budget of the cached rows; at least one row is always cached
+	 * @throws IllegalArgumentException if an intersection has more than NextHopTable.MAX_OUT_DEGREE outgoing
+	 * roads
+	 */
+	LazyNextHopTable(RoadGraph graph, long budgetInBytes) {
+		NextHopTable.checkOutDegrees(graph);
+		this.graph = graph;
+		this.reversed = graph.reversed();
+		this.kernel = new DijkstraKernel(reversed);
+		this.capacity = (int) Math.max(1, Math.min(graph.size, budgetInBytes / rowSizeInBytes(graph.size)));
+		this.rows = new LinkedHashMap<Integer, Row>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, Row> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+
+	/**
+	 * @param size the number of intersections
+	 * @return the estimated number of bytes taken by one cached row
+	 */
+	static long rowSizeInBytes(int size) {
+		return (long) size * (1 + Integer.BYTES) + ROW_OVERHEAD_BYTES;
+	}
+
+	/**
+	 * Gets the row of a destination, computing it on a cache miss.
+	 */
+	private Row row(int destination) {
+		Row row = rows.get(destination);
+		if (row != null) {
+			return row;
+		}
+		row = new Row(graph.size);
+		kernel.run(destination);
+		NextHopTable.storeRow(graph, destination, kernel, row.slots);
+		for (int v = 0; v < graph.size; v++) {
+			long travelTime = kernel.travelTime(v);
+			if (travelTime != Long.MAX_VALUE) {
+				row.travelTimes[v] = PathTable.toStoredTravelTime(travelTime);
+			}
+		}
+		rows.put(destination, row);
+		return row;
+	}
+
+	/**
+	 * Gets the next intersection on a shortest travel-time path.
+	 *
+	 * @param current path table index of the current intersection
+	 * @param destination path table index of the destination
+	 * @return the path table index of the next intersection, or -1 if current is the destination or cannot
+	 * reach it
+	 */
+	synchronized int nextHop(int current, int destination) {
+		return NextHopTable.nextHop(graph, row(destination).slots, current);
+	}
+
+	/**
+	 * Changes the travel time of a road and drops the cached rows that the change can affect. They are
+	 * computed again when they are queried next. See NextHopTable.isRowAffected.
+	 *
+	 * @param from path table index of the start intersection of the road
+	 * @param to path table index of the end intersection of the road
+	 * @param oldTravelTime the travel time of the road before the change
+	 * @param newTravelTime the travel time of the road after the change
+	 * @return the number of dropped rows
+	 */
+	synchronized int setTravelTime(int from, int to, long oldTravelTime, long newTravelTime) {
+		reversed.setTravelTime(to, from, (int) newTravelTime);
+		int removed = 0;
+		Iterator<Row> iterator = rows.values().iterator();
+		while (iterator.hasNext()) {
+			Row row = iterator.next();
+			// the road is reversed in the search from the destination
+			if (PathTable.isRowAffected(PathTable.fromStoredTravelTime(row.travelTimes[to]),
+					PathTable.fromStoredTravelTime(row.travelTimes[from]), NextHopTable.nextHop(graph, row.slots, from),
+					to, oldTravelTime, newTravelTime)) {
+				iterator.remove();
+				removed++;
+			}
+		}
+		return removed;
+	}
+
+	/**
+	 * @return the number of bytes taken by the cached rows
+	 */
+	synchronized long sizeInBytes() {
+		return rows.size() * rowSizeInBytes(graph.size);
+	}
+
+	/**
+	 * @return the maximum number of cached rows
+	 */
+	int capacity() {
+		return capacity;
+	}
+}
@@ -0,0 +1,218 @@
+package COMSETsystem;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A PathTable that computes the row of a source, i.e., the one-to-all shortest travel times from the source,
+ * the first time the source is queried, and keeps the rows in a cache bounded by a memory budget. When the
+ * cache is full the least recently used row is evicted and computed again if it is queried later.
+ *
+ * Simulations usually query travel times from a small part of the intersections only, so this allows maps
+ * far larger than a dense table, at the cost of one Dijkstra per cache miss. Rows are computed while
+ * holding the lock of the table, so concurrent queries are safe but rows are computed one at a time.
+ */
+final class LazyPathTable extends PathTable {
+
+	/**
+	 * Computes the row of a source by calling set(source, destination, travelTime, predecessor) on a table
+	 * for every destination reachable from the source.
+	 */
+	interface RowComputer {
+		void computeRow(int source, PathTable table);
+	}
+
+	// Estimated bytes of the objects that hold a cached row besides its two arrays
+	private static final long ROW_OVERHEAD_BYTES = 96;
+
+	// Computes the rows on cache misses
+	private final RowComputer rowComputer;
+
+	// The maximum number of cached rows
+	private final int capacity;
+
+	// The cached rows by source in access order; a row holds the travel times followed by the predecessors
+	private final LinkedHashMap<Integer, int[]> rows;
+
+	// The row being computed by rowComputer and its source
+	private int[] computingRow;
+	private int computingSource = -1;
+
+	// Cache statistics
+	private long hits = 0;
+	private long misses = 0;
+	private long evictions = 0;
+
+	/**
+	 * Creates an empty table.
+	 *
+	 * @param size the number of intersections
+	 * @param budgetInBytes the memory budget of the cached rows; at least one row is always cached
+	 * @param rowComputer computes the rows on cache misses
+	 */
+	LazyPathTable(int size, long budgetInBytes, RowComputer rowComputer) {
+		super(size);
+		this.rowComputer = rowComputer;
+		this.capacity = (int) Math.max(1, Math.min(size, budgetInBytes / rowSizeInBytes(size)));
+		this.rows = new LinkedHashMap<Integer, int[]>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, int[]> eldest) {
+				if (size() > capacity) {
+					evictions++;
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * @param size the number of intersections
+	 * @return the estimated number of bytes taken by one cached row
+	 */
+	static long rowSizeInBytes(int size) {
+		return 2L * size * Integer.BYTES + ROW_OVERHEAD_BYTES;
+	}
+
+	/**
+	 * Gets the row of a source, computing it on a cache miss.
+	 *
+	 * @param source path table index of the source
+	 * @return the travel times followed by the predecessors of the row
+	 */
+	private int[] row(int source) {
+		int[] row = rows.get(source);
+		if (row != null) {
+			hits++;
+			return row;
+		}
+		misses++;
+		row = new int[2 * size];
+		Arrays.fill(row, UNREACHABLE);
+		computingRow = row;
+		computingSource = source;
+		try {
+			rowComputer.computeRow(source, this);
+		} finally {
+			computingRow = null;
+			computingSource = -1;
+		}
+		rows.put(source, row);
+		return row;
+	}
+
+	@Override
+	public synchronized long travelTime(int source, int destination) {
+		return fromStoredTravelTime(row(source)[destination]);
+	}
+
+	/**
+	 * Gets the travel times from the row of the source, looking the row up in the cache only once.
+	 */
+	@Override
+	public synchronized void travelTimes(int source, int[] destinations, long[] travelTimes) {
+		int[] row = row(source);
+		for (int i = 0; i < destinations.length; i++) {
+			travelTimes[i] = fromStoredTravelTime(row[destinations[i]]);
+		}
+	}
+
+	@Override
+	synchronized int predecessor(int source, int destination) {
+		return row(source)[size + destination];
+	}
+
+	/**
+	 * Gets the path from the row of the source, looking the row up in the cache only once.
+	 */
+	@Override
+	public synchronized int[] path(int source, int destination) {
+		int[] row = row(source);
+		if (row[size + destination] == -1) {
+			return null;
+		}
+		int length = 1;
+		for (int current = destination; current != source; current = row[size + current]) {
+			length++;
+		}
+		int[] path = new int[length];
+		for (int current = destination; length > 0; current = row[size + current]) {
+			path[--length] = current;
+		}
+		return path;
+	}
+
+	/**
+	 * Sets an entry of the row being computed. Only rowComputer may call this method.
+	 */
+	@Override
+	void set(int source, int destination, long travelTime, int predecessor) {
+		if (source != computingSource) {
+			throw new IllegalStateException("Row " + source + " is not being computed");
+		}
+		computingRow[destination] = toStoredTravelTime(travelTime);
+		computingRow[size + destination] = predecessor;
+	}
+
+	/**
+	 * Drops the cached rows that can change when the travel time of a road changes. They are computed again
+	 * when they are queried next. See PathTable.isRowAffected.
+	 *
+	 * @param from path table index of the start intersection of the road
+	 * @param to path table index of the end intersection of the road
+	 * @param oldTravelTime the travel time of the road before the change
+	 * @param newTravelTime the travel time of the road after the change
+	 * @return the number of dropped rows
+	 */
+	synchronized int removeRowsAffectedBy(int from, int to, long oldTravelTime, long newTravelTime) {
+		int removed = 0;
+		Iterator<int[]> iterator = rows.values().iterator();
+		while (iterator.hasNext()) {
+			int[] row = iterator.next();
+			if (isRowAffected(fromStoredTravelTime(row[from]), fromStoredTravelTime(row[to]), row[size + to], from,
+					oldTravelTime, newTravelTime)) {
+				iterator.remove();
+				removed++;
+			}
+		}
+		return removed;
+	}
+
+	/**
+	 * @return the number of bytes taken by the cached rows
+	 */
+	@Override
+	public synchronized long sizeInBytes() {
+		return rows.size() * rowSizeInBytes(size);
+	}
+
+	/**
+	 * @return the maximum number of cached rows
+	 */
+	int capacity() {
+		return capacity;
+	}
+
+	/**
+	 * @return the number of queries answered from a cached row
+	 */
+	synchronized long hits() {
+		return hits;
+	}
+
+	/**
+	 * @return the number of queries that computed a row
+	 */
+	synchronized long misses() {
+		return misses;
+	}
+
+	/**
+	 * @return the number of rows evicted from the cache
+	 */
+	synchronized long evictions() {
+		return evictions;
+	}
+}
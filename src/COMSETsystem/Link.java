@@ -8,9 +8,9 @@ import java.awt.geom.Point2D;
 public class Link implements Comparable<Link> {
 
 	// The start (upstream) vertex of the link
-	public Vertex from;
+	public final Vertex from;
 	// The end (downstream) vertex of the link
-	public Vertex to;
+	public final Vertex to;
 	// length of the link segment in meters
 	public final double length;
 	// travel time of the link segment in seconds
@@ -20,15 +20,15 @@ public class Link implements Comparable<Link> {
 	// a unique id
 	public final long id;
 	// reference to a Road object that contains this link
-	public Road road;
+	Road road;
 	// the amount of time it takes to travel from the start of the road to the start vertex of this link 
-	public long beginTime = -1;
+	long beginTime = -1;
 
 	// min and max coordinates of the link
-	public double minX;
-	public double minY;
-	public double maxX;
-	public double maxY;
+	public final double minX;
+	public final double minY;
+	public final double maxX;
+	public final double maxY;
 	
 	// an ID counter to get a unique id
 	private static long maxId = 0;
@@ -79,6 +79,21 @@ public class Link implements Comparable<Link> {
 		maxY = aLink.maxY;
 	}
 
+	/**
+	 * @return the road that contains this link, or null if the link is not part of a road
+	 */
+	public Road getRoad() {
+		return road;
+	}
+
+	/**
+	 * @return the amount of time it takes to travel from the start of the road to the start vertex of
+	 * this link, or -1 if the link is not part of a road
+	 */
+	public long getBeginTime() {
+		return beginTime;
+	}
+
 	/**
 	 * checks whether this is the same link as some specified link
 	 * 
@@ -0,0 +1,63 @@
+package COMSETsystem;
+
+import java.util.Arrays;
+
+/**
+ * A binary min-heap of (key, intersection) pairs packed into longs. Keys must be smaller than 2^31.
+ * Decreasing a key is done by pushing the intersection again and skipping stale entries on pop.
+ */
+final class LongHeap {
+	private long[] heap = new long[64];
+	private int count = 0;
+
+	boolean isEmpty() {
+		return count == 0;
+	}
+
+	void clear() {
+		count = 0;
+	}
+
+	void push(long key, int node) {
+		if (count == heap.length) {
+			heap = Arrays.copyOf(heap, 2 * count);
+		}
+		long entry = key << 32 | node;
+		int i = count++;
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (heap[parent] <= entry) {
+				break;
+			}
+			heap[i] = heap[parent];
+			i = parent;
+		}
+		heap[i] = entry;
+	}
+
+	long peekKey() {
+		return heap[0] >>> 32;
+	}
+
+	int pop() {
+		int node = (int) heap[0];
+		long last = heap[--count];
+		int i = 0;
+		while (true) {
+			int child = 2 * i + 1;
+			if (child >= count) {
+				break;
+			}
+			if (child + 1 < count && heap[child + 1] < heap[child]) {
+				child++;
+			}
+			if (last <= heap[child]) {
+				break;
+			}
+			heap[i] = heap[child];
+			i = child;
+		}
+		heap[i] = last;
+		return node;
+	}
+}
@@ -0,0 +1,80 @@
+package COMSETsystem;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A read-only PathTable memory-mapped from a file written by ArrayPathTable.writeTo. The table lives in the
+ * page cache rather than on the heap, so several simulations on one host that map the same file share it.
+ *
+ * A single mapping cannot exceed 2 GB, so each half of the table is mapped in chunks of a power-of-two
+ * number of rows.
+ */
+final class MappedPathTable extends PathTable {
+
+	// The maximum number of bytes of one mapped chunk
+	private static final long MAX_CHUNK_BYTES = 1L << 30;
+
+	// log2 of the number of rows per chunk
+	private final int rowsPerChunkShift;
+
+	// rows per chunk - 1
+	private final int rowMask;
+
+	// Chunks of the travel time rows
+	private final IntBuffer[] travelTimes;
+
+	// Chunks of the predecessor rows
+	private final IntBuffer[] predecessors;
+
+	/**
+	 * Maps a table from a file.
+	 *
+	 * @param channel the channel of the file
+	 * @param offset the position of the first travel time in the file
+	 * @param size the number of intersections
+	 * @throws IOException if the file cannot be mapped
+	 */
+	MappedPathTable(FileChannel channel, long offset, int size) throws IOException {
+		super(size);
+		int shift = 0;
+		while ((2L << shift) <= size && (2L << shift) * size * Integer.BYTES <= MAX_CHUNK_BYTES) {
+			shift++;
+		}
+		this.rowsPerChunkShift = shift;
+		this.rowMask = (1 << shift) - 1;
+		long tableBytes = (long) size * size * Integer.BYTES;
+		this.travelTimes = mapChunks(channel, offset, size);
+		this.predecessors = mapChunks(channel, offset + tableBytes, size);
+	}
+
+	private IntBuffer[] mapChunks(FileChannel channel, long offset, int size) throws IOException {
+		int rowsPerChunk = 1 << rowsPerChunkShift;
+		int chunks = (size + rowsPerChunk - 1) / rowsPerChunk;
+		IntBuffer[] buffers = new IntBuffer[chunks];
+		long rowBytes = (long) size * Integer.BYTES;
+		for (int chunk = 0; chunk < chunks; chunk++) {
+			int rows = Math.min(rowsPerChunk, size - chunk * rowsPerChunk);
+			buffers[chunk] = channel.map(FileChannel.MapMode.READ_ONLY, offset + chunk * rowsPerChunk * rowBytes, rows * rowBytes)
+					.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+		}
+		return buffers;
+	}
+
+	@Override
+	public long travelTime(int source, int destination) {
+		return fromStoredTravelTime(travelTimes[source >>> rowsPerChunkShift].get((source & rowMask) * size + destination));
+	}
+
+	@Override
+	int predecessor(int source, int destination) {
+		return predecessors[source >>> rowsPerChunkShift].get((source & rowMask) * size + destination);
+	}
+
+	@Override
+	void set(int source, int destination, long travelTime, int predecessor) {
+		throw new IllegalStateException("A memory-mapped path table is read-only; copy it to an ArrayPathTable to change it");
+	}
+}
@@ -0,0 +1,152 @@
+package COMSETsystem;
+
+import java.util.Arrays;
+
+/**
+ * A NextHopTable gives in O(1) the next intersection on a shortest travel-time path from any intersection
+ * to any destination, so that an agent can be navigated one intersection at a time without building a
+ * route.
+ *
+ * The row of a destination is computed by a Dijkstra from the destination on the reversed roads, so the
+ * next hops towards a destination form a single shortest path tree. Following the next hops from any
+ * intersection therefore gives the same path as asking again at every intersection on the way. The next
+ * hop of an intersection is stored as a one-byte slot in its outgoing roads, so the table takes one byte
+ * per intersection pair.
+ */
+final class NextHopTable {
+
+	// Stored slot of the destination itself and of intersections that cannot reach the destination
+	static final byte NO_SLOT = (byte) 0xFF;
+
+	// The maximum number of outgoing roads of an intersection
+	static final int MAX_OUT_DEGREE = 0xFF;
+
+	// The roads of the map
+	private final RoadGraph graph;
+
+	// Slot of the next hop of each intersection in its outgoing roads, row by destination
+	private final byte[][] slots;
+
+	/**
+	 * Creates a table with no next hops.
+	 *
+	 * @param graph the roads of the map
+	 * @throws IllegalArgumentException if an intersection has more than MAX_OUT_DEGREE outgoing roads
+	 */
+	NextHopTable(RoadGraph graph) {
+		checkOutDegrees(graph);
+		this.graph = graph;
+		this.slots = new byte[graph.size][];
+		for (int destination = 0; destination < graph.size; destination++) {
+			slots[destination] = new byte[graph.size];
+			Arrays.fill(slots[destination], NO_SLOT);
+		}
+	}
+
+	/**
+	 * @param graph the roads of a map
+	 * @throws IllegalArgumentException if an intersection has more than MAX_OUT_DEGREE outgoing roads
+	 */
+	static void checkOutDegrees(RoadGraph graph) {
+		for (int v = 0; v < graph.size; v++) {
+			if (graph.firstRoad[v + 1] - graph.firstRoad[v] > MAX_OUT_DEGREE) {
+				throw new IllegalArgumentException("Intersection " + v + " has more than " + MAX_OUT_DEGREE
+						+ " outgoing roads for a next hop table");
+			}
+		}
+	}
+
+	/**
+	 * Stores the row of a destination from a search on the reversed roads.
+	 *
+	 * @param destination path table index of the destination
+	 * @param reversedKernel a kernel on the reversed graph whose last search started at destination
+	 */
+	void storeRow(int destination, DijkstraKernel reversedKernel) {
+		Arrays.fill(slots[destination], NO_SLOT);
+		storeRow(graph, destination, reversedKernel, slots[destination]);
+	}
+
+	/**
+	 * Stores the slots of the next hops towards a destination from a search on the reversed roads.
+	 *
+	 * @param graph the roads of the map
+	 * @param destination path table index of the destination
+	 * @param reversedKernel a kernel on the reversed graph whose last search started at destination
+	 * @param row receives the slot of the next hop of each intersection that reaches the destination; the
+	 * other entries are left unchanged
+	 */
+	static void storeRow(RoadGraph graph, int destination, DijkstraKernel reversedKernel, byte[] row) {
+		for (int v = 0; v < graph.size; v++) {
+			int next = reversedKernel.predecessor(v);
+			if (next == -1 || v == destination) {
+				continue;
+			}
+			for (int road = graph.firstRoad[v]; road < graph.firstRoad[v + 1]; road++) {
+				if (graph.roadTo[road] == next) {
+					row[v] = (byte) (road - graph.firstRoad[v]);
+					break;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Checks whether changing the travel time of a road can change the row of a destination. This is
+	 * PathTable.isRowAffected on the reversed roads: if the road gets slower, only the rows in which the
+	 * road is a next hop change; if it gets faster, only the rows in which the road becomes part of a
+	 * shortest path, ties included, change.
+	 *
+	 * @param destination path table index of the destination
+	 * @param from path table index of the start intersection of the road
+	 * @param to path table index of the end intersection of the road
+	 * @param oldTravelTime the travel time of the road before the change
+	 * @param newTravelTime the travel time of the road after the change
+	 * @param travelTimes the shortest travel times before the change
+	 * @return true if the row must be recomputed
+	 */
+	boolean isRowAffected(int destination, int from, int to, long oldTravelTime, long newTravelTime,
+			RoutingBackend travelTimes) {
+		if (newTravelTime > oldTravelTime) {
+			return nextHop(from, destination) == to;
+		}
+		long toTravelTime = travelTimes.travelTime(to, destination);
+		return toTravelTime != Long.MAX_VALUE && toTravelTime + newTravelTime <= travelTimes.travelTime(from, destination);
+	}
+
+	/**
+	 * Gets the next intersection on a shortest travel-time path.
+	 *
+	 * @param current path table index of the current intersection
+	 * @param destination path table index of the destination
+	 * @return the path table index of the next intersection, or -1 if current is the destination or cannot
+	 * reach it
+	 */
+	int nextHop(int current, int destination) {
+		return nextHop(graph, slots[destination], current);
+	}
+
+	/**
+	 * Gets the next intersection stored in a row of slots.
+	 *
+	 * @param graph the roads of the map
+	 * @param row the slots of the next hops towards a destination
+	 * @param current path table index of the current intersection
+	 * @return the path table index of the next intersection, or -1 if current is the destination or cannot
+	 * reach it
+	 */
+	static int nextHop(RoadGraph graph, byte[] row, int current) {
+		byte slot = row[current];
+		if (slot == NO_SLOT) {
+			return -1;
+		}
+		return graph.roadTo[graph.firstRoad[current] + (slot & 0xFF)];
+	}
+
+	/**
+	 * @return the number of bytes taken by the table
+	 */
+	long sizeInBytes() {
+		return (long) graph.size * graph.size;
+	}
+}
@@ -0,0 +1,164 @@
+package COMSETsystem;
+
+/**
+ * The PathTable stores the all-pair shortest travel-time paths of a map. Rows and columns are indexed by the
+ * pathTableIndex of the intersections: the row of a source holds, for every destination, the shortest travel
+ * time from the source and the predecessor of the destination on the shortest path from the source, so that
+ * a path can be recovered by walking the predecessors backwards.
+ *
+ * See ArrayPathTable for a table stored on the heap and MappedPathTable for a table memory-mapped from a
+ * cache file.
+ */
+abstract class PathTable implements RoutingBackend {
+
+	// Travel time stored for a destination that cannot be reached from the source.
+	static final int UNREACHABLE = -1;
+
+	// The number of intersections, i.e., the number of rows and columns of the table.
+	final int size;
+
+	/**
+	 * @param size the number of intersections
+	 */
+	PathTable(int size) {
+		this.size = size;
+	}
+
+	/**
+	 * @return the number of intersections covered by the table
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Gets the shortest travel time between two intersections.
+	 *
+	 * @param source path table index of the source
+	 * @param destination path table index of the destination
+	 * @return the travel time in seconds, or Long.MAX_VALUE if destination is unreachable from source
+	 */
+	public abstract long travelTime(int source, int destination);
+
+	/**
+	 * Gets the predecessor of destination on the shortest path from source. The predecessor of the
+	 * source itself is the source.
+	 *
+	 * @param source path table index of the source
+	 * @param destination path table index of the destination
+	 * @return the path table index of the predecessor, or -1 if destination is unreachable from source
+	 */
+	abstract int predecessor(int source, int destination);
+
+	/**
+	 * Gets the shortest travel-time path between two intersections by walking the predecessors of the
+	 * destination backwards to the source.
+	 */
+	@Override
+	public int[] path(int source, int destination) {
+		if (predecessor(source, destination) == -1) {
+			return null;
+		}
+		int length = 1;
+		for (int current = destination; current != source; current = predecessor(source, current)) {
+			length++;
+		}
+		int[] path = new int[length];
+		for (int current = destination; length > 0; current = predecessor(source, current)) {
+			path[--length] = current;
+		}
+		return path;
+	}
+
+	/**
+	 * Sets the entry of a (source, destination) pair.
+	 *
+	 * @param source path table index of the source
+	 * @param destination path table index of the destination
+	 * @param travelTime the shortest travel time in seconds
+	 * @param predecessor path table index of the predecessor of destination
+	 * @throws IllegalArgumentException if the travel time does not fit in the table
+	 */
+	abstract void set(int source, int destination, long travelTime, int predecessor);
+
+	/**
+	 * Checks whether changing the travel time of a road can change the row of a source. If the road gets
+	 * slower, only the rows whose shortest path tree contains the road change. If it gets faster, only the
+	 * rows in which the road becomes part of a shortest path change; a tie counts as well, since Dijkstra
+	 * might then pick the road.
+	 *
+	 * @param source path table index of the source
+	 * @param from path table index of the start intersection of the road
+	 * @param to path table index of the end intersection of the road
+	 * @param oldTravelTime the travel time of the road before the change
+	 * @param newTravelTime the travel time of the road after the change
+	 * @return true if the row must be recomputed
+	 */
+	boolean isRowAffected(int source, int from, int to, long oldTravelTime, long newTravelTime) {
+		return isRowAffected(travelTime(source, from), travelTime(source, to), predecessor(source, to), from,
+				oldTravelTime, newTravelTime);
+	}
+
+	/**
+	 * Checks whether changing the travel time of a road can change a row, given the entries of the row at
+	 * the two ends of the road. See isRowAffected(int, int, int, long, long).
+	 *
+	 * @param fromTravelTime the travel time from the source to the start intersection of the road
+	 * @param toTravelTime the travel time from the source to the end intersection of the road
+	 * @param toPredecessor the predecessor of the end intersection of the road
+	 * @param from path table index of the start intersection of the road
+	 * @param oldTravelTime the travel time of the road before the change
+	 * @param newTravelTime the travel time of the road after the change
+	 * @return true if the row must be recomputed
+	 */
+	static boolean isRowAffected(long fromTravelTime, long toTravelTime, int toPredecessor, int from,
+			long oldTravelTime, long newTravelTime) {
+		if (newTravelTime > oldTravelTime) {
+			return toPredecessor == from;
+		}
+		return fromTravelTime != Long.MAX_VALUE && fromTravelTime + newTravelTime <= toTravelTime;
+	}
+
+	/**
+	 * Converts a travel time to the value stored in the table.
+	 *
+	 * @param travelTime a travel time in seconds
+	 * @return the stored value
+	 * @throws IllegalArgumentException if the travel time does not fit in the table
+	 */
+	static int toStoredTravelTime(long travelTime) {
+		if (travelTime < 0 || travelTime >= Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Travel time " + travelTime + " does not fit in the path table");
+		}
+		return (int) travelTime;
+	}
+
+	/**
+	 * Converts a value stored in the table to a travel time.
+	 *
+	 * @param storedTravelTime the stored value
+	 * @return the travel time in seconds, or Long.MAX_VALUE for an unreachable destination
+	 */
+	static long fromStoredTravelTime(int storedTravelTime) {
+		return storedTravelTime == UNREACHABLE ? Long.MAX_VALUE : storedTravelTime;
+	}
+
+	/**
+	 * @return the number of bytes taken by the table entries
+	 */
+	@Override
+	public long sizeInBytes() {
+		return (long) size * size * (Integer.BYTES + Integer.BYTES);
+	}
+
+	/**
+	 * Estimates the number of bytes that the same table takes when every entry is an object holding a long
+	 * travel time and an int predecessor, referenced from one list per row: a 24-byte object plus a 4-byte
+	 * compressed reference per entry, and about 32 bytes of list overhead per row.
+	 *
+	 * @return the estimated number of bytes of the object layout
+	 */
+	long objectLayoutSizeInBytes() {
+		return (long) size * size * (24 + 4) + (long) size * 32;
+	}
+}
@@ -0,0 +1,170 @@
+package COMSETsystem;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * The PathTableCache keeps computed path tables in a directory so that later runs on the same map can
+ * memory-map them instead of recomputing all pair travel times.
+ *
+ * A table is keyed by a SHA-256 hash of the map content it depends on: the intersections in path table
+ * index order and every road with its end intersections and travel time. The map file, the bounding polygon
+ * and the speed reduction all enter the key through the map they produce. A cache file starts with a
+ * 64-byte header (magic, format version, number of intersections, key) followed by the travel times and the
+ * predecessors of the table as little-endian ints.
+ */
+final class PathTableCache {
+
+	// Identifies a path table cache file
+	private static final long MAGIC = 0x434F4D5345545054L; // "COMSETPT"
+
+	// Version of the file format; files of other versions are ignored
+	private static final int VERSION = 1;
+
+	// The number of bytes of the header
+	private static final int HEADER_BYTES = 64;
+
+	// The directory holding the cache files
+	private final File directory;
+
+	// The key of the map
+	private final byte[] key;
+
+	// The number of intersections of the map
+	private final int size;
+
+	/**
+	 * Creates a cache for a map.
+	 *
+	 * @param directory the directory holding the cache files
+	 * @param intersectionsByPathTableIndex the intersections of the map indexed by path table index
+	 */
+	PathTableCache(File directory, Intersection[] intersectionsByPathTableIndex) {
+		this.directory = directory;
+		this.key = computeKey(intersectionsByPathTableIndex);
+		this.size = intersectionsByPathTableIndex.length;
+	}
+
+	/**
+	 * Computes the key of a map.
+	 *
+	 * @param intersectionsByPathTableIndex the intersections of the map indexed by path table index
+	 * @return the SHA-256 hash of the map content
+	 */
+	static byte[] computeKey(Intersection[] intersectionsByPathTableIndex) {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		ByteBuffer buffer = ByteBuffer.allocate(3 * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.putLong(VERSION).putLong(intersectionsByPathTableIndex.length);
+		digest.update(buffer.array(), 0, 2 * Long.BYTES);
+		for (Intersection intersection : intersectionsByPathTableIndex) {
+			buffer.clear();
+			buffer.putLong(intersection.id).putLong(intersection.roadsMapFrom.size());
+			digest.update(buffer.array(), 0, 2 * Long.BYTES);
+			for (Road road : intersection.roadsMapFrom.values()) {
+				buffer.clear();
+				buffer.putLong(road.to.id).putLong(road.to.pathTableIndex).putLong(road.travelTime);
+				digest.update(buffer.array());
+			}
+		}
+		return digest.digest();
+	}
+
+	/**
+	 * @return the cache file of the map
+	 */
+	File file() {
+		StringBuilder name = new StringBuilder("pathtable-");
+		for (int i = 0; i < 16; i++) {
+			name.append(String.format("%02x", key[i]));
+		}
+		return new File(directory, name.append(".bin").toString());
+	}
+
+	/**
+	 * Memory-maps the table of the map if the cache holds a valid one.
+	 *
+	 * @return the mapped table, or null if there is no valid cache file
+	 */
+	PathTable load() {
+		File file = file();
+		if (!file.isFile()) {
+			return null;
+		}
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+			while (header.hasRemaining() && channel.read(header) >= 0);
+			header.flip();
+			boolean matches = header.remaining() == HEADER_BYTES && header.getLong() == MAGIC
+					&& header.getInt() == VERSION && header.getInt() == size;
+			if (matches) {
+				byte[] fileKey = new byte[key.length];
+				header.get(fileKey);
+				matches = Arrays.equals(fileKey, key);
+			}
+			if (!matches) {
+				System.out.println("Ignoring path table cache file " + file + " that does not match the map");
+				return null;
+			}
+			if (channel.size() != HEADER_BYTES + 2L * size * size * Integer.BYTES) {
+				System.out.println("Ignoring truncated path table cache file " + file);
+				return null;
+			}
+			// The mapping stays valid after the channel is closed.
+			return new MappedPathTable(channel, HEADER_BYTES, size);
+		} catch (IOException e) {
+			System.out.println("Cannot read path table cache file " + file + ": " + e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Writes the table of the map to the cache. The file is written under a temporary name and then renamed,
+	 * so that concurrent runs never see a partial file.
+	 *
+	 * @param table the table to store
+	 */
+	void store(ArrayPathTable table) {
+		File file = file();
+		Path temporary = null;
+		try {
+			Files.createDirectories(directory.toPath());
+			temporary = Files.createTempFile(directory.toPath(), file.getName(), ".tmp");
+			try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+				ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+				header.putLong(MAGIC).putInt(VERSION).putInt(size).put(key);
+				header.clear();
+				while (header.hasRemaining()) {
+					channel.write(header);
+				}
+				table.writeTo(channel);
+			}
+			try {
+				Files.move(temporary, file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temporary, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+			System.out.println("Saved the path table to " + file);
+		} catch (IOException e) {
+			System.out.println("Cannot write path table cache file " + file + ": " + e.getMessage());
+			if (temporary != null) {
+				temporary.toFile().delete();
+			}
+		}
+	}
+}
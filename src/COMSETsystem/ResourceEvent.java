@@ -1,7 +1,5 @@
 package COMSETsystem;
 
-import java.util.logging.Level;
-import java.util.logging.Logger;
 import COMSETsystem.FleetManager.ResourceState;
 
 /**
@@ -63,6 +61,22 @@ public class ResourceEvent extends Event {
 		this.assignmentManager = assignmentManager;
 	}
 
+	/**
+	 * Constructor for class ResourceEvent with an id reserved by Event.reserveIds.
+	 *
+	 * @param id the id of the resource
+	 */
+	ResourceEvent(LocationOnRoad pickupLoc, LocationOnRoad dropoffLoc, long availableTime, long tripTime, long id, Simulator simulator, FleetManager fleetManager, AssignmentManager assignmentManager) {
+		super(availableTime, id, simulator, fleetManager);
+		this.pickupLoc = pickupLoc;
+		this.dropoffLoc = dropoffLoc;
+		this.availableTime = availableTime;
+		this.expirationTime = availableTime + simulator.ResourceMaximumLifeTime;
+		this.tripTime = tripTime;
+		this.state = State.AVAILABLE;
+		this.assignmentManager = assignmentManager;
+	}
+
 	/**
 	 * Constructor for ResourceEvent that overrides tripTime. Makes it easier to test.
 	 *
@@ -94,8 +108,9 @@ public class ResourceEvent extends Event {
 	 */
 	@Override
 	Event trigger() {
-		Logger.getLogger(this.getClass().getName()).log(Level.INFO, "******** ResourceEvent id = "+ id + " triggered at time " + time, this);
-		Logger.getLogger(this.getClass().getName()).log(Level.INFO, "Loc = " + this.pickupLoc + "," + this.dropoffLoc, this);
+		if (EventTrace.ENABLED) {
+			EventTrace.record(EventTrace.RESOURCE_TRIGGERED, id, time, pickupLoc);
+		}
 
 		if (simulator.map == null) {
 			System.out.println("map is null in resource");
@@ -125,8 +140,7 @@ public class ResourceEvent extends Event {
 	void pickup(AgentEvent agentEvent, long pickupTime) {
 		this.pickupTime = pickupTime;
 		this.agentEvent = agentEvent;
-		AgentAction action = fleetManager.onResourceAvailabilityChange(copyResource(), ResourceState.PICKED_UP, simulator.agentCopy(pickupLoc), pickupTime);
-		assignmentManager.processAgentAction(action, pickupTime);
+		notifyFleetManager(ResourceState.PICKED_UP, pickupLoc, pickupTime);
 	}
 
 	void dropOff(long dropOffTime) {
@@ -136,32 +150,65 @@ public class ResourceEvent extends Event {
 		simulator.totalResourceWaitTime += waitTime;
 		simulator.totalResourceTripTime += tripTime;
 		simulator.totalAssignments++;
+		if (simulator.traceRecorder != null) {
+			simulator.traceRecorder.dropOff(id, agentEvent == null ? -1 : agentEvent.id, dropOffTime, waitTime, tripTime);
+		}
 
 		simulator.events.remove(this);
-		AgentAction action = fleetManager.onResourceAvailabilityChange(copyResource(), ResourceState.DROPPED_OFF, simulator.agentCopy(dropoffLoc), dropOffTime);
-		assignmentManager.processAgentAction(action, dropOffTime);
+		notifyFleetManager(ResourceState.DROPPED_OFF, dropoffLoc, dropOffTime);
+		forget();
 	}
 
 	private void available() {
 		++simulator.totalResources;
+		if (simulator.traceRecorder != null) {
+			simulator.traceRecorder.resourceAvailable(this);
+		}
 
 		simulator.waitingResources.add(this);
 		time = expirationTime;
 		state = State.EXPIRED;
-		AgentAction action = fleetManager.onResourceAvailabilityChange(copyResource(), ResourceState.AVAILABLE, simulator.agentCopy(pickupLoc), time);
-		assignmentManager.processAgentAction(action, time);
+		notifyFleetManager(ResourceState.AVAILABLE, pickupLoc, time);
 	}
 
 	private void expire() {
 		simulator.expiredResources++;
 		simulator.totalResourceWaitTime += simulator.ResourceMaximumLifeTime;
 		simulator.waitingResources.remove(this);
+		if (simulator.traceRecorder != null) {
+			simulator.traceRecorder.expired(id, time, simulator.ResourceMaximumLifeTime);
+		}
 
-		AgentAction action = fleetManager.onResourceAvailabilityChange(copyResource(), ResourceState.EXPIRED, simulator.agentCopy(pickupLoc), time);
-		assignmentManager.processAgentAction(action, time);
+		notifyFleetManager(ResourceState.EXPIRED, pickupLoc, time);
+		forget();
 		if (agentEvent != null) {
 			agentEvent.abortResource();
 		}
-		Logger.getLogger(this.getClass().getName()).log(Level.INFO, "Expired.", this);
+		if (EventTrace.ENABLED) {
+			EventTrace.record(EventTrace.RESOURCE_EXPIRED, id, time, pickupLoc);
+		}
+	}
+
+	/**
+	 * Removes the resource from the AssignmentManager once it is dropped off or expired, when resources are
+	 * streamed, so that the AssignmentManager only holds the resources introduced and still around. When all
+	 * the resources are loaded up front, the AssignmentManager keeps them all, as it always did.
+	 */
+	private void forget() {
+		if (simulator.resourceFeed != null) {
+			assignmentManager.removeEvent(this);
+		}
+	}
+
+	/**
+	 * Tells the fleet manager about a change of the state of the resource and carries out the action it returns.
+	 */
+	private void notifyFleetManager(ResourceState resourceState, LocationOnRoad loc, long time) {
+		AgentAction action = fleetManager.onResourceAvailabilityChange(copyResource(), resourceState, simulator.agentCopy(loc), time);
+		if (simulator.traceRecorder != null) {
+			simulator.traceRecorder.resourceChange(id, agentEvent == null ? -1 : agentEvent.id, resourceState, loc,
+					time, action);
+		}
+		assignmentManager.processAgentAction(action, time);
 	}
 }
@@ -0,0 +1,116 @@
+package COMSETsystem;
+
+import DataParsing.MapWithData;
+import DataParsing.Resource;
+import DataParsing.ResourceStream;
+
+/**
+ * The ResourceFeed introduces the resources of a ResourceStream to the simulation as its time reaches
+ * theirs, so that the event queue holds the events of the agents and of the resources introduced so far
+ * rather than of the whole dataset.
+ *
+ * The resources get the ids they would have had if they had all been loaded before the agents were placed,
+ * so the events are triggered in the same order. A resource is map-matched when it is introduced, and its
+ * trip time, which only extends the end time of the simulation, uses the travel times of that moment.
+ */
+final class ResourceFeed {
+
+	private final ResourceStream stream;
+
+	private final MapWithData mapWD;
+
+	private final Simulator simulator;
+
+	private final FleetManager fleetManager;
+
+	private final AssignmentManager assignmentManager;
+
+	// The id of the first resource of the stream
+	private final long firstId;
+
+	// The number of resources introduced so far
+	private int introduced = 0;
+
+	/**
+	 * Creates the feed and reserves the ids of the resources. Must be called where the resources would
+	 * otherwise be loaded, before any other event is created.
+	 */
+	ResourceFeed(ResourceStream stream, MapWithData mapWD, Simulator simulator, FleetManager fleetManager,
+			AssignmentManager assignmentManager) {
+		this.stream = stream;
+		this.mapWD = mapWD;
+		this.simulator = simulator;
+		this.fleetManager = fleetManager;
+		this.assignmentManager = assignmentManager;
+		this.firstId = Event.reserveIds(stream.size());
+	}
+
+	/**
+	 * Creates the feed of a simulation restored from a checkpoint, skipping the resources introduced before
+	 * the checkpoint. The ids of the resources were reserved by the simulation that wrote the checkpoint.
+	 *
+	 * @param firstId the id of the first resource of the stream
+	 * @param introduced the number of resources introduced before the checkpoint
+	 */
+	ResourceFeed(ResourceStream stream, MapWithData mapWD, Simulator simulator, FleetManager fleetManager,
+			AssignmentManager assignmentManager, long firstId, int introduced) {
+		this.stream = stream;
+		this.mapWD = mapWD;
+		this.simulator = simulator;
+		this.fleetManager = fleetManager;
+		this.assignmentManager = assignmentManager;
+		this.firstId = firstId;
+		while (this.introduced < introduced && stream.hasNext()) {
+			stream.next();
+			this.introduced++;
+		}
+	}
+
+	/**
+	 * @return the id of the first resource of the stream
+	 */
+	long firstId() {
+		return firstId;
+	}
+
+	/**
+	 * @return the number of resources introduced so far
+	 */
+	int introduced() {
+		return introduced;
+	}
+
+	/**
+	 * @return true if resources remain to be introduced
+	 */
+	boolean hasNext() {
+		return stream.hasNext();
+	}
+
+	/**
+	 * Adds the events of the resources introduced no later than the first event of a queue, or of the next
+	 * resource if the queue is empty. Resources come before other events of the same time, as their ids are
+	 * smaller. The end time of the simulation is extended to the expiration of each resource plus its trip.
+	 *
+	 * @param events the event queue of the simulation
+	 */
+	void addDueEvents(EventQueue events) {
+		while (stream.hasNext() && (events.isEmpty() || stream.peekTime() <= events.peek().time)) {
+			long id = firstId + stream.peekIndex();
+			Resource resource = stream.next();
+			introduced++;
+			LocationOnRoad pickupMatch = mapWD.mapMatch(resource.getPickupLon(), resource.getPickupLat());
+			LocationOnRoad dropoffMatch = mapWD.mapMatch(resource.getDropoffLon(), resource.getDropoffLat());
+			// use the travel times of the time of day at which the resource is introduced
+			simulator.updateTimeBucket(resource.getTime());
+			long tripTime = simulator.getMap().travelTimeBetween(pickupMatch, dropoffMatch);
+
+			ResourceEvent ev = new ResourceEvent(pickupMatch, dropoffMatch, resource.getTime(), tripTime, id, simulator,
+					fleetManager, assignmentManager);
+			assignmentManager.addNewEvent(ev);
+			events.add(ev);
+			simulator.simulationEndTime = Math.max(simulator.simulationEndTime,
+					resource.getTime() + simulator.ResourceMaximumLifeTime + tripTime);
+		}
+	}
+}
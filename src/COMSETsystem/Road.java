@@ -1,40 +1,65 @@
 package COMSETsystem;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 /*
  * The Road class defines a directed road segment between two intersections.
  * A road may consist of one or more links wherein each each link is a
  * directed straight line connecting two vertices.
+ *
+ * The simulator shares its roads with the fleet manager, so the fields of a road are only
+ * read outside of the COMSETsystem package, through the getters.
  */
 public class Road implements Comparable<Road> {
 
 	// The start (upstream) intersection of the road
-	public Intersection from;
+	Intersection from;
 	// The end (downstream) intersection of the road
-	public Intersection to;
+	Intersection to;
 	// length of the road segment in meters
-	public double length;
+	double length;
 	// travel time of the road segment in seconds
-	public long travelTime;
+	long travelTime;
 	// a unique id
-	public long id;
+	long id;
 
 	// an ID counter to get a unique id
 	private static long maxId = 0;
 	
 	// links that constitute the road
-	public ArrayList<Link> links;
+	ArrayList<Link> links;
 
     /**
      * Constructing an "empty" road object.
      */
-	public Road() {
+	Road() {
 		this.id = maxId++;
 		this.length = 0;
 		this.travelTime = 0;
 		links = new ArrayList<>();
 	}
+
+	/**
+	 * Creating a road from its links, in order, and adding it to the outgoing roads of its start
+	 * intersection and to the incoming roads of its end intersection.
+	 *
+	 * @param from the start intersection
+	 * @param to the end intersection
+	 * @param links the links of the road, from the start intersection to the end intersection
+	 * @throws UnsupportedOperationException if the intersections already belong to a CityMap
+	 */
+	public Road(Intersection from, Intersection to, List<Link> links) {
+		this();
+		from.roadsMapFrom.put(to, this);
+		to.roadsMapTo.put(from, this);
+		this.from = from;
+		this.to = to;
+		for (Link link : links) {
+			addLink(link);
+		}
+	}
 	
 	/**
 	 * Creating a copy of a road
@@ -43,7 +68,7 @@ public class Road implements Comparable<Road> {
 	 * @param to the end intersection
 	 * @param links a list of links
 	 */
-	public Road(Road road, Intersection from, Intersection to, ArrayList<Link> links) {
+	Road(Road road, Intersection from, Intersection to, ArrayList<Link> links) {
 		this.id = road.id;
 		this.length = road.length;
 		this.travelTime = road.travelTime;
@@ -58,7 +83,7 @@ public class Road implements Comparable<Road> {
 	 * for the link will not be correct.
 	 *
 	 */
-	public void addLink(Link link) {
+	void addLink(Link link) {
 		links.add(link);
 		link.road = this;
 		link.beginTime = this.travelTime;
@@ -66,6 +91,48 @@ public class Road implements Comparable<Road> {
 		this.travelTime += link.travelTime;
 	}
 
+	/**
+	 * @return the start (upstream) intersection of the road
+	 */
+	public Intersection getFrom() {
+		return from;
+	}
+
+	/**
+	 * @return the end (downstream) intersection of the road
+	 */
+	public Intersection getTo() {
+		return to;
+	}
+
+	/**
+	 * @return the length of the road in meters
+	 */
+	public double getLength() {
+		return length;
+	}
+
+	/**
+	 * @return the current travel time of the road in seconds
+	 */
+	public long getTravelTime() {
+		return travelTime;
+	}
+
+	/**
+	 * @return the unique id of the road
+	 */
+	public long getId() {
+		return id;
+	}
+
+	/**
+	 * @return a read-only list of the links of the road, from the start intersection to the end intersection
+	 */
+	public List<Link> getLinks() {
+		return Collections.unmodifiableList(links);
+	}
+
 	/**
 	 * checks whether this is the same road as some specified road
 	 * 
@@ -0,0 +1,57 @@
+package COMSETsystem;
+
+/**
+ * The outgoing roads of every intersection of a CityMap in compressed sparse row format. Intersections are
+ * identified by their pathTableIndex, and the outgoing roads of intersection v are the entries firstRoad[v]
+ * to firstRoad[v + 1] - 1 of roads, in the order of the roadsMapFrom of v.
+ *
+ * Unlike a RoadGraph, the entries are the Road objects themselves, so that their current travel times are
+ * read; the adjacency only has to be built again if roads are added or removed.
+ */
+final class RoadAdjacency {
+
+	// The first outgoing road of each intersection, plus the total number of roads at the end
+	final int[] firstRoad;
+
+	// The outgoing roads of all intersections
+	final Road[] roads;
+
+	/**
+	 * Builds the adjacency of a map.
+	 *
+	 * @param intersectionsByPathTableIndex the intersections of the map indexed by path table index
+	 */
+	RoadAdjacency(Intersection[] intersectionsByPathTableIndex) {
+		int size = intersectionsByPathTableIndex.length;
+		this.firstRoad = new int[size + 1];
+		int count = 0;
+		for (Intersection intersection : intersectionsByPathTableIndex) {
+			count += intersection.roadsMapFrom.size();
+		}
+		this.roads = new Road[count];
+		int road = 0;
+		for (int v = 0; v < size; v++) {
+			firstRoad[v] = road;
+			for (Road r : intersectionsByPathTableIndex[v].roadsMapFrom.values()) {
+				roads[road++] = r;
+			}
+		}
+		firstRoad[size] = road;
+	}
+
+	/**
+	 * Gets the road between two intersections.
+	 *
+	 * @param from path table index of the start intersection
+	 * @param toId id of the end intersection
+	 * @return the road from from to the intersection, or null if there is none
+	 */
+	Road road(int from, long toId) {
+		for (int road = firstRoad[from]; road < firstRoad[from + 1]; road++) {
+			if (roads[road].to.id == toId) {
+				return roads[road];
+			}
+		}
+		return null;
+	}
+}
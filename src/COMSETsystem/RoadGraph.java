@@ -0,0 +1,134 @@
+package COMSETsystem;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * A RoadGraph is a snapshot of the roads of a CityMap in compressed sparse row format over primitive
+ * arrays, for searches that visit many intersections. Intersections are identified by their
+ * pathTableIndex, and the outgoing roads of intersection v are the entries firstRoad[v] to
+ * firstRoad[v + 1] - 1 of roadTo and roadTravelTime.
+ *
+ * The graph does not follow later changes of the roads or of their travel times; see setTravelTime.
+ */
+final class RoadGraph {
+
+	// The number of intersections
+	final int size;
+
+	// The first outgoing road of each intersection, plus the total number of roads at the end
+	final int[] firstRoad;
+
+	// The path table index of the end intersection of each road
+	final int[] roadTo;
+
+	// The travel time in seconds of each road
+	final int[] roadTravelTime;
+
+	// The position of each intersection in increasing id order, used to break ties between equal travel
+	// times the same way whatever the path table indices are
+	final int[] idRank;
+
+	/**
+	 * Builds the graph of a map.
+	 *
+	 * @param intersectionsByPathTableIndex the intersections of the map indexed by path table index
+	 * @throws IllegalArgumentException if the travel time of a road does not fit in an int
+	 */
+	RoadGraph(Intersection[] intersectionsByPathTableIndex) {
+		this(intersectionsByPathTableIndex, new RoadAdjacency(intersectionsByPathTableIndex));
+	}
+
+	/**
+	 * Builds the graph of a map from its adjacency, with the current travel times of the roads.
+	 *
+	 * @param intersectionsByPathTableIndex the intersections of the map indexed by path table index
+	 * @param adjacency the outgoing roads of the intersections
+	 * @throws IllegalArgumentException if the travel time of a road does not fit in an int
+	 */
+	RoadGraph(Intersection[] intersectionsByPathTableIndex, RoadAdjacency adjacency) {
+		this.size = intersectionsByPathTableIndex.length;
+		this.firstRoad = adjacency.firstRoad;
+		this.roadTo = new int[adjacency.roads.length];
+		this.roadTravelTime = new int[adjacency.roads.length];
+		for (int road = 0; road < adjacency.roads.length; road++) {
+			Road r = adjacency.roads[road];
+			if (r.travelTime < 0 || r.travelTime > Integer.MAX_VALUE) {
+				throw new IllegalArgumentException("Travel time " + r.travelTime + " of road " + r.id + " is out of range");
+			}
+			roadTo[road] = r.to.pathTableIndex;
+			roadTravelTime[road] = (int) r.travelTime;
+		}
+
+		Integer[] byId = new Integer[size];
+		for (int v = 0; v < size; v++) {
+			byId[v] = v;
+		}
+		Arrays.sort(byId, Comparator.comparingLong(v -> intersectionsByPathTableIndex[v].id));
+		this.idRank = new int[size];
+		for (int rank = 0; rank < size; rank++) {
+			idRank[byId[rank]] = rank;
+		}
+	}
+
+	private RoadGraph(int[] firstRoad, int[] roadTo, int[] roadTravelTime, int[] idRank) {
+		this.size = idRank.length;
+		this.firstRoad = firstRoad;
+		this.roadTo = roadTo;
+		this.roadTravelTime = roadTravelTime;
+		this.idRank = idRank;
+	}
+
+	/**
+	 * Builds the graph with every road reversed, in which the outgoing roads of an intersection are its
+	 * incoming roads in this graph. A one-to-all search on the reversed graph gives the all-to-one shortest
+	 * travel times of this graph.
+	 *
+	 * @return the reversed graph
+	 */
+	RoadGraph reversed() {
+		int[] reversedFirstRoad = new int[size + 1];
+		for (int road = 0; road < roadTo.length; road++) {
+			reversedFirstRoad[roadTo[road] + 1]++;
+		}
+		for (int v = 0; v < size; v++) {
+			reversedFirstRoad[v + 1] += reversedFirstRoad[v];
+		}
+		int[] reversedRoadTo = new int[roadTo.length];
+		int[] reversedRoadTravelTime = new int[roadTo.length];
+		int[] next = Arrays.copyOf(reversedFirstRoad, size);
+		for (int u = 0; u < size; u++) {
+			for (int road = firstRoad[u]; road < firstRoad[u + 1]; road++) {
+				int reversedRoad = next[roadTo[road]]++;
+				reversedRoadTo[reversedRoad] = u;
+				reversedRoadTravelTime[reversedRoad] = roadTravelTime[road];
+			}
+		}
+		return new RoadGraph(reversedFirstRoad, reversedRoadTo, reversedRoadTravelTime, idRank);
+	}
+
+	/**
+	 * Changes the travel time of a road.
+	 *
+	 * @param from path table index of the start intersection of the road
+	 * @param to path table index of the end intersection of the road
+	 * @param travelTime the new travel time in seconds
+	 * @throws IllegalArgumentException if there is no such road
+	 */
+	void setTravelTime(int from, int to, int travelTime) {
+		for (int road = firstRoad[from]; road < firstRoad[from + 1]; road++) {
+			if (roadTo[road] == to) {
+				roadTravelTime[road] = travelTime;
+				return;
+			}
+		}
+		throw new IllegalArgumentException("No road from " + from + " to " + to);
+	}
+
+	/**
+	 * @return the number of roads
+	 */
+	int roadCount() {
+		return roadTo.length;
+	}
+}
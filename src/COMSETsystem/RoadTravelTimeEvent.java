@@ -0,0 +1,53 @@
+package COMSETsystem;
+
+/**
+ * The RoadTravelTimeEvent class represents a change of the travel time of a road, e.g., because of
+ * traffic. When triggered, the simulator changes the travel time of the road, repairs the shortest
+ * travel times of the map, and notifies the fleet manager.
+ */
+public class RoadTravelTimeEvent extends Event {
+
+	// The road of the simulator's map whose travel time changes
+	final Road road;
+
+	// The new travel time of the road in seconds
+	final long travelTime;
+
+	/**
+	 * Constructor for class RoadTravelTimeEvent.
+	 *
+	 * @param time the time at which the travel time changes
+	 * @param road the road of the simulator's map
+	 * @param travelTime the new travel time of the road in seconds
+	 * @param simulator the simulator object
+	 * @param fleetManager the fleet manager to notify
+	 */
+	public RoadTravelTimeEvent(long time, Road road, long travelTime, Simulator simulator, FleetManager fleetManager) {
+		super(time, simulator, fleetManager);
+		this.road = road;
+		this.travelTime = travelTime;
+	}
+
+	/**
+	 * Constructor for class RoadTravelTimeEvent with a given id, e.g., when it is restored from a checkpoint.
+	 *
+	 * @param id the id of the event
+	 */
+	RoadTravelTimeEvent(long time, long id, Road road, long travelTime, Simulator simulator, FleetManager fleetManager) {
+		super(time, id, simulator, fleetManager);
+		this.road = road;
+		this.travelTime = travelTime;
+	}
+
+	@Override
+	Event trigger() {
+		if (EventTrace.ENABLED) {
+			EventTrace.record(EventTrace.TRAVEL_TIME_CHANGED, id, time, road, travelTime);
+		}
+		if (simulator.traceRecorder != null) {
+			simulator.traceRecorder.travelTime(id, time, road, travelTime);
+		}
+		simulator.changeRoadTravelTime(road, travelTime);
+		return null;
+	}
+}
@@ -0,0 +1,50 @@
+package COMSETsystem;
+
+/**
+ * A RoutingBackend answers shortest travel-time queries between intersections of a CityMap on behalf of
+ * travelTimeBetween and shortestTravelTimePath. Intersections are identified by their pathTableIndex.
+ *
+ * Implementations must be safe for concurrent queries once they are built.
+ *
+ * See PathTable for the dense all-pair table and ContractionHierarchy for a contraction hierarchy.
+ */
+interface RoutingBackend {
+
+	/**
+	 * Gets the shortest travel time between two intersections.
+	 *
+	 * @param source path table index of the source
+	 * @param destination path table index of the destination
+	 * @return the travel time in seconds, or Long.MAX_VALUE if destination is unreachable from source
+	 */
+	long travelTime(int source, int destination);
+
+	/**
+	 * Gets the shortest travel times from one intersection to many. Backends that can look up the source
+	 * once for all destinations override this method.
+	 *
+	 * @param source path table index of the source
+	 * @param destinations path table indices of the destinations
+	 * @param travelTimes receives at index i the travel time to destinations[i], as travelTime would return it
+	 */
+	default void travelTimes(int source, int[] destinations, long[] travelTimes) {
+		for (int i = 0; i < destinations.length; i++) {
+			travelTimes[i] = travelTime(source, destinations[i]);
+		}
+	}
+
+	/**
+	 * Gets a shortest travel-time path between two intersections.
+	 *
+	 * @param source path table index of the source
+	 * @param destination path table index of the destination
+	 * @return the path table indices of the intersections on the path, starting with source and ending with
+	 * destination, or null if destination is unreachable from source
+	 */
+	int[] path(int source, int destination);
+
+	/**
+	 * @return the number of bytes taken by the data structures of the backend
+	 */
+	long sizeInBytes();
+}
@@ -0,0 +1,38 @@
+package COMSETsystem;
+
+/**
+ * The ways a CityMap can answer shortest travel-time queries. See Simulator.setRoutingMode.
+ */
+public enum RoutingMode {
+
+	// A pre-computed table of the travel times and paths between all pairs of intersections.
+	// Fastest queries, but the memory grows with the square of the number of intersections.
+	TABLE,
+
+	// The same table with 16-bit travel times and one-byte predecessors, about 2.7 times smaller
+	// than TABLE. Not kept in the path table cache directory.
+	COMPACT,
+
+	// Rows of the path table computed on demand and kept in a cache with a memory budget. Same
+	// paths as TABLE; the first query from each source runs a Dijkstra.
+	LAZY,
+
+	// A contraction hierarchy. Memory grows roughly linearly with the size of the map and queries
+	// take microseconds.
+	CH,
+
+	// Hub labels derived from a contraction hierarchy. Travel-time queries merge two short sorted
+	// labels; paths come from the contraction hierarchy. Memory grows with the size of the map times
+	// the average label size.
+	HUB_LABELS,
+
+	// A* search guided by the travel times from and to a few landmarks (ALT). Memory grows linearly
+	// with the size of the map and the number of landmarks; each query searches between its source
+	// and destination only.
+	ALT,
+
+	// Travel times between the boundaries of cells of nearby intersections, searched between the cells of
+	// the source and the destination (see CellOverlay). For maps too large for a path table; changing the
+	// travel time of a road only computes the overlay of one cell again.
+	OVERLAY
+}
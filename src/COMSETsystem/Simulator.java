@@ -2,10 +2,14 @@ package COMSETsystem;
 
 import MapCreation.*;
 
+import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.text.NumberFormat;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
 import me.tongfei.progressbar.*;
 
 
@@ -15,7 +19,7 @@ import DataParsing.*;
  * The Simulator class defines the major steps of the simulation. It is
  * responsible for loading the map, creating the necessary number of agents,
  * creating a respective AgentEvent for each of them such that they are added
- * to the events PriorityQueue. Furthermore it is also responsible for dealing 
+ * to the events queue. Furthermore it is also responsible for dealing 
  * with the arrival of resources, map matching them to the map, and assigning  
  * them to agents. This produces the score according to the scoring rules.
  * <p>
@@ -23,20 +27,20 @@ import DataParsing.*;
  * corresponds to when something will be empty and thus needs some
  * interaction (triggering). There's an event corresponding to every existent
  * Agent and for every resource that hasn't arrived yet. All of this events are
- * in a PriorityQueue called events which is ordered by their time in an
+ * in an EventQueue called events which is ordered by their time in an
  * increasing way.
  */
 public class Simulator {
 
-	// The map that everything will happen on.
+	// The map that everything will happen on. The fleet manager shares it; the roads of its intersections
+	// cannot be changed through it.
 	protected CityMap map;
 
-	// A deep copy of map to be passed to agents. 
-	// This is a way to make map unmodifiable.
-	protected CityMap mapForAgents;
-
 	// The event queue.
-	protected PriorityQueue<Event> events = new PriorityQueue<>();
+	protected EventQueue events = new HeapEventQueue();
+
+	// How the pending events are kept.
+	protected EventQueueMode eventQueueMode = EventQueueMode.HEAP;
 
 	protected AssignmentManager assignmentManager = new AssignmentManager();
 
@@ -68,6 +72,84 @@ public class Simulator {
 	// The simulation end time is the expiration time of the last resource.
 	protected long simulationEndTime; 
 
+	// How shortest travel-time queries are answered.
+	protected RoutingMode routingMode = RoutingMode.TABLE;
+
+	// Whether to pre-compute the next hop towards every destination for CityMap.nextIntersectionTowards.
+	protected boolean nextHopTable = false;
+
+	// Whether to keep the path table travel times column by column for many-to-one queries.
+	protected boolean transposedTravelTimes = false;
+
+	// Whether to number the intersections along a Hilbert curve before routing is prepared.
+	protected boolean hilbertOrder = false;
+
+	// Whether to introduce resources from a stream during the simulation instead of loading them all up front.
+	protected boolean streamResources = false;
+
+	// The resources still to be introduced if they are streamed, null otherwise.
+	protected ResourceFeed resourceFeed;
+
+	// The number of landmarks of the ALT routing mode.
+	protected int altLandmarks = 16;
+
+	// The maximum number of intersections of a cell of the OVERLAY routing mode, or 0 for the square root of
+	// the number of intersections.
+	protected int overlayCellSize = 0;
+
+	// The memory budget in bytes of the path rows cached in the LAZY routing mode.
+	protected long pathRowCacheBytes = 512L * 1024 * 1024;
+
+	// The number of threads used to pre-compute the shortest travel times between all pairs of intersections.
+	protected int pathTableThreads = Runtime.getRuntime().availableProcessors();
+
+	// The number of threads used to trigger independent navigation events together during the simulation.
+	protected int simulationThreads = 1;
+
+	// Full path to a file to record a binary trace of the simulation to; null to record none.
+	protected String traceFile = null;
+
+	// Records the trace while the simulation runs, if traceFile is set.
+	TraceRecorder traceRecorder = null;
+
+	// Full path to a file to write a checkpoint of the simulation to; null to write none.
+	protected String checkpointFile = null;
+
+	// The number of seconds after the start of the simulation at which the checkpoint is written.
+	protected long checkpointTime = 0;
+
+	// Full path to a checkpoint file to restore the simulation from; null to start it from the beginning.
+	protected String restoreFile = null;
+
+	// The travel time changes made so far, as {time, road id, travel time}, to make them again when a
+	// checkpoint is restored.
+	protected List<long[]> travelTimeChanges = new ArrayList<>();
+
+	// The directory in which computed path tables are kept for later runs; null to disable the cache.
+	protected String pathTableCacheDirectory = null;
+
+	// Full path to a file of road travel time changes; null to keep the travel times fixed.
+	protected String trafficFile = null;
+
+	// Full path to a file of road speed profiles by time of day; null to keep the same speeds all day.
+	protected String speedProfileFile = null;
+
+	// The travel times of the roads by time of day, or null if they are the same all day.
+	protected SpeedProfile speedProfile = null;
+
+	// The time bucket of speedProfile whose travel times the map has, or -1 if it has the initial ones,
+	// and the time at which the bucket starts and ends.
+	protected int timeBucket = -1;
+	protected long timeBucketStart = Long.MAX_VALUE;
+	protected long timeBucketEnd = Long.MIN_VALUE;
+
+	// Whether the fleet manager is notified of the roads whose travel times change with the time bucket. It
+	// is not while the simulation is configured, before any agent exists.
+	protected boolean notifyTimeBucketChanges = false;
+
+	// The routing tables of the bucket classes of speedProfile that have been used, except the current one.
+	protected Map<Integer, CityMap.RoutingTables> routingTablesByBucketClass = new HashMap<>();
+
 	// Total trip time of all resources to which agents have been assigned.
 	protected long totalResourceTripTime = 0;
 
@@ -158,33 +240,145 @@ public class Simulator {
 		// Output the map
 		map = creator.outputCityMap();
 
-		// Pre-compute shortest travel times between all pairs of intersections.
-		System.out.println("Pre-computing all pair travel times...");
-		map.calcTravelTimes();
+		if (hilbertOrder) {
+			System.out.println("Numbering intersections along a Hilbert curve...");
+			map.renumberByHilbertCurve();
+		}
 
-		// Make a map copy for agents to use so that an agent cannot modify the map used by
-		// the simulator
-		mapForAgents = map.makeCopy();
+		prepareRouting();
 
-		MapWithData mapWD = new MapWithData(map, this.resourceFile, agentPlacementRandomSeed);
+		MapWithData mapWD = new MapWithData(map, this.resourceFile, agentPlacementRandomSeed, eventQueueMode.createQueue());
 
-		// map match resources
-		System.out.println("Loading and map-matching resources...");
+		if (restoreFile == null) {
+			// map match resources
+			System.out.println("Loading and map-matching resources...");
+		}
 
 		fleetManager = createFleetManager();
 
-		// The simulation end time is the expiration time of the last resource.
-		// which is return by createMapWithData
-		this.simulationEndTime = mapWD.createMapWithData(this, fleetManager, assignmentManager);
+		if (speedProfileFile != null) {
+			System.out.println("Loading speed profiles...");
+			speedProfile = mapWD.createSpeedProfile(speedProfileFile);
+			// the routing tables computed so far are those of the buckets without speed changes
+			for (int bucket = 0; bucket < speedProfile.bucketCount(); bucket++) {
+				if (speedProfile.isFreeFlow(bucket)) {
+					routingTablesByBucketClass.put(speedProfile.bucketClass(bucket), map.routingTables());
+				}
+			}
+		}
+
+		if (restoreFile != null) {
+			System.out.println("Restoring the simulation from " + restoreFile + "...");
+			events = mapWD.getEvents();
+			try {
+				Checkpoint.read(this, restoreFile, mapWD);
+			} catch (IOException e) {
+				throw new IllegalArgumentException("Cannot restore the simulation from " + restoreFile, e);
+			}
+			System.out.println("Restored " + events.size() + " events at time " + simulationTime);
+			return;
+		}
+
+		if (streamResources) {
+			ResourceStream stream;
+			try {
+				stream = mapWD.createResourceStream();
+			} catch (FileNotFoundException e) {
+				throw new IllegalArgumentException("Cannot read the resource file " + resourceFile, e);
+			}
+			resourceFeed = new ResourceFeed(stream, mapWD, this, fleetManager, assignmentManager);
+			// extended to the expiration time of each resource plus its trip as resources are introduced
+			this.simulationEndTime = stream.latestTime() + ResourceMaximumLifeTime;
+			System.out.println(stream.size() + " resources will be map-matched as they are introduced");
+		} else {
+			// The simulation end time is the expiration time of the last resource.
+			// which is return by createMapWithData
+			this.simulationEndTime = mapWD.createMapWithData(this, fleetManager, assignmentManager);
+		}
 
 		// Deploy agents at random locations of the map.
+		updateTimeBucket(mapWD.earliestResourceTime - 1);
 		System.out.println("Randomly placing " + this.totalAgents + " agents on the map...");
 		mapWD.placeAgentsRandomly(this, fleetManager, assignmentManager);
 
+		if (trafficFile != null) {
+			System.out.println("Loading road travel time changes...");
+			mapWD.createTrafficEvents(this, fleetManager, trafficFile);
+		}
+
 		// Initialize the event queue.
 		events = mapWD.getEvents();
 	}
 
+	/**
+	 * Prepare the map to answer shortest travel-time queries according to routingMode.
+	 */
+	protected void prepareRouting() {
+		switch (routingMode) {
+			case CH:
+				System.out.println("Building the contraction hierarchy...");
+				map.buildContractionHierarchy();
+				System.out.println("Contraction hierarchy size: " + map.routingSizeInBytes() / (1024 * 1024) + " MB");
+				break;
+			case HUB_LABELS:
+				System.out.println("Building the hub labels...");
+				map.buildHubLabels();
+				System.out.println("Hub labels size: " + map.routingSizeInBytes() / (1024 * 1024) + " MB ("
+						+ Math.round(map.averageHubLabelSize()) + " hubs per label on average)");
+				break;
+			case ALT:
+				System.out.println("Computing the travel times of " + altLandmarks + " landmarks...");
+				map.buildLandmarkAStar(altLandmarks);
+				System.out.println("Landmark travel times size: " + map.routingSizeInBytes() / 1024 + " KB");
+				break;
+			case OVERLAY:
+				System.out.println("Partitioning the map into cells and computing the overlay...");
+				map.buildCellOverlay(overlayCellSize);
+				System.out.println("Cell overlay size: " + map.routingSizeInBytes() / 1024 + " KB (cells by level: "
+						+ Arrays.toString(map.overlayCellCounts()) + ")");
+				break;
+			case LAZY:
+				map.calcTravelTimesOnDemand(pathRowCacheBytes);
+				System.out.println("Computing travel times on demand, caching up to " + map.pathRowCacheCapacity()
+						+ " path table rows");
+				break;
+			case COMPACT:
+				System.out.println("Pre-computing all pair travel times in a compact table...");
+				map.calcCompactTravelTimes(pathTableThreads);
+				printPathTableSize();
+				break;
+			case TABLE:
+			default:
+				// Pre-compute shortest travel times between all pairs of intersections.
+				System.out.println("Pre-computing all pair travel times...");
+				map.calcTravelTimes(pathTableThreads, pathTableCacheDirectory);
+				printPathTableSize();
+				break;
+		}
+
+		if (transposedTravelTimes) {
+			if (routingMode == RoutingMode.TABLE || routingMode == RoutingMode.COMPACT) {
+				System.out.println("Transposing the travel times...");
+				map.calcTransposedTravelTimes();
+				System.out.println("Transposed travel times size: " + map.transposedTravelTimesSizeInBytes() / (1024 * 1024) + " MB");
+			} else {
+				System.out.println("Transposed travel times need the table or compact routing mode; not computed");
+			}
+		}
+
+		if (nextHopTable) {
+			System.out.println("Pre-computing next hops towards all intersections...");
+			map.calcNextHops(pathTableThreads);
+			System.out.println("Next hop table size: " + map.nextHopTableSizeInBytes() / (1024 * 1024) + " MB");
+		}
+	}
+
+	private void printPathTableSize() {
+		System.out.println("Path table size: " + map.pathTableSizeInBytes() / (1024 * 1024) + " MB ("
+				+ (map.pathTableObjectLayoutSizeInBytes() - map.pathTableSizeInBytes()) / (1024 * 1024)
+				+ " MB saved against one entry object per intersection pair)");
+	}
+
 	/**
 	 * This method corresponds to running the simulation. An object of ScoreInfo
 	 * is created in order to keep track of performance in the current
@@ -198,29 +392,205 @@ public class Simulator {
 		if (map == null) {
 			System.out.println("map is null at beginning of run");
 		}
+		ForkJoinPool pool = null;
+		if (simulationThreads > 1) {
+			if (fleetManager.allowsConcurrentNavigation()) {
+				pool = new ForkJoinPool(simulationThreads);
+			} else {
+				System.out.println("The fleet manager does not allow concurrent navigation; triggering events one at a time");
+			}
+		}
 		try (ProgressBar pb = new ProgressBar("Progress:", 100, ProgressBarStyle.ASCII)) {
+			if (traceFile != null) {
+				traceRecorder = new TraceRecorder(traceFile, ResourceMaximumLifeTime);
+			}
+			notifyTimeBucketChanges = true;
+			addDueResources();
 			assert events.peek() != null;
-			simulationStartTime = simulationTime = events.peek().time;
-			while (simulationTime <= simulationEndTime) {
+			simulationTime = events.peek().time;
+			if (restoreFile == null) {
+				simulationStartTime = simulationTime;
+			}
+			boolean checkpointDue = checkpointFile != null;
+			if (checkpointDue && !fleetManager.supportsCheckpoints()) {
+				System.out.println("The fleet manager does not support checkpoints; no checkpoint is written");
+				checkpointDue = false;
+			}
+			while (isRunning()) {
+				addDueResources();
 				assert events.peek() != null;
+				if (checkpointDue && events.peek().time >= simulationStartTime + checkpointTime) {
+					Checkpoint.write(this, checkpointFile);
+					System.out.println("\nWrote a checkpoint at time " + simulationTime + " to " + checkpointFile);
+					checkpointDue = false;
+				}
 				simulationTime = events.peek().time;
 				Event toTrigger = events.poll();
+				updateTimeBucket(toTrigger.time);
 				pb.stepTo((long)(((float)(toTrigger.time - simulationStartTime))
 						/ (simulationEndTime - simulationStartTime) * 100.0));
+				if (pool != null && toTrigger instanceof AgentEvent && ((AgentEvent) toTrigger).isNavigation()) {
+					triggerNavigationBatch((AgentEvent) toTrigger, pool);
+					continue;
+				}
+				if (traceRecorder != null) {
+					traceRecorder.trigger(toTrigger);
+				}
 				Event e = toTrigger.trigger();
+				if (traceRecorder != null && toTrigger instanceof AgentEvent) {
+					traceRecorder.agentState((AgentEvent) toTrigger);
+				}
 				if (e != null) { 
 					events.add(e);
 				}
 			}
+			if (traceRecorder != null) {
+				traceRecorder.end(simulationEndTime, emptyAgents.size(), remainingSearchTime());
+			}
 		} catch (Exception e) {
 			e.printStackTrace();
+		} finally {
+			if (pool != null) {
+				pool.shutdown();
+			}
+			if (traceRecorder != null) {
+				try {
+					traceRecorder.close();
+					System.out.println("Recorded " + traceRecorder.records() + " records to " + traceFile);
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+				traceRecorder = null;
+			}
 		}
 
+		EventTrace.flush();
 		System.out.println("Simulation finished.");
 
 		score.end();
 	}
 
+	/**
+	 * @return the total time the agents of emptyAgents have been searching for by the end of the simulation
+	 */
+	private long remainingSearchTime() {
+		long totalRemainTime = 0;
+		for (AgentEvent ae: emptyAgents) {
+			totalRemainTime += (simulationEndTime - ae.startSearchTime);
+		}
+		return totalRemainTime;
+	}
+
+	/**
+	 * @return true if the simulation goes on after the event at simulationTime
+	 */
+	private boolean isRunning() {
+		return simulationTime <= simulationEndTime || (resourceFeed != null && resourceFeed.hasNext());
+	}
+
+	/**
+	 * Triggers a navigation event together with the navigation events that follow it in the queue and that
+	 * are known to be independent of it, in parallel. This is a conservative parallel execution: an agent that
+	 * navigates cannot trigger again before its lookahead, the shortest travel time of the roads it can take
+	 * (see AgentEvent.earliestNextTime), so every navigation event before the earliest lookahead of the batch
+	 * is triggered by the serial loop before any event the batch creates. Navigation events only change their
+	 * agent, so the batch can run in any order as long as the fleet manager allows concurrent navigation.
+	 * Any other event ends the batch, so that the events that touch waitingResources, emptyAgents, the
+	 * AssignmentManager or the travel times are still triggered one at a time in the order of the queue.
+	 * The batch also ends at the end of the time bucket of the speed profile, where the travel times change.
+	 * The results are therefore the same as those of the serial loop. If a trace is recorded, the records of
+	 * the batch are written after it in the order of the queue, so the trace is also the same.
+	 *
+	 * @param first the first event of the batch, already polled from the queue
+	 * @param pool the pool of threads triggering the batch
+	 * @throws Exception the exception of the first event of the batch that throws one
+	 */
+	private void triggerNavigationBatch(AgentEvent first, ForkJoinPool pool) throws Exception {
+		List<AgentEvent> batch = new ArrayList<>();
+		batch.add(first);
+		long horizon = first.earliestNextTime();
+		if (speedProfile != null) {
+			horizon = Math.min(horizon, timeBucketEnd);
+		}
+		while (isRunning()) {
+			addDueResources();
+			Event next = events.peek();
+			if (!(next instanceof AgentEvent) || !((AgentEvent) next).isNavigation() || next.time >= horizon) {
+				break;
+			}
+			AgentEvent agentEvent = (AgentEvent) events.poll();
+			simulationTime = agentEvent.time;
+			batch.add(agentEvent);
+			horizon = Math.min(horizon, agentEvent.earliestNextTime());
+		}
+
+		// the time and location of each event before it is triggered, for the trace
+		long[] times = null;
+		LocationOnRoad[] locations = null;
+		if (traceRecorder != null) {
+			times = new long[batch.size()];
+			locations = new LocationOnRoad[batch.size()];
+			for (int i = 0; i < batch.size(); i++) {
+				AgentEvent agentEvent = batch.get(i);
+				times[i] = agentEvent.time;
+				locations[i] = agentEvent.loc;
+				agentEvent.deferTrace = true;
+				agentEvent.reachDeferred = false;
+			}
+		}
+
+		Exception[] failures = new Exception[batch.size()];
+		if (batch.size() == 1) {
+			try {
+				first.trigger();
+			} catch (Exception e) {
+				failures[0] = e;
+			}
+		} else {
+			pool.submit(() -> IntStream.range(0, batch.size()).parallel().forEach(i -> {
+				try {
+					batch.get(i).trigger();
+				} catch (Exception e) {
+					failures[i] = e;
+				}
+			})).join();
+		}
+		for (int i = 0; i < batch.size(); i++) {
+			AgentEvent agentEvent = batch.get(i);
+			if (traceRecorder != null) {
+				// the records the serial loop writes, up to the event that fails
+				agentEvent.deferTrace = false;
+				traceRecorder.trigger(agentEvent, times[i]);
+				if (agentEvent.reachDeferred) {
+					traceRecorder.reachIntersection(agentEvent.id, times[i], locations[i],
+							agentEvent.isPickup && agentEvent.assignedResource != null
+									? agentEvent.assignedResource.id : -1, agentEvent.reachedNext);
+					agentEvent.reachedNext = null;
+				}
+				if (failures[i] == null) {
+					traceRecorder.agentState(agentEvent);
+				}
+			}
+			if (failures[i] != null) {
+				throw failures[i];
+			}
+		}
+		// navigation events always trigger again
+		for (AgentEvent agentEvent : batch) {
+			events.add(agentEvent);
+		}
+	}
+
+	/**
+	 * Adds the events of the resources of resourceFeed that are introduced before the first event, if the
+	 * resources are streamed.
+	 */
+	private void addDueResources() {
+		if (resourceFeed != null) {
+			resourceFeed.addDueEvents(events);
+		}
+	}
+
 	/**
 	 * Get the closest resource that will not expire before the agent reaches it
 	 *
@@ -358,6 +728,10 @@ public class Simulator {
 			System.out.println("Number of resources: " + totalResources);
 			System.out.println("Resource Maximum Life Time: " + ResourceMaximumLifeTime + " seconds");
 			System.out.println("Agent class: " + agentClass.getName());
+			if (routingMode == RoutingMode.LAZY) {
+				System.out.println("Path row cache: " + map.pathRowCacheHits() + " hits, "
+						+ map.pathRowCacheMisses() + " misses, " + map.pathRowCacheEvictions() + " evictions");
+			}
 
 			System.out.println("\n***Statistics***");
 		
@@ -365,10 +739,7 @@ public class Simulator {
 				// Collect the "search" time for the agents that are empty at the end of the simulation.
 				// These agents are in search status and therefore the amount of time they spend on
 				// searching until the end of the simulation should be counted toward the total search time.
-				long totalRemainTime = 0;
-				for (AgentEvent ae: emptyAgents) {
-					totalRemainTime += (simulationEndTime - ae.startSearchTime); 
-				}
+				long totalRemainTime = remainingSearchTime();
 
 				sb.append("average agent search time: ")
 						.append(Math.floorDiv(totalAgentSearchTime + totalRemainTime,
@@ -445,6 +816,271 @@ public class Simulator {
 		return totalAgents;
 	}
 
+	/**
+	 * Sets how shortest travel-time queries are answered. Must be called before configure.
+	 *
+	 * @param routingMode the routing mode
+	 */
+	public void setRoutingMode(RoutingMode routingMode) {
+		this.routingMode = routingMode;
+	}
+
+	/**
+	 * Sets how the pending events are kept. The events are triggered in the same order with every mode.
+	 * Must be called before configure.
+	 *
+	 * @param eventQueueMode the event queue mode
+	 */
+	public void setEventQueueMode(EventQueueMode eventQueueMode) {
+		this.eventQueueMode = eventQueueMode;
+	}
+
+	/**
+	 * Sets whether to pre-compute the next hop towards every destination, which makes
+	 * CityMap.nextIntersectionTowards take constant time. Must be called before configure.
+	 *
+	 * @param nextHopTable true to pre-compute the next hops
+	 */
+	public void setNextHopTable(boolean nextHopTable) {
+		this.nextHopTable = nextHopTable;
+	}
+
+	/**
+	 * Sets whether to keep a copy of the path table travel times column by column, which makes the travel
+	 * times from many agents to one resource read contiguous memory. Only the table and compact routing
+	 * modes have a path table to transpose. Must be called before configure.
+	 *
+	 * @param transposedTravelTimes true to keep the transposed travel times
+	 */
+	public void setTransposedTravelTimes(boolean transposedTravelTimes) {
+		this.transposedTravelTimes = transposedTravelTimes;
+	}
+
+	/**
+	 * Sets whether to number the intersections along a Hilbert curve over their coordinates instead of by
+	 * id, so that the routing data of nearby intersections is close in memory. Travel times do not depend on
+	 * the numbering. Must be called before configure.
+	 *
+	 * @param hilbertOrder true to number the intersections along a Hilbert curve
+	 */
+	public void setHilbertOrder(boolean hilbertOrder) {
+		this.hilbertOrder = hilbertOrder;
+	}
+
+	/**
+	 * Sets whether to introduce the resources during the simulation as its time reaches theirs, reading the
+	 * resource file in time order, instead of loading and map-matching all of them before it starts. The
+	 * event queue then holds the events of the agents and of the resources introduced so far. The events are
+	 * triggered in the same order; only the trip times that extend the end time of the simulation may differ,
+	 * as they use the travel times of the moment each resource is introduced. Must be called before configure.
+	 *
+	 * @param streamResources true to introduce the resources during the simulation
+	 */
+	public void setStreamResources(boolean streamResources) {
+		this.streamResources = streamResources;
+	}
+
+	/**
+	 * Sets the number of landmarks of the ALT routing mode. Must be called before configure.
+	 *
+	 * @param altLandmarks the number of landmarks
+	 */
+	public void setAltLandmarks(int altLandmarks) {
+		this.altLandmarks = altLandmarks;
+	}
+
+	/**
+	 * Sets the maximum number of intersections of a cell of the OVERLAY routing mode. Must be called before
+	 * configure.
+	 *
+	 * @param overlayCellSize the cell size, or 0 for the square root of the number of intersections
+	 */
+	public void setOverlayCellSize(int overlayCellSize) {
+		this.overlayCellSize = overlayCellSize;
+	}
+
+	/**
+	 * Sets the memory budget of the path rows cached in the LAZY routing mode. Must be called before configure.
+	 *
+	 * @param pathRowCacheBytes the budget in bytes
+	 */
+	public void setPathRowCacheBytes(long pathRowCacheBytes) {
+		this.pathRowCacheBytes = pathRowCacheBytes;
+	}
+
+	/**
+	 * Sets the number of threads used to pre-compute all pair travel times. Must be called before configure.
+	 *
+	 * @param pathTableThreads the number of threads
+	 */
+	public void setPathTableThreads(int pathTableThreads) {
+		this.pathTableThreads = pathTableThreads;
+	}
+
+	/**
+	 * Sets the number of threads used to trigger navigation events of different agents together during the
+	 * simulation, if the fleet manager allows concurrent navigation. The results are the same for any number
+	 * of threads. Must be called before run.
+	 *
+	 * @param simulationThreads the number of threads; 1 triggers all the events one at a time
+	 */
+	public void setSimulationThreads(int simulationThreads) {
+		this.simulationThreads = simulationThreads;
+	}
+
+	/**
+	 * Sets a file to record a binary trace of the simulation to: every triggered event, every call of the fleet
+	 * manager with its result and the contributions to the score. TraceReplay rebuilds the score and the state of
+	 * the agents and resources from it. The trace is the same for any number of simulation threads. Must be
+	 * called before run.
+	 *
+	 * @param traceFile full path to the trace file, which is replaced; null to record no trace
+	 */
+	public void setTraceFile(String traceFile) {
+		this.traceFile = traceFile;
+	}
+
+	/**
+	 * Sets a file to write a checkpoint of the simulation to, before the first event at or after a time. The
+	 * simulation goes on after the checkpoint is written. The fleet manager must support checkpoints (see
+	 * FleetManager.supportsCheckpoints). Must be called before run.
+	 *
+	 * @param checkpointFile full path to the checkpoint file, which is replaced; null to write no checkpoint
+	 * @param checkpointTime the number of seconds after the start of the simulation at which to write it
+	 */
+	public void setCheckpointFile(String checkpointFile, long checkpointTime) {
+		this.checkpointFile = checkpointFile;
+		this.checkpointTime = checkpointTime;
+	}
+
+	/**
+	 * Sets a checkpoint file to restore the simulation from instead of starting it from the beginning. The
+	 * map and its routing are built as usual and must come from the same map files as those of the simulation
+	 * that wrote the checkpoint, with the same fleet manager class. The resources, the agents, the pending
+	 * travel time changes and whether resources are streamed come from the checkpoint, so the resource file
+	 * is only read if the resources were streamed, and the traffic file is not read. The other settings, e.g.,
+	 * the routing mode or the number of threads, may differ, so that several variants of an experiment can
+	 * start from the same checkpoint. Must be called before configure.
+	 *
+	 * @param restoreFile full path to the checkpoint file, or null to start the simulation from the beginning
+	 */
+	public void setRestoreFile(String restoreFile) {
+		this.restoreFile = restoreFile;
+	}
+
+	/**
+	 * Sets the directory in which computed path tables are kept for later runs on the same map.
+	 * Must be called before configure.
+	 *
+	 * @param pathTableCacheDirectory the cache directory, or null to disable the cache
+	 */
+	public void setPathTableCacheDirectory(String pathTableCacheDirectory) {
+		this.pathTableCacheDirectory = pathTableCacheDirectory;
+	}
+
+	/**
+	 * Sets a file of road travel time changes to apply during the simulation. See CSVTrafficParser for the
+	 * format. Must be called before configure.
+	 *
+	 * @param trafficFile full path to the traffic file, or null to keep the travel times fixed
+	 */
+	public void setTrafficFile(String trafficFile) {
+		this.trafficFile = trafficFile;
+	}
+
+	/**
+	 * Changes the travel time of a road of the map while the simulation runs. The shortest travel times
+	 * of the map are repaired incrementally, and the fleet manager is notified with MapState.ROAD_TRAVEL_TIME_CHANGED. Agents already on the road arrive
+	 * at the time computed when they entered it. The change is kept to be made again when a checkpoint is restored.
+	 *
+	 * @param road the road of the map
+	 * @param travelTime the new travel time of the road in seconds
+	 */
+	public void changeRoadTravelTime(Road road, long travelTime) {
+		travelTimeChanges.add(new long[] {simulationTime, road.id, travelTime});
+		if (speedProfile != null) {
+			// the change is scaled by the speed factors of the road like its travel time before the change
+			speedProfile.setBaseTravelTime(road, travelTime);
+			routingTablesByBucketClass.clear();
+			if (timeBucket != -1) {
+				travelTime = speedProfile.travelTime(road, timeBucket);
+			}
+		}
+		if (road.travelTime == travelTime) {
+			return;
+		}
+		map.updateRoadTravelTime(road, travelTime);
+		fleetManager.onMapStateChanged(road, FleetManager.MapState.ROAD_TRAVEL_TIME_CHANGED);
+	}
+
+	/**
+	 * Sets a file of road speed profiles by time of day. See CSVSpeedProfileParser for the format.
+	 * Must be called before configure.
+	 *
+	 * @param speedProfileFile full path to the speed profile file, or null to keep the same speeds all day
+	 */
+	public void setSpeedProfileFile(String speedProfileFile) {
+		this.speedProfileFile = speedProfileFile;
+	}
+
+	/**
+	 * Gives the roads of the map the travel times of the time bucket of a time, if it is not the current
+	 * one. The shortest travel times of each bucket class are computed according to routingMode the first
+	 * time the class is used, and are kept for the next times. Once the simulation runs, the fleet manager is
+	 * notified of every road whose travel time changes.
+	 *
+	 * @param time the time in epoch seconds
+	 */
+	public void updateTimeBucket(long time) {
+		if (speedProfile == null || (time >= timeBucketStart && time < timeBucketEnd)) {
+			return;
+		}
+		timeBucketStart = speedProfile.bucketStart(time);
+		timeBucketEnd = speedProfile.bucketEnd(time);
+		int bucket = speedProfile.bucketOf(time);
+		int bucketClass = speedProfile.bucketClass(bucket);
+		if (timeBucket != -1 && speedProfile.bucketClass(timeBucket) == bucketClass) {
+			timeBucket = bucket;
+			return;
+		}
+		if (timeBucket != -1) {
+			routingTablesByBucketClass.put(speedProfile.bucketClass(timeBucket), map.routingTables());
+		}
+		timeBucket = bucket;
+
+		List<Road> changedRoads = new ArrayList<>();
+		for (Road road : map.roads()) {
+			long travelTime = speedProfile.travelTime(road, bucket);
+			if (road.travelTime != travelTime) {
+				road.travelTime = travelTime;
+				changedRoads.add(road);
+			}
+		}
+		CityMap.RoutingTables tables = routingTablesByBucketClass.remove(bucketClass);
+		if (tables != null) {
+			map.useRoutingTables(tables);
+		} else {
+			System.out.println("Preparing the travel times of time bucket " + bucket + "...");
+			prepareRouting();
+		}
+		if (notifyTimeBucketChanges) {
+			for (Road road : changedRoads) {
+				fleetManager.onMapStateChanged(road, FleetManager.MapState.ROAD_TRAVEL_TIME_CHANGED);
+			}
+		}
+	}
+
+	/**
+	 * Gets the class of the time bucket of a time, so that work for many times can be grouped by the travel
+	 * times it uses.
+	 *
+	 * @param time the time in epoch seconds
+	 * @return the bucket class of the time, or 0 if the travel times are the same all day
+	 */
+	public int timeBucketClass(long time) {
+		return speedProfile == null ? 0 : speedProfile.bucketClass(speedProfile.bucketOf(time));
+	}
+
 	/**
 	 * Retrieves the CityMap instance of this simulation
 	 * 
@@ -457,9 +1093,9 @@ public class Simulator {
 	/**
 	 * Sets the events of the simulation.
 	 * 
-	 * @param events The PriorityQueue of events
+	 * @param events The queue of events
 	 */
-	public void setEvents(PriorityQueue<Event> events) {
+	public void setEvents(EventQueue events) {
 		this.events = events;
 	}
 
@@ -468,7 +1104,7 @@ public class Simulator {
 	 * 
 	 * @return {@code events }
 	 */
-	public PriorityQueue<Event> getEvents() {
+	public EventQueue getEvents() {
 		return events;
 	}
 
@@ -498,22 +1134,20 @@ public class Simulator {
 	}
 
 	/**
-	 * Make an agent copy of locationOnRoad so that an agent cannot modify the attributes of the road.
+	 * Make an agent copy of locationOnRoad so that an agent cannot move the locations of the simulator.
+	 * The copy is on the same road, since the simulator and the fleet manager share the map.
 	 * 
 	 * @param locationOnRoad the location to make a copy for
 	 * @return an agent copy of the location 
 	 */
 	public LocationOnRoad agentCopy(LocationOnRoad locationOnRoad) {
-		Intersection from = mapForAgents.intersections().get(locationOnRoad.road.from.id);
-		Intersection to = mapForAgents.intersections().get(locationOnRoad.road.to.id);
-		Road roadAgentCopy = from.roadsMapFrom.get(to);
-		return new LocationOnRoad(roadAgentCopy, locationOnRoad.travelTimeFromStartIntersection);
+		return new LocationOnRoad(locationOnRoad.road, locationOnRoad.travelTimeFromStartIntersection);
 	}
 
 	public FleetManager createFleetManager() {
 		try {
 			Constructor<? extends FleetManager> cons = this.agentClass.getConstructor(CityMap.class);
-			return cons.newInstance(this.mapForAgents);
+			return cons.newInstance(this.map);
 		} catch (NoSuchMethodException | IllegalAccessException | InstantiationException |
 				InvocationTargetException e) {
 			e.printStackTrace();
@@ -524,7 +1158,7 @@ public class Simulator {
 //	public BaseAgent MakeAgent(long id) {
 //		try {
 //			Constructor<? extends BaseAgent> cons = this.agentClass.getConstructor( CityMap.class);
-//			return cons.newInstance(id, this.mapForAgents);
+//			return cons.newInstance(id, this.map);
 //		} catch (NoSuchMethodException | IllegalAccessException | InstantiationException |
 //				InvocationTargetException e) {
 //			e.printStackTrace();
@@ -0,0 +1,174 @@
+package COMSETsystem;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A SpeedProfile gives the travel times of roads by time of day. The day is split into buckets of equal
+ * length, and each road has a speed factor per bucket by which the speed of the road is multiplied; e.g., a
+ * factor of 0.5 doubles the travel time of the road. Roads without a profile keep their travel time all
+ * day.
+ *
+ * Buckets in which every road has the same speed factor are in the same bucket class, so that the shortest
+ * travel times of a class need to be computed only once; see bucketClass.
+ */
+public final class SpeedProfile {
+
+	private static final long SECONDS_PER_DAY = 24 * 60 * 60;
+
+	// The number of buckets in a day
+	private final int buckets;
+
+	// The length of a bucket in seconds
+	private final long bucketSeconds;
+
+	// The time zone in which the time of day is taken
+	private final ZoneId zoneId;
+
+	// The speed factors of each bucket by road id
+	private final Map<Long, double[]> speedFactors;
+
+	// The travel time of each road with a speed factor of 1 by road id
+	private final Map<Long, Long> baseTravelTimes = new HashMap<>();
+
+	// The first bucket with the same speed factors as each bucket
+	private final int[] bucketClasses;
+
+	/**
+	 * Creates a profile. The current travel times of the roads are those with a speed factor of 1.
+	 *
+	 * @param roads the roads of the map
+	 * @param speedFactors the speed factors of each bucket by road id
+	 * @param buckets the number of buckets in a day
+	 * @param zoneId the time zone of the map
+	 * @throws IllegalArgumentException if a day cannot be split into the buckets, or if a road does not have
+	 * a positive speed factor for each bucket
+	 */
+	public SpeedProfile(List<Road> roads, Map<Long, double[]> speedFactors, int buckets, ZoneId zoneId) {
+		if (buckets <= 0 || SECONDS_PER_DAY % buckets != 0) {
+			throw new IllegalArgumentException("A day cannot be split into " + buckets + " buckets");
+		}
+		for (Map.Entry<Long, double[]> entry : speedFactors.entrySet()) {
+			if (entry.getValue().length != buckets) {
+				throw new IllegalArgumentException("Road " + entry.getKey() + " has " + entry.getValue().length
+						+ " speed factors instead of " + buckets);
+			}
+			for (double speedFactor : entry.getValue()) {
+				if (!(speedFactor > 0)) {
+					throw new IllegalArgumentException("Speed factor " + speedFactor + " of road " + entry.getKey() + " is not positive");
+				}
+			}
+		}
+		this.buckets = buckets;
+		this.bucketSeconds = SECONDS_PER_DAY / buckets;
+		this.zoneId = zoneId;
+		this.speedFactors = speedFactors;
+		for (Road road : roads) {
+			baseTravelTimes.put(road.id, road.travelTime);
+		}
+
+		bucketClasses = new int[buckets];
+		for (int bucket = 0; bucket < buckets; bucket++) {
+			bucketClasses[bucket] = bucket;
+			for (int earlier = 0; earlier < bucket; earlier++) {
+				if (sameSpeedFactors(earlier, bucket)) {
+					bucketClasses[bucket] = earlier;
+					break;
+				}
+			}
+		}
+	}
+
+	private boolean sameSpeedFactors(int bucket1, int bucket2) {
+		for (double[] factors : speedFactors.values()) {
+			if (factors[bucket1] != factors[bucket2]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return the number of buckets in a day
+	 */
+	public int bucketCount() {
+		return buckets;
+	}
+
+	/**
+	 * @param time a time in epoch seconds
+	 * @return the bucket of the time of day of the time
+	 */
+	public int bucketOf(long time) {
+		return (int) (secondOfDay(time) / bucketSeconds);
+	}
+
+	/**
+	 * @param time a time in epoch seconds
+	 * @return the time in epoch seconds at which the bucket of time starts
+	 */
+	public long bucketStart(long time) {
+		return time - secondOfDay(time) % bucketSeconds;
+	}
+
+	/**
+	 * @param time a time in epoch seconds
+	 * @return the time in epoch seconds at which the bucket after the bucket of time starts
+	 */
+	public long bucketEnd(long time) {
+		return bucketStart(time) + bucketSeconds;
+	}
+
+	private long secondOfDay(long time) {
+		return ZonedDateTime.ofInstant(Instant.ofEpochSecond(time), zoneId).toLocalTime().toSecondOfDay();
+	}
+
+	/**
+	 * Gets the class of a bucket. Two buckets are in the same class if every road has the same speed factor
+	 * in both, and hence the same travel time.
+	 *
+	 * @param bucket a bucket
+	 * @return the first bucket of the day in the class of bucket
+	 */
+	public int bucketClass(int bucket) {
+		return bucketClasses[bucket];
+	}
+
+	/**
+	 * @param bucket a bucket
+	 * @return true if every road has a speed factor of 1 in the bucket
+	 */
+	public boolean isFreeFlow(int bucket) {
+		for (double[] factors : speedFactors.values()) {
+			if (factors[bucket] != 1.0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @param road a road of the map or of a copy of the map
+	 * @param bucket a bucket
+	 * @return the travel time of the road in the bucket in seconds
+	 */
+	public long travelTime(Road road, int bucket) {
+		long baseTravelTime = baseTravelTimes.get(road.id);
+		double[] factors = speedFactors.get(road.id);
+		return factors == null ? baseTravelTime : Math.round(baseTravelTime / factors[bucket]);
+	}
+
+	/**
+	 * Changes the travel time of a road with a speed factor of 1, e.g., because of a traffic incident.
+	 *
+	 * @param road a road of the map or of a copy of the map
+	 * @param travelTime the new travel time in seconds
+	 */
+	public void setBaseTravelTime(Road road, long travelTime) {
+		baseTravelTimes.put(road.id, travelTime);
+	}
+}
@@ -0,0 +1,259 @@
+package COMSETsystem;
+
+import COMSETsystem.FleetManager.ResourceState;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The TraceRecorder writes a compact binary trace of a simulation: every triggered event and the state in
+ * which it leaves its agent, every call of the fleet manager with its result, and the contributions of the
+ * events to the score. TraceReplay reads the trace back to rebuild the score and the state of every agent and
+ * resource without the map, the routing tables or the fleet manager.
+ *
+ * The trace starts with MAGIC and VERSION, followed by the maximum life time of resources, then by records
+ * that each start with a tag byte. All numbers are unsigned LEB128 varints. Times are written as the
+ * zigzag-encoded difference to the time of the previous record, and the first event id of a record as the
+ * zigzag-encoded difference to the first event id of the previous record, so that most of them take a byte.
+ * Other ids are written plus one, so that -1 takes a byte. The trace ends with an END record.
+ *
+ * The records are written to a direct buffer and flushed to a FileChannel when it is nearly full. Records are
+ * written by the thread running the simulation, in the order of the events.
+ */
+final class TraceRecorder implements AutoCloseable {
+
+	// The first bytes of a trace
+	static final byte[] MAGIC = {'C', 'O', 'M', 'S', 'E', 'T', 'T', 'R'};
+	static final int VERSION = 1;
+
+	// The tags of the records
+	static final int END = 0;
+	static final int TRIGGER = 1;
+	static final int AGENT_STATE = 2;
+	static final int RESOURCE_AVAILABLE = 3;
+	static final int PICKUP = 4;
+	static final int DROP_OFF = 5;
+	static final int EXPIRED = 6;
+	static final int REACH_INTERSECTION = 7;
+	static final int RESOURCE_CHANGE = 8;
+	static final int TRAVEL_TIME = 9;
+
+	// The kinds of triggered event
+	static final int AGENT_EVENT = 0;
+	static final int RESOURCE_EVENT = 1;
+	static final int TRAVEL_TIME_EVENT = 2;
+
+	// The largest number of bytes of a record
+	static final int MAX_RECORD_BYTES = 128;
+
+	// The size of the buffer
+	private static final int BUFFER_BYTES = 1 << 16;
+
+	private final FileChannel channel;
+
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+
+	// The time and the first event id of the previous record
+	private long lastTime = 0;
+	private long lastId = 0;
+
+	// The number of records written
+	private long records = 0;
+
+	/**
+	 * Creates the trace file, replacing any existing one, and writes its header.
+	 *
+	 * @param path the path of the trace file
+	 * @param resourceMaximumLifeTime the maximum life time of a resource in seconds
+	 * @throws IOException if the file cannot be created
+	 */
+	TraceRecorder(String path, long resourceMaximumLifeTime) throws IOException {
+		channel = FileChannel.open(Paths.get(path), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		buffer.put(MAGIC);
+		writeVarint(VERSION);
+		writeVarint(resourceMaximumLifeTime);
+	}
+
+	/**
+	 * Records that an event is triggered.
+	 */
+	void trigger(Event event) {
+		trigger(event, event.time);
+	}
+
+	/**
+	 * Records that an event was triggered at a time, e.g., after the trigger changed the time of the event.
+	 */
+	void trigger(Event event, long time) {
+		int kind = event instanceof AgentEvent ? AGENT_EVENT : event instanceof ResourceEvent ? RESOURCE_EVENT
+				: TRAVEL_TIME_EVENT;
+		begin(TRIGGER, event.id, time);
+		writeVarint(kind);
+	}
+
+	/**
+	 * Records the state in which a triggered agent event leaves its agent, i.e., the time, state and location
+	 * of its next trigger, and the resource assigned to the agent.
+	 */
+	void agentState(AgentEvent event) {
+		begin(AGENT_STATE, event.id, event.time);
+		writeVarint(event.state.ordinal());
+		writeLocation(event.loc);
+		writeOptionalId(event.assignedResource == null ? -1 : event.assignedResource.id);
+		writeVarint(event.isPickup ? 1 : 0);
+	}
+
+	/**
+	 * Records that a resource is introduced.
+	 */
+	void resourceAvailable(ResourceEvent resource) {
+		begin(RESOURCE_AVAILABLE, resource.id, resource.availableTime);
+		writeVarint(resource.expirationTime - resource.availableTime);
+		writeLocation(resource.pickupLoc);
+		writeLocation(resource.dropoffLoc);
+		writeVarint(resource.tripTime);
+	}
+
+	/**
+	 * Records that an agent picks up a resource, with the search time and the resource wait time it adds.
+	 */
+	void pickup(long agentId, long resourceId, long time, long searchTime, long waitTime) {
+		begin(PICKUP, agentId, time);
+		writeOptionalId(resourceId);
+		writeZigzag(searchTime);
+		writeZigzag(waitTime);
+	}
+
+	/**
+	 * Records that a resource is dropped off, with the resource wait time and trip time it adds.
+	 */
+	void dropOff(long resourceId, long agentId, long time, long waitTime, long tripTime) {
+		begin(DROP_OFF, resourceId, time);
+		writeOptionalId(agentId);
+		writeZigzag(waitTime);
+		writeZigzag(tripTime);
+	}
+
+	/**
+	 * Records that a resource expires, with the resource wait time it adds.
+	 */
+	void expired(long resourceId, long time, long waitTime) {
+		begin(EXPIRED, resourceId, time);
+		writeZigzag(waitTime);
+	}
+
+	/**
+	 * Records a call of onReachIntersection or onReachIntersectionWithResource and the intersection returned.
+	 *
+	 * @param resourceId the id of the resource of onReachIntersectionWithResource, or -1
+	 * @param next the intersection returned, or null
+	 */
+	void reachIntersection(long agentId, long time, LocationOnRoad loc, long resourceId, Intersection next) {
+		begin(REACH_INTERSECTION, agentId, time);
+		writeLocation(loc);
+		writeOptionalId(resourceId);
+		writeOptionalId(next == null ? -1 : next.id);
+	}
+
+	/**
+	 * Records a call of onResourceAvailabilityChange and the action returned.
+	 */
+	void resourceChange(long resourceId, long assignedAgentId, ResourceState state, LocationOnRoad loc, long time,
+						AgentAction action) {
+		begin(RESOURCE_CHANGE, resourceId, time);
+		writeVarint(state.ordinal());
+		writeLocation(loc);
+		writeOptionalId(assignedAgentId);
+		writeVarint(action.type.ordinal());
+		writeOptionalId(action.agentId);
+		writeOptionalId(action.resId);
+	}
+
+	/**
+	 * Records a change of the travel time of a road.
+	 */
+	void travelTime(long eventId, long time, Road road, long travelTime) {
+		begin(TRAVEL_TIME, eventId, time);
+		writeVarint(road.id);
+		writeVarint(travelTime);
+	}
+
+	/**
+	 * Records the end of the simulation, with the agents still searching that the score counts.
+	 *
+	 * @param simulationEndTime the end time of the simulation
+	 * @param emptyAgents the number of agents still searching
+	 * @param remainingSearchTime the total time they have been searching for by the end time
+	 */
+	void end(long simulationEndTime, long emptyAgents, long remainingSearchTime) {
+		begin(END, 0, simulationEndTime);
+		writeVarint(emptyAgents);
+		writeVarint(remainingSearchTime);
+	}
+
+	/**
+	 * @return the number of records written
+	 */
+	long records() {
+		return records;
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			channel.close();
+		}
+	}
+
+	private void begin(int tag, long id, long time) {
+		if (buffer.remaining() < MAX_RECORD_BYTES) {
+			try {
+				flush();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		records++;
+		buffer.put((byte) tag);
+		writeZigzag(id - lastId);
+		writeZigzag(time - lastTime);
+		lastId = id;
+		lastTime = time;
+	}
+
+	private void flush() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	private void writeLocation(LocationOnRoad loc) {
+		writeVarint(loc.road.id);
+		writeZigzag(loc.travelTimeFromStartIntersection);
+	}
+
+	private void writeOptionalId(long id) {
+		writeVarint(id + 1);
+	}
+
+	private void writeZigzag(long value) {
+		writeVarint((value << 1) ^ (value >> 63));
+	}
+
+	private void writeVarint(long value) {
+		while ((value & ~0x7FL) != 0) {
+			buffer.put((byte) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		buffer.put((byte) value);
+	}
+}
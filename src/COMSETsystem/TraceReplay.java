@@ -0,0 +1,387 @@
+package COMSETsystem;
+
+import COMSETsystem.FleetManager.ResourceState;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The TraceReplay reads a trace written by a TraceRecorder and rebuilds the score of the simulation and the
+ * state of every agent and resource from it, without the map, the routing tables or the fleet manager. Given
+ * an event id, it also prints every record about that agent or resource, e.g., to follow what a fleet manager
+ * did with it.
+ *
+ * Usage: java COMSETsystem.TraceReplay trace_file [event_id]
+ */
+public final class TraceReplay {
+
+	// The size of the read buffer
+	private static final int BUFFER_BYTES = 1 << 16;
+
+	private final String path;
+
+	// The id of the agent or resource whose records are printed, or -1
+	private final long followedId;
+
+	private ByteBuffer buffer;
+
+	private FileChannel channel;
+
+	private boolean endOfFile;
+
+	// The agent of the last agent event triggered
+	private AgentState triggeredAgent;
+
+	// The time and the first event id of the previous record
+	private long lastTime;
+	private long lastId;
+
+	// The maximum life time of resources in seconds
+	long resourceMaximumLifeTime;
+
+	// The number of records and of triggered events read
+	long records;
+	long triggers;
+
+	// The score, as accumulated by the simulator
+	long totalResources;
+	long expiredResources;
+	long totalResourceWaitTime;
+	long totalResourceTripTime;
+	long totalAgentSearchTime;
+	long totalAssignments;
+	long emptyAgents;
+	long remainingSearchTime;
+	long simulationEndTime;
+
+	// The state of every agent and resource after the last record read
+	final Map<Long, AgentState> agents = new HashMap<>();
+	final Map<Long, ResourceRecord> resources = new HashMap<>();
+
+	/**
+	 * The state of an agent as left by its last triggered event.
+	 */
+	static final class AgentState {
+		// The time, state and location of the next trigger of the agent event
+		long time;
+		AgentEvent.State state;
+		long roadId;
+		long offset;
+		// The id of the resource assigned to the agent, or -1, and whether it is picked up
+		long resourceId;
+		boolean isPickup;
+		// The number of times the agent event was triggered
+		long triggers;
+	}
+
+	/**
+	 * A resource as introduced, its state, and the agent last assigned to it.
+	 */
+	static final class ResourceRecord {
+		long availableTime;
+		long expirationTime;
+		long pickupRoadId;
+		long pickupOffset;
+		long dropoffRoadId;
+		long dropoffOffset;
+		long tripTime;
+		ResourceState state = ResourceState.AVAILABLE;
+		long assignedAgentId = -1;
+	}
+
+	/**
+	 * Constructor of TraceReplay.
+	 *
+	 * @param path the path of the trace file
+	 * @param followedId the id of the agent or resource whose records to print, or -1
+	 */
+	public TraceReplay(String path, long followedId) {
+		this.path = path;
+		this.followedId = followedId;
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.out.println("Usage: java COMSETsystem.TraceReplay trace_file [event_id]");
+			System.exit(1);
+		}
+		TraceReplay replay = new TraceReplay(args[0], args.length > 1 ? Long.parseLong(args[1]) : -1);
+		long start = System.nanoTime();
+		replay.replay();
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.println(replay.records + " records, " + replay.triggers + " events replayed in "
+				+ String.format("%.2f", seconds) + " s (" + String.format("%.1f", replay.records / seconds / 1e6)
+				+ " M records/s)");
+		System.out.println(replay.agents.size() + " agents, " + replay.resources.size() + " resources");
+		System.out.print(replay.statistics());
+	}
+
+	/**
+	 * Reads the whole trace.
+	 *
+	 * @throws IOException if the file cannot be read or is not a trace
+	 */
+	public void replay() throws IOException {
+		try (FileChannel fileChannel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+			channel = fileChannel;
+			buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+			buffer.flip();
+			fill();
+			for (byte b : TraceRecorder.MAGIC) {
+				if (!buffer.hasRemaining() || buffer.get() != b) {
+					throw new IOException(path + " is not a trace");
+				}
+			}
+			long version = readVarint();
+			if (version != TraceRecorder.VERSION) {
+				throw new IOException("Unsupported trace version " + version);
+			}
+			resourceMaximumLifeTime = readVarint();
+			try {
+				while (readRecord()) {
+				}
+			} catch (BufferUnderflowException e) {
+				throw new IOException(path + " ends in the middle of a record", e);
+			}
+		}
+	}
+
+	/**
+	 * Reads one record and applies it.
+	 *
+	 * @return false after the END record
+	 * @throws IOException if the trace ends before the END record
+	 */
+	private boolean readRecord() throws IOException {
+		if (buffer.remaining() < TraceRecorder.MAX_RECORD_BYTES) {
+			fill();
+		}
+		if (!buffer.hasRemaining()) {
+			throw new IOException(path + " ends without an END record");
+		}
+		records++;
+		int tag = buffer.get();
+		long id = lastId + readZigzag();
+		long time = lastTime + readZigzag();
+		lastId = id;
+		lastTime = time;
+		switch (tag) {
+			case TraceRecorder.END: {
+				simulationEndTime = time;
+				emptyAgents = readVarint();
+				remainingSearchTime = readVarint();
+				return false;
+			}
+			case TraceRecorder.TRIGGER: {
+				int kind = (int) readVarint();
+				triggers++;
+				if (kind == TraceRecorder.AGENT_EVENT) {
+					triggeredAgent = agents.computeIfAbsent(id, agentId -> new AgentState());
+					triggeredAgent.triggers++;
+				}
+				follow(id, time, "triggered");
+				break;
+			}
+			case TraceRecorder.AGENT_STATE: {
+				// the record follows the trigger of the agent event
+				AgentState agent = triggeredAgent;
+				agent.time = time;
+				agent.state = AgentEvent.State.values()[(int) readVarint()];
+				agent.roadId = readVarint();
+				agent.offset = readZigzag();
+				agent.resourceId = readOptionalId();
+				agent.isPickup = readVarint() != 0;
+				if (id == followedId) {
+					follow(id, time, "next trigger " + agent.state + " at road " + agent.roadId + " + " + agent.offset
+							+ (agent.resourceId == -1 ? "" : (agent.isPickup ? " carrying " : " assigned to ")
+							+ agent.resourceId));
+				}
+				break;
+			}
+			case TraceRecorder.RESOURCE_AVAILABLE: {
+				ResourceRecord resource = new ResourceRecord();
+				resource.availableTime = time;
+				resource.expirationTime = time + readVarint();
+				resource.pickupRoadId = readVarint();
+				resource.pickupOffset = readZigzag();
+				resource.dropoffRoadId = readVarint();
+				resource.dropoffOffset = readZigzag();
+				resource.tripTime = readVarint();
+				resources.put(id, resource);
+				totalResources++;
+				if (id == followedId) {
+					follow(id, time, "available at road " + resource.pickupRoadId + " + " + resource.pickupOffset
+							+ " until " + resource.expirationTime + " to road " + resource.dropoffRoadId + " + "
+							+ resource.dropoffOffset);
+				}
+				break;
+			}
+			case TraceRecorder.PICKUP: {
+				long resourceId = readOptionalId();
+				long searchTime = readZigzag();
+				long waitTime = readZigzag();
+				totalAgentSearchTime += searchTime;
+				totalResourceWaitTime += waitTime;
+				setState(resourceId, ResourceState.PICKED_UP);
+				if (followedId != -1) {
+					follow(id, time, "picks up " + resourceId + " after searching " + searchTime + " s");
+					follow(resourceId, time, "picked up by " + id);
+				}
+				break;
+			}
+			case TraceRecorder.DROP_OFF: {
+				long agentId = readOptionalId();
+				long waitTime = readZigzag();
+				long tripTime = readZigzag();
+				totalResourceWaitTime += waitTime;
+				totalResourceTripTime += tripTime;
+				totalAssignments++;
+				setState(id, ResourceState.DROPPED_OFF);
+				if (followedId != -1) {
+					follow(id, time, "dropped off by " + agentId + " after waiting " + waitTime + " s and a trip of "
+							+ tripTime + " s");
+					follow(agentId, time, "drops off " + id);
+				}
+				break;
+			}
+			case TraceRecorder.EXPIRED: {
+				totalResourceWaitTime += readZigzag();
+				expiredResources++;
+				setState(id, ResourceState.EXPIRED);
+				follow(id, time, "expires");
+				break;
+			}
+			case TraceRecorder.REACH_INTERSECTION: {
+				long roadId = readVarint();
+				long offset = readZigzag();
+				long resourceId = readOptionalId();
+				long next = readOptionalId();
+				if (id == followedId) {
+					follow(id, time, "fleet manager: reached the end of road " + roadId + " + " + offset
+							+ (resourceId == -1 ? "" : " with " + resourceId) + ", go to intersection " + next);
+				}
+				break;
+			}
+			case TraceRecorder.RESOURCE_CHANGE: {
+				ResourceState state = ResourceState.values()[(int) readVarint()];
+				long roadId = readVarint();
+				long offset = readZigzag();
+				long assignedAgentId = readOptionalId();
+				AgentAction.Type type = AgentAction.Type.values()[(int) readVarint()];
+				long actionAgentId = readOptionalId();
+				long actionResourceId = readOptionalId();
+				if (type == AgentAction.Type.ASSIGN) {
+					ResourceRecord resource = resources.get(actionResourceId);
+					if (resource != null) {
+						resource.assignedAgentId = actionAgentId;
+					}
+				}
+				if (id == followedId || (type != AgentAction.Type.NONE
+						&& (actionAgentId == followedId || actionResourceId == followedId))) {
+					String line = "fleet manager: resource " + id + " " + state + " at road " + roadId + " + "
+							+ offset + (assignedAgentId == -1 ? "" : " with agent " + assignedAgentId) + ", action "
+							+ type + (type == AgentAction.Type.NONE ? "" : " " + actionAgentId + " " + actionResourceId);
+					System.out.println(time + " " + line);
+				}
+				break;
+			}
+			case TraceRecorder.TRAVEL_TIME: {
+				long roadId = readVarint();
+				long travelTime = readVarint();
+				if (id == followedId) {
+					follow(id, time, "sets the travel time of road " + roadId + " to " + travelTime);
+				}
+				break;
+			}
+			default:
+				throw new IOException("Unknown record " + tag + " in " + path);
+		}
+		return true;
+	}
+
+	/**
+	 * @return the statistics of the simulation as the simulator prints them
+	 */
+	String statistics() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("\n***Statistics***\n");
+		if (totalResources != 0) {
+			sb.append("average agent search time: ")
+					.append(Math.floorDiv(totalAgentSearchTime + remainingSearchTime, (totalAssignments + emptyAgents)))
+					.append(" seconds \n");
+			sb.append("average resource wait time: ")
+					.append(Math.floorDiv(totalResourceWaitTime, totalResources))
+					.append(" seconds \n");
+			sb.append("resource expiration percentage: ")
+					.append(Math.floorDiv(expiredResources * 100, totalResources))
+					.append("%\n");
+			sb.append("\n");
+			sb.append("average resource trip time: ")
+					.append(Math.floorDiv(totalResourceTripTime, totalAssignments))
+					.append(" seconds \n");
+			sb.append("total number of assignments: ")
+					.append(totalAssignments)
+					.append("\n");
+		} else {
+			sb.append("No resources.\n");
+		}
+		return sb.toString();
+	}
+
+	private void setState(long resourceId, ResourceState state) {
+		ResourceRecord resource = resources.get(resourceId);
+		if (resource != null) {
+			resource.state = state;
+		}
+	}
+
+	private void follow(long id, long time, String what) {
+		if (id == followedId) {
+			System.out.println(time + " " + id + " " + what);
+		}
+	}
+
+	/**
+	 * Moves the unread bytes to the start of the buffer and reads as much of the file as fits after them.
+	 */
+	private void fill() throws IOException {
+		if (endOfFile) {
+			return;
+		}
+		buffer.compact();
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer) < 0) {
+				endOfFile = true;
+				break;
+			}
+		}
+		buffer.flip();
+	}
+
+	private long readOptionalId() {
+		return readVarint() - 1;
+	}
+
+	private long readZigzag() {
+		long value = readVarint();
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	private long readVarint() {
+		long value = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = buffer.get();
+			value |= (long) (b & 0x7F) << shift;
+			shift += 7;
+		} while (b < 0);
+		return value;
+	}
+}
@@ -0,0 +1,77 @@
+package COMSETsystem;
+
+/**
+ * The travel times of a PathTable stored column by column: the travel times from all sources to a destination
+ * are found at indices destination * size + source. Many-to-one queries, such as the travel times from every
+ * agent to one resource, then read one block of size ints instead of one cache line of a different row per
+ * source. Only travel times are kept; paths are still answered by the path table.
+ */
+final class TransposedTravelTimes {
+
+	// The number of rows and columns of a square block copied at once, so that both the rows read and the
+	// columns written stay in the cache
+	private static final int BLOCK = 64;
+
+	// The number of intersections
+	private final int size;
+
+	// Shortest travel times in seconds, column by column, stored as in PathTable
+	private final int[] travelTimes;
+
+	/**
+	 * Copies the travel times of a table.
+	 *
+	 * @param table the table to copy
+	 * @throws IllegalArgumentException if the copy would not fit in a Java array
+	 */
+	TransposedTravelTimes(PathTable table) {
+		size = table.size();
+		if ((long) size * size > Integer.MAX_VALUE - 8) {
+			throw new IllegalArgumentException("A map of " + size + " intersections is too large for transposed travel times");
+		}
+		travelTimes = new int[size * size];
+		for (int firstSource = 0; firstSource < size; firstSource += BLOCK) {
+			for (int firstDestination = 0; firstDestination < size; firstDestination += BLOCK) {
+				for (int source = firstSource; source < Math.min(size, firstSource + BLOCK); source++) {
+					for (int destination = firstDestination; destination < Math.min(size, firstDestination + BLOCK); destination++) {
+						travelTimes[destination * size + source] = toStored(table.travelTime(source, destination));
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Copies the row of a source again after it changed in the table.
+	 *
+	 * @param table the table the travel times were copied from
+	 * @param source path table index of the source
+	 */
+	void updateRow(PathTable table, int source) {
+		for (int destination = 0; destination < size; destination++) {
+			travelTimes[destination * size + source] = toStored(table.travelTime(source, destination));
+		}
+	}
+
+	/**
+	 * Gets the shortest travel time between two intersections.
+	 *
+	 * @param source path table index of the source
+	 * @param destination path table index of the destination
+	 * @return the travel time in seconds, or Long.MAX_VALUE if destination is unreachable from source
+	 */
+	long travelTime(int source, int destination) {
+		return PathTable.fromStoredTravelTime(travelTimes[destination * size + source]);
+	}
+
+	/**
+	 * @return the number of bytes taken by the travel times
+	 */
+	long sizeInBytes() {
+		return (long) size * size * Integer.BYTES;
+	}
+
+	private static int toStored(long travelTime) {
+		return travelTime == Long.MAX_VALUE ? PathTable.UNREACHABLE : PathTable.toStoredTravelTime(travelTime);
+	}
+}
@@ -1,6 +1,7 @@
 package DataParsing;
 
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.util.ArrayList;
 import java.util.Scanner;
 import java.time.ZoneId;
@@ -30,6 +31,9 @@ public class CSVNewYorkParser {
 
 	DateTimeFormatter dtf;
 
+	// the scanner of the file opened by open()
+	private Scanner sc;
+
 	ZoneId zoneId;
 
 	/**
@@ -68,34 +72,12 @@ public class CSVNewYorkParser {
 	public ArrayList<Resource> parse() {
 
 		try {
-			Scanner sc = new Scanner(new File(path));   //scanner will scan the file specified by path
-			sc.useDelimiter(",|\n");    //scanner will skip over "," and "\n" found in file
-			sc.nextLine(); // skip the header
-
-			//while there are tokens in the file the scanner will scan the input
-			//each line in input file will contain 4 tokens for the scanner and will be in the format : latitude longitude time type
-			//per line of input file we will create a new TimestampAgRe object
-			// and save the 4 tokens of each line in the corresponding field of the TimestampAgRe object
-			while (sc.hasNext()) {
-				sc.next();// skip first VendorID
-				long time = dateConversion(sc.next());
-				sc.next();// skip these fields
-				sc.next();
-				sc.next();
-				double pickupLon = Double.parseDouble(sc.next());
-				double pickupLat = Double.parseDouble(sc.next());
-				sc.next();// skip these fields
-				sc.next();
-				double dropoffLon = Double.parseDouble(sc.next());
-				double dropoffLat = Double.parseDouble(sc.next());
-				sc.nextLine(); //skip rest of fileds in this line
-				// Only keep the resources such that both pickup location and dropoff location are within the bounding polygon.
-				if (!(MapCreator.insidePolygon(pickupLon, pickupLat) && MapCreator.insidePolygon(dropoffLon, dropoffLat))) {
-					continue;
-				}
-				resources.add(new Resource(pickupLat, pickupLon, dropoffLat, dropoffLon, time)); //create new resource with the above fields
+			open();
+			Resource resource;
+			while ((resource = next()) != null) {
+				resources.add(resource);
 			}
-			sc.close();
+			close();
 		} catch (Exception e) {
 
 			e.printStackTrace();
@@ -103,4 +85,54 @@ public class CSVNewYorkParser {
 		return resources;
 	}
 
+	/**
+	 * Open the csv file to read its resources one at a time with next().
+	 *
+	 * @throws FileNotFoundException if the file does not exist
+	 */
+	public void open() throws FileNotFoundException {
+		sc = new Scanner(new File(path));   //scanner will scan the file specified by path
+		sc.useDelimiter(",|\n");    //scanner will skip over "," and "\n" found in file
+		sc.nextLine(); // skip the header
+	}
+
+	/**
+	 * Read the next resource whose pickup and dropoff locations are both within the bounding polygon.
+	 *
+	 * @return the next resource, or null at the end of the file
+	 */
+	public Resource next() {
+		//while there are tokens in the file the scanner will scan the input
+		//each line in input file will contain 4 tokens for the scanner and will be in the format : latitude longitude time type
+		//per line of input file we will create a new TimestampAgRe object
+		// and save the 4 tokens of each line in the corresponding field of the TimestampAgRe object
+		while (sc.hasNext()) {
+			sc.next();// skip first VendorID
+			long time = dateConversion(sc.next());
+			sc.next();// skip these fields
+			sc.next();
+			sc.next();
+			double pickupLon = Double.parseDouble(sc.next());
+			double pickupLat = Double.parseDouble(sc.next());
+			sc.next();// skip these fields
+			sc.next();
+			double dropoffLon = Double.parseDouble(sc.next());
+			double dropoffLat = Double.parseDouble(sc.next());
+			sc.nextLine(); //skip rest of fileds in this line
+			// Only keep the resources such that both pickup location and dropoff location are within the bounding polygon.
+			if (!(MapCreator.insidePolygon(pickupLon, pickupLat) && MapCreator.insidePolygon(dropoffLon, dropoffLat))) {
+				continue;
+			}
+			return new Resource(pickupLat, pickupLon, dropoffLat, dropoffLon, time); //create new resource with the above fields
+		}
+		return null;
+	}
+
+	/**
+	 * Close the csv file opened by open().
+	 */
+	public void close() {
+		sc.close();
+	}
+
 }
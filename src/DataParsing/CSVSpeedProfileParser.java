@@ -0,0 +1,54 @@
+package DataParsing;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Scanner;
+
+/**
+ * The CSVSpeedProfileParser class parses a file of road speed profiles. After a header line, each line has
+ * the id of the start intersection of a road, the id of its end intersection, and one speed factor per
+ * time-of-day bucket. The day is split into as many buckets of equal length as there are speed factors on
+ * a line; e.g., 24 speed factors give one bucket per hour starting at midnight.
+ */
+public class CSVSpeedProfileParser {
+
+	// absolute path to csv file to be parsed
+	private String path;
+
+	/**
+	 * Constructor of the CSVSpeedProfileParser class
+	 * @param path full path to the speed profile file
+	 */
+	public CSVSpeedProfileParser(String path) {
+		this.path = path;
+	}
+
+	/**
+	 * Parse the csv file.
+	 *
+	 * @return ArrayList<RoadSpeedProfile> the speed profiles in the order of the file
+	 */
+	public ArrayList<RoadSpeedProfile> parse() {
+		ArrayList<RoadSpeedProfile> profiles = new ArrayList<>();
+		try {
+			Scanner sc = new Scanner(new File(path));
+			sc.nextLine(); // skip the header
+			while (sc.hasNextLine()) {
+				String line = sc.nextLine().trim();
+				if (line.isEmpty()) {
+					continue;
+				}
+				String[] fields = line.split(",");
+				double[] speedFactors = new double[fields.length - 2];
+				for (int i = 0; i < speedFactors.length; i++) {
+					speedFactors[i] = Double.parseDouble(fields[i + 2].trim());
+				}
+				profiles.add(new RoadSpeedProfile(Long.parseLong(fields[0].trim()), Long.parseLong(fields[1].trim()), speedFactors));
+			}
+			sc.close();
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+		return profiles;
+	}
+}
@@ -0,0 +1,67 @@
+package DataParsing;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Scanner;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * The CSVTrafficParser class parses a file of road travel time changes. After a header line, each line
+ * has the following columns:
+ *
+ * 1. The local time of the change in the format "yyyy-MM-dd HH:mm:ss".
+ * 2. The id of the start intersection of the road.
+ * 3. The id of the end intersection of the road.
+ * 4. The new travel time of the road in seconds.
+ */
+public class CSVTrafficParser {
+
+	// absolute path to csv file to be parsed
+	private String path;
+
+	DateTimeFormatter dtf;
+
+	ZoneId zoneId;
+
+	/**
+	 * Constructor of the CSVTrafficParser class
+	 * @param path full path to the traffic file
+	 * @param zoneId the time zone id of the studied area
+	 */
+	public CSVTrafficParser(String path, ZoneId zoneId) {
+		this.path = path;
+		this.dtf = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+		this.zoneId = zoneId;
+	}
+
+	/**
+	 * Parse the csv file.
+	 *
+	 * @return ArrayList<TrafficUpdate> the travel time changes in the order of the file
+	 */
+	public ArrayList<TrafficUpdate> parse() {
+		ArrayList<TrafficUpdate> updates = new ArrayList<>();
+		try {
+			Scanner sc = new Scanner(new File(path));
+			sc.nextLine(); // skip the header
+			while (sc.hasNextLine()) {
+				String line = sc.nextLine().trim();
+				if (line.isEmpty()) {
+					continue;
+				}
+				String[] fields = line.split(",");
+				LocalDateTime ldt = LocalDateTime.parse(fields[0].trim(), dtf);
+				long time = ZonedDateTime.of(ldt, zoneId).toEpochSecond();
+				updates.add(new TrafficUpdate(time, Long.parseLong(fields[1].trim()), Long.parseLong(fields[2].trim()),
+						Long.parseLong(fields[3].trim())));
+			}
+			sc.close();
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+		return updates;
+	}
+}
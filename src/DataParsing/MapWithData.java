@@ -3,6 +3,7 @@ package DataParsing;
 import COMSETsystem.*;
 
 import java.io.BufferedWriter;
+import java.io.FileNotFoundException;
 import java.io.FileWriter;
 import java.time.ZoneId;
 import java.util.*;
@@ -19,8 +20,8 @@ public class MapWithData {
 	// Full path of the file containing the resources to be loaded to the simulator
 	private String resourceFile;    
 
-	// Priority queue of events
-	public PriorityQueue<Event> events;
+	// Queue of events
+	public EventQueue events;
 
 	// The earliest resource introduction time. The time is used to determine the time at which
 	// agents are to be deployed. The agents are to be deployed at time earliestResourceTime - 1.
@@ -43,10 +44,21 @@ public class MapWithData {
 	 * @param agentPlacementRandomSeed Seed for randome number that generates agent placements
 	 */
 	public MapWithData(CityMap map, String resourceFile, long agentPlacementRandomSeed) {
+		this(map, resourceFile, agentPlacementRandomSeed, new HeapEventQueue());
+	}
+
+	/**
+	 * Constructor of MapWithData
+	 * @param map reference to the map
+	 * @param resourceFile full path to the resource file
+	 * @param agentPlacementRandomSeed Seed for randome number that generates agent placements
+	 * @param events the empty queue to which the events are added
+	 */
+	public MapWithData(CityMap map, String resourceFile, long agentPlacementRandomSeed, EventQueue events) {
 		this.map = map;
 		this.resourceFile = resourceFile;
 		this.agentPlacementRandomSeed = agentPlacementRandomSeed;
-		events = new PriorityQueue<>();
+		this.events = events;
 		zoneId = map.computeZoneId();
 	}
 
@@ -65,13 +77,34 @@ public class MapWithData {
 		CSVNewYorkParser parser = new CSVNewYorkParser(resourceFile, zoneId);
 		ArrayList<Resource> resourcesParsed = parser.parse();
 		try {
-            for (Resource resource : resourcesParsed) {
+			int count = resourcesParsed.size();
+			LocationOnRoad[] pickupMatches = new LocationOnRoad[count];
+			LocationOnRoad[] dropoffMatches = new LocationOnRoad[count];
+			for (int i = 0; i < count; i++) {
 				// map matching
-				LocationOnRoad pickupMatch = mapMatch(resource.getPickupLon(), resource.getPickupLat());
-				LocationOnRoad dropoffMatch = mapMatch(resource.getDropoffLon(), resource.getDropoffLat());
-				long tripTime = simulator.getMap().travelTimeBetween(pickupMatch, dropoffMatch);
+				Resource resource = resourcesParsed.get(i);
+				pickupMatches[i] = mapMatch(resource.getPickupLon(), resource.getPickupLat());
+				dropoffMatches[i] = mapMatch(resource.getDropoffLon(), resource.getDropoffLat());
+			}
 
-				ResourceEvent ev = new ResourceEvent(pickupMatch, dropoffMatch, resource.getTime(), tripTime, simulator, fleetManager, assignmentManager);
+			// use the travel times of the time of day at which each resource is introduced, one time bucket
+			// class after the other, so that the map switches to each class once
+			Integer[] order = new Integer[count];
+			for (int i = 0; i < count; i++) {
+				order[i] = i;
+			}
+			Arrays.sort(order, Comparator.comparingInt((Integer i) -> simulator.timeBucketClass(
+					resourcesParsed.get(i).getTime())).thenComparingLong(i -> resourcesParsed.get(i).getTime()));
+			long[] tripTimes = new long[count];
+			for (int i : order) {
+				simulator.updateTimeBucket(resourcesParsed.get(i).getTime());
+				tripTimes[i] = simulator.getMap().travelTimeBetween(pickupMatches[i], dropoffMatches[i]);
+			}
+
+			// the events are created in file order, which breaks ties between resources of the same time
+			for (int i = 0; i < count; i++) {
+				Resource resource = resourcesParsed.get(i);
+				ResourceEvent ev = new ResourceEvent(pickupMatches[i], dropoffMatches[i], resource.getTime(), tripTimes[i], simulator, fleetManager, assignmentManager);
 				assignmentManager.addNewEvent(ev);
 				events.add(ev);
 
@@ -90,6 +123,19 @@ public class MapWithData {
 		return latestResourceTime;
 	}
 
+	/**
+	 * Opens the resource file as a stream of resources in time order, for resources introduced during the
+	 * simulation one at a time instead of all by createMapWithData. Sets earliestResourceTime.
+	 *
+	 * @return the stream of resources
+	 * @throws FileNotFoundException if the resource file does not exist
+	 */
+	public ResourceStream createResourceStream() throws FileNotFoundException {
+		ResourceStream stream = new ResourceStream(resourceFile, zoneId);
+		earliestResourceTime = stream.earliestTime();
+		return stream;
+	}
+
 	/**
 	 * Match a point to the closest location on the map
 	 */
@@ -99,8 +145,8 @@ public class MapWithData {
 		double [] snapResult = snap(link.from.getX(), link.from.getY(), link.to.getX(), link.to.getY(), xy[0], xy[1]);
 		double distanceFromStartVertex = this.distance(snapResult[0], snapResult[1], link.from.getX(), link.from.getY());
 		long travelTimeFromStartVertex = Math.round(distanceFromStartVertex / link.length * link.travelTime);
-		long travelTimeFromStartIntersection = link.beginTime + travelTimeFromStartVertex;
-		return new LocationOnRoad(link.road, travelTimeFromStartIntersection);		
+		long travelTimeFromStartIntersection = link.getBeginTime() + travelTimeFromStartVertex;
+		return new LocationOnRoad(link.getRoad(), travelTimeFromStartIntersection);		
 	}
 
 	/**
@@ -170,8 +216,8 @@ public class MapWithData {
 		for (int i = 0; i < simulator.totalAgents(); i++) {
 			Road road = map.roads().get(generator.nextInt(map.roads().size()));
 			long travelTimeFromStartIntersection;
-			if (road.travelTime != 0L) {
-				travelTimeFromStartIntersection = generator.nextInt((int) road.travelTime);
+			if (road.getTravelTime() != 0L) {
+				travelTimeFromStartIntersection = generator.nextInt((int) road.getTravelTime());
 			} else {
 				travelTimeFromStartIntersection = 0L;
 			}
@@ -185,6 +231,62 @@ public class MapWithData {
 		fleetManager.agentsCreated(initAgents);
 	}
 
+	/**
+	 * Creates the speed profile of the map from a speed profile file. Profiles of roads that are not in the
+	 * map, e.g., because they are outside the bounding polygon, are ignored.
+	 *
+	 * @param speedProfileFile full path to the speed profile file; see CSVSpeedProfileParser
+	 * @return the speed profile
+	 * @throws IllegalArgumentException if the file has no profile or its profiles do not have the same
+	 * number of speed factors
+	 */
+	public SpeedProfile createSpeedProfile(String speedProfileFile) {
+		CSVSpeedProfileParser parser = new CSVSpeedProfileParser(speedProfileFile);
+		ArrayList<RoadSpeedProfile> profiles = parser.parse();
+		if (profiles.isEmpty()) {
+			throw new IllegalArgumentException("No speed profile in " + speedProfileFile);
+		}
+		Map<Long, double[]> speedFactors = new HashMap<>();
+		int ignored = 0;
+		for (RoadSpeedProfile profile : profiles) {
+			Intersection from = map.intersections().get(profile.getFromIntersectionId());
+			Intersection to = map.intersections().get(profile.getToIntersectionId());
+			if (from == null || to == null || !from.getAdjacentFrom().contains(to)) {
+				ignored++;
+				continue;
+			}
+			speedFactors.put(from.roadTo(to).getId(), profile.getSpeedFactors());
+		}
+		if (ignored > 0) {
+			System.out.println("Ignoring " + ignored + " speed profiles of roads that are not in the map");
+		}
+		return new SpeedProfile(map.roads(), speedFactors, profiles.get(0).getSpeedFactors().length, zoneId);
+	}
+
+	/**
+	 * Creates an event for each road travel time change of a traffic file. Changes of roads that are not
+	 * in the map, e.g., because they are outside the bounding polygon, are ignored.
+	 *
+	 * @param simulator a reference to the simulator object
+	 * @param trafficFile full path to the traffic file; see CSVTrafficParser
+	 */
+	public void createTrafficEvents(Simulator simulator, FleetManager fleetManager, String trafficFile) {
+		CSVTrafficParser parser = new CSVTrafficParser(trafficFile, zoneId);
+		int ignored = 0;
+		for (TrafficUpdate update : parser.parse()) {
+			Intersection from = map.intersections().get(update.getFromIntersectionId());
+			Intersection to = map.intersections().get(update.getToIntersectionId());
+			if (from == null || to == null || !from.getAdjacentFrom().contains(to)) {
+				ignored++;
+				continue;
+			}
+			events.add(new RoadTravelTimeEvent(update.getTime(), from.roadTo(to), update.getTravelTime(), simulator, fleetManager));
+		}
+		if (ignored > 0) {
+			System.out.println("Ignoring " + ignored + " travel time changes of roads that are not in the map");
+		}
+	}
+
 //	/**
 //	 * Creates agent events that are randomly placed on map.
 //	 *
@@ -216,7 +318,7 @@ public class MapWithData {
 	 * 
 	 * @return events
 	 */
-	public PriorityQueue<Event> getEvents() {
+	public EventQueue getEvents() {
 		return events;
 	}
 
@@ -0,0 +1,161 @@
+package DataParsing;
+
+import java.io.FileNotFoundException;
+import java.time.ZoneId;
+import java.util.PriorityQueue;
+
+/**
+ * The ResourceStream reads the resources of a dataset file one at a time in increasing order of time, and in
+ * file order for resources of the same time, so that resources can be introduced to the simulation as its
+ * time approaches theirs instead of all being loaded up front.
+ *
+ * A first pass over the file counts the resources and finds how far out of time order they are. The second
+ * pass keeps only the resources read ahead that a later line of the file could still precede, which for a
+ * file sorted by time is a single resource.
+ */
+public class ResourceStream {
+
+	// the parser of the second pass
+	private final CSVNewYorkParser parser;
+
+	// the number of resources in the file
+	private final int size;
+
+	// the earliest and the latest introduction time of the resources
+	private final long earliestTime, latestTime;
+
+	// the largest number of seconds by which a resource comes before an earlier line of the file
+	private final long disorder;
+
+	// the resources read ahead, by time and then by index in the file
+	private final PriorityQueue<Entry> readAhead = new PriorityQueue<>();
+
+	// the number of resources read in the second pass
+	private int read;
+
+	// the latest time of the resources read in the second pass
+	private long latestReadTime = Long.MIN_VALUE;
+
+	// whether the second pass reached the end of the file
+	private boolean ended;
+
+	/**
+	 * Constructor of ResourceStream. Reads the file once to count its resources.
+	 *
+	 * @param path full path to the resource dataset file
+	 * @param zoneId the time zone id of the studied area
+	 * @throws FileNotFoundException if the file does not exist
+	 */
+	public ResourceStream(String path, ZoneId zoneId) throws FileNotFoundException {
+		CSVNewYorkParser counter = new CSVNewYorkParser(path, zoneId);
+		counter.open();
+		int count = 0;
+		long earliest = Long.MAX_VALUE, latest = Long.MIN_VALUE, maxDisorder = 0;
+		Resource resource;
+		while ((resource = counter.next()) != null) {
+			count++;
+			earliest = Math.min(earliest, resource.getTime());
+			maxDisorder = Math.max(maxDisorder, latest - resource.getTime());
+			latest = Math.max(latest, resource.getTime());
+		}
+		counter.close();
+		this.size = count;
+		this.earliestTime = earliest;
+		this.latestTime = latest;
+		this.disorder = maxDisorder;
+
+		parser = new CSVNewYorkParser(path, zoneId);
+		parser.open();
+		readAhead();
+	}
+
+	/**
+	 * @return the number of resources in the file
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the earliest introduction time of the resources, or Long.MAX_VALUE if there is none
+	 */
+	public long earliestTime() {
+		return earliestTime;
+	}
+
+	/**
+	 * @return the latest introduction time of the resources, or Long.MIN_VALUE if there is none
+	 */
+	public long latestTime() {
+		return latestTime;
+	}
+
+	/**
+	 * @return true if resources remain to be read
+	 */
+	public boolean hasNext() {
+		return !readAhead.isEmpty();
+	}
+
+	/**
+	 * @return the introduction time of the next resource
+	 */
+	public long peekTime() {
+		return readAhead.peek().resource.getTime();
+	}
+
+	/**
+	 * @return the position of the next resource among the resources of the file, from 0
+	 */
+	public int peekIndex() {
+		return readAhead.peek().index;
+	}
+
+	/**
+	 * Reads the next resource.
+	 *
+	 * @return the next resource, or null if there is none
+	 */
+	public Resource next() {
+		Entry entry = readAhead.poll();
+		if (entry == null) {
+			return null;
+		}
+		readAhead();
+		return entry.resource;
+	}
+
+	/**
+	 * Reads the file until the first resource read ahead cannot be preceded by a resource further in the file.
+	 * Resources further in the file are at or after latestReadTime - disorder, and come after the resources
+	 * read ahead among resources of the same time.
+	 */
+	private void readAhead() {
+		while (!ended && (readAhead.isEmpty() || readAhead.peek().resource.getTime() > latestReadTime - disorder)) {
+			Resource resource = parser.next();
+			if (resource == null) {
+				ended = true;
+				parser.close();
+			} else {
+				latestReadTime = Math.max(latestReadTime, resource.getTime());
+				readAhead.add(new Entry(resource, read++));
+			}
+		}
+	}
+
+	private static class Entry implements Comparable<Entry> {
+		final Resource resource;
+		final int index;
+
+		Entry(Resource resource, int index) {
+			this.resource = resource;
+			this.index = index;
+		}
+
+		@Override
+		public int compareTo(Entry other) {
+			int byTime = Long.compare(resource.getTime(), other.resource.getTime());
+			return byTime != 0 ? byTime : Integer.compare(index, other.index);
+		}
+	}
+}
@@ -0,0 +1,39 @@
+package DataParsing;
+
+/**
+ * A RoadSpeedProfile gives the speed factors of a road by time-of-day bucket. The road is identified by the
+ * ids of its start and end intersections.
+ */
+public class RoadSpeedProfile {
+
+	private long fromIntersectionId; // id of the start intersection of the road
+	private long toIntersectionId; // id of the end intersection of the road
+	private double[] speedFactors; // the speed factor of each bucket
+
+	public RoadSpeedProfile(long fromIntersectionId, long toIntersectionId, double[] speedFactors) {
+		this.fromIntersectionId = fromIntersectionId;
+		this.toIntersectionId = toIntersectionId;
+		this.speedFactors = speedFactors;
+	}
+
+	/**
+	 * @return {@code this.fromIntersectionId}
+	 */
+	public long getFromIntersectionId() {
+		return fromIntersectionId;
+	}
+
+	/**
+	 * @return {@code this.toIntersectionId}
+	 */
+	public long getToIntersectionId() {
+		return toIntersectionId;
+	}
+
+	/**
+	 * @return {@code this.speedFactors}
+	 */
+	public double[] getSpeedFactors() {
+		return speedFactors;
+	}
+}
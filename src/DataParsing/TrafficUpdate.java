@@ -0,0 +1,48 @@
+package DataParsing;
+
+/**
+ * A TrafficUpdate is a change of the travel time of a road at a given time. The road is identified by the
+ * ids of its start and end intersections.
+ */
+public class TrafficUpdate {
+
+	private long time; // the time of the change in epoch seconds
+	private long fromIntersectionId; // id of the start intersection of the road
+	private long toIntersectionId; // id of the end intersection of the road
+	private long travelTime; // the new travel time of the road in seconds
+
+	public TrafficUpdate(long time, long fromIntersectionId, long toIntersectionId, long travelTime) {
+		this.time = time;
+		this.fromIntersectionId = fromIntersectionId;
+		this.toIntersectionId = toIntersectionId;
+		this.travelTime = travelTime;
+	}
+
+	/**
+	 * @return {@code this.time}
+	 */
+	public long getTime() {
+		return time;
+	}
+
+	/**
+	 * @return {@code this.fromIntersectionId}
+	 */
+	public long getFromIntersectionId() {
+		return fromIntersectionId;
+	}
+
+	/**
+	 * @return {@code this.toIntersectionId}
+	 */
+	public long getToIntersectionId() {
+		return toIntersectionId;
+	}
+
+	/**
+	 * @return {@code this.travelTime}
+	 */
+	public long getTravelTime() {
+		return travelTime;
+	}
+}
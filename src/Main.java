@@ -1,5 +1,8 @@
 import COMSETsystem.BaseAgent;
+import COMSETsystem.EventTrace;
 import COMSETsystem.FleetManager;
+import COMSETsystem.EventQueueMode;
+import COMSETsystem.RoutingMode;
 import COMSETsystem.Simulator;
 
 import java.io.IOException;
@@ -90,11 +93,133 @@ public class Main {
                 agentPlacementSeed = random.nextLong();
             }
 
+            RoutingMode routingMode = RoutingMode.TABLE;
+            String routingModeArg = prop.getProperty("comset.routing");
+            if (routingModeArg != null) {
+                routingMode = RoutingMode.valueOf(routingModeArg.trim().toUpperCase());
+            }
+
+            boolean nextHopTable = false;
+            String nextHopTableArg = prop.getProperty("comset.next_hop_table");
+            if (nextHopTableArg != null) {
+                nextHopTable = Boolean.parseBoolean(nextHopTableArg.trim());
+            }
+
+            boolean transposedTravelTimes = false;
+            String transposedTravelTimesArg = prop.getProperty("comset.transposed_travel_times");
+            if (transposedTravelTimesArg != null) {
+                transposedTravelTimes = Boolean.parseBoolean(transposedTravelTimesArg.trim());
+            }
+
+            EventQueueMode eventQueueMode = EventQueueMode.HEAP;
+            String eventQueueModeArg = prop.getProperty("comset.event_queue");
+            if (eventQueueModeArg != null) {
+                eventQueueMode = EventQueueMode.valueOf(eventQueueModeArg.trim().toUpperCase());
+            }
+
+            boolean streamResources = false;
+            String streamResourcesArg = prop.getProperty("comset.stream_resources");
+            if (streamResourcesArg != null) {
+                streamResources = Boolean.parseBoolean(streamResourcesArg.trim());
+            }
+
+            boolean hilbertOrder = false;
+            String hilbertOrderArg = prop.getProperty("comset.hilbert_order");
+            if (hilbertOrderArg != null) {
+                hilbertOrder = Boolean.parseBoolean(hilbertOrderArg.trim());
+            }
+
+            int altLandmarks = 16;
+            String altLandmarksArg = prop.getProperty("comset.alt_landmarks");
+            if (altLandmarksArg != null && Integer.parseInt(altLandmarksArg.trim()) > 0) {
+                altLandmarks = Integer.parseInt(altLandmarksArg.trim());
+            }
+
+            int overlayCellSize = 0;
+            String overlayCellSizeArg = prop.getProperty("comset.overlay_cell_size");
+            if (overlayCellSizeArg != null && Integer.parseInt(overlayCellSizeArg.trim()) > 0) {
+                overlayCellSize = Integer.parseInt(overlayCellSizeArg.trim());
+            }
+
+            String pathRowCacheMBArg = prop.getProperty("comset.path_row_cache_mb");
+            long pathRowCacheBytes = 512L * 1024 * 1024;
+            if (pathRowCacheMBArg != null) {
+                pathRowCacheBytes = Long.parseLong(pathRowCacheMBArg.trim()) * 1024 * 1024;
+            }
+
+            int pathTableThreads = Runtime.getRuntime().availableProcessors();
+            String pathTableThreadsArg = prop.getProperty("comset.path_table_threads");
+            if (pathTableThreadsArg != null && Integer.parseInt(pathTableThreadsArg.trim()) > 0) {
+                pathTableThreads = Integer.parseInt(pathTableThreadsArg.trim());
+            }
+
+            int simulationThreads = 1;
+            String simulationThreadsArg = prop.getProperty("comset.simulation_threads");
+            if (simulationThreadsArg != null && Integer.parseInt(simulationThreadsArg.trim()) > 0) {
+                simulationThreads = Integer.parseInt(simulationThreadsArg.trim());
+            }
+
+            String pathTableCacheDirectory = prop.getProperty("comset.path_table_cache_dir");
+            if (pathTableCacheDirectory != null) {
+                pathTableCacheDirectory = pathTableCacheDirectory.trim();
+            }
+
+            String trafficFile = prop.getProperty("comset.traffic_file");
+            if (trafficFile != null) {
+                trafficFile = trafficFile.trim();
+            }
+
+            String speedProfileFile = prop.getProperty("comset.speed_profile_file");
+            if (speedProfileFile != null) {
+                speedProfileFile = speedProfileFile.trim();
+            }
+
+            String traceFile = prop.getProperty("comset.trace_file");
+            if (traceFile != null) {
+                traceFile = traceFile.trim();
+            }
+
+            String checkpointFile = prop.getProperty("comset.checkpoint_file");
+            if (checkpointFile != null) {
+                checkpointFile = checkpointFile.trim();
+            }
+
+            long checkpointTime = 0;
+            String checkpointTimeArg = prop.getProperty("comset.checkpoint_time");
+            if (checkpointTimeArg != null) {
+                checkpointTime = Long.parseLong(checkpointTimeArg.trim());
+            }
+
+            String restoreFile = prop.getProperty("comset.restore_file");
+            if (restoreFile != null) {
+                restoreFile = restoreFile.trim();
+            }
+
             Class<?> agentClass = Class.forName(agentClassName);
             Simulator simulator = new Simulator((Class<? extends FleetManager>) agentClass);
+            simulator.setRoutingMode(routingMode);
+            simulator.setEventQueueMode(eventQueueMode);
+            simulator.setNextHopTable(nextHopTable);
+            simulator.setTransposedTravelTimes(transposedTravelTimes);
+            simulator.setHilbertOrder(hilbertOrder);
+            simulator.setStreamResources(streamResources);
+            simulator.setAltLandmarks(altLandmarks);
+            simulator.setOverlayCellSize(overlayCellSize);
+            simulator.setPathRowCacheBytes(pathRowCacheBytes);
+            simulator.setPathTableThreads(pathTableThreads);
+            simulator.setSimulationThreads(simulationThreads);
+            simulator.setPathTableCacheDirectory(pathTableCacheDirectory);
+            simulator.setTrafficFile(trafficFile);
+            simulator.setSpeedProfileFile(speedProfileFile);
+            simulator.setTraceFile(traceFile);
+            simulator.setCheckpointFile(checkpointFile, checkpointTime);
+            simulator.setRestoreFile(restoreFile);
 
             if (!displayLogging) {
                 LogManager.getLogManager().reset();
+            } else if (System.getProperty(EventTrace.ENABLED_PROPERTY) == null) {
+                // must be set before the events are first triggered
+                System.setProperty(EventTrace.ENABLED_PROPERTY, "true");
             }
 
             simulator.configure(mapJSONFile, datasetFile, numberOfAgents, boundingPolygonKMLFile,
@@ -455,17 +455,14 @@ public class MapCreator {
 	 */
 	public void createRoads() {
 		for (Intersection intersection : intersections.values()) {
-			Vertex vertex = intersection.vertex;
+			Vertex vertex = vertices.get(intersection.id);
 			for (Link link : vertex.linksMapFrom.values()) {
-				// create a new road
-				Road road = new Road();
-				road.from = intersection;
-
 				// extend the road by visiting non-intersection vertices one by one until
 				// an intersection is reached
+				List<Link> links = new ArrayList<>();
 				Link currentLink = link;
 				while (currentLink.to.intersection == null) {
-					road.addLink(currentLink);
+					links.add(currentLink);
 					for (Link linkFrom : currentLink.to.linksMapFrom.values()) {
 						if (linkFrom.to != currentLink.from) {
 							currentLink = linkFrom;
@@ -474,10 +471,9 @@ public class MapCreator {
 					}
 				}
 				// add the link that connects to the end intersection
-				road.addLink(currentLink);
-				road.to = currentLink.to.intersection;
-				intersection.roadsMapFrom.put(road.to, road);
-				road.to.roadsMapTo.put(intersection,  road);
+				links.add(currentLink);
+				// create a new road
+				new Road(intersection, currentLink.to.intersection, links);
 			}
 		}
 	}
@@ -48,7 +48,7 @@ public class AgentRandomDestination extends BaseAgent {
 	 * 
 	 * IMPORTANT: The first intersection on the resulted search route must not be the
 	 * end intersection of the current road, i.e., it must not be that 
-	 * route.get(0) == currentLocation.road.to. 
+	 * route.get(0) == currentLocation.road.getTo(). 
 	 */
 
 	@Override
@@ -57,18 +57,17 @@ public class AgentRandomDestination extends BaseAgent {
 		String pattern = dataModel.foo(); // Pretend we are using some data model for routing.
 		
 		route.clear();
-		Intersection sourceIntersection = currentLocation.road.to;
+		Intersection sourceIntersection = currentLocation.road.getTo();
 		int destinationIndex = rnd.nextInt(map.intersections().size());
 		Intersection[] intersectionArray = map.intersections().values().toArray(new Intersection[map.intersections().size()]);
 		Intersection destinationIntersection = intersectionArray[destinationIndex];
 		if (destinationIntersection == sourceIntersection) {
 			// destination cannot be the source
 			// if destination is the source, choose a neighbor to be the destination
-			Road[] roadsFrom = sourceIntersection.roadsMapFrom.values().toArray(new Road[sourceIntersection.roadsMapFrom.values().size()]);
-			destinationIntersection = roadsFrom[0].to;
+			destinationIntersection = sourceIntersection.getAdjacentFrom().iterator().next();
 		}
 		route = map.shortestTravelTimePath(sourceIntersection, destinationIntersection);
-		route.poll(); // Ensure that route.get(0) != currentLocation.road.to.
+		route.poll(); // Ensure that route.get(0) != currentLocation.road.getTo().
 	}
 
 	/**
@@ -49,7 +49,7 @@ public class AgentRandomWalk extends BaseAgent {
 		String pattern = dataModel.foo(); // Pretend we are using some data model for routing.
 
 		route.clear();
-		Intersection currentIntersection = currentLocation.road.to;
+		Intersection currentIntersection = currentLocation.road.getTo();
 		int s = currentIntersection.getAdjacentFrom().size();
 		int j = rnd.nextInt(s);
 		Intersection nextIntersection = (Intersection) currentIntersection.getAdjacentFrom().toArray()[j];
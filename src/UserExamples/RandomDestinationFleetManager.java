@@ -3,21 +3,27 @@ package UserExamples;
 import COMSETsystem.*;
 import org.apache.log4j.jmx.Agent;
 
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class RandomDestinationFleetManager extends FleetManager {
-    Map<Long, LinkedList<Intersection>> agentRoutes = new HashMap<>();
-    Map<Long, LocationOnRoad> agentLocation = new HashMap<>();
+    // changed for one agent at a time by concurrent navigation calls
+    Map<Long, Intersection> agentDestinations = new ConcurrentHashMap<>();
+    Map<Long, LocationOnRoad> agentLocation = new ConcurrentHashMap<>();
     Map<Long, LocationOnRoad> resourceLocation = new HashMap<>();
-    Map<Long, Long> agentAssignment = new HashMap<>();
+    Map<Long, Long> agentAssignment = new ConcurrentHashMap<>();
     Set<Long> availableAgent;
     Set<Long> waitingRes = new TreeSet<>();
     Set<Long> pickedUpRes = new TreeSet<>();
     Set<Long> expiredRes = new TreeSet<>();
+    // the number of agents created, which sizes availableAgent
+    int agentCount;
 
     @Override
     public void agentsCreated(Set<Long> agentIds) {
         availableAgent = agentIds;
+        agentCount = agentIds.size();
     }
 
     @Override
@@ -36,7 +42,7 @@ public class RandomDestinationFleetManager extends FleetManager {
             Long assignedAgent = getNearestAvailableAgent(currentLoc, time);
             if (assignedAgent != null) {
                 agentAssignment.put(assignedAgent, resource.id);
-                agentRoutes.put(assignedAgent, new LinkedList<>());
+                agentDestinations.remove(assignedAgent);
                 availableAgent.remove(assignedAgent);
                 action = AgentAction.assignTo(assignedAgent, resource.id);
             } else {
@@ -56,7 +62,7 @@ public class RandomDestinationFleetManager extends FleetManager {
                 if (assignedRes != null) {
                     waitingRes.remove(assignedRes);
                     agentAssignment.put(resource.assignedAgentId, assignedRes);
-                    agentRoutes.put(resource.assignedAgentId, new LinkedList<>());
+                    agentDestinations.remove(resource.assignedAgentId);
                     action = AgentAction.assignTo(resource.assignedAgentId, assignedRes);
                 }
             }
@@ -64,95 +70,192 @@ public class RandomDestinationFleetManager extends FleetManager {
             if (resource.assignedAgentId != -1) {
                 agentAssignment.remove(resource.assignedAgentId);
                 availableAgent.add(resource.assignedAgentId);
-                agentRoutes.put(resource.assignedAgentId, new LinkedList<>());
+                agentDestinations.remove(resource.assignedAgentId);
             } else {
                 waitingRes.remove(resource.id);
             }
             expiredRes.add(resource.id);
         } else if (state == ResourceState.PICKED_UP) {
-            agentRoutes.put(resource.assignedAgentId, new LinkedList<>());
+            agentDestinations.remove(resource.assignedAgentId);
             pickedUpRes.add(resource.id);
         }
 
         return action;
     }
 
+    @Override
+    public boolean allowsConcurrentNavigation() {
+        return true;
+    }
+
+    @Override
+    public boolean supportsCheckpoints() {
+        return true;
+    }
+
+    @Override
+    public void writeCheckpoint(CheckpointOutput out) throws IOException {
+        out.writeInt(agentDestinations.size());
+        for (Map.Entry<Long, Intersection> entry : agentDestinations.entrySet()) {
+            out.writeLong(entry.getKey());
+            out.writeIntersection(entry.getValue());
+        }
+        writeLocations(out, agentLocation);
+        writeLocations(out, resourceLocation);
+        out.writeInt(agentAssignment.size());
+        for (Map.Entry<Long, Long> entry : agentAssignment.entrySet()) {
+            out.writeLong(entry.getKey());
+            out.writeLong(entry.getValue());
+        }
+        out.writeInt(agentCount);
+        writeIds(out, availableAgent);
+        writeIds(out, waitingRes);
+        writeIds(out, pickedUpRes);
+        writeIds(out, expiredRes);
+    }
+
+    @Override
+    public void readCheckpoint(CheckpointInput in) throws IOException {
+        int destinations = in.readInt();
+        for (int i = 0; i < destinations; i++) {
+            agentDestinations.put(in.readLong(), in.readIntersection());
+        }
+        readLocations(in, agentLocation);
+        readLocations(in, resourceLocation);
+        int assignments = in.readInt();
+        for (int i = 0; i < assignments; i++) {
+            agentAssignment.put(in.readLong(), in.readLong());
+        }
+        agentCount = in.readInt();
+        // the nearest available agent is the first one found among agents as near, so the available agents are
+        // kept in a hash set of the same capacity as the set of all created agents, iterated in the same order
+        int capacity = 16;
+        while (agentCount > capacity * 3 / 4) {
+            capacity *= 2;
+        }
+        availableAgent = new HashSet<>(capacity);
+        readIds(in, availableAgent);
+        readIds(in, waitingRes);
+        readIds(in, pickedUpRes);
+        readIds(in, expiredRes);
+    }
+
+    private static void writeLocations(CheckpointOutput out, Map<Long, LocationOnRoad> locations) throws IOException {
+        out.writeInt(locations.size());
+        for (Map.Entry<Long, LocationOnRoad> entry : locations.entrySet()) {
+            out.writeLong(entry.getKey());
+            out.writeLocation(entry.getValue());
+        }
+    }
+
+    private static void readLocations(CheckpointInput in, Map<Long, LocationOnRoad> locations) throws IOException {
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            locations.put(in.readLong(), in.readLocation());
+        }
+    }
+
+    private static void writeIds(CheckpointOutput out, Set<Long> ids) throws IOException {
+        out.writeInt(ids.size());
+        for (Long id : ids) {
+            out.writeLong(id);
+        }
+    }
+
+    private static void readIds(CheckpointInput in, Set<Long> ids) throws IOException {
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            ids.add(in.readLong());
+        }
+    }
+
     @Override
     public Intersection onReachIntersection(long agentId, long time, LocationOnRoad currentLoc) {
         agentLocation.put(agentId, currentLoc);
-        LinkedList<Intersection> route = agentRoutes.getOrDefault(agentId, new LinkedList<>());
+        Intersection destination = agentDestinations.get(agentId);
 
-        if (route.isEmpty()) {
-            route = planRoute(agentId, currentLoc);
-            agentRoutes.put(agentId, route);
+        if (destination == null || destination.equals(currentLoc.road.getTo())) {
+            destination = planDestination(agentId, currentLoc);
+            agentDestinations.put(agentId, destination);
         }
 
-        return route.poll();
+        return nextIntersectionTowards(agentId, currentLoc.road.getTo(), destination);
     }
 
     @Override
     public Intersection onReachIntersectionWithResource(long agentId, long time, LocationOnRoad currentLoc, Resource resource) {
         agentLocation.put(agentId, currentLoc);
 
-        LinkedList<Intersection> route = agentRoutes.getOrDefault(agentId, new LinkedList<>());
+        Intersection destination = agentDestinations.get(agentId);
 
-        if (route.isEmpty()) {
-            route = planRouteToTarget(resource.pickupLoc, resource.dropOffLoc);
-            agentRoutes.put(agentId, route);
+        if (destination == null || destination.equals(currentLoc.road.getTo())) {
+            destination = resource.dropOffLoc.road.getFrom();
+            agentDestinations.put(agentId, destination);
         }
 
-        return route.poll();
+        return nextIntersectionTowards(agentId, currentLoc.road.getTo(), destination);
+    }
+
+    private Intersection nextIntersectionTowards(long agentId, Intersection current, Intersection destination) {
+        try {
+            return map.nextIntersectionTowards(current, destination);
+        } catch (IllegalArgumentException e) {
+            // the destination is unreachable, so head to a neighbour instead
+            Intersection neighbour = current.getAdjacentFrom().iterator().next();
+            agentDestinations.put(agentId, neighbour);
+            return neighbour;
+        }
     }
 
     Long getNearestAvailableAgent(LocationOnRoad resourceLocation, long time) {
-        long earliest = Long.MAX_VALUE;
-        Long bestAgent = null;
+        Long[] ids = new Long[availableAgent.size()];
+        LocationOnRoad[] locations = new LocationOnRoad[availableAgent.size()];
+        int count = 0;
         for (Long id : availableAgent) {
             if (!agentLocation.containsKey(id)) continue;
 
-            long travelTime = map.travelTimeBetween(agentLocation.get(id), resourceLocation);
-            long arriveTime = travelTime + time;
+            ids[count] = id;
+            locations[count] = agentLocation.get(id);
+            count++;
+        }
+        long[] travelTimes = new long[count];
+        map.travelTimesBetween(Arrays.copyOf(locations, count), resourceLocation, travelTimes);
+
+        long earliest = Long.MAX_VALUE;
+        Long bestAgent = null;
+        for (int i = 0; i < count; i++) {
+            if (travelTimes[i] == Long.MAX_VALUE) continue;
+
+            long arriveTime = travelTimes[i] + time;
             if (arriveTime < earliest) {
-                bestAgent = id;
+                bestAgent = ids[i];
                 earliest = arriveTime;
             }
         }
         return bestAgent;
     }
 
-    LinkedList<Intersection> planRoute(long agentId, LocationOnRoad currentLocation) {
+    Intersection planDestination(long agentId, LocationOnRoad currentLocation) {
         Long assignedRes = agentAssignment.get(agentId);
         if (assignedRes != null && !pickedUpRes.contains(assignedRes) && !expiredRes.contains(assignedRes)) {
             LocationOnRoad resLocation = resourceLocation.get(assignedRes);
-            Intersection sourceIntersection = currentLocation.road.to;
-            Intersection destinationIntersection = resLocation.road.from;
-            LinkedList<Intersection> shortestTravelTimePath = map.shortestTravelTimePath(sourceIntersection,
-                    destinationIntersection);
-            if (shortestTravelTimePath.size() == 1) {
-                return getRandomRoute(agentId, currentLocation);
+            Intersection sourceIntersection = currentLocation.road.getTo();
+            Intersection destinationIntersection = resLocation.road.getFrom();
+            if (destinationIntersection.equals(sourceIntersection)) {
+                return getRandomDestination(agentId, currentLocation);
             } else {
-                shortestTravelTimePath.poll(); // Ensure that route.get(0) != currentLocation.road.to.
-                return shortestTravelTimePath;
+                return destinationIntersection;
             }
         } else {
             agentAssignment.remove(agentId);
-            return getRandomRoute(agentId, currentLocation);
+            return getRandomDestination(agentId, currentLocation);
         }
     }
 
-    private LinkedList<Intersection> planRouteToTarget(LocationOnRoad source, LocationOnRoad destination) {
-        Intersection sourceIntersection = source.road.to;
-        Intersection destinationIntersection = destination.road.from;
-        LinkedList<Intersection> shortestTravelTimePath = map.shortestTravelTimePath(sourceIntersection,
-                destinationIntersection);
-        shortestTravelTimePath.poll(); // Ensure that route.get(0) != currentLocation.road.to.
-        return shortestTravelTimePath;
-    }
-
-    private LinkedList<Intersection> getRandomRoute(long agentId, LocationOnRoad currentLocation) {
+    private Intersection getRandomDestination(long agentId, LocationOnRoad currentLocation) {
         Random random = new Random(agentId);
 
-        Intersection sourceIntersection = currentLocation.road.to;
+        Intersection sourceIntersection = currentLocation.road.getTo();
         int destinationIndex = random.nextInt(map.intersections().size());
         Intersection[] intersectionArray =
                 map.intersections().values().toArray(new Intersection[map.intersections().size()]);
@@ -160,14 +263,9 @@ public class RandomDestinationFleetManager extends FleetManager {
         if (destinationIntersection == sourceIntersection) {
             // destination cannot be the source
             // if destination is the source, choose a neighbor to be the destination
-            Road[] roadsFrom =
-                    sourceIntersection.roadsMapFrom.values().toArray(new Road[sourceIntersection.roadsMapFrom.values().size()]);
-            destinationIntersection = roadsFrom[0].to;
-        }
-        LinkedList<Intersection> shortestTravelTimePath = map.shortestTravelTimePath(sourceIntersection,
-                destinationIntersection);
-        shortestTravelTimePath.poll(); // Ensure that route.get(0) != currentLocation.road.to.
-        return shortestTravelTimePath;
+            destinationIntersection = sourceIntersection.getAdjacentFrom().iterator().next();
+        }
+        return destinationIntersection;
     }
 
     public RandomDestinationFleetManager(CityMap map) {
@@ -66,6 +66,29 @@ public class AgentEventTest {
         assertEquals(TRIGGER_TIME + testMap.roadFrom2to3.travelTime, nextEvent.time);
     }
 
+    /**
+     * Tests an agent reaching the end of a road whose travel time changed while the agent was on it.
+     *
+     * @throws Exception from spyEvent.Trigger if any
+     */
+    @Test
+    public void testTrigger_roadTravelTimeChanged() throws Exception {
+        LocationOnRoad locAtReachedIntersection = new LocationOnRoad(testMap.roadFrom1to2,
+                testMap.roadFrom1to2.travelTime);
+        AgentEvent agentEvent = new AgentEvent(locAtReachedIntersection,
+                TRIGGER_TIME, mockSimulator, mockFleetManager);
+        // the travel time of road1 changes after the agent entered it
+        testMap.roadFrom1to2.travelTime += 30;
+        when(mockFleetManager.onReachIntersection(eq(agentEvent.id), anyLong(), anyObject()))
+                .thenReturn(testMap.intersection3);
+
+        AgentEvent nextEvent = (AgentEvent) agentEvent.trigger();
+
+        assertEquals(AgentEvent.State.INTERSECTION_REACHED, nextEvent.state);
+        assertEquals(testMap.roadFrom2to3, nextEvent.loc.road);
+        assertEquals(TRIGGER_TIME + testMap.roadFrom2to3.travelTime, nextEvent.time);
+    }
+
     @Test
     public void testTrigger_arrivingAtPickup() throws Exception {
         // Create a Resource to be picked up half way down road.
@@ -110,8 +133,7 @@ public class AgentEventTest {
 
     @Test
     public void testNavigate_withPickUp() throws Exception {
-        LocationOnRoad locationOnRoad = spy(new LocationOnRoad(testMap.roadFrom1to2, testMap.roadFrom1to2.travelTime));
-        when(locationOnRoad.toString()).thenReturn("123,45t");
+        LocationOnRoad locationOnRoad = new LocationOnRoad(testMap.roadFrom1to2, testMap.roadFrom1to2.travelTime);
 
         ResourceEvent resource = new ResourceEvent(
                 new LocationOnRoad(testMap.roadFrom2to3, 20L),
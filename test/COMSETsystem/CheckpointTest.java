@@ -0,0 +1,244 @@
+package COMSETsystem;
+
+import COMSETsystem.FleetManager.ResourceState;
+import UserExamples.RandomDestinationFleetManager;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that a simulation restored from a checkpoint has the state of the simulation that wrote it.
+ */
+public class CheckpointTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testCheckpoint_restoresEventsScoreAndFleetManager() throws IOException {
+        CityMap map = TestFixtures.triangleMap(100.0, 100.0);
+        Road first = map.roads().get(0);
+        Road second = map.roads().get(1);
+        Simulator simulator = makeSimulator(map);
+
+        ResourceEvent carried = new ResourceEvent(new LocationOnRoad(first, 10), new LocationOnRoad(second, 20),
+                1000, 300, simulator, simulator.fleetManager, simulator.assignmentManager);
+        ResourceEvent waiting = new ResourceEvent(new LocationOnRoad(second, 5), new LocationOnRoad(first, 15),
+                1100, 200, simulator, simulator.fleetManager, simulator.assignmentManager);
+        AgentEvent searching = new AgentEvent(new LocationOnRoad(first, 0), 900, simulator, simulator.fleetManager);
+        AgentEvent carrying = new AgentEvent(new LocationOnRoad(second, 0), 900, simulator, simulator.fleetManager);
+        RoadTravelTimeEvent change = new RoadTravelTimeEvent(2000, second, 70, simulator, simulator.fleetManager);
+
+        Set<Long> agentIds = new HashSet<>();
+        for (AgentEvent agent : new AgentEvent[] {searching, carrying}) {
+            simulator.assignmentManager.addNewEvent(agent);
+            simulator.addEmptyAgent(agent);
+            agentIds.add(agent.id);
+        }
+        simulator.fleetManager.agentsCreated(agentIds);
+        simulator.assignmentManager.addNewEvent(carried);
+        simulator.assignmentManager.addNewEvent(waiting);
+
+        // carried is picked up by carrying, waiting waits for an agent
+        carried.state = ResourceEvent.State.EXPIRED;
+        carried.time = carried.expirationTime;
+        carried.pickupTime = 1050;
+        carried.agentEvent = carrying;
+        carrying.assignTo(carried);
+        carrying.isPickup = true;
+        carrying.time = 1200;
+        waiting.state = ResourceEvent.State.EXPIRED;
+        waiting.time = waiting.expirationTime;
+        simulator.waitingResources.add(waiting);
+        simulator.fleetManager.onResourceAvailabilityChange(waiting.copyResource(), ResourceState.AVAILABLE,
+                waiting.pickupLoc, 1100);
+        for (Event event : new Event[] {carried, waiting, searching, carrying, change}) {
+            simulator.events.add(event);
+        }
+        simulator.simulationStartTime = 899;
+        simulator.simulationTime = 1100;
+        simulator.simulationEndTime = 5000;
+        simulator.totalResources = 2;
+        simulator.totalAgentSearchTime = 150;
+        simulator.totalResourceWaitTime = 50;
+        long nextId = Event.nextId();
+
+        File file = folder.newFile("checkpoint.bin");
+        Checkpoint.write(simulator, file.getPath());
+        Event.setNextId(0);
+
+        Simulator restored = makeSimulator(map);
+        Checkpoint.read(restored, file.getPath(), null);
+
+        assertEquals(nextId, Event.nextId());
+        assertEquals(TestFixtures.LIFE_TIME, restored.ResourceMaximumLifeTime);
+        assertEquals(899, restored.simulationStartTime);
+        assertEquals(1100, restored.simulationTime);
+        assertEquals(5000, restored.simulationEndTime);
+        assertEquals(2, restored.totalResources);
+        assertEquals(150, restored.totalAgentSearchTime);
+        assertEquals(50, restored.totalResourceWaitTime);
+        assertNull(restored.resourceFeed);
+
+        // the events are polled in the same order, with the same state
+        List<Event> expected = poll(simulator.events);
+        List<Event> actual = poll(restored.events);
+        assertEquals(expected.size(), actual.size());
+        Map<Long, Event> restoredById = new TreeMap<>();
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).id, actual.get(i).id);
+            assertEquals(expected.get(i).time, actual.get(i).time);
+            assertSame(expected.get(i).getClass(), actual.get(i).getClass());
+            restoredById.put(actual.get(i).id, actual.get(i));
+        }
+        AgentEvent restoredCarrying = (AgentEvent) restoredById.get(carrying.id);
+        ResourceEvent restoredCarried = (ResourceEvent) restoredById.get(carried.id);
+        assertSame(restoredCarried, restoredCarrying.assignedResource);
+        assertSame(restoredCarrying, restoredCarried.agentEvent);
+        assertTrue(restoredCarrying.isPickup);
+        assertEquals(AgentEvent.State.INTERSECTION_REACHED, restoredCarrying.state);
+        assertEquals(carrying.startSearchTime, restoredCarrying.startSearchTime);
+        assertSame(second, restoredCarrying.loc.road);
+        assertEquals(1050, restoredCarried.pickupTime);
+        assertEquals(carried.expirationTime, restoredCarried.expirationTime);
+        assertEquals(300, restoredCarried.tripTime);
+        assertEquals(20, restoredCarried.dropoffLoc.travelTimeFromStartIntersection);
+        RoadTravelTimeEvent restoredChange = (RoadTravelTimeEvent) restoredById.get(change.id);
+        assertSame(second, restoredChange.road);
+        assertEquals(70, restoredChange.travelTime);
+
+        assertEquals(2, restored.emptyAgents.size());
+        assertEquals(1, restored.waitingResources.size());
+        assertSame(restoredById.get(waiting.id), restored.waitingResources.first());
+        assertEquals(simulator.assignmentManager.agents.keySet(), restored.assignmentManager.agents.keySet());
+        assertEquals(simulator.assignmentManager.resources.keySet(), restored.assignmentManager.resources.keySet());
+
+        // both fleet managers assign the waiting resource to the agent dropping off the carried one
+        AgentAction action = simulator.fleetManager.onResourceAvailabilityChange(carried.copyResource(),
+                ResourceState.DROPPED_OFF, carried.dropoffLoc, 1500);
+        AgentAction restoredAction = restored.fleetManager.onResourceAvailabilityChange(
+                restoredCarried.copyResource(), ResourceState.DROPPED_OFF, restoredCarried.dropoffLoc, 1500);
+        assertEquals(AgentAction.Type.ASSIGN, action.type);
+        assertEquals(action.type, restoredAction.type);
+        assertEquals(action.agentId, restoredAction.agentId);
+        assertEquals(action.resId, restoredAction.resId);
+    }
+
+    @Test
+    public void testCheckpoint_travelTimeChangesMadeAgain() throws IOException {
+        CityMap map = TestFixtures.triangleMap(100.0, 100.0);
+        Road road = map.roads().get(2);
+        Simulator simulator = makeSimulator(map);
+        simulator.fleetManager.agentsCreated(new HashSet<>());
+        simulator.simulationTime = 1000;
+        simulator.changeRoadTravelTime(road, 90);
+        assertEquals(90, road.travelTime);
+
+        File file = folder.newFile("checkpoint.bin");
+        Checkpoint.write(simulator, file.getPath());
+
+        // the travel times of the map as the restoring simulation builds it
+        map.updateRoadTravelTime(road, 30);
+        Simulator restored = makeSimulator(map);
+        Checkpoint.read(restored, file.getPath(), null);
+        assertEquals(90, road.travelTime);
+        assertEquals(20 + 90, map.travelTimeBetween(map.roads().get(1).from, road.to));
+        assertEquals(1, restored.travelTimeChanges.size());
+    }
+
+    @Test
+    public void testCheckpoint_eventIdsBeyondInt() throws IOException {
+        long nextId = Event.nextId();
+        try {
+            Simulator simulator = makeSimulator(TestFixtures.triangleMap(100.0, 100.0));
+            simulator.fleetManager.agentsCreated(new HashSet<>());
+            Event.setNextId(Integer.MAX_VALUE - 1L);
+            long first = Event.reserveIds(10);
+            assertEquals(Integer.MAX_VALUE - 1L, first);
+            AgentEvent agent = new AgentEvent(new LocationOnRoad(simulator.map.roads().get(0), 0), 900, simulator,
+                    simulator.fleetManager);
+            assertEquals(first + 10, agent.id);
+
+            File file = folder.newFile("checkpoint.bin");
+            Checkpoint.write(simulator, file.getPath());
+            Event.setNextId(0);
+            Checkpoint.read(makeSimulator(TestFixtures.triangleMap(100.0, 100.0)), file.getPath(), null);
+            assertEquals(first + 11, Event.nextId());
+        } finally {
+            Event.setNextId(nextId);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testCheckpoint_truncated() throws IOException {
+        Simulator simulator = makeSimulator(TestFixtures.triangleMap(100.0, 100.0));
+        simulator.fleetManager.agentsCreated(new HashSet<>());
+        File file = folder.newFile("checkpoint.bin");
+        Checkpoint.write(simulator, file.getPath());
+        try (RandomAccessFile truncated = new RandomAccessFile(file, "rw")) {
+            truncated.setLength(truncated.length() - 3);
+        }
+        Checkpoint.read(makeSimulator(TestFixtures.triangleMap(100.0, 100.0)), file.getPath(), null);
+    }
+
+    @Test
+    public void testFleetManager_withoutCheckpoints() {
+        assertFalse(new FleetManager(null) {
+            @Override
+            public void agentsCreated(Set<Long> agentIds) {
+            }
+
+            @Override
+            public void onMapStateChanged(Road road, MapState state) {
+            }
+
+            @Override
+            public AgentAction onResourceAvailabilityChange(Resource resource, ResourceState state,
+                                                            LocationOnRoad currentLoc, long time) {
+                return AgentAction.doNothing();
+            }
+
+            @Override
+            public Intersection onReachIntersection(long agentId, long time, LocationOnRoad currentLoc) {
+                return null;
+            }
+
+            @Override
+            public Intersection onReachIntersectionWithResource(long agentId, long time, LocationOnRoad currentLoc,
+                                                                Resource resource) {
+                return null;
+            }
+        }.supportsCheckpoints());
+        assertTrue(new RandomDestinationFleetManager(null).supportsCheckpoints());
+    }
+
+    private static Simulator makeSimulator(CityMap map) {
+        Simulator simulator = TestFixtures.simulator(map, new RandomDestinationFleetManager(map));
+        simulator.totalAgents = 2;
+        return simulator;
+    }
+
+    private static List<Event> poll(EventQueue events) {
+        List<Event> polled = new ArrayList<>();
+        while (!events.isEmpty()) {
+            polled.add(events.poll());
+        }
+        return polled;
+    }
+}
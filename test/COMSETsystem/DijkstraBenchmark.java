@@ -0,0 +1,172 @@
+package COMSETsystem;
+
+import MapCreation.MapCreator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * Compares the speed of DijkstraKernel with the PriorityQueue based Dijkstra that calcTravelTimes used
+ * before, and checks that both give the same travel times and predecessors.
+ *
+ * Usage: DijkstraBenchmark [map JSON file, bounding polygon KML file [, speed reduction]]
+ * Without arguments, a random grid map is used.
+ */
+public class DijkstraBenchmark {
+
+    private static final int GRID_SIDE = 60;
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) {
+        CityMap map;
+        if (args.length >= 2) {
+            MapCreator creator = new MapCreator(args[0], args[1], args.length > 2 ? Double.parseDouble(args[2]) : 1.0);
+            creator.createMap();
+            map = creator.outputCityMap();
+        } else {
+            map = makeGridMap(new Random(1));
+        }
+        Intersection[] intersections = map.intersections().values().toArray(new Intersection[0]);
+        RoadGraph graph = new RoadGraph(intersections);
+        System.out.println(graph.size + " intersections, " + graph.roadCount() + " roads");
+
+        // check
+        DijkstraKernel kernel = new DijkstraKernel(graph);
+        PriorityQueueDijkstra reference = new PriorityQueueDijkstra(intersections);
+        for (Intersection source : intersections) {
+            kernel.run(source.pathTableIndex);
+            reference.run(source);
+            for (Intersection destination : intersections) {
+                int v = destination.pathTableIndex;
+                if (kernel.travelTime(v) != reference.travelTimes[v] || kernel.predecessor(v) != reference.predecessors[v]) {
+                    throw new AssertionError("Different result from " + source.id + " to " + destination.id);
+                }
+            }
+        }
+        System.out.println("Same travel times and predecessors from all sources");
+
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (Intersection source : intersections) {
+                reference.run(source);
+            }
+            long referenceTime = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (Intersection source : intersections) {
+                kernel.run(source.pathTableIndex);
+            }
+            long kernelTime = System.nanoTime() - start;
+            System.out.printf("round %d: PriorityQueue %d ms, DijkstraKernel %d ms (%.1fx)%n", round,
+                    referenceTime / 1000000, kernelTime / 1000000, (double) referenceTime / kernelTime);
+        }
+    }
+
+    /**
+     * Makes a grid of two-way roads with random travel times.
+     */
+    static CityMap makeGridMap(Random random) {
+        Map<Long, Intersection> intersections = new TreeMap<>();
+        for (int i = 0; i < GRID_SIDE * GRID_SIDE; i++) {
+            Vertex vertex = new Vertex(100.0 + i % GRID_SIDE, 100.0 + i / GRID_SIDE, i % GRID_SIDE, i / GRID_SIDE, i);
+            Intersection intersection = new Intersection(vertex);
+            vertex.intersection = intersection;
+            intersections.put(intersection.id, intersection);
+        }
+        List<Road> roads = new ArrayList<>();
+        for (int i = 0; i < GRID_SIDE * GRID_SIDE; i++) {
+            if (i % GRID_SIDE + 1 < GRID_SIDE) {
+                addRoads(intersections.get((long) i), intersections.get((long) i + 1), random, roads);
+            }
+            if (i + GRID_SIDE < GRID_SIDE * GRID_SIDE) {
+                addRoads(intersections.get((long) i), intersections.get((long) i + GRID_SIDE), random, roads);
+            }
+        }
+        return new CityMap(intersections, roads, null, null);
+    }
+
+    private static void addRoads(Intersection a, Intersection b, Random random, List<Road> roads) {
+        for (Intersection[] ends : new Intersection[][] {{a, b}, {b, a}}) {
+            Road road = new Road();
+            road.from = ends[0];
+            road.to = ends[1];
+            road.travelTime = 5 + random.nextInt(30);
+            road.from.roadsMapFrom.put(road.to, road);
+            road.to.roadsMapTo.put(road.from, road);
+            roads.add(road);
+        }
+    }
+
+    /**
+     * The Dijkstra that calcTravelTimes used before DijkstraKernel: every intersection is put in a
+     * PriorityQueue up front and decrease-key is a PriorityQueue.remove followed by an add.
+     */
+    private static class PriorityQueueDijkstra {
+        final Entry[] entries;
+        final long[] travelTimes;
+        final int[] predecessors;
+
+        PriorityQueueDijkstra(Intersection[] intersections) {
+            entries = new Entry[intersections.length];
+            for (Intersection intersection : intersections) {
+                entries[intersection.pathTableIndex] = new Entry(intersection);
+            }
+            travelTimes = new long[intersections.length];
+            predecessors = new int[intersections.length];
+        }
+
+        void run(Intersection source) {
+            for (Entry entry : entries) {
+                entry.cost = Long.MAX_VALUE;
+                entry.inQueue = true;
+            }
+            Arrays.fill(predecessors, -1);
+            entries[source.pathTableIndex].cost = 0;
+            predecessors[source.pathTableIndex] = source.pathTableIndex;
+            PriorityQueue<Entry> queue = new PriorityQueue<>(Arrays.asList(entries));
+            while (!queue.isEmpty()) {
+                Entry entry = queue.poll();
+                entry.inQueue = false;
+                if (entry.cost == Long.MAX_VALUE) {
+                    break;
+                }
+                for (Road r : entry.intersection.getRoadsFrom()) {
+                    Entry v = entries[r.to.pathTableIndex];
+                    if (!v.inQueue) continue;
+                    long ncost = entry.cost + r.travelTime;
+                    if (v.cost > ncost) {
+                        queue.remove(v);
+                        v.cost = ncost;
+                        predecessors[v.intersection.pathTableIndex] = entry.intersection.pathTableIndex;
+                        queue.add(v);
+                    }
+                }
+            }
+            for (Entry entry : entries) {
+                travelTimes[entry.intersection.pathTableIndex] = entry.cost;
+            }
+        }
+
+        private static class Entry implements Comparable<Entry> {
+            final Intersection intersection;
+            long cost;
+            boolean inQueue;
+
+            Entry(Intersection intersection) {
+                this.intersection = intersection;
+            }
+
+            @Override
+            public int compareTo(Entry other) {
+                if (cost != other.cost) {
+                    return Long.compare(cost, other.cost);
+                }
+                return Long.compare(intersection.id, other.intersection.id);
+            }
+        }
+    }
+}
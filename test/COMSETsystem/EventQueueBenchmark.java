@@ -0,0 +1,100 @@
+package COMSETsystem;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * Compares the events per second of HeapEventQueue and CalendarEventQueue on the hold model of a simulation:
+ * every polled event adds an event a little later, as an agent reaching an intersection does, with some events
+ * much later, as resources introduced hours ahead. Then compares the cost of cancelling a pending event.
+ *
+ * Usage: EventQueueBenchmark [pending events]
+ */
+public class EventQueueBenchmark {
+
+    private static final int HOLDS = 20000000;
+    private static final int REMOVALS = 20000;
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) {
+        int pending = args.length > 0 ? Integer.parseInt(args[0]) : 50000;
+        for (int round = 0; round < ROUNDS; round++) {
+            long[] nanos = new long[2];
+            long[] checksums = new long[2];
+            for (EventQueueMode mode : EventQueueMode.values()) {
+                Random random = new Random(1);
+                EventQueue queue = mode.createQueue();
+                long firstId = -1;
+                for (int i = 0; i < pending; i++) {
+                    HoldEvent event = new HoldEvent(random.nextInt(3600));
+                    firstId = firstId < 0 ? event.id : firstId;
+                    queue.add(event);
+                }
+                long start = System.nanoTime();
+                long checksum = 0;
+                for (int hold = 0; hold < HOLDS; hold++) {
+                    HoldEvent event = (HoldEvent) queue.poll();
+                    checksum = 31 * checksum + event.id - firstId;
+                    // a road takes seconds to a minute; one event in a hundred is hours ahead
+                    event.time += random.nextInt(100) == 0 ? 3600 + random.nextInt(7200) : 1 + random.nextInt(60);
+                    queue.add(event);
+                }
+                nanos[mode.ordinal()] = System.nanoTime() - start;
+                checksums[mode.ordinal()] = checksum;
+            }
+            if (checksums[0] != checksums[1]) {
+                throw new AssertionError("Different order of events");
+            }
+            System.out.printf("round %d, %d pending: heap %.1f M events/s, calendar %.1f M events/s (%.2fx)%n", round, pending,
+                    HOLDS / (nanos[0] / 1000.0), HOLDS / (nanos[1] / 1000.0), (double) nanos[0] / nanos[1]);
+        }
+
+        // cancelling pending events, as ResourceEvent.dropOff does, compared with PriorityQueue.remove
+        for (int round = 0; round < ROUNDS; round++) {
+            Random random = new Random(1);
+            List<HoldEvent> events = new ArrayList<>();
+            for (int i = 0; i < pending; i++) {
+                events.add(new HoldEvent(random.nextInt(3600)));
+            }
+            int[] picks = new int[REMOVALS];
+            for (int i = 0; i < REMOVALS; i++) {
+                picks[i] = random.nextInt(pending);
+            }
+            PriorityQueue<Event> priorityQueue = new PriorityQueue<>(events);
+            long start = System.nanoTime();
+            for (int pick : picks) {
+                priorityQueue.remove(events.get(pick));
+                priorityQueue.add(events.get(pick));
+            }
+            long priorityQueueNanos = System.nanoTime() - start;
+            long[] nanos = new long[2];
+            for (EventQueueMode mode : EventQueueMode.values()) {
+                EventQueue queue = mode.createQueue();
+                events.forEach(queue::add);
+                queue.peek();
+                start = System.nanoTime();
+                for (int pick : picks) {
+                    queue.remove(events.get(pick));
+                    queue.add(events.get(pick));
+                }
+                nanos[mode.ordinal()] = System.nanoTime() - start;
+            }
+            System.out.printf("round %d, %d pending: remove and add again takes %.0f ns with PriorityQueue, %.0f ns with heap, %.0f ns with calendar%n",
+                    round, pending, (double) priorityQueueNanos / REMOVALS, (double) nanos[0] / REMOVALS, (double) nanos[1] / REMOVALS);
+        }
+    }
+
+    private static class HoldEvent extends Event {
+
+        HoldEvent(long time) {
+            super(time);
+        }
+
+        @Override
+        Event trigger() {
+            return null;
+        }
+    }
+}
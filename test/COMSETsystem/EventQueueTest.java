@@ -0,0 +1,152 @@
+package COMSETsystem;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the event queues poll events in the same order as a PriorityQueue.
+ */
+public class EventQueueTest {
+
+    private static final long SEED = 42;
+    private static final int OPERATIONS = 200000;
+
+    @Test
+    public void testQueues_sameOrderAsPriorityQueue() {
+        Random random = new Random(SEED);
+        PriorityQueue<Event> reference = new PriorityQueue<>();
+        EventQueue[] queues = {new HeapEventQueue(), new CalendarEventQueue()};
+        // an event is in one queue at a time, so each queue gets its own copy of every event
+        List<Event[]> pending = new ArrayList<>();
+        // added out of order before the first poll, some of them far in the future
+        for (int i = 0; i < 1000; i++) {
+            pending.add(add(1000000 + random.nextInt(i % 10 == 0 ? 100000 : 1000), reference, queues));
+        }
+
+        long now = reference.peek().time;
+        for (int operation = 0; operation < OPERATIONS; operation++) {
+            int choice = random.nextInt(12);
+            if (choice < 5 && !pending.isEmpty()) {
+                Event event = reference.poll();
+                for (EventQueue queue : queues) {
+                    assertEquals(event.id, queue.poll().id);
+                }
+                pending.removeIf(copies -> copies[0] == event);
+                now = event.time;
+            } else if (choice < 6 && !pending.isEmpty()) {
+                Event[] copies = pending.remove(random.nextInt(pending.size()));
+                assertTrue(reference.remove(copies[0]));
+                for (int q = 0; q < queues.length; q++) {
+                    assertTrue(queues[q].remove(copies[q + 1]));
+                    assertFalse(queues[q].remove(copies[q + 1]));
+                }
+            } else if (choice < 7 && !pending.isEmpty()) {
+                Event[] copies = pending.get(random.nextInt(pending.size()));
+                long time = now + random.nextInt(600);
+                reference.remove(copies[0]);
+                copies[0].time = time;
+                reference.add(copies[0]);
+                for (int q = 0; q < queues.length; q++) {
+                    queues[q].reschedule(copies[q + 1], time);
+                }
+            } else {
+                // mostly soon, sometimes at the current time, past the buckets or even before the current time
+                int kind = random.nextInt(100);
+                long time = kind == 0 ? now - random.nextInt(100) : kind < 10 ? now : kind < 15
+                        ? now + random.nextInt(20000) : now + random.nextInt(600);
+                pending.add(add(time, reference, queues));
+            }
+            for (EventQueue queue : queues) {
+                assertEquals(reference.size(), queue.size());
+                assertEquals(reference.isEmpty() ? -1 : reference.peek().id, queue.isEmpty() ? -1 : queue.peek().id);
+            }
+        }
+        while (!reference.isEmpty()) {
+            long id = reference.poll().id;
+            for (EventQueue queue : queues) {
+                assertEquals(id, queue.poll().id);
+            }
+        }
+        for (EventQueue queue : queues) {
+            assertNull(queue.poll());
+            assertTrue(queue.isEmpty());
+        }
+    }
+
+    @Test
+    public void testQueues_addsBeforeTheFirstEvent() {
+        // as streamed resources are introduced between the current time and the first event, after peek
+        Random random = new Random(SEED);
+        PriorityQueue<Event> reference = new PriorityQueue<>();
+        EventQueue[] queues = {new HeapEventQueue(), new CalendarEventQueue()};
+        long now = 1000000;
+        add(now, reference, queues);
+        for (int operation = 0; operation < OPERATIONS / 10; operation++) {
+            long first = reference.peek().time;
+            for (EventQueue queue : queues) {
+                assertEquals(reference.peek().id, queue.peek().id);
+            }
+            if (first > now && random.nextBoolean()) {
+                add(now + random.nextInt((int) (first - now)), reference, queues);
+            } else {
+                Event event = reference.poll();
+                for (EventQueue queue : queues) {
+                    assertEquals(event.id, queue.poll().id);
+                }
+                now = event.time;
+                // sparse soon events, and events near the end of the buckets
+                add(now + 1 + random.nextInt(120), reference, queues);
+                if (random.nextInt(4) == 0) {
+                    add(now + 4000 + random.nextInt(200), reference, queues);
+                }
+            }
+            for (EventQueue queue : queues) {
+                assertEquals(reference.size(), queue.size());
+            }
+        }
+        while (!reference.isEmpty()) {
+            long id = reference.poll().id;
+            for (EventQueue queue : queues) {
+                assertEquals(id, queue.poll().id);
+            }
+        }
+    }
+
+    /**
+     * Adds an event to the reference and a copy with the same id to each queue.
+     *
+     * @return the event of the reference followed by the copies of the queues
+     */
+    private static Event[] add(long time, PriorityQueue<Event> reference, EventQueue[] queues) {
+        Event[] copies = new Event[queues.length + 1];
+        copies[0] = new TestEvent(time);
+        reference.add(copies[0]);
+        for (int q = 0; q < queues.length; q++) {
+            copies[q + 1] = new TestEvent(time);
+            copies[q + 1].id = copies[0].id;
+            queues[q].add(copies[q + 1]);
+        }
+        return copies;
+    }
+
+    private static class TestEvent extends Event {
+
+        TestEvent(long time) {
+            super(time);
+        }
+
+        @Override
+        Event trigger() {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package COMSETsystem;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks what an EventTrace writes out, and that it neither blocks nor hangs once its output fails.
+ */
+public class EventTraceTest {
+
+    @Test(timeout = 10000)
+    public void testAwaitWritten_formatsRecordsInOrder() {
+        StringWriter out = new StringWriter();
+        // more records than the ring buffer holds
+        EventTrace trace = new EventTrace(out, 4);
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 3; i++) {
+            trace.add(EventTrace.AGENT_TRIGGERED, 1, 100 + i, 2, 3, 10);
+            trace.add(EventTrace.AGENT_MOVED, 1, 110 + i, 3, 4, 25);
+            trace.add(EventTrace.AGENT_PICKED_UP, 1, 120 + i, 4, 5, 5);
+            trace.add(EventTrace.AGENT_DROPPED_OFF, 1, 130 + i, 5, 6, 7);
+            trace.add(EventTrace.RESOURCE_TRIGGERED, 8, 140 + i, 4, 5, 5);
+            trace.add(EventTrace.RESOURCE_EXPIRED, 9, 150 + i, 6, 7, 0);
+            trace.add(EventTrace.TRAVEL_TIME_CHANGED, 11, 160 + i, 3, 4, 42);
+            expected.append(100 + i).append(" AgentEvent 1 triggered at road 2,3 + 10\n")
+                    .append(110 + i).append(" AgentEvent 1 moves to road 3,4 + 25\n")
+                    .append(120 + i).append(" AgentEvent 1 picks up at road 4,5 + 5\n")
+                    .append(130 + i).append(" AgentEvent 1 drops off at road 5,6 + 7\n")
+                    .append(140 + i).append(" ResourceEvent 8 triggered at road 4,5 + 5\n")
+                    .append(150 + i).append(" ResourceEvent 9 expires at road 6,7 + 0\n")
+                    .append(160 + i).append(" RoadTravelTimeEvent 11 sets the travel time of road 3,4 to 42\n");
+        }
+        trace.awaitWritten();
+        assertEquals(expected.toString(), out.toString());
+    }
+
+    @Test(timeout = 10000)
+    public void testAdd_returnsOnceOutputFails() {
+        Writer failing = new Writer() {
+            @Override
+            public void write(char[] buffer, int offset, int length) throws IOException {
+                throw new IOException("disk full");
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        EventTrace trace = new EventTrace(failing, 4);
+        // would wait for room forever if the failure were not noticed
+        for (int i = 0; i < 100; i++) {
+            trace.add(EventTrace.AGENT_MOVED, 1, i, 2, 3, 10);
+        }
+        trace.awaitWritten();
+    }
+}
@@ -0,0 +1,163 @@
+package COMSETsystem;
+
+import MapCreation.MapCreator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Compares path table queries between nearby intersections with intersections numbered by id and numbered
+ * along a Hilbert curve. Besides the query time, it reports the number of distinct 64-byte cache lines and
+ * 4 KB pages of table travel times that the queries of a neighbourhood touch, which is what the numbering
+ * changes.
+ *
+ * Usage: HilbertOrderBenchmark [map JSON file, bounding polygon KML file [, speed reduction]]
+ * Without arguments, a random grid map is used whose ids are shuffled, as OSM ids are unrelated to where
+ * intersections are.
+ */
+public class HilbertOrderBenchmark {
+
+    private static final int GRID_SIDE = 60;
+    private static final int NEIGHBOURHOODS = 20000;
+    private static final int NEIGHBOURS = 32;
+    private static final int WALK = 10;
+    private static final int ROUNDS = 3;
+    private static final int CACHE_LINE = 64;
+    private static final int PAGE = 4096;
+
+    public static void main(String[] args) {
+        CityMap idMap = makeMap(args);
+        CityMap hilbertMap = makeMap(args);
+        hilbertMap.renumberByHilbertCurve();
+        int size = idMap.intersections().size();
+        idMap.calcTravelTimes(1);
+        hilbertMap.calcTravelTimes(1);
+        System.out.println(size + " intersections, path table of " + idMap.pathTableSizeInBytes() / (1024 * 1024) + " MB");
+
+        // neighbourhoods: a random intersection and the ends of random walks of a few roads from it
+        Random random = new Random(2);
+        List<Intersection> all = new ArrayList<>(idMap.intersections().values());
+        long[][] neighbourhoods = new long[NEIGHBOURHOODS][NEIGHBOURS + 1];
+        for (long[] neighbourhood : neighbourhoods) {
+            Intersection center = all.get(random.nextInt(all.size()));
+            neighbourhood[0] = center.id;
+            for (int i = 1; i <= NEIGHBOURS; i++) {
+                Intersection intersection = center;
+                for (int step = 0; step < WALK && !intersection.getAdjacentFrom().isEmpty(); step++) {
+                    List<Intersection> next = new ArrayList<>(intersection.getAdjacentFrom());
+                    intersection = next.get(random.nextInt(next.size()));
+                }
+                neighbourhood[i] = intersection.id;
+            }
+        }
+
+        for (CityMap map : new CityMap[] {idMap, hilbertMap}) {
+            String name = map == idMap ? "id order" : "Hilbert order";
+            long rowLines = 0, rowPages = 0, columnLines = 0, columnPages = 0;
+            for (long[] neighbourhood : neighbourhoods) {
+                int center = map.intersections().get(neighbourhood[0]).pathTableIndex;
+                Set<Long> lines = new HashSet<>(), pages = new HashSet<>(), columnLineSet = new HashSet<>(), columnPageSet = new HashSet<>();
+                for (int i = 1; i <= NEIGHBOURS; i++) {
+                    int neighbour = map.intersections().get(neighbourhood[i]).pathTableIndex;
+                    long rowOffset = ((long) center * size + neighbour) * Integer.BYTES;
+                    long columnOffset = ((long) neighbour * size + center) * Integer.BYTES;
+                    lines.add(rowOffset / CACHE_LINE);
+                    pages.add(rowOffset / PAGE);
+                    columnLineSet.add(columnOffset / CACHE_LINE);
+                    columnPageSet.add(columnOffset / PAGE);
+                }
+                rowLines += lines.size();
+                rowPages += pages.size();
+                columnLines += columnLineSet.size();
+                columnPages += columnPageSet.size();
+            }
+            System.out.printf("%s: one-to-%d nearby touches %.1f lines and %.1f pages, %d-to-one nearby touches %.1f lines and %.1f pages%n",
+                    name, NEIGHBOURS, (double) rowLines / NEIGHBOURHOODS, (double) rowPages / NEIGHBOURHOODS,
+                    NEIGHBOURS, (double) columnLines / NEIGHBOURHOODS, (double) columnPages / NEIGHBOURHOODS);
+        }
+
+        Intersection[][][] queries = new Intersection[2][NEIGHBOURHOODS][NEIGHBOURS + 1];
+        for (int m = 0; m < 2; m++) {
+            CityMap map = m == 0 ? idMap : hilbertMap;
+            for (int n = 0; n < NEIGHBOURHOODS; n++) {
+                for (int i = 0; i <= NEIGHBOURS; i++) {
+                    queries[m][n][i] = map.intersections().get(neighbourhoods[n][i]);
+                }
+            }
+        }
+        for (int round = 0; round < ROUNDS; round++) {
+            long[] nanos = new long[2];
+            long checksum = 0;
+            for (int m = 0; m < 2; m++) {
+                CityMap map = m == 0 ? idMap : hilbertMap;
+                long start = System.nanoTime();
+                for (Intersection[] neighbourhood : queries[m]) {
+                    for (int i = 1; i <= NEIGHBOURS; i++) {
+                        checksum += map.travelTimeBetween(neighbourhood[0], neighbourhood[i]);
+                        checksum -= map.travelTimeBetween(neighbourhood[i], neighbourhood[0]);
+                    }
+                }
+                nanos[m] = System.nanoTime() - start;
+            }
+            long queryCount = 2L * NEIGHBOURHOODS * NEIGHBOURS;
+            System.out.printf("round %d: id order %.1f ns, Hilbert order %.1f ns per nearby query (%.2fx, checksum %d)%n", round,
+                    (double) nanos[0] / queryCount, (double) nanos[1] / queryCount, (double) nanos[0] / nanos[1], checksum);
+        }
+    }
+
+    private static CityMap makeMap(String[] args) {
+        if (args.length >= 2) {
+            MapCreator creator = new MapCreator(args[0], args[1], args.length > 2 ? Double.parseDouble(args[2]) : 1.0);
+            creator.createMap();
+            return creator.outputCityMap();
+        }
+        return makeShuffledGridMap(new Random(1));
+    }
+
+    /**
+     * Makes a grid of two-way roads with random travel times and shuffled ids.
+     */
+    private static CityMap makeShuffledGridMap(Random random) {
+        List<Long> ids = new ArrayList<>();
+        for (long id = 0; id < GRID_SIDE * GRID_SIDE; id++) {
+            ids.add(id);
+        }
+        Collections.shuffle(ids, random);
+        Intersection[] grid = new Intersection[GRID_SIDE * GRID_SIDE];
+        Map<Long, Intersection> intersections = new TreeMap<>();
+        for (int i = 0; i < grid.length; i++) {
+            Vertex vertex = new Vertex(100.0 + i % GRID_SIDE, 100.0 + i / GRID_SIDE, i % GRID_SIDE, i / GRID_SIDE, ids.get(i));
+            grid[i] = new Intersection(vertex);
+            vertex.intersection = grid[i];
+            intersections.put(grid[i].id, grid[i]);
+        }
+        List<Road> roads = new ArrayList<>();
+        for (int i = 0; i < grid.length; i++) {
+            if (i % GRID_SIDE + 1 < GRID_SIDE) {
+                addRoads(grid[i], grid[i + 1], random, roads);
+            }
+            if (i + GRID_SIDE < grid.length) {
+                addRoads(grid[i], grid[i + GRID_SIDE], random, roads);
+            }
+        }
+        return new CityMap(intersections, roads, null, null);
+    }
+
+    private static void addRoads(Intersection a, Intersection b, Random random, List<Road> roads) {
+        for (Intersection[] ends : new Intersection[][] {{a, b}, {b, a}}) {
+            Road road = new Road();
+            road.from = ends[0];
+            road.to = ends[1];
+            road.travelTime = 5 + random.nextInt(30);
+            road.from.roadsMapFrom.put(road.to, road);
+            road.to.roadsMapTo.put(road.from, road);
+            roads.add(road);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package COMSETsystem;
+
+import MapCreation.MapCreator;
+
+import java.util.Random;
+
+/**
+ * Compares the speed and memory of travel-time queries answered by hub labels with those answered by the
+ * path table of calcTravelTimes and by the contraction hierarchy, and checks that all three give the same
+ * travel times.
+ *
+ * Usage: HubLabelBenchmark [map JSON file, bounding polygon KML file [, speed reduction]]
+ * Without arguments, the random grid map of DijkstraBenchmark is used.
+ */
+public class HubLabelBenchmark {
+
+    private static final int QUERIES = 5000000;
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) {
+        CityMap map;
+        if (args.length >= 2) {
+            MapCreator creator = new MapCreator(args[0], args[1], args.length > 2 ? Double.parseDouble(args[2]) : 1.0);
+            creator.createMap();
+            map = creator.outputCityMap();
+        } else {
+            map = DijkstraBenchmark.makeGridMap(new Random(1));
+        }
+        Intersection[] intersections = map.intersections().values().toArray(new Intersection[0]);
+        int size = intersections.length;
+
+        long start = System.nanoTime();
+        ArrayPathTable table = new ArrayPathTable(size);
+        DijkstraKernel kernel = new DijkstraKernel(new RoadGraph(intersections));
+        for (int source = 0; source < size; source++) {
+            kernel.run(source);
+            kernel.storeRow(source, table);
+        }
+        System.out.printf("path table: %d ms to build, %d KB%n", (System.nanoTime() - start) / 1000000,
+                table.sizeInBytes() / 1024);
+
+        start = System.nanoTime();
+        ContractionHierarchy hierarchy = new ContractionHierarchy(new RoadGraph(intersections));
+        System.out.printf("contraction hierarchy: %d ms to build, %d KB%n", (System.nanoTime() - start) / 1000000,
+                hierarchy.sizeInBytes() / 1024);
+
+        start = System.nanoTime();
+        HubLabels labels = new HubLabels(hierarchy);
+        System.out.printf("hub labels: %d ms to build, %d KB including the hierarchy, %.1f hubs per label%n",
+                (System.nanoTime() - start) / 1000000, labels.sizeInBytes() / 1024, labels.averageLabelSize());
+
+        // check
+        for (int source = 0; source < size; source++) {
+            for (int destination = 0; destination < size; destination++) {
+                if (labels.travelTime(source, destination) != table.travelTime(source, destination)) {
+                    throw new AssertionError("Different travel time from " + source + " to " + destination);
+                }
+            }
+        }
+        System.out.println("Same travel times for all pairs");
+
+        Random random = new Random(2);
+        int[] sources = new int[QUERIES];
+        int[] destinations = new int[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            sources[i] = random.nextInt(size);
+            destinations[i] = random.nextInt(size);
+        }
+        for (int round = 0; round < ROUNDS; round++) {
+            long tableTime = time(table, sources, destinations, QUERIES);
+            long labelsTime = time(labels, sources, destinations, QUERIES);
+            long hierarchyTime = time(hierarchy, sources, destinations, QUERIES / 100) * 100;
+            System.out.printf("round %d: path table %.1f ns, hub labels %.1f ns, contraction hierarchy %.1f ns per query%n",
+                    round, (double) tableTime / QUERIES, (double) labelsTime / QUERIES, (double) hierarchyTime / QUERIES);
+        }
+    }
+
+    private static long time(RoutingBackend backend, int[] sources, int[] destinations, int queries) {
+        long checksum = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < queries; i++) {
+            checksum += backend.travelTime(sources[i], destinations[i]);
+        }
+        long time = System.nanoTime() - start;
+        if (checksum == 42) {
+            System.out.println(); // keeps the queries from being optimized away
+        }
+        return time;
+    }
+}
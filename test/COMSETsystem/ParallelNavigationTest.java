@@ -0,0 +1,192 @@
+package COMSETsystem;
+
+import DataParsing.MapWithData;
+import MapCreation.MapCreator;
+import UserExamples.RandomDestinationFleetManager;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that triggering navigation events in parallel gives the results of triggering them one at a time.
+ */
+public class ParallelNavigationTest {
+
+    private static final int GRID_SIZE = 5;
+
+    private static final int RESOURCES = 80;
+
+    private static final long AGENTS = 30;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File resourceFile;
+
+    @Before
+    public void BeforeEachTest() throws Exception {
+        Field boundingPolygon = MapCreator.class.getDeclaredField("boundingPolygon");
+        boundingPolygon.setAccessible(true);
+        boundingPolygon.set(null, new ArrayList<>(Arrays.asList(new double[] {-74.1, 40.6},
+                new double[] {-73.9, 40.6}, new double[] {-73.9, 40.9}, new double[] {-74.1, 40.9},
+                new double[] {-74.1, 40.6})));
+
+        // the pickup and drop off longitudes are road indices, see mapMatch
+        Random random = new Random(7);
+        resourceFile = folder.newFile("resources.csv");
+        try (PrintWriter out = new PrintWriter(resourceFile)) {
+            out.println("VendorID,tpep_pickup_datetime,tpep_dropoff_datetime,passenger_count,trip_distance,"
+                    + "pickup_longitude,pickup_latitude,RatecodeID,store_and_fwd_flag,dropoff_longitude,"
+                    + "dropoff_latitude,payment_type");
+            for (int i = 0; i < RESOURCES; i++) {
+                int seconds = random.nextInt(1800);
+                out.printf("1,2016-06-01 08:%02d:%02d,2016-06-01 09:00:00,1,1.0,%.4f,40.75,1,N,%.4f,40.75,1%n",
+                        seconds / 60, seconds % 60, -74.0 + random.nextInt(100) / 10000.0,
+                        -74.0 + random.nextInt(100) / 10000.0);
+            }
+        }
+    }
+
+    @Test
+    public void testRun_sameResultsWithFourThreads() {
+        long firstId = Event.nextId();
+        Run serial = run(1, firstId);
+        Run parallel = run(4, firstId);
+
+        assertTrue(serial.triggered.size() > RESOURCES + AGENTS);
+        assertEquals(serial.triggered, parallel.triggered);
+        assertArrayEquals(serial.scores, parallel.scores);
+    }
+
+    @Test
+    public void testRun_sameTraceWithFourThreads() throws IOException {
+        long firstId = Event.nextId();
+        File serialTrace = folder.newFile("serial.bin");
+        File parallelTrace = folder.newFile("parallel.bin");
+        // the trace has the ids of the roads, so both runs share a map
+        CityMap map = makeMap();
+        Run serial = run(1, firstId, map, serialTrace);
+        Run parallel = run(4, firstId, map, parallelTrace);
+
+        assertArrayEquals(serial.scores, parallel.scores);
+        assertArrayEquals(Files.readAllBytes(serialTrace.toPath()), Files.readAllBytes(parallelTrace.toPath()));
+        TraceReplay replay = new TraceReplay(parallelTrace.getPath(), -1);
+        replay.replay();
+        assertEquals(serial.triggered.size() / 2, replay.triggers);
+        assertEquals(serial.scores[2], replay.totalAssignments);
+    }
+
+    private static class Run {
+        // the id and the time of each event polled from the queue, in order
+        List<Long> triggered = new ArrayList<>();
+        long[] scores;
+    }
+
+    private Run run(int threads, long firstId) {
+        return run(threads, firstId, makeMap(), null);
+    }
+
+    /**
+     * Runs a simulation on a map, recording a trace to traceFile unless it is null.
+     */
+    private Run run(int threads, long firstId, CityMap map, File traceFile) {
+        Event.setNextId(firstId);
+        Run run = new Run();
+        HeapEventQueue events = new HeapEventQueue() {
+            @Override
+            public Event poll() {
+                Event event = super.poll();
+                run.triggered.add(event.id);
+                run.triggered.add(event.time);
+                return event;
+            }
+        };
+        MapWithData mapWD = new MapWithData(map, resourceFile.getPath(), 3, events) {
+            @Override
+            public LocationOnRoad mapMatch(double longitude, double latitude) {
+                Road road = map.roads().get((int) Math.round((longitude + 74.0) * 10000) % map.roads().size());
+                return new LocationOnRoad(road, road.travelTime / 2);
+            }
+        };
+
+        Simulator simulator = TestFixtures.simulator(map, new RandomDestinationFleetManager(map));
+        simulator.totalAgents = AGENTS;
+        simulator.setSimulationThreads(threads);
+        if (traceFile != null) {
+            simulator.setTraceFile(traceFile.getPath());
+        }
+        simulator.simulationEndTime = mapWD.createMapWithData(simulator, simulator.fleetManager,
+                simulator.assignmentManager);
+        mapWD.placeAgentsRandomly(simulator, simulator.fleetManager, simulator.assignmentManager);
+        simulator.events = mapWD.getEvents();
+        simulator.run();
+
+        run.scores = new long[] {simulator.totalResources, simulator.expiredResources,
+                simulator.totalAssignments, simulator.totalResourceTripTime, simulator.totalResourceWaitTime,
+                simulator.totalAgentSearchTime, simulator.totalAgentCruiseTime, simulator.totalAgentApproachTime};
+        return run;
+    }
+
+    /**
+     * Makes a grid of intersections in Manhattan with roads both ways between neighbours, of travel times
+     * between 20 and 60.
+     */
+    private static CityMap makeMap() {
+        Map<Long, Intersection> intersections = new TreeMap<>();
+        Intersection[][] grid = new Intersection[GRID_SIZE][GRID_SIZE];
+        for (int i = 0; i < GRID_SIZE; i++) {
+            for (int j = 0; j < GRID_SIZE; j++) {
+                int id = i * GRID_SIZE + j;
+                Vertex vertex = new Vertex(-74.0 + i / 1000.0, 40.75 + j / 1000.0, i, j, id);
+                Intersection intersection = new Intersection(vertex);
+                vertex.intersection = intersection;
+                intersections.put(intersection.id, intersection);
+                grid[i][j] = intersection;
+            }
+        }
+        Random random = new Random(11);
+        List<Road> roads = new ArrayList<>();
+        for (int i = 0; i < GRID_SIZE; i++) {
+            for (int j = 0; j < GRID_SIZE; j++) {
+                if (i + 1 < GRID_SIZE) {
+                    roads.add(makeRoad(grid[i][j], grid[i + 1][j], 20 + random.nextInt(41)));
+                    roads.add(makeRoad(grid[i + 1][j], grid[i][j], 20 + random.nextInt(41)));
+                }
+                if (j + 1 < GRID_SIZE) {
+                    roads.add(makeRoad(grid[i][j], grid[i][j + 1], 20 + random.nextInt(41)));
+                    roads.add(makeRoad(grid[i][j + 1], grid[i][j], 20 + random.nextInt(41)));
+                }
+            }
+        }
+        CityMap map = new CityMap(intersections, roads, null, null);
+        map.calcTravelTimes(1);
+        return map;
+    }
+
+    private static Road makeRoad(Intersection from, Intersection to, long travelTime) {
+        Road road = new Road();
+        road.from = from;
+        road.to = to;
+        road.travelTime = travelTime;
+        from.roadsMapFrom.put(to, road);
+        to.roadsMapTo.put(from, road);
+        return road;
+    }
+}
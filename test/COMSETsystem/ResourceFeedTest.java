@@ -0,0 +1,164 @@
+package COMSETsystem;
+
+import DataParsing.MapWithData;
+import DataParsing.Resource;
+import DataParsing.ResourceStream;
+import MapCreation.MapCreator;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.reflect.Field;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Checks that streamed resources come in the order and with the ids of resources loaded up front.
+ */
+public class ResourceFeedTest {
+
+    private static final ZoneId ZONE = ZoneId.of("America/New_York");
+
+    // The seconds after 8:00 of the resources of the file, in file order
+    private static final int[] SECONDS = {5, 1, 3, 1, 9, 2, 2, 12, 7};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File resourceFile;
+
+    @Before
+    public void BeforeEachTest() throws Exception {
+        // a bounding polygon around every location of the file
+        Field boundingPolygon = MapCreator.class.getDeclaredField("boundingPolygon");
+        boundingPolygon.setAccessible(true);
+        boundingPolygon.set(null, new ArrayList<>(Arrays.asList(new double[] {-74.1, 40.6},
+                new double[] {-73.9, 40.6}, new double[] {-73.9, 40.9}, new double[] {-74.1, 40.9},
+                new double[] {-74.1, 40.6})));
+
+        resourceFile = folder.newFile("resources.csv");
+        try (PrintWriter out = new PrintWriter(resourceFile)) {
+            out.println("VendorID,tpep_pickup_datetime,tpep_dropoff_datetime,passenger_count,trip_distance,"
+                    + "pickup_longitude,pickup_latitude,RatecodeID,store_and_fwd_flag,dropoff_longitude,"
+                    + "dropoff_latitude,payment_type");
+            for (int i = 0; i < SECONDS.length; i++) {
+                out.printf("1,2016-06-01 08:00:%02d,2016-06-01 08:30:00,1,1.0,-74.0%d,40.75,1,N,-73.95,40.8,1%n",
+                        SECONDS[i], i);
+            }
+        }
+    }
+
+    @Test
+    public void testResourceStream_unsortedFileInTimeOrder() throws IOException {
+        ResourceStream stream = new ResourceStream(resourceFile.getPath(), ZONE);
+        long eight = ZonedDateTime.of(2016, 6, 1, 8, 0, 0, 0, ZONE).toEpochSecond();
+        assertEquals(SECONDS.length, stream.size());
+        assertEquals(eight + 1, stream.earliestTime());
+        assertEquals(eight + 12, stream.latestTime());
+
+        // by time, then in file order
+        int[] expectedIndices = {1, 3, 5, 6, 2, 0, 8, 4, 7};
+        for (int expectedIndex : expectedIndices) {
+            assertTrue(stream.hasNext());
+            assertEquals(expectedIndex, stream.peekIndex());
+            assertEquals(eight + SECONDS[expectedIndex], stream.peekTime());
+            Resource resource = stream.next();
+            assertEquals(eight + SECONDS[expectedIndex], resource.getTime());
+            // the file index is in the last digit of the pickup longitude
+            assertEquals(-74.0 - expectedIndex / 100.0, resource.getPickupLon(), 1e-9);
+        }
+        assertFalse(stream.hasNext());
+        assertNull(stream.next());
+    }
+
+    @Test
+    public void testResourceFeed_sameIdsAsPreload() throws IOException {
+        CityMap map = TestFixtures.triangleMap(-74.0, 40.75);
+        Simulator simulator = TestFixtures.simulator(map, mock(FleetManager.class));
+
+        // preload, as createMapWithData does without streaming
+        long firstId = Event.nextId();
+        MapWithData preloaded = makeMapWithData(map);
+        preloaded.createMapWithData(simulator, simulator.fleetManager, simulator.assignmentManager);
+        List<Event> expected = new ArrayList<>();
+        while (!preloaded.events.isEmpty()) {
+            expected.add(preloaded.events.poll());
+        }
+
+        // stream the same file with the same first id
+        Event.setNextId(firstId);
+        MapWithData streamed = makeMapWithData(map);
+        ResourceFeed feed = new ResourceFeed(streamed.createResourceStream(), streamed, simulator,
+                simulator.fleetManager, simulator.assignmentManager);
+        assertEquals(firstId + SECONDS.length, Event.nextId());
+        EventQueue events = new HeapEventQueue();
+        List<Event> actual = new ArrayList<>();
+        while (feed.hasNext() || !events.isEmpty()) {
+            feed.addDueEvents(events);
+            actual.add(events.poll());
+        }
+
+        assertEquals(SECONDS.length, actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).id, actual.get(i).id);
+            assertEquals(expected.get(i).time, actual.get(i).time);
+            assertEquals(((ResourceEvent) expected.get(i)).tripTime, ((ResourceEvent) actual.get(i)).tripTime);
+        }
+    }
+
+    @Test
+    public void testResourceEvent_keptByAssignmentManagerWithoutStreaming() throws Exception {
+        CityMap map = TestFixtures.triangleMap(-74.0, 40.75);
+        Simulator simulator = TestFixtures.simulator(map, mock(FleetManager.class));
+        when(simulator.fleetManager.onResourceAvailabilityChange(any(COMSETsystem.Resource.class),
+                any(FleetManager.ResourceState.class), any(LocationOnRoad.class), anyLong())).thenReturn(AgentAction.doNothing());
+        simulator.events = new HeapEventQueue();
+        LocationOnRoad pickup = new LocationOnRoad(map.roads().get(0), 5);
+        LocationOnRoad dropoff = new LocationOnRoad(map.roads().get(1), 5);
+
+        // triggered once when it is introduced, then when it expires
+        ResourceEvent kept = new ResourceEvent(pickup, dropoff, 1000, 30, simulator, simulator.fleetManager,
+                simulator.assignmentManager);
+        simulator.assignmentManager.addNewEvent(kept);
+        kept.trigger();
+        kept.trigger();
+        assertSame(kept, simulator.assignmentManager.resources.get(kept.id));
+
+        // with streaming, expired resources are forgotten
+        simulator.resourceFeed = new ResourceFeed(new ResourceStream(resourceFile.getPath(), ZONE),
+                makeMapWithData(map), simulator, simulator.fleetManager, simulator.assignmentManager);
+        ResourceEvent forgotten = new ResourceEvent(pickup, dropoff, 1000, 30, simulator, simulator.fleetManager,
+                simulator.assignmentManager);
+        simulator.assignmentManager.addNewEvent(forgotten);
+        forgotten.trigger();
+        forgotten.trigger();
+        assertNull(simulator.assignmentManager.resources.get(forgotten.id));
+    }
+
+    private MapWithData makeMapWithData(CityMap map) {
+        return new MapWithData(map, resourceFile.getPath(), 0, new HeapEventQueue()) {
+            @Override
+            public LocationOnRoad mapMatch(double longitude, double latitude) {
+                // the pickup locations are on the first road, the drop off locations on the second one
+                return new LocationOnRoad(map.roads().get(longitude < -73.99 ? 0 : 1), 5);
+            }
+        };
+    }
+}
@@ -0,0 +1,497 @@
+package COMSETsystem;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the routing backends of CityMap against each other on a random map.
+ */
+public class RoutingBackendTest {
+
+    private static final int INTERSECTIONS = 300;
+    private static final int ROADS = 900;
+    private static final long SEED = 42;
+    private static final int CHANGES = 20;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private CityMap tableMap;
+
+    @Before
+    public void BeforeEachTest() {
+        tableMap = makeRandomMap(new Random(SEED));
+        tableMap.calcTravelTimes(2);
+    }
+
+    @Test
+    public void testContractionHierarchy_sameTravelTimesAsTable() {
+        CityMap chMap = makeRandomMap(new Random(SEED));
+        chMap.buildContractionHierarchy();
+        assertSameTravelTimes(chMap);
+        assertShortestPaths(chMap);
+    }
+
+    @Test
+    public void testHubLabels_sameTravelTimesAsTable() {
+        CityMap labelsMap = makeRandomMap(new Random(SEED));
+        labelsMap.buildHubLabels();
+        assertSameTravelTimes(labelsMap);
+        assertShortestPaths(labelsMap);
+    }
+
+    @Test
+    public void testLandmarkAStar_sameTravelTimesAsTable() {
+        CityMap altMap = makeRandomMap(new Random(SEED));
+        altMap.buildLandmarkAStar(4);
+        assertSameTravelTimes(altMap);
+        assertShortestPaths(altMap);
+    }
+
+    @Test
+    public void testCellOverlay_sameTravelTimesAsTable() {
+        CityMap overlayMap = makeRandomMap(new Random(SEED));
+        overlayMap.buildCellOverlay(16);
+        // cells of up to 16, 64 and 256 intersections
+        assertEquals(3, overlayMap.overlayCellCounts().length);
+        assertSameTravelTimes(overlayMap);
+        assertShortestPaths(overlayMap);
+    }
+
+    @Test
+    public void testOnDemand_sameTravelTimesAndPathsAsTable() {
+        CityMap lazyMap = makeRandomMap(new Random(SEED));
+        // room for ten rows, so that rows are evicted and computed again
+        lazyMap.calcTravelTimesOnDemand(10 * LazyPathTable.rowSizeInBytes(INTERSECTIONS));
+        assertEquals(10, lazyMap.pathRowCacheCapacity());
+        assertSameTravelTimes(lazyMap);
+        // the travel times are queried row by row, so each row is computed once
+        assertEquals(INTERSECTIONS, lazyMap.pathRowCacheMisses());
+        assertEquals(INTERSECTIONS - 10, lazyMap.pathRowCacheEvictions());
+        assertSamePathsAsTable(lazyMap);
+    }
+
+    @Test
+    public void testCompactTable_sameTravelTimesAndPathsAsTable() {
+        CityMap compactMap = makeRandomMap(new Random(SEED));
+        compactMap.calcCompactTravelTimes(2);
+        assertSameTravelTimes(compactMap);
+        assertSamePathsAsTable(compactMap);
+    }
+
+    @Test
+    public void testPathTableCache_mappedTableSameAsComputed() throws IOException {
+        File directory = folder.newFolder("cache");
+        // the first map computes the table and stores it, the second one maps it from the file
+        makeRandomMap(new Random(SEED)).calcTravelTimes(2, directory.getPath());
+        assertEquals(1, directory.listFiles().length);
+        CityMap mappedMap = makeRandomMap(new Random(SEED));
+        PathTable mapped = new PathTableCache(directory, byPathTableIndex(mappedMap)).load();
+        assertTrue(mapped instanceof MappedPathTable);
+        mappedMap.calcTravelTimes(2, directory.getPath());
+        assertSameTravelTimes(mappedMap);
+        assertSamePathsAsTable(mappedMap);
+
+        // a map with another travel time has another key and misses the cache
+        CityMap changedMap = makeRandomMap(new Random(SEED));
+        changedMap.roads().get(0).travelTime++;
+        assertNull(new PathTableCache(directory, byPathTableIndex(changedMap)).load());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testPathTableCache_mappedTableIsReadOnly() throws IOException {
+        File directory = folder.newFolder("cache");
+        makeRandomMap(new Random(SEED)).calcTravelTimes(2, directory.getPath());
+        PathTable mapped = new PathTableCache(directory, byPathTableIndex(tableMap)).load();
+        mapped.set(0, 1, 1, 0);
+    }
+
+    @Test
+    public void testHilbertOrder_sameTravelTimesAndPathsAsTable() {
+        // the same roads as tableMap, between intersections scattered over a square
+        CityMap hilbertMap = makeRandomMap(new Random(SEED), 1, new Random(SEED + 4));
+        hilbertMap.renumberByHilbertCurve();
+        int renumbered = 0;
+        for (Intersection intersection : hilbertMap.intersections().values()) {
+            if (intersection.pathTableIndex != tableMap.intersections().get(intersection.id).pathTableIndex) {
+                renumbered++;
+            }
+        }
+        assertTrue(renumbered > 0);
+        hilbertMap.calcTravelTimes(2);
+        assertSameTravelTimes(hilbertMap);
+        assertSamePathsAsTable(hilbertMap);
+    }
+
+    @Test
+    public void testCompactTable_overflowingTravelTimes() {
+        // travel times of up to 5 * 20000 seconds do not fit in 16 bits
+        tableMap = makeRandomMap(new Random(SEED), 20000);
+        tableMap.calcTravelTimes(2);
+        CityMap compactMap = makeRandomMap(new Random(SEED), 20000);
+        compactMap.calcCompactTravelTimes(2);
+        assertSameTravelTimes(compactMap);
+        assertSamePathsAsTable(compactMap);
+    }
+
+    @Test
+    public void testNextIntersectionTowards_followsShortestPaths() {
+        // without a next hop table, the next hops are found with travel time queries
+        assertNextHopsFollowShortestPaths(tableMap);
+        Map<Long, Map<Long, Long>> queried = nextHops(tableMap);
+        CityMap compactMap = makeRandomMap(new Random(SEED));
+        compactMap.calcCompactTravelTimes(2);
+        assertEquals(queried, nextHops(compactMap));
+
+        // with the other backends, the next hops towards a destination are computed by one search
+        CityMap chMap = makeRandomMap(new Random(SEED));
+        chMap.buildContractionHierarchy();
+        assertNextHopsFollowShortestPaths(chMap);
+        assertEquals(queried, nextHops(chMap));
+        CityMap lazyMap = makeRandomMap(new Random(SEED));
+        lazyMap.calcTravelTimesOnDemand(LazyPathTable.rowSizeInBytes(INTERSECTIONS));
+        assertEquals(queried, nextHops(lazyMap));
+        CityMap altMap = makeRandomMap(new Random(SEED));
+        altMap.buildLandmarkAStar(4);
+        assertEquals(queried, nextHops(altMap));
+
+        // the next hop table breaks ties between shortest paths the same way
+        tableMap.calcNextHops(2);
+        assertNextHopsFollowShortestPaths(tableMap);
+        assertEquals(queried, nextHops(tableMap));
+    }
+
+    @Test
+    public void testUpdateRoadTravelTime_sameAsRecomputed() {
+        tableMap.calcNextHops(2);
+        CityMap lazyMap = makeRandomMap(new Random(SEED));
+        lazyMap.calcTravelTimesOnDemand(INTERSECTIONS * LazyPathTable.rowSizeInBytes(INTERSECTIONS));
+        assertSameTravelTimes(lazyMap);
+        CityMap chMap = makeRandomMap(new Random(SEED));
+        chMap.buildContractionHierarchy();
+        CityMap labelsMap = makeRandomMap(new Random(SEED));
+        labelsMap.buildHubLabels();
+        CityMap altMap = makeRandomMap(new Random(SEED));
+        altMap.buildLandmarkAStar(4);
+        CityMap overlayMap = makeRandomMap(new Random(SEED));
+        overlayMap.buildCellOverlay(16);
+        // cache the next hops towards every destination, so that the changes must drop the affected ones
+        for (CityMap map : new CityMap[] {lazyMap, chMap, labelsMap}) {
+            nextHops(map);
+        }
+
+        // the roads of maps made from the same seed are in the same order
+        Random random = new Random(SEED + 1);
+        int repairedRows = 0;
+        for (int change = 0; change < CHANGES; change++) {
+            int road = random.nextInt(ROADS);
+            long travelTime = 1 + random.nextInt(10);
+            repairedRows += tableMap.updateRoadTravelTime(tableMap.roads().get(road), travelTime);
+            lazyMap.updateRoadTravelTime(lazyMap.roads().get(road), travelTime);
+            chMap.updateRoadTravelTime(chMap.roads().get(road), travelTime);
+            labelsMap.updateRoadTravelTime(labelsMap.roads().get(road), travelTime);
+            altMap.updateRoadTravelTime(altMap.roads().get(road), travelTime);
+            overlayMap.updateRoadTravelTime(overlayMap.roads().get(road), travelTime);
+        }
+        // far fewer rows than rebuilding the path table and the next hop table for every change
+        assertTrue(repairedRows < CHANGES * INTERSECTIONS);
+
+        CityMap recomputedMap = makeRandomMap(new Random(SEED));
+        for (int road = 0; road < ROADS; road++) {
+            recomputedMap.roads().get(road).travelTime = tableMap.roads().get(road).travelTime;
+        }
+        recomputedMap.calcTravelTimes(2);
+        recomputedMap.calcNextHops(2);
+        assertSameTravelTimes(recomputedMap);
+        assertSamePathsAsTable(recomputedMap);
+        assertSameNextHopsAsTable(recomputedMap);
+        assertSameTravelTimes(lazyMap);
+        assertSamePathsAsTable(lazyMap);
+        assertSameNextHopsAsTable(lazyMap);
+        assertSameTravelTimes(chMap);
+        assertShortestPaths(chMap);
+        assertSameNextHopsAsTable(chMap);
+        assertSameTravelTimes(labelsMap);
+        assertShortestPaths(labelsMap);
+        assertSameNextHopsAsTable(labelsMap);
+        assertSameTravelTimes(altMap);
+        assertShortestPaths(altMap);
+        assertSameTravelTimes(overlayMap);
+        assertShortestPaths(overlayMap);
+    }
+
+    private void assertSameNextHopsAsTable(CityMap map) {
+        for (Intersection current : tableMap.intersections().values()) {
+            for (Intersection destination : tableMap.intersections().values()) {
+                assertEquals(nextHop(tableMap, current, destination), nextHop(map,
+                        map.intersections().get(current.id), map.intersections().get(destination.id)));
+            }
+        }
+    }
+
+    /**
+     * @return the id of the next intersection from every intersection towards every destination, by ids
+     */
+    private static Map<Long, Map<Long, Long>> nextHops(CityMap map) {
+        Map<Long, Map<Long, Long>> nextHops = new TreeMap<>();
+        for (Intersection source : map.intersections().values()) {
+            Map<Long, Long> row = new TreeMap<>();
+            for (Intersection destination : map.intersections().values()) {
+                row.put(destination.id, nextHop(map, source, destination));
+            }
+            nextHops.put(source.id, row);
+        }
+        return nextHops;
+    }
+
+    /**
+     * @return the id of the next intersection from current towards destination, null if current is the
+     * destination, or -1 if the destination is unreachable
+     */
+    private static Long nextHop(CityMap map, Intersection current, Intersection destination) {
+        try {
+            Intersection next = map.nextIntersectionTowards(current, destination);
+            return next == null ? null : next.id;
+        } catch (IllegalArgumentException e) {
+            return -1L;
+        }
+    }
+
+    /**
+     * Checks that following the next hops from any intersection reaches any reachable destination in the
+     * shortest travel time.
+     */
+    private void assertNextHopsFollowShortestPaths(CityMap map) {
+        for (Intersection source : map.intersections().values()) {
+            for (Intersection destination : map.intersections().values()) {
+                long shortestTravelTime = map.travelTimeBetween(source, destination);
+                if (shortestTravelTime == Long.MAX_VALUE) {
+                    assertEquals(Long.valueOf(-1), nextHop(map, source, destination));
+                    continue;
+                }
+                long travelTime = 0;
+                Intersection current = source;
+                for (Intersection next = map.nextIntersectionTowards(current, destination); next != null;
+                     next = map.nextIntersectionTowards(current, destination)) {
+                    travelTime += current.roadTo(next).travelTime;
+                    current = next;
+                }
+                assertSame(destination, current);
+                assertEquals(shortestTravelTime, travelTime);
+            }
+        }
+    }
+
+    private void assertSamePathsAsTable(CityMap map) {
+        for (Intersection source : tableMap.intersections().values()) {
+            for (Intersection destination : tableMap.intersections().values()) {
+                if (tableMap.travelTimeBetween(source, destination) == Long.MAX_VALUE) {
+                    continue;
+                }
+                LinkedList<Intersection> tablePath = tableMap.shortestTravelTimePath(source, destination);
+                LinkedList<Intersection> path = map.shortestTravelTimePath(
+                        map.intersections().get(source.id), map.intersections().get(destination.id));
+                assertEquals(tablePath.size(), path.size());
+                for (int i = 0; i < tablePath.size(); i++) {
+                    assertEquals(tablePath.get(i).id, path.get(i).id);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testTravelTimesBetween_sameAsPairwise() {
+        CityMap lazyMap = makeRandomMap(new Random(SEED));
+        lazyMap.calcTravelTimesOnDemand(LazyPathTable.rowSizeInBytes(INTERSECTIONS));
+        CityMap chMap = makeRandomMap(new Random(SEED));
+        chMap.buildContractionHierarchy();
+        for (CityMap map : new CityMap[] {tableMap, lazyMap, chMap}) {
+            // pairs of locations on the same road in both orders
+            Random random = new Random(SEED + 2);
+            LocationOnRoad[] locations = new LocationOnRoad[60];
+            for (int i = 0; i < locations.length; i++) {
+                Road road = i % 2 == 1 ? locations[i - 1].road : map.roads().get(random.nextInt(ROADS));
+                locations[i] = new LocationOnRoad(road, random.nextInt((int) road.travelTime + 1));
+            }
+
+            long[][] matrix = new long[locations.length][locations.length];
+            map.travelTimesBetween(locations, locations, matrix, 2);
+            long[] row = new long[locations.length];
+            long[] column = new long[locations.length];
+            for (int i = 0; i < locations.length; i++) {
+                map.travelTimesBetween(locations[i], locations, row);
+                map.travelTimesBetween(locations, locations[i], column);
+                for (int j = 0; j < locations.length; j++) {
+                    long travelTime = map.travelTimeBetween(locations[i], locations[j]);
+                    assertEquals(travelTime, row[j]);
+                    assertEquals(travelTime, matrix[i][j]);
+                    assertEquals(map.travelTimeBetween(locations[j], locations[i]), column[j]);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testTravelTimesBetween_unreachableLocations() {
+        tableMap.calcTransposedTravelTimes();
+        Random random = new Random(SEED + 4);
+        LocationOnRoad[] locations = new LocationOnRoad[100];
+        for (int i = 0; i < locations.length; i++) {
+            Road road = tableMap.roads().get(random.nextInt(ROADS));
+            locations[i] = new LocationOnRoad(road, random.nextInt((int) road.travelTime + 1));
+        }
+
+        int unreachable = 0;
+        long[] row = new long[locations.length];
+        long[] column = new long[locations.length];
+        for (int i = 0; i < locations.length; i++) {
+            tableMap.travelTimesBetween(locations[i], locations, row);
+            tableMap.travelTimesBetween(locations, locations[i], column);
+            for (int j = 0; j < locations.length; j++) {
+                LocationOnRoad source = locations[i];
+                LocationOnRoad destination = locations[j];
+                long travelTime = tableMap.travelTimeBetween(source, destination);
+                boolean onTheWay = source.road == destination.road
+                        && source.travelTimeFromStartIntersection <= destination.travelTimeFromStartIntersection;
+                if (!onTheWay && tableMap.travelTimeBetween(source.road.to, destination.road.from) == Long.MAX_VALUE) {
+                    // the partial road travel times are not added to the unreachable travel time
+                    assertEquals(Long.MAX_VALUE, travelTime);
+                    unreachable++;
+                } else {
+                    assertTrue(travelTime >= 0 && travelTime < Long.MAX_VALUE);
+                }
+                assertEquals(travelTime, row[j]);
+                assertEquals(tableMap.travelTimeBetween(destination, source), column[j]);
+            }
+        }
+        assertTrue(unreachable > 0);
+    }
+
+    @Test
+    public void testTransposedTravelTimes_sameAsRowsAfterUpdates() {
+        tableMap.calcTransposedTravelTimes();
+        Random random = new Random(SEED + 3);
+        for (int change = 0; change < CHANGES; change++) {
+            tableMap.updateRoadTravelTime(tableMap.roads().get(random.nextInt(ROADS)), 1 + random.nextInt(10));
+        }
+
+        LocationOnRoad[] locations = new LocationOnRoad[100];
+        for (int i = 0; i < locations.length; i++) {
+            Road road = tableMap.roads().get(random.nextInt(ROADS));
+            locations[i] = new LocationOnRoad(road, random.nextInt((int) road.travelTime + 1));
+        }
+        long[] byColumn = new long[locations.length];
+        long[] byRow = new long[locations.length];
+        for (LocationOnRoad destination : locations) {
+            tableMap.travelTimesBetween(locations, destination, byColumn, true);
+            tableMap.travelTimesBetween(locations, destination, byRow, false);
+            for (int i = 0; i < locations.length; i++) {
+                assertEquals(tableMap.travelTimeBetween(locations[i], destination), byRow[i]);
+                assertEquals(byRow[i], byColumn[i]);
+            }
+        }
+    }
+
+    private void assertSameTravelTimes(CityMap map) {
+        for (Intersection source : tableMap.intersections().values()) {
+            for (Intersection destination : tableMap.intersections().values()) {
+                assertEquals("travel time from " + source.id + " to " + destination.id,
+                        tableMap.travelTimeBetween(source, destination),
+                        map.travelTimeBetween(map.intersections().get(source.id), map.intersections().get(destination.id)));
+            }
+        }
+    }
+
+    /**
+     * Checks that every path follows roads from source to destination and takes the shortest travel time.
+     */
+    private void assertShortestPaths(CityMap map) {
+        for (Intersection source : map.intersections().values()) {
+            for (Intersection destination : map.intersections().values()) {
+                if (map.travelTimeBetween(source, destination) == Long.MAX_VALUE) {
+                    continue;
+                }
+                LinkedList<Intersection> path = map.shortestTravelTimePath(source, destination);
+                assertSame(source, path.getFirst());
+                assertSame(destination, path.getLast());
+                long travelTime = 0;
+                Intersection previous = null;
+                for (Intersection intersection : path) {
+                    if (previous != null) {
+                        travelTime += previous.roadTo(intersection).travelTime;
+                    }
+                    previous = intersection;
+                }
+                assertEquals(map.travelTimeBetween(source, destination), travelTime);
+            }
+        }
+    }
+
+    private static Intersection[] byPathTableIndex(CityMap map) {
+        Intersection[] intersections = new Intersection[map.intersections().size()];
+        for (Intersection intersection : map.intersections().values()) {
+            intersections[intersection.pathTableIndex] = intersection;
+        }
+        return intersections;
+    }
+
+    /**
+     * Makes a map with random roads between random intersections. Travel times are drawn from a small range
+     * so that there are many shortest paths of equal travel time, and some intersections are unreachable.
+     */
+    private static CityMap makeRandomMap(Random random) {
+        return makeRandomMap(random, 1);
+    }
+
+    private static CityMap makeRandomMap(Random random, long travelTimeScale) {
+        return makeRandomMap(random, travelTimeScale, null);
+    }
+
+    /**
+     * Makes a random map whose intersections are placed at random coordinates drawn from coordinateRandom,
+     * or on a diagonal line if coordinateRandom is null.
+     */
+    private static CityMap makeRandomMap(Random random, long travelTimeScale, Random coordinateRandom) {
+        Map<Long, Intersection> intersections = new TreeMap<>();
+        for (int i = 0; i < INTERSECTIONS; i++) {
+            double x = coordinateRandom == null ? i : coordinateRandom.nextInt(INTERSECTIONS);
+            double y = coordinateRandom == null ? i : coordinateRandom.nextInt(INTERSECTIONS);
+            Vertex vertex = new Vertex(100.0, 100.0 + i, x, y, i);
+            Intersection intersection = new Intersection(vertex);
+            vertex.intersection = intersection;
+            intersections.put(intersection.id, intersection);
+        }
+        List<Road> roads = new ArrayList<>();
+        while (roads.size() < ROADS) {
+            Intersection from = intersections.get((long) random.nextInt(INTERSECTIONS));
+            Intersection to = intersections.get((long) random.nextInt(INTERSECTIONS));
+            if (from == to || from.roadsMapFrom.containsKey(to)) {
+                continue;
+            }
+            Road road = new Road();
+            road.from = from;
+            road.to = to;
+            road.travelTime = (1 + random.nextInt(5)) * travelTimeScale;
+            from.roadsMapFrom.put(to, road);
+            to.roadsMapTo.put(from, road);
+            roads.add(road);
+        }
+        return new CityMap(intersections, roads, null, null);
+    }
+}
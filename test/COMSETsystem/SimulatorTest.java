@@ -0,0 +1,69 @@
+package COMSETsystem;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Checks that a fleet manager sharing the map of the simulator cannot change it or the locations of the
+ * simulator.
+ */
+public class SimulatorTest {
+
+    @Test
+    public void testAgentCopy_sameRoadNewLocation() {
+        CityMap map = TestFixtures.triangleMap(100.0, 100.0);
+        Road road = map.roads().get(0);
+        Simulator simulator = TestFixtures.simulator(map, mock(FleetManager.class));
+        LocationOnRoad loc = new LocationOnRoad(road, 5);
+
+        LocationOnRoad agentLoc = simulator.agentCopy(loc);
+        assertNotSame(loc, agentLoc);
+        assertSame(road, agentLoc.road);
+
+        // a fleet manager moving what it is given
+        agentLoc.travelTimeFromStartIntersection = 0;
+        agentLoc.road = map.roads().get(1);
+        assertSame(road, loc.road);
+        assertEquals(5, loc.travelTimeFromStartIntersection);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testMap_roadsCannotBeRemoved() {
+        CityMap map = TestFixtures.triangleMap(100.0, 100.0);
+        map.roads().get(0).getFrom().getAdjacentFrom().clear();
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testMap_roadsCannotBeAdded() {
+        CityMap map = TestFixtures.triangleMap(100.0, 100.0);
+        new Road(map.intersections().get(0L), map.intersections().get(2L), new ArrayList<>());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testMap_roadListIsReadOnly() {
+        CityMap map = TestFixtures.triangleMap(100.0, 100.0);
+        map.roads().remove(0);
+    }
+
+    @Test
+    public void testChangeRoadTravelTime_fleetManagerGetsTheSharedRoad() {
+        CityMap map = TestFixtures.triangleMap(100.0, 100.0);
+        Road road = map.roads().get(0);
+        Simulator simulator = TestFixtures.simulator(map, mock(FleetManager.class));
+
+        simulator.changeRoadTravelTime(road, 40);
+        verify(simulator.fleetManager).onMapStateChanged(same(road),
+                eq(FleetManager.MapState.ROAD_TRAVEL_TIME_CHANGED));
+        assertEquals(40, road.getTravelTime());
+        assertEquals(40 + 20, map.travelTimeBetween(road.getFrom(), map.roads().get(1).getTo()));
+    }
+}
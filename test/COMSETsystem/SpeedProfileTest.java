@@ -0,0 +1,103 @@
+package COMSETsystem;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class SpeedProfileTest {
+
+    private static final ZoneId ZONE = ZoneId.of("America/New_York");
+
+    private Road slowRoad;
+    private Road constantRoad;
+    private SpeedProfile profile;
+
+    @Before
+    public void BeforeEachTest() {
+        slowRoad = makeRoad(100);
+        constantRoad = makeRoad(30);
+        Map<Long, double[]> speedFactors = new HashMap<>();
+        // four buckets of six hours; the morning and the evening are slow
+        speedFactors.put(slowRoad.id, new double[] {1.0, 0.5, 1.0, 0.5});
+        profile = new SpeedProfile(Arrays.asList(slowRoad, constantRoad), speedFactors, 4, ZONE);
+    }
+
+    @Test
+    public void testBucketOf_usesLocalTimeOfDay() {
+        long morning = ZonedDateTime.of(2016, 6, 1, 8, 30, 0, 0, ZONE).toEpochSecond();
+        assertEquals(1, profile.bucketOf(morning));
+        assertEquals(ZonedDateTime.of(2016, 6, 1, 6, 0, 0, 0, ZONE).toEpochSecond(), profile.bucketStart(morning));
+        assertEquals(ZonedDateTime.of(2016, 6, 1, 12, 0, 0, 0, ZONE).toEpochSecond(), profile.bucketEnd(morning));
+        assertEquals(0, profile.bucketOf(ZonedDateTime.of(2016, 6, 1, 0, 0, 0, 0, ZONE).toEpochSecond()));
+        assertEquals(3, profile.bucketOf(ZonedDateTime.of(2016, 6, 1, 23, 59, 59, 0, ZONE).toEpochSecond()));
+    }
+
+    @Test
+    public void testBucketClass_sameSpeedFactors() {
+        assertEquals(0, profile.bucketClass(0));
+        assertEquals(1, profile.bucketClass(1));
+        assertEquals(0, profile.bucketClass(2));
+        assertEquals(1, profile.bucketClass(3));
+        assertTrue(profile.isFreeFlow(2));
+        assertFalse(profile.isFreeFlow(3));
+    }
+
+    @Test
+    public void testTravelTime_scaledBySpeedFactor() {
+        assertEquals(100, profile.travelTime(slowRoad, 0));
+        assertEquals(200, profile.travelTime(slowRoad, 1));
+        assertEquals(30, profile.travelTime(constantRoad, 1));
+        profile.setBaseTravelTime(slowRoad, 40);
+        assertEquals(80, profile.travelTime(slowRoad, 3));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructor_bucketsMustSplitTheDay() {
+        new SpeedProfile(Arrays.asList(slowRoad), new HashMap<>(), 7, ZONE);
+    }
+
+    @Test
+    public void testUpdateTimeBucket_notifiesOnlyWhileRunning() {
+        CityMap map = TestFixtures.triangleMap(100.0, 100.0);
+        Road road = map.roads().get(0);
+        Map<Long, double[]> speedFactors = new HashMap<>();
+        speedFactors.put(road.id, new double[] {1.0, 0.5, 1.0, 0.5});
+        Simulator simulator = TestFixtures.simulator(map, mock(FleetManager.class));
+        simulator.speedProfile = new SpeedProfile(map.roads(), speedFactors, 4, ZONE);
+        long night = ZonedDateTime.of(2016, 6, 1, 2, 0, 0, 0, ZONE).toEpochSecond();
+        long morning = ZonedDateTime.of(2016, 6, 1, 8, 0, 0, 0, ZONE).toEpochSecond();
+        assertEquals(0, simulator.timeBucketClass(night));
+        assertEquals(1, simulator.timeBucketClass(morning));
+
+        // while the simulation is configured, e.g., to compute trip times
+        simulator.updateTimeBucket(morning);
+        assertEquals(20, road.travelTime);
+        simulator.updateTimeBucket(night);
+        verify(simulator.fleetManager, never()).onMapStateChanged(road, FleetManager.MapState.ROAD_TRAVEL_TIME_CHANGED);
+
+        simulator.notifyTimeBucketChanges = true;
+        simulator.updateTimeBucket(morning);
+        assertEquals(20, road.travelTime);
+        assertEquals(20 + 20, map.travelTimeBetween(road.from, map.roads().get(1).to));
+        verify(simulator.fleetManager, times(1)).onMapStateChanged(road, FleetManager.MapState.ROAD_TRAVEL_TIME_CHANGED);
+    }
+
+    private static Road makeRoad(long travelTime) {
+        Road road = new Road();
+        road.travelTime = travelTime;
+        return road;
+    }
+}
@@ -0,0 +1,64 @@
+package COMSETsystem;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Small maps and simulators shared by the tests, built without map and resource files.
+ */
+final class TestFixtures {
+
+    // The maximum life time of the resources of the simulators, in seconds
+    static final long LIFE_TIME = 600;
+
+    private TestFixtures() {
+    }
+
+    /**
+     * Makes a map of three intersections with roads 0 -> 1 -> 2 and 2 -> 0 of travel times 10, 20 and 30, and
+     * computes its path table. Intersection i is at (longitude, latitude + i / 100).
+     *
+     * @param longitude the longitude of the intersections
+     * @param latitude the latitude of intersection 0
+     * @return the map
+     */
+    static CityMap triangleMap(double longitude, double latitude) {
+        Map<Long, Intersection> intersections = new TreeMap<>();
+        for (int i = 0; i < 3; i++) {
+            Vertex vertex = new Vertex(longitude, latitude + i / 100.0, i, i, i);
+            Intersection intersection = new Intersection(vertex);
+            vertex.intersection = intersection;
+            intersections.put(intersection.id, intersection);
+        }
+        List<Road> roads = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Road road = new Road();
+            road.from = intersections.get((long) i);
+            road.to = intersections.get((long) ((i + 1) % 3));
+            road.travelTime = 10 * (i + 1);
+            road.from.roadsMapFrom.put(road.to, road);
+            road.to.roadsMapTo.put(road.from, road);
+            roads.add(road);
+        }
+        CityMap map = new CityMap(intersections, roads, null, null);
+        map.calcTravelTimes(1);
+        return map;
+    }
+
+    /**
+     * Makes a simulator of a map that is not configured from files, with resources living LIFE_TIME.
+     *
+     * @param map the map
+     * @param fleetManager the fleet manager
+     * @return the simulator
+     */
+    static Simulator simulator(CityMap map, FleetManager fleetManager) {
+        Simulator simulator = new Simulator(fleetManager.getClass());
+        simulator.map = map;
+        simulator.fleetManager = fleetManager;
+        simulator.ResourceMaximumLifeTime = LIFE_TIME;
+        return simulator;
+    }
+}
@@ -0,0 +1,139 @@
+package COMSETsystem;
+
+import COMSETsystem.FleetManager.ResourceState;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Checks that TraceReplay reads back what TraceRecorder writes.
+ */
+public class TraceReplayTest {
+
+    private static final long LIFE_TIME = 600;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testReplay_rebuildsScoreAndState() throws IOException {
+        Intersection a = new Intersection(new Vertex(0.0, 0.0, 0, 0, 10));
+        Intersection b = new Intersection(new Vertex(1.0, 0.0, 1, 0, 20));
+        Road road = new Road();
+        road.from = a;
+        road.to = b;
+        road.travelTime = 50;
+        Simulator simulator = mock(Simulator.class);
+        simulator.ResourceMaximumLifeTime = LIFE_TIME;
+
+        ResourceEvent delivered = new ResourceEvent(new LocationOnRoad(road, 10), new LocationOnRoad(road, 40),
+                1000, 300, 7L, simulator, null, null);
+        ResourceEvent expiring = new ResourceEvent(new LocationOnRoad(road, 20), new LocationOnRoad(road, 30),
+                1100, Long.MAX_VALUE, 8L, simulator, null, null);
+        AgentEvent agent = new AgentEvent(new LocationOnRoad(road, 50), 900, simulator, null);
+
+        File file = folder.newFile("trace.bin");
+        try (TraceRecorder recorder = new TraceRecorder(file.getPath(), LIFE_TIME)) {
+            recorder.trigger(delivered);
+            recorder.resourceAvailable(delivered);
+            recorder.resourceChange(delivered.id, -1, ResourceState.AVAILABLE, delivered.pickupLoc, 1600,
+                    AgentAction.assignTo(agent.id, delivered.id));
+            recorder.trigger(agent);
+            recorder.reachIntersection(agent.id, agent.time, agent.loc, -1, b);
+            agent.assignTo(delivered);
+            agent.state = AgentEvent.State.PICKING_UP;
+            agent.time = 1100;
+            agent.loc = delivered.pickupLoc;
+            recorder.agentState(agent);
+            recorder.trigger(expiring);
+            recorder.resourceAvailable(expiring);
+            recorder.pickup(agent.id, delivered.id, 1100, 200, 100);
+            recorder.travelTime(9, 1200, road, 42);
+            recorder.dropOff(delivered.id, agent.id, 1500, 100, 400);
+            recorder.expired(expiring.id, 1700, LIFE_TIME);
+            recorder.end(2000, 1, 300);
+            assertEquals(13, recorder.records());
+        }
+
+        TraceReplay replay = new TraceReplay(file.getPath(), -1);
+        replay.replay();
+        assertEquals(13, replay.records);
+        assertEquals(3, replay.triggers);
+        assertEquals(LIFE_TIME, replay.resourceMaximumLifeTime);
+        assertEquals(2, replay.totalResources);
+        assertEquals(1, replay.expiredResources);
+        assertEquals(100 + 100 + LIFE_TIME, replay.totalResourceWaitTime);
+        assertEquals(400, replay.totalResourceTripTime);
+        assertEquals(200, replay.totalAgentSearchTime);
+        assertEquals(1, replay.totalAssignments);
+        assertEquals(2000, replay.simulationEndTime);
+        assertEquals(1, replay.emptyAgents);
+        assertEquals(300, replay.remainingSearchTime);
+
+        TraceReplay.AgentState agentState = replay.agents.get(agent.id);
+        assertEquals(1, agentState.triggers);
+        assertEquals(1100, agentState.time);
+        assertEquals(AgentEvent.State.PICKING_UP, agentState.state);
+        assertEquals(road.id, agentState.roadId);
+        assertEquals(10, agentState.offset);
+        assertEquals(delivered.id, agentState.resourceId);
+        assertFalse(agentState.isPickup);
+
+        TraceReplay.ResourceRecord deliveredRecord = replay.resources.get(delivered.id);
+        assertEquals(ResourceState.DROPPED_OFF, deliveredRecord.state);
+        assertEquals(agent.id, deliveredRecord.assignedAgentId);
+        assertEquals(1000 + LIFE_TIME, deliveredRecord.expirationTime);
+        assertEquals(40, deliveredRecord.dropoffOffset);
+        TraceReplay.ResourceRecord expiringRecord = replay.resources.get(expiring.id);
+        assertEquals(ResourceState.EXPIRED, expiringRecord.state);
+        assertEquals(Long.MAX_VALUE, expiringRecord.tripTime);
+
+        assertTrue(replay.statistics().contains("total number of assignments: 1\n"));
+    }
+
+    @Test
+    public void testReplay_manyRecordsAcrossBuffers() throws IOException {
+        Random random = new Random(42);
+        File file = folder.newFile("trace.bin");
+        int records = 200000;
+        long time = 0;
+        try (TraceRecorder recorder = new TraceRecorder(file.getPath(), LIFE_TIME)) {
+            for (int i = 0; i < records; i++) {
+                // times go back as well as forward, by up to a day
+                time += random.nextInt(86400) - 40000;
+                recorder.expired(random.nextInt(1000000), time, random.nextInt(1 << 20));
+            }
+            recorder.end(time, 0, 0);
+        }
+
+        TraceReplay replay = new TraceReplay(file.getPath(), -1);
+        replay.replay();
+        assertEquals(records + 1, replay.records);
+        assertEquals(records, replay.expiredResources);
+        assertEquals(time, replay.simulationEndTime);
+    }
+
+    @Test(expected = IOException.class)
+    public void testReplay_truncatedTrace() throws IOException {
+        File file = folder.newFile("trace.bin");
+        try (TraceRecorder recorder = new TraceRecorder(file.getPath(), LIFE_TIME)) {
+            recorder.expired(1, 1000, LIFE_TIME);
+            recorder.end(2000, 0, 0);
+        }
+        try (RandomAccessFile truncated = new RandomAccessFile(file, "rw")) {
+            // cut the END record short
+            truncated.setLength(truncated.length() - 3);
+        }
+        new TraceReplay(file.getPath(), -1).replay();
+    }
+}